@@ -0,0 +1,94 @@
+package me.waliedyassen.cache.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The entry point of the benchmarks jar. It runs the selected benchmarks once for every requested thread count and
+ * optionally writes all of the results into a single JSON file, which can be compared against the results of another
+ * version of the library.
+ * <p>
+ * The supported arguments are:
+ * <ul>
+ *     <li>{@code --include <regex>} the benchmarks to run, all of them by default.</li>
+ *     <li>{@code --threads <n,n,...>} the thread counts to run the benchmarks with, {@code 1} by default.</li>
+ *     <li>{@code --param <name=value,value,...>} overrides the values of a benchmark parameter, may be repeated.</li>
+ *     <li>{@code --json <path>} writes the results in the JMH JSON format to the specified path.</li>
+ * </ul>
+ *
+ * @author Walied K. Yassen
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args the command-line arguments.
+     * @throws RunnerException       if anything occurs while running the benchmarks.
+     * @throws FileNotFoundException if the JSON results file could not be created.
+     */
+    public static void main(String[] args) throws RunnerException, FileNotFoundException {
+        String include = ".*";
+        String json = null;
+        int[] threads = {1};
+        List<String[]> params = new ArrayList<>();
+        for (int index = 0; index < args.length; index++) {
+            String name = args[index];
+            if (index + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing the value of the argument: " + name);
+            }
+            String value = args[++index];
+            switch (name) {
+                case "--include":
+                    include = value;
+                    break;
+                case "--threads":
+                    String[] counts = value.split(",");
+                    threads = new int[counts.length];
+                    for (int count = 0; count < counts.length; count++) {
+                        threads[count] = Integer.parseInt(counts[count].trim());
+                    }
+                    break;
+                case "--param":
+                    int separator = value.indexOf('=');
+                    if (separator == -1) {
+                        throw new IllegalArgumentException("The parameter must be in the name=value,value form: " + value);
+                    }
+                    params.add(new String[]{value.substring(0, separator), value.substring(separator + 1)});
+                    break;
+                case "--json":
+                    json = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unrecognized argument: " + name);
+            }
+        }
+        List<RunResult> results = new ArrayList<>();
+        for (int count : threads) {
+            ChainedOptionsBuilder options = new OptionsBuilder().include(include).threads(count);
+            for (String[] param : params) {
+                options.param(param[0], param[1].split(","));
+            }
+            results.addAll(new Runner(options.build()).run());
+        }
+        if (json != null) {
+            try (PrintStream out = new PrintStream(json)) {
+                ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+            }
+        }
+    }
+
+    private BenchmarkRunner() {
+        // NOOP
+    }
+}
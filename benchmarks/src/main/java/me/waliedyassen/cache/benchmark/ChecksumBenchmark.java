@@ -0,0 +1,72 @@
+package me.waliedyassen.cache.benchmark;
+
+import com.uwyn.rife.tools.Whirlpool;
+import me.waliedyassen.cache.io.CRC;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link CRC#compute(byte[])} and {@link Whirlpool#compute(byte[])} over a range of data sizes.
+ *
+ * @author Walied K. Yassen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumBenchmark {
+
+    /**
+     * The size of the data which the checksum values are computed for.
+     */
+    @Param({"64", "4096", "65536", "1048576"})
+    private int size;
+
+    /**
+     * The data which the checksum values are computed for.
+     */
+    private byte[] data;
+
+    /**
+     * Generates the data which the checksum values are computed for.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        data = Fixtures.payload(new Random(Fixtures.SEED), size);
+    }
+
+    /**
+     * Computes the CRC-32 checksum of the data.
+     *
+     * @return the computed checksum.
+     */
+    @Benchmark
+    public int crc() {
+        return CRC.compute(data);
+    }
+
+    /**
+     * Computes the whirlpool checksum of the data.
+     *
+     * @return the computed checksum.
+     */
+    @Benchmark
+    public byte[] whirlpool() {
+        return Whirlpool.compute(data);
+    }
+}
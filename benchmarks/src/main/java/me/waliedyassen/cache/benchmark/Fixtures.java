@@ -0,0 +1,254 @@
+package me.waliedyassen.cache.benchmark;
+
+import me.waliedyassen.cache.compression.Compression;
+import me.waliedyassen.cache.fs.java.JavaFileStore;
+import me.waliedyassen.cache.io.CRC;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates the deterministic fixtures which the benchmarks run against. Every fixture is generated from a fixed seed,
+ * so two runs of the same benchmark on two versions of the library always operate on the exact same bytes.
+ *
+ * @author Walied K. Yassen
+ */
+public final class Fixtures {
+
+    /**
+     * The seed which all of the fixtures are generated from.
+     */
+    public static final long SEED = 0x4A35424DL;
+
+    /**
+     * The directory which the generated fixture caches are kept in, so they are only generated once per machine.
+     */
+    private static final Path DIRECTORY = Paths.get(System.getProperty("cache.benchmark.fixtures", System.getProperty("java.io.tmpdir")), "cache-benchmarks");
+
+    /**
+     * The name of the file which marks a fixture cache as completely generated.
+     */
+    private static final String COMPLETE = ".complete";
+
+    /**
+     * The id of the archive which the groups of a fixture cache are stored in.
+     */
+    public static final int ARCHIVE = 0;
+
+    /**
+     * The id of the archive which holds the index tables of a fixture cache.
+     */
+    private static final int MASTER_INDEX = 255;
+
+    /**
+     * The version which every fixture group is stored with.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Generates a payload of the specified {@code size}. The payload is made of short runs of a small alphabet, which
+     * compresses at a ratio close to the one of real cache groups.
+     *
+     * @param random the random which the payload is generated from.
+     * @param size   the size of the payload.
+     * @return the generated payload.
+     */
+    public static byte[] payload(Random random, int size) {
+        byte[] data = new byte[size];
+        int position = 0;
+        while (position < size) {
+            byte value = (byte) random.nextInt(24);
+            int run = Math.min(size - position, 1 + random.nextInt(6));
+            Arrays.fill(data, position, position + run, value);
+            position += run;
+        }
+        return data;
+    }
+
+    /**
+     * Wraps the specified {@code raw} data in a Js5 container which is compressed using the specified {@link
+     * Compression compression}.
+     *
+     * @param raw         the raw data to wrap.
+     * @param compression the compression type of the container.
+     * @return the container data, without the version trailer.
+     */
+    public static byte[] container(byte[] raw, Compression compression) {
+        try {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream(raw.length + 9);
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeByte(compression.ordinal());
+            if (compression == Compression.NONE) {
+                out.writeInt(raw.length);
+                out.write(raw);
+                return stream.toByteArray();
+            }
+            byte[] compressed = compress(raw, compression);
+            out.writeInt(compressed.length);
+            out.writeInt(raw.length);
+            out.write(compressed);
+            return stream.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compresses the specified {@code raw} data using the specified {@link Compression compression}.
+     *
+     * @param raw         the raw data to compress.
+     * @param compression the compression type.
+     * @return the compressed data as it is stored within a Js5 container.
+     * @throws IOException if anything occurs while compressing the data.
+     */
+    private static byte[] compress(byte[] raw, Compression compression) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(raw.length);
+        switch (compression) {
+            case GZIP:
+                try (GZIPOutputStream gzip = new GZIPOutputStream(stream)) {
+                    gzip.write(raw);
+                }
+                return stream.toByteArray();
+            case BZIP2:
+                try (BZip2CompressorOutputStream bzip2 = new BZip2CompressorOutputStream(stream, 1)) {
+                    bzip2.write(raw);
+                }
+                byte[] compressed = stream.toByteArray();
+                return Arrays.copyOfRange(compressed, 4, compressed.length);
+            default:
+                throw new IllegalArgumentException("The compression type is not supported by the library: " + compression);
+        }
+    }
+
+    /**
+     * Encodes an index table of the specified {@code protocol} with the specified amount of groups and files.
+     *
+     * @param protocol      the protocol number of the index table, between 5 and 7.
+     * @param crcs          the CRC-32 checksum of the container of each group.
+     * @param filesPerGroup the amount of files of each group.
+     * @return the raw index table data.
+     */
+    public static byte[] index(int protocol, int[] crcs, int filesPerGroup) {
+        try {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeByte(protocol);
+            if (protocol >= 6) {
+                out.writeInt(VERSION);
+            }
+            out.writeByte(1);
+            writeSize(out, protocol, crcs.length);
+            for (int groupId = 0; groupId < crcs.length; groupId++) {
+                writeSize(out, protocol, groupId == 0 ? 0 : 1);
+            }
+            for (int groupId = 0; groupId < crcs.length; groupId++) {
+                out.writeInt(groupId * 0x9E3779B9);
+            }
+            for (int crc : crcs) {
+                out.writeInt(crc);
+            }
+            for (int groupId = 0; groupId < crcs.length; groupId++) {
+                out.writeInt(VERSION);
+            }
+            for (int groupId = 0; groupId < crcs.length; groupId++) {
+                writeSize(out, protocol, filesPerGroup);
+            }
+            for (int groupId = 0; groupId < crcs.length; groupId++) {
+                for (int fileId = 0; fileId < filesPerGroup; fileId++) {
+                    writeSize(out, protocol, fileId == 0 ? 0 : 1);
+                }
+            }
+            for (int groupId = 0; groupId < crcs.length; groupId++) {
+                for (int fileId = 0; fileId < filesPerGroup; fileId++) {
+                    out.writeInt(groupId * 31 + fileId);
+                }
+            }
+            return stream.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a size value of the index table using the encoding of the specified {@code protocol}.
+     *
+     * @param out      the stream to write the value to.
+     * @param protocol the protocol number of the index table.
+     * @param value    the value to write.
+     * @throws IOException if anything occurs while writing the value.
+     */
+    private static void writeSize(DataOutputStream out, int protocol, int value) throws IOException {
+        if (protocol >= 7 && value >= Short.MAX_VALUE) {
+            out.writeInt(value | 0x80000000);
+        } else {
+            out.writeShort(value);
+        }
+    }
+
+    /**
+     * Returns the directory of a Java format fixture cache with the specified shape, generating it if it was not
+     * generated already. The groups are stored in the {@link #ARCHIVE archive} with a single file each.
+     *
+     * @param groups      the amount of groups of the cache.
+     * @param groupSize   the size of the raw data of each group.
+     * @param compression the compression type of each group.
+     * @return the directory of the fixture cache.
+     */
+    public static synchronized Path javaCache(int groups, int groupSize, Compression compression) {
+        Path directory = DIRECTORY.resolve(String.format("java-%d-%d-%s", groups, groupSize, compression.name().toLowerCase()));
+        if (Files.exists(directory.resolve(COMPLETE))) {
+            return directory;
+        }
+        try {
+            Files.createDirectories(directory);
+            for (String name : new String[]{"main_file_cache.dat2", "main_file_cache.idx" + ARCHIVE, "main_file_cache.idx" + MASTER_INDEX}) {
+                Files.deleteIfExists(directory.resolve(name));
+            }
+            Random random = new Random(SEED);
+            try (RandomAccessFile dataFile = new RandomAccessFile(directory.resolve("main_file_cache.dat2").toFile(), "rw");
+                 RandomAccessFile indexFile = new RandomAccessFile(directory.resolve("main_file_cache.idx" + ARCHIVE).toFile(), "rw");
+                 RandomAccessFile masterFile = new RandomAccessFile(directory.resolve("main_file_cache.idx" + MASTER_INDEX).toFile(), "rw")) {
+                JavaFileStore store = new JavaFileStore(ARCHIVE, dataFile, indexFile);
+                int[] crcs = new int[groups];
+                for (int groupId = 0; groupId < groups; groupId++) {
+                    byte[] container = container(payload(random, groupSize), compression);
+                    crcs[groupId] = CRC.compute(container);
+                    store.store(groupId, trailer(container));
+                }
+                JavaFileStore master = new JavaFileStore(MASTER_INDEX, dataFile, masterFile);
+                master.store(ARCHIVE, container(index(6, crcs, 1), Compression.GZIP));
+            }
+            Files.createFile(directory.resolve(COMPLETE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to generate the fixture cache " + directory, e);
+        }
+        return directory;
+    }
+
+    /**
+     * Appends the version trailer to the specified {@code container}.
+     *
+     * @param container the container data.
+     * @return the container data followed by the version trailer.
+     */
+    private static byte[] trailer(byte[] container) {
+        byte[] data = Arrays.copyOf(container, container.length + 2);
+        data[container.length] = (byte) (VERSION >> 8);
+        data[container.length + 1] = (byte) VERSION;
+        return data;
+    }
+
+    private Fixtures() {
+        // NOOP
+    }
+}
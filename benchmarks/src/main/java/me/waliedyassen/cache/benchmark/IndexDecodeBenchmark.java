@@ -0,0 +1,89 @@
+package me.waliedyassen.cache.benchmark;
+
+import me.waliedyassen.cache.archive.Index;
+import me.waliedyassen.cache.compression.Compression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Index#decode(byte[])} for every protocol number of the index table. The decode includes the
+ * decompression of the index container and the computation of its checksum values, as it does when an archive is
+ * opened.
+ *
+ * @author Walied K. Yassen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexDecodeBenchmark {
+
+    /**
+     * The protocol number of the index table.
+     */
+    @Param({"5", "6", "7"})
+    private int protocol;
+
+    /**
+     * The amount of groups within the index table.
+     */
+    @Param({"256", "4096", "32768"})
+    private int groups;
+
+    /**
+     * The amount of files within each group.
+     */
+    @Param({"1", "16"})
+    private int filesPerGroup;
+
+    /**
+     * The compression type of the index container.
+     */
+    @Param({"NONE", "GZIP"})
+    private Compression compression;
+
+    /**
+     * The index container which is decoded.
+     */
+    private byte[] container;
+
+    /**
+     * Generates the index container which is decoded.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(Fixtures.SEED);
+        int[] crcs = new int[groups];
+        for (int groupId = 0; groupId < groups; groupId++) {
+            crcs[groupId] = random.nextInt();
+        }
+        container = Fixtures.container(Fixtures.index(protocol, crcs, filesPerGroup), compression);
+    }
+
+    /**
+     * Decodes the index container.
+     *
+     * @return the decoded index table.
+     */
+    @Benchmark
+    public Index decode() {
+        Index index = new Index();
+        index.decode(container);
+        return index;
+    }
+}
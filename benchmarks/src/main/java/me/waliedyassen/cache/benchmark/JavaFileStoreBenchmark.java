@@ -0,0 +1,98 @@
+package me.waliedyassen.cache.benchmark;
+
+import me.waliedyassen.cache.compression.Compression;
+import me.waliedyassen.cache.fs.java.JavaFileStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link JavaFileStore#load(int)} against a generated fixture cache, the groups are stored without any
+ * compression so the size of each group on the disk is exactly the group size parameter.
+ *
+ * @author Walied K. Yassen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaFileStoreBenchmark {
+
+    /**
+     * The amount of groups within the fixture cache.
+     */
+    private static final int GROUPS = 256;
+
+    /**
+     * The size of the data of each group.
+     */
+    @Param({"512", "4096", "65536", "524288"})
+    private int groupSize;
+
+    /**
+     * The data file of the fixture cache.
+     */
+    private RandomAccessFile dataFile;
+
+    /**
+     * The index file of the fixture archive.
+     */
+    private RandomAccessFile indexFile;
+
+    /**
+     * The file store which is benchmarked.
+     */
+    private JavaFileStore store;
+
+    /**
+     * Opens the file store of the fixture cache.
+     *
+     * @throws IOException if anything occurs while opening the files of the fixture cache.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Path directory = Fixtures.javaCache(GROUPS, groupSize, Compression.NONE);
+        dataFile = new RandomAccessFile(directory.resolve("main_file_cache.dat2").toFile(), "r");
+        indexFile = new RandomAccessFile(directory.resolve("main_file_cache.idx" + Fixtures.ARCHIVE).toFile(), "r");
+        store = new JavaFileStore(Fixtures.ARCHIVE, dataFile, indexFile);
+    }
+
+    /**
+     * Closes the files of the fixture cache.
+     *
+     * @throws IOException if anything occurs while closing the files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        indexFile.close();
+        dataFile.close();
+    }
+
+    /**
+     * Loads a random group of the fixture archive.
+     *
+     * @return the loaded group data.
+     */
+    @Benchmark
+    public byte[] load() {
+        return store.load(ThreadLocalRandom.current().nextInt(GROUPS));
+    }
+}
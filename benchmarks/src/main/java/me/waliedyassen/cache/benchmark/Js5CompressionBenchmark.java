@@ -0,0 +1,69 @@
+package me.waliedyassen.cache.benchmark;
+
+import me.waliedyassen.cache.compression.Compression;
+import me.waliedyassen.cache.compression.Js5Compression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Js5Compression#decompress(byte[])} for every compression type which the library supports. The
+ * {@link Compression#LZMA} type is not benchmarked because the library does not support decompressing it.
+ *
+ * @author Walied K. Yassen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Js5CompressionBenchmark {
+
+    /**
+     * The size of the decompressed data of the container.
+     */
+    @Param({"512", "4096", "65536", "524288"})
+    private int groupSize;
+
+    /**
+     * The compression type of the container.
+     */
+    @Param({"NONE", "GZIP", "BZIP2"})
+    private Compression compression;
+
+    /**
+     * The container which is decompressed.
+     */
+    private byte[] container;
+
+    /**
+     * Generates the container which is decompressed.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        container = Fixtures.container(Fixtures.payload(new Random(Fixtures.SEED), groupSize), compression);
+    }
+
+    /**
+     * Decompresses the container.
+     *
+     * @return the decompressed data.
+     */
+    @Benchmark
+    public byte[] decompress() {
+        return Js5Compression.decompress(container);
+    }
+}
@@ -1,14 +1,26 @@
 package me.waliedyassen.cache;
 
+import lombok.Getter;
 import me.waliedyassen.cache.archive.Archive;
+import me.waliedyassen.cache.archive.ChecksumTable;
+import me.waliedyassen.cache.archive.OffHeapGroupStore;
+import me.waliedyassen.cache.archive.TieredGroupCache;
+import me.waliedyassen.cache.concurrent.CacheExecutors;
 import me.waliedyassen.cache.fs.FileSystem;
 import me.waliedyassen.cache.fs.FileSystemProvider;
 import me.waliedyassen.cache.fs.java.JavaFileSystemProvider;
 import me.waliedyassen.cache.fs.pack.PackFileSystemProvider;
+import me.waliedyassen.cache.io.CRC;
+import me.waliedyassen.cache.memory.MemoryBudget;
+import me.waliedyassen.cache.memory.SlabAllocator;
+import me.waliedyassen.cache.metrics.CacheMetrics;
 
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * The main class for the cache system, it is responsible for managing all of the file
@@ -18,25 +30,71 @@ import java.util.Map;
  */
 public final class Cache {
 
+    /**
+     * The expected amount of distinct groups which are accessed when the tiered cache is created implicitly.
+     */
+    private static final int DEFAULT_EXPECTED_ENTRIES = 65536;
+
     /**
      * A map which holds all of the currently opened archives. This map is lazily populated in most of the
      * scenarios.
      */
-    private final Map<Integer, Archive> archives = new HashMap<>();
+    private final Map<Integer, Archive> archives = new ConcurrentHashMap<>();
 
     /**
      * The file system provider which is used for feeding the archives with the {@link FileSystem} objects it
      * provides.
      */
+    @Getter
     private final FileSystemProvider fileSystemProvider;
 
+    /**
+     * The executor which the asynchronous operations of the cache run on.
+     */
+    @Getter
+    private final Executor executor;
+
+    /**
+     * The metrics listener which the cache and all of its layers report their operations to.
+     */
+    @Getter
+    private volatile CacheMetrics metrics = CacheMetrics.NONE;
+
+    /**
+     * The off-heap store of the decompressed groups, this is only present if it was enabled through {@link
+     * #enableOffHeap(SlabAllocator)}.
+     */
+    @Getter
+    private volatile OffHeapGroupStore offHeapStore;
+
+    /**
+     * The tiered cache of the groups, this is only present if it was enabled through {@link
+     * #enableTieredCache(long, SlabAllocator, int)}.
+     */
+    @Getter
+    private volatile TieredGroupCache tieredCache;
+
+    /**
+     * The master checksum table of the cache, this is only present once it was requested through {@link
+     * #getChecksumTable()}.
+     */
+    private volatile ChecksumTable checksumTable;
+
+    /**
+     * The account of the shared memory budget which the cache is charged to, this is only present if it was
+     * registered through {@link #setMemoryBudget(MemoryBudget, String)}.
+     */
+    private volatile MemoryBudget.Account account;
+
     /**
      * Constructs a new {@link Cache} type object instance.
      *
      * @param fileSystemProvider the file system provider of the cache.
+     * @param executor           the executor which the asynchronous operations run on.
      */
-    private Cache(FileSystemProvider fileSystemProvider) {
+    private Cache(FileSystemProvider fileSystemProvider, Executor executor) {
         this.fileSystemProvider = fileSystemProvider;
+        this.executor = executor;
     }
 
     /**
@@ -49,10 +107,46 @@ public final class Cache {
      */
     public Archive get(int id) {
         Archive archive = archives.get(id);
+        CacheMetrics metrics = this.metrics;
         if (archive != null) {
+            if (metrics.isEnabled()) {
+                metrics.onCacheHit(id, -1);
+            }
             return archive;
         }
-        return load(id);
+        if (metrics.isEnabled()) {
+            metrics.onCacheMiss(id, -1);
+        }
+        // the archive is loaded outside of the map, so the I/O never blocks the other archives of the same bin.
+        archive = load(id);
+        if (archive == null) {
+            return null;
+        }
+        Archive existing = archives.putIfAbsent(id, archive);
+        if (existing != null) {
+            MemoryBudget.Account account = this.account;
+            if (account != null) {
+                account.release(archive.getIndexSize());
+            }
+            return existing;
+        }
+        return archive;
+    }
+
+    /**
+     * Returns the {@link Archive} object with the specified {@code id} asynchronously, the archive is loaded on the
+     * executor of the cache if it was not loaded already.
+     *
+     * @param id the id of the archive that we are trying to retrieve.
+     * @return a {@link CompletableFuture} which completes with the {@link Archive} object or {@code null}.
+     * @see #get(int)
+     */
+    public CompletableFuture<Archive> getAsync(int id) {
+        Archive archive = archives.get(id);
+        if (archive != null) {
+            return CompletableFuture.completedFuture(archive);
+        }
+        return CompletableFuture.supplyAsync(() -> get(id), executor);
     }
 
     /**
@@ -66,11 +160,193 @@ public final class Cache {
         if (fileSystem == null) {
             return null;
         }
-        Archive archive = new Archive(fileSystem);
-        archives.put(id, archive);
+        Archive archive = new Archive(this, id, fileSystem);
+        MemoryBudget.Account account = this.account;
+        if (account != null) {
+            account.forceReserve(archive.getIndexSize());
+        }
         return archive;
     }
 
+    /**
+     * Reloads the archives whose index table was changed outside of the cache. The provider is asked which archives
+     * may have changed, then only the index tables whose CRC-32 checksum differs are decoded again and swapped in, and
+     * the groups which were modified or removed are dropped from the group caches. The loads which are in progress
+     * keep the index entries they already started with, but never store their groups into the group caches once the
+     * reload has swapped the index table. The index listeners of the provider are notified of every
+     * index table that was changed.
+     *
+     * @return the ids of the archives which were changed.
+     */
+    public synchronized int[] reload() {
+        int[] candidates = fileSystemProvider.refresh();
+        int[] changed = new int[candidates.length];
+        int count = 0;
+        for (int id : candidates) {
+            if (reload(id)) {
+                changed[count++] = id;
+            }
+        }
+        return Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * Reloads the archive with the specified {@code id} if its index table was changed.
+     *
+     * @param id the id of the archive.
+     * @return <code>true</code> if the index table was changed otherwise <code>false</code>.
+     */
+    private boolean reload(int id) {
+        FileSystem fileSystem = fileSystemProvider.provide(id);
+        byte[] data = fileSystem != null ? fileSystem.loadIndex() : null;
+        int crc = data != null ? CRC.compute(data) : 0;
+        Archive archive = archives.get(id);
+        ChecksumTable table = checksumTable;
+        if (archive != null ? data != null && crc == archive.getCrc() : table == null || crc == table.getCrc(id)) {
+            return false;
+        }
+        if (archive != null) {
+            MemoryBudget.Account account = this.account;
+            if (data == null || fileSystem != archive.getFileSystem()) {
+                archives.remove(id);
+                archive.detach();
+                invalidate(id, archive.getGroupIds());
+                if (account != null) {
+                    account.release(archive.getIndexSize());
+                }
+            } else {
+                long size = archive.getIndexSize();
+                invalidate(id, archive.reload(data));
+                if (account != null) {
+                    account.release(size);
+                    account.forceReserve(archive.getIndexSize());
+                }
+            }
+        }
+        if (data != null) {
+            fileSystemProvider.notifyIndexChanged(id, data);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the specified groups from the off-heap store and the tiered cache if they are enabled.
+     *
+     * @param archiveId the id of the archive which the groups belong to.
+     * @param groupIds  the ids of the groups.
+     */
+    private void invalidate(int archiveId, int[] groupIds) {
+        OffHeapGroupStore offHeapStore = this.offHeapStore;
+        TieredGroupCache tieredCache = this.tieredCache;
+        for (int groupId : groupIds) {
+            if (offHeapStore != null) {
+                offHeapStore.invalidate(archiveId, groupId);
+            }
+            if (tieredCache != null) {
+                tieredCache.invalidate(archiveId, groupId);
+            }
+        }
+    }
+
+    /**
+     * Returns the master checksum table of the cache. The table is built from the index tables of all the archives on
+     * the first call, after that it is kept up to date with the index tables that are stored through the file systems
+     * of the cache, re-computing only the entries of the archives that were changed.
+     *
+     * @return the {@link ChecksumTable} object.
+     */
+    public ChecksumTable getChecksumTable() {
+        ChecksumTable table = checksumTable;
+        if (table != null) {
+            return table;
+        }
+        synchronized (this) {
+            if (checksumTable == null) {
+                checksumTable = ChecksumTable.build(fileSystemProvider);
+            }
+            return checksumTable;
+        }
+    }
+
+    /**
+     * Sets the {@link CacheMetrics metrics} listener which the cache, its archives and its file systems report their
+     * operations to.
+     *
+     * @param metrics the metrics listener or {@link CacheMetrics#NONE} to disable the reporting.
+     */
+    public void setMetrics(CacheMetrics metrics) {
+        this.metrics = metrics;
+        fileSystemProvider.setMetrics(metrics);
+    }
+
+    /**
+     * Enables the off-heap store of the decompressed groups, which is used by {@link Archive#loadGroupOffHeap(int)}.
+     * The memory of the groups is allocated from the specified {@link SlabAllocator allocator}, which remains owned
+     * by the caller.
+     *
+     * @param allocator the allocator which the memory of the groups is allocated from.
+     */
+    public synchronized void enableOffHeap(SlabAllocator allocator) {
+        OffHeapGroupStore previous = offHeapStore;
+        offHeapStore = new OffHeapGroupStore(allocator);
+        if (previous != null) {
+            previous.clear();
+        }
+    }
+
+    /**
+     * Enables the tiered cache of the groups which is used by {@link Archive#loadGroup(int)} and {@link
+     * Archive#loadGroupAsync(int)}. The hot decoded groups are kept on-heap within the specified budget and the
+     * compressed containers are kept off-heap within the capacity of the specified {@link SlabAllocator allocator},
+     * which remains owned by the caller.
+     *
+     * @param decodedBudget   the maximum amount of bytes the decoded groups can occupy on-heap.
+     * @param allocator       the allocator which the compressed containers are allocated from.
+     * @param expectedEntries the expected amount of distinct groups which are accessed.
+     */
+    public synchronized void enableTieredCache(long decodedBudget, SlabAllocator allocator, int expectedEntries) {
+        TieredGroupCache previous = tieredCache;
+        tieredCache = new TieredGroupCache(decodedBudget, allocator, expectedEntries);
+        tieredCache.setAccount(account);
+        if (previous != null) {
+            previous.setAccount(null);
+            previous.clear();
+        }
+    }
+
+    /**
+     * Registers the cache with the specified shared {@link MemoryBudget memory budget}, which then enforces a single
+     * limit across the decoded groups and the index tables of all the caches that are registered with it. The index
+     * tables are charged but never reclaimed, while the decoded groups are reclaimed when the budget is under
+     * pressure. A decoded-only tiered cache is enabled if the tiered cache was not enabled already.
+     *
+     * @param budget the memory budget or {@code null} to unregister from the current budget.
+     * @param name   the name of the cache within the budget.
+     */
+    public synchronized void setMemoryBudget(MemoryBudget budget, String name) {
+        if (account != null) {
+            account.close();
+            account = null;
+        }
+        if (budget == null) {
+            if (tieredCache != null) {
+                tieredCache.setAccount(null);
+            }
+            return;
+        }
+        if (tieredCache == null) {
+            tieredCache = new TieredGroupCache(Long.MAX_VALUE, null, DEFAULT_EXPECTED_ENTRIES);
+        }
+        account = budget.register(name, bytes -> {
+            TieredGroupCache tiers = tieredCache;
+            return tiers != null ? tiers.reclaim(bytes) : 0;
+        });
+        for (Archive archive : archives.values()) {
+            account.forceReserve(archive.getIndexSize());
+        }
+        tieredCache.setAccount(account);
+    }
+
     /**
      * Opens a {@link Cache cache} using the specified {@link FileSystemProvider file system provider}.
      *
@@ -78,7 +354,19 @@ public final class Cache {
      * @return the created {@link Cache} object.
      */
     public static Cache open(FileSystemProvider fileSystemProvider) {
-        return new Cache(fileSystemProvider);
+        return open(fileSystemProvider, CacheExecutors.getDefault());
+    }
+
+    /**
+     * Opens a {@link Cache cache} using the specified {@link FileSystemProvider file system provider} and runs all of
+     * the asynchronous operations on the specified {@link Executor executor}.
+     *
+     * @param fileSystemProvider the file system provider which we will use for the cache.
+     * @param executor           the executor which the asynchronous operations will run on.
+     * @return the created {@link Cache} object.
+     */
+    public static Cache open(FileSystemProvider fileSystemProvider, Executor executor) {
+        return new Cache(fileSystemProvider, executor);
     }
 
     /**
@@ -0,0 +1,146 @@
+package me.waliedyassen.cache;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches the directory of a cache for changes and {@link Cache#reload() reloads} the cache once the directory has
+ * been quiet for a while, so a batch of writes from the content pipeline results in a single reload.
+ *
+ * @author Walied K. Yassen
+ */
+public final class CacheWatcher implements AutoCloseable {
+
+    /**
+     * The cache which is reloaded.
+     */
+    @Getter
+    private final Cache cache;
+
+    /**
+     * The watch service of the directory.
+     */
+    private final WatchService service;
+
+    /**
+     * The amount of nanoseconds the directory must be quiet for before the cache is reloaded.
+     */
+    private final long quiet;
+
+    /**
+     * The listener which receives the ids of the archives that were changed by a reload or {@code null}.
+     */
+    private final Consumer<int[]> listener;
+
+    /**
+     * The thread which waits for the changes.
+     */
+    private final Thread thread;
+
+    /**
+     * The failure of the last reload or {@code null} if it did not fail.
+     */
+    @Getter
+    private volatile Throwable lastFailure;
+
+    /**
+     * Constructs a new {@link CacheWatcher} type object instance.
+     *
+     * @param cache     the cache which is reloaded.
+     * @param directory the directory which is watched.
+     * @param quiet     the amount of nanoseconds the directory must be quiet for before the cache is reloaded.
+     * @param listener  the listener which receives the ids of the archives that were changed or {@code null}.
+     * @throws IOException if anything occurs while registering the directory.
+     */
+    private CacheWatcher(Cache cache, Path directory, long quiet, Consumer<int[]> listener) throws IOException {
+        this.cache = cache;
+        this.quiet = quiet;
+        this.listener = listener;
+        service = directory.getFileSystem().newWatchService();
+        directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        thread = new Thread(this::run, "cache-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Waits for the changes of the directory and reloads the cache once the directory is quiet.
+     */
+    private void run() {
+        try {
+            while (true) {
+                drain(service.take());
+                WatchKey key;
+                while ((key = service.poll(quiet, TimeUnit.NANOSECONDS)) != null) {
+                    drain(key);
+                }
+                try {
+                    int[] changed = cache.reload();
+                    lastFailure = null;
+                    if (changed.length != 0 && listener != null) {
+                        listener.accept(changed);
+                    }
+                } catch (RuntimeException e) {
+                    lastFailure = e;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // the watcher was closed.
+        }
+    }
+
+    /**
+     * Discards the pending events of the specified {@link WatchKey key} and resets it.
+     *
+     * @param key the key of the directory.
+     */
+    private static void drain(WatchKey key) {
+        key.pollEvents();
+        key.reset();
+    }
+
+    /**
+     * Stops watching the directory.
+     */
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException e) {
+            throw new CacheException("Failed to close the watch service", e);
+        }
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts watching the specified {@code directory} and reloading the specified {@link Cache cache} whenever any of
+     * the files within it is created, modified or removed.
+     *
+     * @param cache     the cache which is reloaded.
+     * @param directory the directory of the cache files.
+     * @param quiet     the amount of time the directory must be quiet for before the cache is reloaded.
+     * @param unit      the time unit of the quiet time.
+     * @param listener  the listener which receives the ids of the archives that were changed or {@code null}.
+     * @return the started {@link CacheWatcher} object.
+     */
+    public static CacheWatcher start(Cache cache, Path directory, long quiet, TimeUnit unit, Consumer<int[]> listener) {
+        try {
+            return new CacheWatcher(cache, directory, unit.toNanos(quiet), listener);
+        } catch (IOException e) {
+            throw new CacheException("Failed to watch the directory " + directory, e);
+        }
+    }
+}
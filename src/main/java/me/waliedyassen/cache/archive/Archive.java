@@ -1,7 +1,17 @@
 package me.waliedyassen.cache.archive;
 
+import lombok.Getter;
+import me.waliedyassen.cache.Cache;
 import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.compression.Js5Compression;
+import me.waliedyassen.cache.concurrent.SingleFlight;
 import me.waliedyassen.cache.fs.FileSystem;
+import me.waliedyassen.cache.fs.LoadPriority;
+import me.waliedyassen.cache.metrics.CacheMetrics;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * A single file system archive, it is the top level in the file system we are targeting. It holds groups and each group
@@ -12,21 +22,64 @@ import me.waliedyassen.cache.fs.FileSystem;
 public final class Archive {
 
     /**
-     * The index table of the archive.
+     * The index table of the archive, it is replaced as a whole when the archive is reloaded.
+     */
+    private volatile Index index;
+
+    /**
+     * Coalesces the concurrent loads of the same group, so they share a single read and a single decode. The loads are
+     * keyed by the index entry of the group, so a load which started before the archive was reloaded is never joined.
+     */
+    private final SingleFlight<Group, Group> loads = new SingleFlight<>();
+
+    /**
+     * Coalesces the concurrent off-heap loads of the same group, keyed by the index entry of the group.
+     */
+    private final SingleFlight<Group, OffHeapGroup> offHeapLoads = new SingleFlight<>();
+
+    /**
+     * Whether or not the archive was removed from its cache by a reload.
+     */
+    private volatile boolean detached;
+
+    /**
+     * The cache which the archive belongs to.
+     */
+    @Getter
+    private final Cache cache;
+
+    /**
+     * The id of the archive.
      */
-    private final Index index = new Index();
+    @Getter
+    private final int id;
 
     /**
      * The file ystem of the archive.
      */
+    @Getter
     private final FileSystem fileSystem;
 
     /**
-     * Constructs a new {@link Archive} type object instance.
+     * Constructs a new {@link Archive} type object instance which does not belong to any cache, the archive gets a
+     * cache of its own which provides only the specified file system.
      *
      * @param fileSystem the file system of the archive.
      */
     public Archive(FileSystem fileSystem) {
+        this(Cache.open(id -> id == -1 ? fileSystem : null), -1, fileSystem);
+    }
+
+    /**
+     * Constructs a new {@link Archive} type object instance.
+     *
+     * @param cache      the cache which the archive belongs to.
+     * @param id         the id of the archive.
+     * @param fileSystem the file system of the archive.
+     */
+    public Archive(Cache cache, int id, FileSystem fileSystem) {
+        this.cache = cache;
+        this.id = id;
         this.fileSystem = fileSystem;
         initialize();
     }
@@ -39,18 +92,372 @@ public final class Archive {
         if (data == null) {
             throw new CacheException("Failed to load the index data from the file system");
         }
-        index.decode(data);
+        index = decodeIndex(data);
+    }
+
+    /**
+     * Decodes the specified raw index table {@code data}.
+     *
+     * @param data the raw data of the index table.
+     * @return the decoded {@link Index} object.
+     */
+    private Index decodeIndex(byte[] data) {
+        Index index = new Index();
+        CacheMetrics metrics = cache.getMetrics();
+        long start = 0;
+        if (metrics.isEnabled()) {
+            metrics.onArchiveOpenStarted(id);
+            start = System.nanoTime();
+        }
+        index.decode(id, data, metrics);
+        if (metrics.isEnabled()) {
+            metrics.onArchiveOpened(id, data.length, System.nanoTime() - start);
+        }
+        return index;
+    }
+
+    /**
+     * Decodes the specified raw index table {@code data} and swaps it in place of the current index table. The loads
+     * which are in progress keep the index entries they already started with, but never store their groups into the
+     * caches once the index table was swapped.
+     *
+     * @param data the raw data of the new index table.
+     * @return the ids of the groups which were modified or removed by the new index table in ascending order.
+     */
+    public int[] reload(byte[] data) {
+        Index updated = decodeIndex(data);
+        Group[] previous = index.getGroups();
+        index = updated;
+        Group[] current = updated.getGroups();
+        int[] changed = new int[previous.length];
+        int count = 0;
+        for (int groupId = 0; groupId < previous.length; groupId++) {
+            Group older = previous[groupId];
+            if (older == null) {
+                continue;
+            }
+            Group newer = groupId < current.length ? current[groupId] : null;
+            if (newer == null || older.getVersion() != newer.getVersion() || older.getCompressedCrc() != newer.getCompressedCrc()
+                    || !Arrays.equals(older.getWhirlpool(), newer.getWhirlpool()) || !Arrays.equals(older.getFileIds(), newer.getFileIds())) {
+                changed[count++] = groupId;
+            }
+        }
+        return Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * Detaches the archive from its cache after it was removed by a reload. The archive keeps serving the groups of its
+     * index table, but its loads no longer store the groups into the caches of the cache.
+     */
+    public void detach() {
+        detached = true;
+    }
+
+    /**
+     * Loads the group with the specified {@code id} from the file system and unpacks all of its files. Concurrent
+     * loads of the same group share a single load, so every caller receives the same {@link Group} object.
+     *
+     * @param id the id of the group that we want to load.
+     * @return the loaded {@link Group} object or {@code null} if the group is not present.
+     */
+    public Group loadGroup(int id) {
+        Group entry = lookup(id);
+        if (entry == null) {
+            return null;
+        }
+        accessed(id);
+        TieredGroupCache tiers = cache.getTieredCache();
+        if (tiers != null) {
+            Group group = tiers.getDecoded(this.id, id);
+            if (group != null) {
+                hit(id);
+                return group;
+            }
+        }
+        return loads.load(entry, () -> {
+            byte[] data = tiers != null ? tiers.getCompressed(this.id, id) : null;
+            if (data == null) {
+                data = fileSystem.loadGroup(id);
+                if (data == null) {
+                    return null;
+                }
+                if (tiers != null) {
+                    missed(id);
+                    putCompressed(entry, data, tiers);
+                }
+            } else {
+                hit(id);
+            }
+            return decode(entry, data, tiers);
+        });
+    }
+
+    /**
+     * Loads the group with the specified {@code id} from the file system asynchronously.
+     *
+     * @param id the id of the group that we want to load.
+     * @return a {@link CompletableFuture} which completes with the loaded {@link Group} object or {@code null} if the
+     * group is not present.
+     * @see #loadGroup(int)
+     */
+    public CompletableFuture<Group> loadGroupAsync(int id) {
+        return loadGroupAsync(id, LoadPriority.URGENT);
+    }
+
+    /**
+     * Loads the group with the specified {@code id} from the file system asynchronously using the specified {@link
+     * LoadPriority priority}.
+     *
+     * @param id       the id of the group that we want to load.
+     * @param priority the priority of the load.
+     * @return a {@link CompletableFuture} which completes with the loaded {@link Group} object or {@code null} if the
+     * group is not present.
+     * @see #loadGroup(int)
+     */
+    public CompletableFuture<Group> loadGroupAsync(int id, LoadPriority priority) {
+        Group entry = lookup(id);
+        if (entry == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        accessed(id);
+        TieredGroupCache tiers = cache.getTieredCache();
+        if (tiers != null) {
+            Group group = tiers.getDecoded(this.id, id);
+            if (group != null) {
+                hit(id);
+                return CompletableFuture.completedFuture(group);
+            }
+        }
+        Executor executor = cache.getExecutor();
+        return loads.loadAsync(entry, () -> {
+            byte[] compressed = tiers != null ? tiers.getCompressed(this.id, id) : null;
+            if (compressed != null) {
+                hit(id);
+                return CompletableFuture.supplyAsync(() -> decode(entry, compressed, tiers), executor);
+            }
+            return fileSystem.loadGroupAsync(id, executor, priority).thenApply(data -> {
+                if (data == null) {
+                    return null;
+                }
+                if (tiers != null) {
+                    missed(id);
+                    putCompressed(entry, data, tiers);
+                }
+                return decode(entry, data, tiers);
+            });
+        });
+    }
+
+    /**
+     * Reports the access of the group with the specified {@code id} to the metrics listener of the cache.
+     *
+     * @param id the id of the group that was accessed.
+     */
+    private void accessed(int id) {
+        CacheMetrics metrics = cache.getMetrics();
+        if (metrics.isEnabled()) {
+            metrics.onGroupAccessed(this.id, id);
+        }
+    }
+
+    /**
+     * Reports a hit of the group with the specified {@code id} in the cache tiers to the metrics listener of the cache.
+     *
+     * @param id the id of the group that was found.
+     */
+    private void hit(int id) {
+        CacheMetrics metrics = cache.getMetrics();
+        if (metrics.isEnabled()) {
+            metrics.onCacheHit(this.id, id);
+        }
+    }
+
+    /**
+     * Reports a miss of the group with the specified {@code id} in the cache tiers to the metrics listener of the
+     * cache.
+     *
+     * @param id the id of the group that was not found.
+     */
+    private void missed(int id) {
+        CacheMetrics metrics = cache.getMetrics();
+        if (metrics.isEnabled()) {
+            metrics.onCacheMiss(this.id, id);
+        }
+    }
+
+    /**
+     * Decompresses the specified group {@code data} and unpacks all of its files, then offers the decoded group to the
+     * first tier of the cache if it is present.
+     *
+     * @param entry the index entry of the group.
+     * @param data  the compressed data of the group.
+     * @param tiers the tiered group cache or {@code null} if it is not present.
+     * @return the decoded {@link Group} object.
+     */
+    private Group decode(Group entry, byte[] data, TieredGroupCache tiers) {
+        Group group = entry.unpack(Js5Compression.decompress(data, cache.getMetrics(), id, entry.getId()));
+        if (tiers != null) {
+            tiers.putDecoded(id, group);
+            if (isStale(entry)) {
+                tiers.invalidate(id, entry.getId());
+            }
+        }
+        return group;
     }
 
     /**
-     * Loads all of the data of the archive from the file system.
+     * Offers the specified compressed group {@code data} to the second tier of the cache.
+     *
+     * @param entry the index entry of the group.
+     * @param data  the compressed data of the group.
+     * @param tiers the tiered group cache.
      */
-    private void loadData() {
-        for (Group group : index.getGroups()) {
-            // NOOP
+    private void putCompressed(Group entry, byte[] data, TieredGroupCache tiers) {
+        tiers.putCompressed(id, entry.getId(), data);
+        if (isStale(entry)) {
+            tiers.invalidate(id, entry.getId());
         }
     }
 
+    /**
+     * Checks whether or not the specified index entry was replaced by a reload of the archive or the archive was
+     * {@link #detach() detached}. The group is stored into a cache before this is checked, so either the reload
+     * invalidates it after it was stored or the loader removes it again.
+     *
+     * @param entry the index entry which the group was loaded with.
+     * @return <code>true</code> if the entry is no longer the current entry of the group otherwise <code>false</code>.
+     */
+    private boolean isStale(Group entry) {
+        return detached || lookup(entry.getId()) != entry;
+    }
+
+    /**
+     * Decompresses the specified raw {@code data} of the group with the specified {@code id} and unpacks all of its
+     * files, without going through any of the caches of the archive.
+     *
+     * @param id   the id of the group.
+     * @param data the raw data of the group.
+     * @return the unpacked {@link Group} object or {@code null} if the group is not present.
+     */
+    public Group unpackGroup(int id, byte[] data) {
+        Group entry = lookup(id);
+        if (entry == null) {
+            return null;
+        }
+        return entry.unpack(Js5Compression.decompress(data, cache.getMetrics(), this.id, id));
+    }
+
+    /**
+     * Loads the group with the specified {@code id} into the off-heap store of the cache, or returns it from the store
+     * if it was already loaded. The returned group is retained on behalf of the caller, which must release it once it
+     * is done with the group.
+     *
+     * @param id the id of the group that we want to load.
+     * @return the retained {@link OffHeapGroup} object or {@code null} if the group is not present.
+     * @throws CacheException if the off-heap store is not enabled for the cache.
+     */
+    public OffHeapGroup loadGroupOffHeap(int id) {
+        OffHeapGroupStore store = cache.getOffHeapStore();
+        if (store == null) {
+            throw new CacheException("The off-heap store is not enabled for the cache");
+        }
+        if (lookup(id) == null) {
+            return null;
+        }
+        accessed(id);
+        while (true) {
+            Group entry = lookup(id);
+            if (entry == null) {
+                return null;
+            }
+            OffHeapGroup group = store.get(this.id, id);
+            if (group != null) {
+                hit(id);
+                return group;
+            }
+            missed(id);
+            group = offHeapLoads.load(entry, () -> {
+                byte[] data = fileSystem.loadGroup(id);
+                if (data == null) {
+                    return null;
+                }
+                OffHeapGroup loaded = OffHeapGroup.pack(entry, Js5Compression.decompress(data, cache.getMetrics(), this.id, id), store::allocate);
+                store.put(this.id, loaded);
+                if (isStale(entry)) {
+                    store.invalidate(this.id, id);
+                }
+                return loaded;
+            });
+            if (group == null) {
+                return null;
+            }
+            if (group.tryRetain()) {
+                return group;
+            }
+            if (detached) {
+                // the loads of a detached archive are never stored, so the load is handed to the archive which
+                // replaced it within the cache.
+                Archive current = cache.get(this.id);
+                return current != null && current != this ? current.loadGroupOffHeap(id) : null;
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of all the groups which are present within the index table of this archive.
+     *
+     * @return the ids of the groups in ascending order.
+     */
+    public int[] getGroupIds() {
+        Group[] groups = index.getGroups();
+        int count = 0;
+        for (Group group : groups) {
+            if (group != null) {
+                count++;
+            }
+        }
+        int[] ids = new int[count];
+        count = 0;
+        for (Group group : groups) {
+            if (group != null) {
+                ids[count++] = group.getId();
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the index entry of the group with the specified {@code id} without loading the data of the group.
+     *
+     * @param id the id of the group.
+     * @return the {@link Group} entry if it was present otherwise {@code null}.
+     */
+    public Group getGroup(int id) {
+        return lookup(id);
+    }
+
+    /**
+     * Looks-up for the index entry of the group with the specified {@code id}.
+     *
+     * @param id the id of the group that we want to look-up for.
+     * @return the {@link Group} entry if it was present otherwise {@code null}.
+     */
+    private Group lookup(int id) {
+        Group[] groups = index.getGroups();
+        if (id < 0 || id >= groups.length) {
+            return null;
+        }
+        return groups[id];
+    }
+
+    /**
+     * Returns the estimated on-heap size of the index table of this archive.
+     *
+     * @return the estimated size in bytes.
+     */
+    public long getIndexSize() {
+        return index.getEstimatedSize();
+    }
 
     /**
      * Returns the version number of the index of this archive.
@@ -0,0 +1,286 @@
+package me.waliedyassen.cache.archive;
+
+import com.uwyn.rife.tools.Whirlpool;
+import me.waliedyassen.cache.compression.Js5Compression;
+import me.waliedyassen.cache.fs.FileSystem;
+import me.waliedyassen.cache.fs.FileSystemProvider;
+import me.waliedyassen.cache.fs.IndexListener;
+import me.waliedyassen.cache.io.CRC;
+import me.waliedyassen.cache.io.Packet;
+
+import java.util.Arrays;
+
+/**
+ * The master checksum table of a cache, which is served by the update server as the group {@code 255} of the archive
+ * {@code 255}. The table holds the CRC-32 checksum, the version and the whirlpool digest of the index table of every
+ * archive, which are computed straight from the raw index data without decoding the index tables.
+ * <p>
+ * The table is built once for all of the archives, then it listens to the index tables that are stored through the
+ * file systems of the provider and only re-computes the entry of the archive which was changed. The encoded tables
+ * are replaced rather than modified, so an encoded table that was handed out never changes.
+ *
+ * @author Walied K. Yassen
+ */
+public final class ChecksumTable implements IndexListener {
+
+    /**
+     * The maximum amount of archives within a cache.
+     */
+    private static final int MAX_ARCHIVES = 255;
+
+    /**
+     * The size of a single entry of the plain table: the CRC-32 checksum and the version.
+     */
+    private static final int ENTRY_SIZE = 8;
+
+    /**
+     * The size of a single entry of the whirlpool table: the CRC-32 checksum, the version and the whirlpool digest.
+     */
+    private static final int WHIRLPOOL_ENTRY_SIZE = ENTRY_SIZE + Whirlpool.DIGESTBYTES;
+
+    /**
+     * The CRC-32 checksums of the index tables of the archives.
+     */
+    private int[] crcs = new int[0];
+
+    /**
+     * The versions of the index tables of the archives.
+     */
+    private int[] versions = new int[0];
+
+    /**
+     * The whirlpool digests of the index tables of the archives.
+     */
+    private byte[][] whirlpools = new byte[0][];
+
+    /**
+     * The encoded plain table or {@code null} if it was not encoded yet.
+     */
+    private volatile byte[] plain;
+
+    /**
+     * The encoded whirlpool table or {@code null} if it was not encoded yet.
+     */
+    private volatile byte[] whirlpool;
+
+    /**
+     * Builds the checksum table of all the archives of the specified {@link FileSystemProvider provider}.
+     *
+     * @param provider the provider of the file systems of the archives.
+     */
+    private void populate(FileSystemProvider provider) {
+        int count = 0;
+        byte[][] indexes = new byte[MAX_ARCHIVES][];
+        for (int archiveId = 0; archiveId < MAX_ARCHIVES; archiveId++) {
+            FileSystem fs = provider.provide(archiveId);
+            indexes[archiveId] = fs != null ? fs.loadIndex() : null;
+            if (indexes[archiveId] != null) {
+                count = archiveId + 1;
+            }
+        }
+        resize(count);
+        for (int archiveId = 0; archiveId < count; archiveId++) {
+            if (indexes[archiveId] != null) {
+                compute(archiveId, indexes[archiveId]);
+            }
+        }
+    }
+
+    /**
+     * Re-computes the entry of the specified archive, then updates the encoded tables. The encoded tables are only
+     * patched at the entry of the archive, unless the archive was not covered by the table before.
+     *
+     * @param archiveId the id of the archive which the index table belongs to.
+     * @param data      the raw data of the index table that was stored.
+     */
+    @Override
+    public synchronized void onIndexStored(int archiveId, byte[] data) {
+        if (archiveId < 0 || archiveId >= MAX_ARCHIVES) {
+            return;
+        }
+        if (archiveId >= crcs.length) {
+            resize(archiveId + 1);
+            compute(archiveId, data);
+            if (plain != null) {
+                plain = encodePlain();
+            }
+            if (whirlpool != null) {
+                whirlpool = encodeWhirlpool();
+            }
+            return;
+        }
+        compute(archiveId, data);
+        if (plain != null) {
+            byte[] table = plain.clone();
+            Packet packet = new Packet(table);
+            packet.pos(archiveId * ENTRY_SIZE);
+            packet.p4(crcs[archiveId]);
+            packet.p4(versions[archiveId]);
+            plain = table;
+        }
+        if (whirlpool != null) {
+            byte[] table = whirlpool.clone();
+            Packet packet = new Packet(table);
+            packet.pos(1 + archiveId * WHIRLPOOL_ENTRY_SIZE);
+            packet.p4(crcs[archiveId]);
+            packet.p4(versions[archiveId]);
+            packet.pArrayBuffer(whirlpools[archiveId]);
+            sign(packet, table.length - 1 - Whirlpool.DIGESTBYTES);
+            whirlpool = table;
+        }
+    }
+
+    /**
+     * Computes the entry of the specified archive from the specified raw index {@code data}.
+     *
+     * @param archiveId the id of the archive which the index table belongs to.
+     * @param data      the raw data of the index table.
+     */
+    private void compute(int archiveId, byte[] data) {
+        crcs[archiveId] = CRC.compute(data);
+        whirlpools[archiveId] = Whirlpool.compute(data);
+        Packet packet = new Packet(Js5Compression.decompress(data));
+        versions[archiveId] = packet.g1() >= 6 ? packet.g4() : 0;
+    }
+
+    /**
+     * Resizes the entries of the table to the specified amount of archives.
+     *
+     * @param count the amount of archives.
+     */
+    private void resize(int count) {
+        crcs = Arrays.copyOf(crcs, count);
+        versions = Arrays.copyOf(versions, count);
+        whirlpools = Arrays.copyOf(whirlpools, count);
+    }
+
+    /**
+     * Returns the encoded plain table, which is made of the CRC-32 checksum and the version of every archive. The
+     * returned array must not be modified.
+     *
+     * @return the encoded plain table.
+     */
+    public byte[] getPlain() {
+        byte[] table = plain;
+        if (table != null) {
+            return table;
+        }
+        synchronized (this) {
+            if (plain == null) {
+                plain = encodePlain();
+            }
+            return plain;
+        }
+    }
+
+    /**
+     * Returns the encoded whirlpool table, which starts with the amount of archives, followed by the CRC-32 checksum,
+     * the version and the whirlpool digest of every archive, and ends with the whirlpool digest of the entries. The
+     * digest of the entries is not encrypted, so the table can be served as-is to the clients which do not verify the
+     * digest with an RSA key. The returned array must not be modified.
+     *
+     * @return the encoded whirlpool table.
+     */
+    public byte[] getWhirlpool() {
+        byte[] table = whirlpool;
+        if (table != null) {
+            return table;
+        }
+        synchronized (this) {
+            if (whirlpool == null) {
+                whirlpool = encodeWhirlpool();
+            }
+            return whirlpool;
+        }
+    }
+
+    /**
+     * Encodes the plain table.
+     *
+     * @return the encoded plain table.
+     */
+    private byte[] encodePlain() {
+        Packet packet = new Packet(crcs.length * ENTRY_SIZE);
+        for (int archiveId = 0; archiveId < crcs.length; archiveId++) {
+            packet.p4(crcs[archiveId]);
+            packet.p4(versions[archiveId]);
+        }
+        return packet.data();
+    }
+
+    /**
+     * Encodes the whirlpool table.
+     *
+     * @return the encoded whirlpool table.
+     */
+    private byte[] encodeWhirlpool() {
+        int length = 1 + crcs.length * WHIRLPOOL_ENTRY_SIZE;
+        Packet packet = new Packet(length + 1 + Whirlpool.DIGESTBYTES);
+        packet.p1(crcs.length);
+        for (int archiveId = 0; archiveId < crcs.length; archiveId++) {
+            packet.p4(crcs[archiveId]);
+            packet.p4(versions[archiveId]);
+            packet.pArrayBuffer(whirlpools[archiveId] != null ? whirlpools[archiveId] : new byte[Whirlpool.DIGESTBYTES]);
+        }
+        sign(packet, length);
+        return packet.data();
+    }
+
+    /**
+     * Writes the trailer of the whirlpool table, which is the whirlpool digest of the specified amount of bytes of the
+     * table prefixed by a zero byte.
+     *
+     * @param packet the packet of the whirlpool table.
+     * @param length the length of the entries of the table.
+     */
+    private static void sign(Packet packet, int length) {
+        packet.pos(length);
+        packet.p1(0);
+        packet.pArrayBuffer(Whirlpool.compute(packet.data(), 0, length));
+    }
+
+    /**
+     * Returns the amount of archives which the table covers.
+     *
+     * @return the amount of archives.
+     */
+    public synchronized int getArchiveCount() {
+        return crcs.length;
+    }
+
+    /**
+     * Returns the CRC-32 checksum of the index table of the specified archive.
+     *
+     * @param archiveId the id of the archive.
+     * @return the CRC-32 checksum or {@code 0} if the archive is not present.
+     */
+    public synchronized int getCrc(int archiveId) {
+        return archiveId >= 0 && archiveId < crcs.length ? crcs[archiveId] : 0;
+    }
+
+    /**
+     * Returns the version of the index table of the specified archive.
+     *
+     * @param archiveId the id of the archive.
+     * @return the version or {@code 0} if the archive is not present.
+     */
+    public synchronized int getVersion(int archiveId) {
+        return archiveId >= 0 && archiveId < versions.length ? versions[archiveId] : 0;
+    }
+
+    /**
+     * Builds the checksum table of all the archives of the specified {@link FileSystemProvider provider} and keeps it
+     * up to date with the index tables that are stored through the provider.
+     *
+     * @param provider the provider of the file systems of the archives.
+     * @return the built {@link ChecksumTable} object.
+     */
+    public static ChecksumTable build(FileSystemProvider provider) {
+        ChecksumTable table = new ChecksumTable();
+        synchronized (table) {
+            provider.addIndexListener(table);
+            table.populate(provider);
+        }
+        return table;
+    }
+}
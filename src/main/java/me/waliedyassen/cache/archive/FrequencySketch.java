@@ -0,0 +1,109 @@
+package me.waliedyassen.cache.archive;
+
+/**
+ * A count-min sketch which estimates the access frequency of the groups within a fixed amount of memory. The counters
+ * saturate at {@link #MAX_COUNT} and are all halved once enough accesses were recorded, so the estimates follow the
+ * recent popularity of the groups rather than their popularity since the cache was opened.
+ * <p>
+ * This class is not thread-safe, the callers must synchronize the access to it.
+ *
+ * @author Walied K. Yassen
+ */
+final class FrequencySketch {
+
+    /**
+     * The maximum value a single counter can reach.
+     */
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * The amount of counters each key is spread over.
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * The seeds of the hash functions of each row.
+     */
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+    /**
+     * The counters of the sketch.
+     */
+    private final byte[] table;
+
+    /**
+     * The mask which maps a hash to a counter index.
+     */
+    private final int mask;
+
+    /**
+     * The amount of accesses after which all the counters are halved.
+     */
+    private final int sampleSize;
+
+    /**
+     * The amount of accesses that were recorded since the counters were last halved.
+     */
+    private int additions;
+
+    /**
+     * Constructs a new {@link FrequencySketch} type object instance.
+     *
+     * @param expectedEntries the expected amount of distinct groups which are tracked.
+     */
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(64, expectedEntries) - 1) << 1;
+        table = new byte[width];
+        mask = width - 1;
+        sampleSize = width * 10;
+    }
+
+    /**
+     * Records an access to the specified {@code key}.
+     *
+     * @param key the key that was accessed.
+     */
+    void increment(long key) {
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(key, row);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            for (int index = 0; index < table.length; index++) {
+                table[index] >>= 1;
+            }
+            additions /= 2;
+        }
+    }
+
+    /**
+     * Returns the estimated access frequency of the specified {@code key}.
+     *
+     * @param key the key that we want its frequency.
+     * @return the estimated frequency.
+     */
+    int frequency(long key) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, table[index(key, row)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * Returns the index of the counter of the specified {@code key} within the specified {@code row}.
+     *
+     * @param key the key.
+     * @param row the row of the counter.
+     * @return the index of the counter.
+     */
+    private int index(long key, int row) {
+        long hash = (key + SEEDS[row]) * SEEDS[row];
+        hash ^= hash >>> 32;
+        return (int) hash & mask;
+    }
+}
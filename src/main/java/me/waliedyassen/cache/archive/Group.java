@@ -69,6 +69,13 @@ public final class Group {
     @Setter(AccessLevel.PACKAGE)
     private int decompressedSize;
 
+    /**
+     * An array of the ids of all the files in the group.
+     */
+    @Getter
+    @Setter(AccessLevel.PACKAGE)
+    private int[] fileIds;
+
     /**
      * An array of all the file names in the group.
      */
@@ -96,6 +103,75 @@ public final class Group {
         }
     }
 
+    /**
+     * Creates a copy of this group which holds the files that are unpacked from the specified decompressed group
+     * {@code data}.
+     *
+     * @param data the decompressed data of the group.
+     * @return the created {@link Group} object.
+     */
+    Group unpack(byte[] data) {
+        Group group = new Group(id);
+        group.version = version;
+        group.name32 = name32;
+        group.decompressedCrc = decompressedCrc;
+        group.compressedCrc = compressedCrc;
+        group.whirlpool = whirlpool;
+        group.compressedSize = compressedSize;
+        group.decompressedSize = decompressedSize;
+        group.fileIds = fileIds;
+        group.fileName32 = fileName32;
+        group.fileData = new byte[fileData.length][];
+        if (fileIds.length == 0) {
+            return group;
+        }
+        if (fileIds.length == 1) {
+            group.fileData[fileIds[0]] = data;
+            return group;
+        }
+        int[] sizes = getFileSizes(data, fileIds.length);
+        for (int file = 0; file < fileIds.length; file++) {
+            group.fileData[fileIds[file]] = new byte[sizes[file]];
+            sizes[file] = 0;
+        }
+        int chunks = data[data.length - 1] & 0xff;
+        int pos = data.length - 1 - chunks * fileIds.length * 4;
+        int offset = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int size = 0;
+            for (int file = 0; file < fileIds.length; file++) {
+                size += g4(data, pos);
+                pos += 4;
+                System.arraycopy(data, offset, group.fileData[fileIds[file]], sizes[file], size);
+                sizes[file] += size;
+                offset += size;
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Computes the size of each file within the specified decompressed packed group {@code data}.
+     *
+     * @param data  the decompressed data of the group.
+     * @param count the amount of files within the group, it must be more than one.
+     * @return the size of each file in the order of the file ids.
+     */
+    static int[] getFileSizes(byte[] data, int count) {
+        int chunks = data[data.length - 1] & 0xff;
+        int[] sizes = new int[count];
+        int pos = data.length - 1 - chunks * count * 4;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int size = 0;
+            for (int file = 0; file < count; file++) {
+                size += g4(data, pos);
+                pos += 4;
+                sizes[file] += size;
+            }
+        }
+        return sizes;
+    }
+
     /**
      * Returns the {@code byte[]} data of the file with the specified {@code id}. The returned array
      * should never be modified by the user, it will potentially cause issues in the cache library.
@@ -130,6 +206,17 @@ public final class Group {
      * @return <code>true</code> if it does otherwise <code>false</code>.
      */
     public boolean contains(int id) {
-        return id >= 0 && id <= fileData.length && fileData[id] != null;
+        return id >= 0 && id < fileData.length && fileData[id] != null;
+    }
+
+    /**
+     * Reads a 32-bit integer value from the specified {@code data} at the specified {@code pos}.
+     *
+     * @param data the data to read the 32-bit integer value from.
+     * @param pos  the position to read the 32-bit integer value from.
+     * @return the value that was read from the data.
+     */
+    static int g4(byte[] data, int pos) {
+        return (data[pos] & 0xff) << 24 | (data[pos + 1] & 0xff) << 16 | (data[pos + 2] & 0xff) << 8 | data[pos + 3] & 0xff;
     }
 }
@@ -6,6 +6,7 @@ import lombok.Getter;
 import me.waliedyassen.cache.compression.Js5Compression;
 import me.waliedyassen.cache.io.CRC;
 import me.waliedyassen.cache.io.Packet;
+import me.waliedyassen.cache.metrics.CacheMetrics;
 
 /**
  * Index table for a single {@link Archive}, it holds useful information about each entry of the archive (groups and files)
@@ -95,7 +96,19 @@ public final class Index {
      * @param data the array of byte data to decode the content of the index from.
      */
     public void decode(byte[] data) {
-        Packet packet = new Packet(Js5Compression.decompress(data));
+        decode(-1, data, CacheMetrics.NONE);
+    }
+
+    /**
+     * Decodes the index table content from the specified array of {@code byte} data and reports the decompression and
+     * the checksum computation to the specified {@link CacheMetrics metrics} listener.
+     *
+     * @param archiveId the id of the archive which the index table belongs to.
+     * @param data      the array of byte data to decode the content of the index from.
+     * @param metrics   the metrics listener which the operations are reported to.
+     */
+    public void decode(int archiveId, byte[] data, CacheMetrics metrics) {
+        Packet packet = new Packet(Js5Compression.decompress(data, metrics, archiveId, -1));
         protocolNumber = packet.g1();
         if (protocolNumber < 5 || protocolNumber > 7) {
             throw new IllegalStateException("Incorrect JS5 protocol number: " + protocolNumber);
@@ -172,6 +185,7 @@ public final class Index {
                 }
             }
             group.initFiles(highestFileId + 1, optionName32);
+            group.setFileIds(fileIdsPerGroup[group.getId()]);
         }
         if (optionName32) {
             for (int groupIndex = 0; groupIndex < validGroupsCount; groupIndex++) {
@@ -188,7 +202,11 @@ public final class Index {
                 }
             }
         }
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
         updateChecksum(data);
+        if (metrics.isEnabled()) {
+            metrics.onChecksum(archiveId, data.length, System.nanoTime() - start);
+        }
     }
 
     /**
@@ -201,6 +219,31 @@ public final class Index {
         whirlpool = Whirlpool.compute(data);
     }
 
+    /**
+     * Returns the estimated on-heap size of the decoded index table.
+     *
+     * @return the estimated size in bytes.
+     */
+    public long getEstimatedSize() {
+        long size = 64 + 4L * groups.length;
+        for (Group group : groups) {
+            if (group == null) {
+                continue;
+            }
+            size += 64;
+            if (group.getWhirlpool() != null) {
+                size += 80;
+            }
+            int[] fileIds = group.getFileIds();
+            size += 16 + 4L * fileIds.length;
+            size += 16 + 4L * group.getFileData().length;
+            if (group.getFileName32() != null) {
+                size += 16 + 4L * group.getFileName32().length;
+            }
+        }
+        return size;
+    }
+
     /**
      * Writes the specified size type {@code value} to the specified {@link Packet packet}.
      *
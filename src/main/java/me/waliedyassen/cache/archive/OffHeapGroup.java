@@ -0,0 +1,181 @@
+package me.waliedyassen.cache.archive;
+
+import lombok.Getter;
+import me.waliedyassen.cache.memory.OffHeapBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * A decompressed group which its files are stored off-heap within a single {@link OffHeapBuffer}. The files are
+ * accessed through read-only {@link ByteBuffer} views, which are only valid while the caller holds a reference to the
+ * group, so every group that is handed out must be {@link #release() released} or {@link #close() closed} once the
+ * caller is done with it.
+ *
+ * @author Walied K. Yassen
+ */
+public final class OffHeapGroup implements AutoCloseable {
+
+    /**
+     * The index entry of the group.
+     */
+    @Getter
+    private final Group entry;
+
+    /**
+     * The buffer which holds the data of all the files.
+     */
+    private final OffHeapBuffer buffer;
+
+    /**
+     * The offset of each file within the buffer indexed by the file id.
+     */
+    private final int[] offsets;
+
+    /**
+     * The size of each file indexed by the file id, or {@code -1} if the file is not present.
+     */
+    private final int[] sizes;
+
+    /**
+     * Constructs a new {@link OffHeapGroup} type object instance.
+     *
+     * @param entry   the index entry of the group.
+     * @param buffer  the buffer which holds the data of all the files.
+     * @param offsets the offset of each file within the buffer.
+     * @param sizes   the size of each file.
+     */
+    private OffHeapGroup(Group entry, OffHeapBuffer buffer, int[] offsets, int[] sizes) {
+        this.entry = entry;
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Returns the id of the group.
+     *
+     * @return the id of the group.
+     */
+    public int getId() {
+        return entry.getId();
+    }
+
+    /**
+     * Returns a read-only view of the data of the file with the specified {@code id}.
+     *
+     * @param id the id of the file that we want its data.
+     * @return the read-only {@link ByteBuffer} view or {@code null} if the file is not present.
+     */
+    public ByteBuffer getFile(int id) {
+        if (!contains(id)) {
+            return null;
+        }
+        return buffer.view(offsets[id], sizes[id]);
+    }
+
+    /**
+     * Checks whether or not the group contains a file with the specified {@code id}.
+     *
+     * @param id the id of the file that we are checking.
+     * @return <code>true</code> if it does otherwise <code>false</code>.
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < sizes.length && sizes[id] != -1;
+    }
+
+    /**
+     * Returns the amount of off-heap memory the group occupies.
+     *
+     * @return the size of the group data in bytes.
+     */
+    public int getSize() {
+        return buffer.getLength();
+    }
+
+    /**
+     * Attempts to acquire a new reference to the group.
+     *
+     * @return <code>true</code> if the reference was acquired or <code>false</code> if the group was already freed.
+     */
+    public boolean tryRetain() {
+        return buffer.tryRetain();
+    }
+
+    /**
+     * Acquires a new reference to the group.
+     *
+     * @return this {@link OffHeapGroup} object.
+     */
+    public OffHeapGroup retain() {
+        buffer.retain();
+        return this;
+    }
+
+    /**
+     * Releases a reference to the group, the memory is freed once the last reference is released.
+     *
+     * @return <code>true</code> if the memory was freed otherwise <code>false</code>.
+     */
+    public boolean release() {
+        return buffer.release();
+    }
+
+    /**
+     * Releases a reference to the group.
+     *
+     * @see #release()
+     */
+    @Override
+    public void close() {
+        release();
+    }
+
+    /**
+     * Packs the files of the specified decompressed group {@code data} into a single buffer from the specified {@code
+     * allocator}, so each file is stored contiguously.
+     *
+     * @param entry     the index entry of the group.
+     * @param data      the decompressed data of the group.
+     * @param allocator the allocator which allocates the buffer for the specified size.
+     * @return the created {@link OffHeapGroup} object.
+     */
+    static OffHeapGroup pack(Group entry, byte[] data, IntFunction<OffHeapBuffer> allocator) {
+        int[] fileIds = entry.getFileIds();
+        int[] offsets = new int[entry.getFileData().length];
+        int[] sizes = new int[offsets.length];
+        Arrays.fill(sizes, -1);
+        if (fileIds.length <= 1) {
+            OffHeapBuffer buffer = allocator.apply(fileIds.length == 0 ? 0 : data.length);
+            if (fileIds.length == 1) {
+                buffer.write(0, data, 0, data.length);
+                sizes[fileIds[0]] = data.length;
+            }
+            return new OffHeapGroup(entry, buffer, offsets, sizes);
+        }
+        int[] fileSizes = Group.getFileSizes(data, fileIds.length);
+        int[] positions = new int[fileIds.length];
+        int total = 0;
+        for (int file = 0; file < fileIds.length; file++) {
+            offsets[fileIds[file]] = positions[file] = total;
+            sizes[fileIds[file]] = fileSizes[file];
+            total += fileSizes[file];
+        }
+        OffHeapBuffer buffer = allocator.apply(total);
+        int chunks = data[data.length - 1] & 0xff;
+        int pos = data.length - 1 - chunks * fileIds.length * 4;
+        int offset = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int size = 0;
+            for (int file = 0; file < fileIds.length; file++) {
+                size += Group.g4(data, pos);
+                pos += 4;
+                buffer.write(positions[file], data, offset, size);
+                positions[file] += size;
+                offset += size;
+            }
+        }
+        return new OffHeapGroup(entry, buffer, offsets, sizes);
+    }
+}
@@ -0,0 +1,137 @@
+package me.waliedyassen.cache.archive;
+
+import lombok.Getter;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.memory.OffHeapBuffer;
+import me.waliedyassen.cache.memory.SlabAllocator;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An off-heap store of decompressed groups which is shared by all the archives of a cache. The groups are kept in
+ * least recently used order, and when the allocator runs out of room the least recently used groups are evicted until
+ * the allocation fits. An evicted group is only freed once every caller which still holds it releases it.
+ *
+ * @author Walied K. Yassen
+ */
+public final class OffHeapGroupStore {
+
+    /**
+     * The groups which are currently stored, keyed by the archive id and the group id.
+     */
+    private final Map<Long, OffHeapGroup> groups = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The allocator which the memory of the groups is allocated from.
+     */
+    @Getter
+    private final SlabAllocator allocator;
+
+    /**
+     * Constructs a new {@link OffHeapGroupStore} type object instance.
+     *
+     * @param allocator the allocator which the memory of the groups is allocated from.
+     */
+    public OffHeapGroupStore(SlabAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+    /**
+     * Returns the stored group with the specified {@code groupId} of the archive with the specified {@code archiveId}.
+     * The returned group is retained on behalf of the caller.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the retained {@link OffHeapGroup} or {@code null} if it is not stored.
+     */
+    synchronized OffHeapGroup get(int archiveId, int groupId) {
+        OffHeapGroup group = groups.get(key(archiveId, groupId));
+        if (group == null || !group.tryRetain()) {
+            return null;
+        }
+        return group;
+    }
+
+    /**
+     * Stores the specified {@code group}, the store takes over the reference the group was created with.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param group     the group that we want to store.
+     */
+    synchronized void put(int archiveId, OffHeapGroup group) {
+        OffHeapGroup previous = groups.put(key(archiveId, group.getId()), group);
+        if (previous != null && previous != group) {
+            previous.release();
+        }
+    }
+
+    /**
+     * Allocates a buffer with the specified {@code size}, evicting the least recently used groups if necessary.
+     *
+     * @param size the size of the buffer.
+     * @return the allocated {@link OffHeapBuffer} object.
+     * @throws CacheException if the buffer does not fit even after evicting all of the groups.
+     */
+    OffHeapBuffer allocate(int size) {
+        while (true) {
+            OffHeapBuffer buffer = allocator.allocate(size);
+            if (buffer != null) {
+                return buffer;
+            }
+            synchronized (this) {
+                Iterator<OffHeapGroup> iterator = groups.values().iterator();
+                if (!iterator.hasNext()) {
+                    throw new CacheException("The off-heap store has no room for a group of " + size + " bytes");
+                }
+                OffHeapGroup eldest = iterator.next();
+                iterator.remove();
+                eldest.release();
+            }
+        }
+    }
+
+    /**
+     * Removes the group with the specified {@code groupId} of the archive with the specified {@code archiveId}.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     */
+    public synchronized void invalidate(int archiveId, int groupId) {
+        OffHeapGroup group = groups.remove(key(archiveId, groupId));
+        if (group != null) {
+            group.release();
+        }
+    }
+
+    /**
+     * Removes all of the stored groups.
+     */
+    public synchronized void clear() {
+        for (OffHeapGroup group : groups.values()) {
+            group.release();
+        }
+        groups.clear();
+    }
+
+    /**
+     * Returns the amount of groups that are currently stored.
+     *
+     * @return the amount of stored groups.
+     */
+    public synchronized int size() {
+        return groups.size();
+    }
+
+    /**
+     * Returns the key of the specified group.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the key of the group.
+     */
+    private static long key(int archiveId, int groupId) {
+        return (long) archiveId << 32 | groupId & 0xffffffffL;
+    }
+}
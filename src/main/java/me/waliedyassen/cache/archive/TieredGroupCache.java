@@ -0,0 +1,387 @@
+package me.waliedyassen.cache.archive;
+
+import me.waliedyassen.cache.memory.MemoryBudget;
+import me.waliedyassen.cache.memory.OffHeapBuffer;
+import me.waliedyassen.cache.memory.SlabAllocator;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A two tier cache of the groups which is shared by all the archives of a cache. The first tier holds the hot decoded
+ * groups on-heap within a byte budget, the second tier holds the compressed containers off-heap within the capacity
+ * of its allocator, and any group which is in neither tier is loaded from the file system.
+ * <p>
+ * Both tiers are driven by the access frequency of the groups: a group which does not fit in a tier is only admitted
+ * if it was accessed more frequently than the least recently used groups it would evict, otherwise it is simply not
+ * cached in that tier. A decoded group which is evicted from the first tier is demoted back to its compressed form,
+ * which usually still lives in the second tier.
+ * <p>
+ * When a {@link MemoryBudget.Account budget account} is attached, the decoded groups are also charged to it, and the
+ * budget may reclaim them in least recently used order when it is under pressure.
+ *
+ * @author Walied K. Yassen
+ */
+public final class TieredGroupCache {
+
+    /**
+     * The estimated on-heap overhead of a single decoded file.
+     */
+    private static final int FILE_OVERHEAD = 16;
+
+    /**
+     * The access frequency sketch of the groups.
+     */
+    private final FrequencySketch sketch;
+
+    /**
+     * The decoded groups of the first tier, in least recently used order.
+     */
+    private final Map<Long, Group> decoded = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The compressed containers of the second tier, in least recently used order.
+     */
+    private final Map<Long, OffHeapBuffer> compressed = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The maximum amount of bytes the decoded groups can occupy.
+     */
+    private final long decodedBudget;
+
+    /**
+     * The allocator which the compressed containers are allocated from or {@code null} if there is no second tier.
+     */
+    private final SlabAllocator allocator;
+
+    /**
+     * The budget account which the decoded groups are charged to or {@code null} if there is none.
+     */
+    private MemoryBudget.Account account;
+
+    /**
+     * The amount of bytes the decoded groups currently occupy.
+     */
+    private long decodedSize;
+
+    /**
+     * The amount of bytes the compressed containers currently occupy.
+     */
+    private long compressedSize;
+
+    /**
+     * Constructs a new {@link TieredGroupCache} type object instance.
+     *
+     * @param decodedBudget   the maximum amount of bytes the decoded groups can occupy.
+     * @param allocator       the allocator which the compressed containers are allocated from or {@code null}.
+     * @param expectedEntries the expected amount of distinct groups which are accessed.
+     */
+    public TieredGroupCache(long decodedBudget, SlabAllocator allocator, int expectedEntries) {
+        this.decodedBudget = decodedBudget;
+        this.allocator = allocator;
+        sketch = new FrequencySketch(expectedEntries);
+    }
+
+    /**
+     * Records an access to the specified group and returns its decoded form from the first tier.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the decoded {@link Group} or {@code null} if it is not in the first tier.
+     */
+    synchronized Group getDecoded(int archiveId, int groupId) {
+        long key = key(archiveId, groupId);
+        sketch.increment(key);
+        return decoded.get(key);
+    }
+
+    /**
+     * Returns a copy of the compressed container of the specified group from the second tier.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the compressed container or {@code null} if it is not in the second tier.
+     */
+    byte[] getCompressed(int archiveId, int groupId) {
+        if (allocator == null) {
+            return null;
+        }
+        OffHeapBuffer buffer;
+        synchronized (this) {
+            buffer = compressed.get(key(archiveId, groupId));
+            if (buffer == null || !buffer.tryRetain()) {
+                return null;
+            }
+        }
+        try {
+            ByteBuffer view = buffer.view();
+            byte[] data = new byte[view.remaining()];
+            view.get(data);
+            return data;
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Offers the decoded form of the specified group to the first tier.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param group     the decoded group.
+     * @return <code>true</code> if the group was admitted otherwise <code>false</code>.
+     */
+    boolean putDecoded(int archiveId, Group group) {
+        long key = key(archiveId, group.getId());
+        long size = getSize(group);
+        if (size > decodedBudget) {
+            return false;
+        }
+        MemoryBudget.Account account;
+        synchronized (this) {
+            if (decoded.containsKey(key) || !evictDecoded(key, size)) {
+                return decoded.containsKey(key);
+            }
+            account = this.account;
+        }
+        if (account != null && !account.reserve(size)) {
+            return false;
+        }
+        synchronized (this) {
+            if (account == this.account && !decoded.containsKey(key) && evictDecoded(key, size)) {
+                decoded.put(key, group);
+                decodedSize += size;
+                return true;
+            }
+        }
+        if (account != null) {
+            account.release(size);
+        }
+        return false;
+    }
+
+    /**
+     * Offers the compressed container of the specified group to the second tier.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @param data      the compressed container.
+     * @return <code>true</code> if the container was admitted otherwise <code>false</code>.
+     */
+    synchronized boolean putCompressed(int archiveId, int groupId, byte[] data) {
+        if (allocator == null) {
+            return false;
+        }
+        long key = key(archiveId, groupId);
+        if (compressed.containsKey(key)) {
+            return true;
+        }
+        OffHeapBuffer buffer = allocator.allocate(data.length);
+        while (buffer == null) {
+            if (!evictCompressed(key)) {
+                return false;
+            }
+            buffer = allocator.allocate(data.length);
+        }
+        buffer.write(0, data, 0, data.length);
+        compressed.put(key, buffer);
+        compressedSize += data.length;
+        return true;
+    }
+
+    /**
+     * Evicts the least recently used decoded groups until the candidate fits within the budget, as long as each of
+     * them was accessed less frequently than the candidate.
+     *
+     * @param candidate the key of the candidate group.
+     * @param size      the size of the candidate group.
+     * @return <code>true</code> if the candidate fits otherwise <code>false</code>.
+     */
+    private boolean evictDecoded(long candidate, long size) {
+        int frequency = sketch.frequency(candidate);
+        Iterator<Map.Entry<Long, Group>> iterator = decoded.entrySet().iterator();
+        while (decodedSize + size > decodedBudget) {
+            Map.Entry<Long, Group> victim = iterator.next();
+            if (sketch.frequency(victim.getKey()) >= frequency) {
+                return false;
+            }
+            iterator.remove();
+            removeDecoded(victim.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Frees the least recently used decoded groups regardless of their access frequency until the specified amount
+     * of bytes is freed, this is used by the memory budget when it is under pressure.
+     *
+     * @param bytes the amount of bytes that we want to free.
+     * @return the amount of bytes that were freed.
+     */
+    public synchronized long reclaim(long bytes) {
+        long freed = 0;
+        Iterator<Group> iterator = decoded.values().iterator();
+        while (freed < bytes && iterator.hasNext()) {
+            Group group = iterator.next();
+            iterator.remove();
+            freed += removeDecoded(group);
+        }
+        return freed;
+    }
+
+    /**
+     * Accounts for the removal of the specified decoded {@link Group group}.
+     *
+     * @param group the group which was removed.
+     * @return the size of the group in bytes.
+     */
+    private long removeDecoded(Group group) {
+        long size = getSize(group);
+        decodedSize -= size;
+        if (account != null) {
+            account.release(size);
+        }
+        return size;
+    }
+
+    /**
+     * Attaches the specified budget {@link MemoryBudget.Account account} which the decoded groups are charged to. The
+     * groups which are already decoded are moved from the previous account to the new one.
+     *
+     * @param account the budget account or {@code null} to detach the current one.
+     */
+    public void setAccount(MemoryBudget.Account account) {
+        MemoryBudget.Account previous;
+        long size;
+        synchronized (this) {
+            previous = this.account;
+            this.account = account;
+            size = decodedSize;
+        }
+        if (previous != null) {
+            previous.release(size);
+        }
+        if (account != null) {
+            account.forceReserve(size);
+        }
+    }
+
+    /**
+     * Evicts the least recently used compressed container if it was accessed less frequently than the candidate.
+     *
+     * @param candidate the key of the candidate container.
+     * @return <code>true</code> if a container was evicted otherwise <code>false</code>.
+     */
+    private boolean evictCompressed(long candidate) {
+        Iterator<Map.Entry<Long, OffHeapBuffer>> iterator = compressed.entrySet().iterator();
+        if (!iterator.hasNext()) {
+            return false;
+        }
+        Map.Entry<Long, OffHeapBuffer> victim = iterator.next();
+        if (sketch.frequency(victim.getKey()) >= sketch.frequency(candidate)) {
+            return false;
+        }
+        iterator.remove();
+        compressedSize -= victim.getValue().getLength();
+        victim.getValue().release();
+        return true;
+    }
+
+    /**
+     * Removes the specified group from both of the tiers.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     */
+    public synchronized void invalidate(int archiveId, int groupId) {
+        long key = key(archiveId, groupId);
+        Group group = decoded.remove(key);
+        if (group != null) {
+            removeDecoded(group);
+        }
+        OffHeapBuffer buffer = compressed.remove(key);
+        if (buffer != null) {
+            compressedSize -= buffer.getLength();
+            buffer.release();
+        }
+    }
+
+    /**
+     * Removes all of the groups from both of the tiers.
+     */
+    public synchronized void clear() {
+        for (OffHeapBuffer buffer : compressed.values()) {
+            buffer.release();
+        }
+        compressed.clear();
+        decoded.clear();
+        if (account != null) {
+            account.release(decodedSize);
+        }
+        compressedSize = 0;
+        decodedSize = 0;
+    }
+
+    /**
+     * Returns the amount of groups within the first tier.
+     *
+     * @return the amount of decoded groups.
+     */
+    public synchronized int getDecodedCount() {
+        return decoded.size();
+    }
+
+    /**
+     * Returns the amount of bytes the decoded groups of the first tier occupy.
+     *
+     * @return the size of the first tier in bytes.
+     */
+    public synchronized long getDecodedSize() {
+        return decodedSize;
+    }
+
+    /**
+     * Returns the amount of groups within the second tier.
+     *
+     * @return the amount of compressed containers.
+     */
+    public synchronized int getCompressedCount() {
+        return compressed.size();
+    }
+
+    /**
+     * Returns the amount of bytes the compressed containers of the second tier occupy.
+     *
+     * @return the size of the second tier in bytes.
+     */
+    public synchronized long getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * Returns the estimated on-heap size of the specified decoded {@link Group group}.
+     *
+     * @param group the group that we want its size.
+     * @return the estimated size in bytes.
+     */
+    static long getSize(Group group) {
+        long size = 0;
+        for (int fileId : group.getFileIds()) {
+            byte[] data = group.getFile(fileId);
+            size += FILE_OVERHEAD + (data != null ? data.length : 0);
+        }
+        return size;
+    }
+
+    /**
+     * Returns the key of the specified group.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the key of the group.
+     */
+    private static long key(int archiveId, int groupId) {
+        return (long) archiveId << 32 | groupId & 0xffffffffL;
+    }
+}
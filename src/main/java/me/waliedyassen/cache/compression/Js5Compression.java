@@ -1,5 +1,7 @@
 package me.waliedyassen.cache.compression;
 
+import me.waliedyassen.cache.metrics.CacheMetrics;
+
 import java.io.IOException;
 
 /**
@@ -16,6 +18,20 @@ public final class Js5Compression {
      * @return the decompressed data.
      */
     public static byte[] decompress(byte[] data) {
+        return decompress(data, CacheMetrics.NONE, -1, -1);
+    }
+
+    /**
+     * Decompresses the specified {@code data} using Js5 compression format and reports the decompression to the
+     * specified {@link CacheMetrics metrics} listener.
+     *
+     * @param data      the data that we want to decompress.
+     * @param metrics   the metrics listener which the decompression is reported to.
+     * @param archiveId the id of the archive which the data belongs to.
+     * @param groupId   the id of the group which the data belongs to or {@code -1} if the data is of the index table.
+     * @return the decompressed data.
+     */
+    public static byte[] decompress(byte[] data, CacheMetrics metrics, int archiveId, int groupId) {
         if (data.length < 5) {
             throw new IllegalArgumentException("The specified data is not properly compressed");
         }
@@ -32,14 +48,41 @@ public final class Js5Compression {
             int dlen = (data[5] & 0xff) << 24 | (data[6] & 0xff) << 16 | (data[7] & 0xff) << 8 | (data[8] & 0xff);
             output = new byte[dlen];
         }
+        long start = 0;
+        if (metrics.isEnabled()) {
+            metrics.onDecompressStarted(archiveId, groupId);
+            start = System.nanoTime();
+        }
         try {
             compression.decompress(data, compression == Compression.NONE ? 5 : 9, output);
         } catch (IOException e) {
             throw new IllegalArgumentException("The specified data is not properly compressed", e);
         }
+        if (metrics.isEnabled()) {
+            metrics.onDecompressed(archiveId, groupId, compression, data.length, output.length, System.nanoTime() - start);
+        }
         return output;
     }
 
+    /**
+     * Returns the length of the Js5 container within the specified {@code data}, excluding the version trailer which
+     * may follow the container.
+     *
+     * @param data the raw data of the container.
+     * @return the length of the container or the length of the data if it is not a valid container.
+     */
+    public static int getContainerLength(byte[] data) {
+        if (data.length < 5) {
+            return data.length;
+        }
+        int clen = (data[1] & 0xff) << 24 | (data[2] & 0xff) << 16 | (data[3] & 0xff) << 8 | (data[4] & 0xff);
+        long length = 5L + clen + (data[0] != 0 ? 4 : 0);
+        if (clen < 0 || length > data.length) {
+            return data.length;
+        }
+        return (int) length;
+    }
+
     private Js5Compression() {
         // NOOP
     }
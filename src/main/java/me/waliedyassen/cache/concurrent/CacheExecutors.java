@@ -0,0 +1,56 @@
+package me.waliedyassen.cache.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the executors which are used for the asynchronous operations of the cache library. On JDK 21 or newer the
+ * multi-release version of this class is used instead, which runs the operations on virtual threads.
+ *
+ * @author Walied K. Yassen
+ */
+public final class CacheExecutors {
+
+    /**
+     * Creates a new {@link ExecutorService} that is suitable for running blocking cache operations.
+     *
+     * @return the created {@link ExecutorService} object.
+     */
+    public static ExecutorService newExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "cache-io-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    /**
+     * Returns the shared {@link ExecutorService} which is used when no executor was specified.
+     *
+     * @return the shared {@link ExecutorService} object.
+     */
+    public static ExecutorService getDefault() {
+        return DefaultHolder.EXECUTOR;
+    }
+
+    /**
+     * Lazily holds the shared default executor.
+     *
+     * @author Walied K. Yassen
+     */
+    private static final class DefaultHolder {
+
+        /**
+         * The shared default executor.
+         */
+        private static final ExecutorService EXECUTOR = newExecutor();
+    }
+
+    private CacheExecutors() {
+        // NOOP
+    }
+}
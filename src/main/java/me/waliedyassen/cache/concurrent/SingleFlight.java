@@ -0,0 +1,90 @@
+package me.waliedyassen.cache.concurrent;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key, only the first caller performs the load while every other caller that
+ * arrives before the load completes waits for it and receives the same result.
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the loaded values.
+ * @author Walied K. Yassen
+ */
+public final class SingleFlight<K, V> {
+
+    /**
+     * The loads which are currently in flight.
+     */
+    private final Map<K, CompletableFuture<V>> inflight = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the value of the specified {@code key} on the calling thread, or waits for the load that is already in
+     * flight for the same key.
+     *
+     * @param key    the key of the value that we want to load.
+     * @param loader the loader which performs the actual load.
+     * @return the loaded value.
+     */
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            V value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, future);
+        }
+    }
+
+    /**
+     * Loads the value of the specified {@code key} asynchronously, or joins the load that is already in flight for the
+     * same key. Every caller receives its own dependent future, so a caller which completes or cancels its future
+     * does not affect the shared load or any of the other callers.
+     *
+     * @param key    the key of the value that we want to load.
+     * @param loader the loader which starts the actual load.
+     * @return a {@link CompletableFuture} which completes with the loaded value.
+     */
+    public CompletableFuture<V> loadAsync(K key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing.thenApply(Function.identity());
+        }
+        CompletableFuture<V> load;
+        try {
+            load = loader.get();
+        } catch (Throwable e) {
+            load = new CompletableFuture<>();
+            load.completeExceptionally(e);
+        }
+        load.whenComplete((value, error) -> {
+            inflight.remove(key, future);
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(value);
+            }
+        });
+        return future.thenApply(Function.identity());
+    }
+}
@@ -0,0 +1,65 @@
+package me.waliedyassen.cache.diff;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The difference of a single archive between two caches. An archive which is only present in one of the caches has
+ * all of its groups reported as added or removed.
+ *
+ * @author Walied K. Yassen
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class ArchiveDiff {
+
+    /**
+     * The id of the archive.
+     */
+    private final int id;
+
+    /**
+     * Whether or not the archive is only present in the newer cache.
+     */
+    private final boolean added;
+
+    /**
+     * Whether or not the archive is only present in the older cache.
+     */
+    private final boolean removed;
+
+    /**
+     * The ids of the groups which were added to the archive.
+     */
+    private final int[] addedGroups;
+
+    /**
+     * The ids of the groups which were removed from the archive.
+     */
+    private final int[] removedGroups;
+
+    /**
+     * The differences of the groups which are present in both versions of the archive but were modified.
+     */
+    private final List<GroupDiff> modifiedGroups;
+
+    /**
+     * Checks whether or not there is any difference within the archive.
+     *
+     * @return <code>true</code> if there is none otherwise <code>false</code>.
+     */
+    public boolean isEmpty() {
+        return !added && !removed && addedGroups.length == 0 && removedGroups.length == 0 && modifiedGroups.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "ArchiveDiff{id=" + id + (added ? ", added" : "") + (removed ? ", removed" : "") + ", addedGroups=" + addedGroups.length + ", removedGroups=" + removedGroups.length + ", modifiedGroups=" + modifiedGroups.size() + "}";
+    }
+}
@@ -0,0 +1,217 @@
+package me.waliedyassen.cache.diff;
+
+import lombok.Getter;
+import me.waliedyassen.cache.Cache;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.archive.Archive;
+import me.waliedyassen.cache.archive.Group;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * The difference between two caches which is computed from the index tables alone. Two archives with identical index
+ * tables are skipped straight away, otherwise the groups are compared by their version, their compressed CRC-32
+ * checksum and their whirlpool digest if both have one, and the files are compared by their ids. The data of a group
+ * is only ever loaded when neither of the index tables holds a checksum for it.
+ *
+ * @author Walied K. Yassen
+ */
+public final class CacheDiff {
+
+    /**
+     * The maximum amount of archives within a cache.
+     */
+    private static final int MAX_ARCHIVES = 255;
+
+    /**
+     * An empty array of ids.
+     */
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * The differences of the archives which are not identical, ordered by the archive id.
+     */
+    @Getter
+    private final List<ArchiveDiff> archives;
+
+    /**
+     * Constructs a new {@link CacheDiff} type object instance.
+     *
+     * @param archives the differences of the archives which are not identical.
+     */
+    private CacheDiff(List<ArchiveDiff> archives) {
+        this.archives = archives;
+    }
+
+    /**
+     * Returns the difference of the archive with the specified {@code id}.
+     *
+     * @param id the id of the archive.
+     * @return the {@link ArchiveDiff} object or {@code null} if the archive is identical in both caches.
+     */
+    public ArchiveDiff getArchive(int id) {
+        for (ArchiveDiff archive : archives) {
+            if (archive.getId() == id) {
+                return archive;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether or not there is any difference between the caches.
+     *
+     * @return <code>true</code> if there is none otherwise <code>false</code>.
+     */
+    public boolean isEmpty() {
+        return archives.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "CacheDiff{archives=" + archives + "}";
+    }
+
+    /**
+     * Computes the difference between the specified caches, the archives are compared in parallel on the executor of
+     * the newer cache.
+     *
+     * @param from the older cache.
+     * @param to   the newer cache.
+     * @return the computed {@link CacheDiff} object.
+     */
+    public static CacheDiff compute(Cache from, Cache to) {
+        return compute(from, to, to.getExecutor());
+    }
+
+    /**
+     * Computes the difference between the specified caches, the archives are compared in parallel on the specified
+     * {@link Executor executor}.
+     *
+     * @param from     the older cache.
+     * @param to       the newer cache.
+     * @param executor the executor which the archives are compared on.
+     * @return the computed {@link CacheDiff} object.
+     */
+    public static CacheDiff compute(Cache from, Cache to, Executor executor) {
+        List<CompletableFuture<ArchiveDiff>> futures = new ArrayList<>(MAX_ARCHIVES);
+        for (int archiveId = 0; archiveId < MAX_ARCHIVES; archiveId++) {
+            int id = archiveId;
+            futures.add(CompletableFuture.supplyAsync(() -> compareArchive(from.get(id), to.get(id), id), executor));
+        }
+        List<ArchiveDiff> archives = new ArrayList<>();
+        for (CompletableFuture<ArchiveDiff> future : futures) {
+            ArchiveDiff archive;
+            try {
+                archive = future.join();
+            } catch (CompletionException e) {
+                throw new CacheException("Failed to compare the archives", e.getCause());
+            }
+            if (archive != null && !archive.isEmpty()) {
+                archives.add(archive);
+            }
+        }
+        return new CacheDiff(Collections.unmodifiableList(archives));
+    }
+
+    /**
+     * Computes the difference between the specified versions of an archive.
+     *
+     * @param from the older version of the archive or {@code null}.
+     * @param to   the newer version of the archive or {@code null}.
+     * @param id   the id of the archive.
+     * @return the {@link ArchiveDiff} object or {@code null} if the archive is identical or absent in both caches.
+     */
+    private static ArchiveDiff compareArchive(Archive from, Archive to, int id) {
+        if (from == null && to == null) {
+            return null;
+        }
+        if (from == null) {
+            return new ArchiveDiff(id, true, false, to.getGroupIds(), EMPTY, Collections.emptyList());
+        }
+        if (to == null) {
+            return new ArchiveDiff(id, false, true, EMPTY, from.getGroupIds(), Collections.emptyList());
+        }
+        if (from.getCrc() == to.getCrc() && Arrays.equals(from.getWhirlpool(), to.getWhirlpool())) {
+            return null;
+        }
+        int[][] groups = split(from.getGroupIds(), to.getGroupIds());
+        List<GroupDiff> modified = new ArrayList<>();
+        for (int groupId : groups[2]) {
+            GroupDiff group = compareGroup(from, to, groupId);
+            if (group != null) {
+                modified.add(group);
+            }
+        }
+        return new ArchiveDiff(id, false, false, groups[0], groups[1], Collections.unmodifiableList(modified));
+    }
+
+    /**
+     * Computes the difference between the versions of the group with the specified {@code groupId}.
+     *
+     * @param from    the older version of the archive.
+     * @param to      the newer version of the archive.
+     * @param groupId the id of the group which is present in both versions.
+     * @return the {@link GroupDiff} object or {@code null} if the group was not modified.
+     */
+    private static GroupDiff compareGroup(Archive from, Archive to, int groupId) {
+        Group older = from.getGroup(groupId);
+        Group newer = to.getGroup(groupId);
+        boolean modified = older.getVersion() != newer.getVersion();
+        if (!modified) {
+            if (older.getCompressedCrc() == 0 && newer.getCompressedCrc() == 0) {
+                modified = !Arrays.equals(from.getFileSystem().loadGroup(groupId), to.getFileSystem().loadGroup(groupId));
+            } else {
+                modified = older.getCompressedCrc() != newer.getCompressedCrc();
+                if (!modified && older.getWhirlpool() != null && newer.getWhirlpool() != null) {
+                    modified = !Arrays.equals(older.getWhirlpool(), newer.getWhirlpool());
+                }
+            }
+        }
+        int[][] files = split(older.getFileIds(), newer.getFileIds());
+        if (!modified && files[0].length == 0 && files[1].length == 0) {
+            return null;
+        }
+        return new GroupDiff(groupId, files[0], files[1], files[2]);
+    }
+
+    /**
+     * Splits the specified ascending arrays of ids into the ids that were added, the ids that were removed and the ids
+     * that are present in both.
+     *
+     * @param from the older ids in ascending order.
+     * @param to   the newer ids in ascending order.
+     * @return the added, the removed and the retained ids.
+     */
+    private static int[][] split(int[] from, int[] to) {
+        int[] added = new int[to.length];
+        int[] removed = new int[from.length];
+        int[] retained = new int[Math.min(from.length, to.length)];
+        int addedCount = 0;
+        int removedCount = 0;
+        int retainedCount = 0;
+        int left = 0;
+        int right = 0;
+        while (left < from.length || right < to.length) {
+            if (right == to.length || left < from.length && from[left] < to[right]) {
+                removed[removedCount++] = from[left++];
+            } else if (left == from.length || to[right] < from[left]) {
+                added[addedCount++] = to[right++];
+            } else {
+                retained[retainedCount++] = from[left];
+                left++;
+                right++;
+            }
+        }
+        return new int[][]{Arrays.copyOf(added, addedCount), Arrays.copyOf(removed, removedCount), Arrays.copyOf(retained, retainedCount)};
+    }
+}
@@ -0,0 +1,301 @@
+package me.waliedyassen.cache.diff;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import me.waliedyassen.cache.Cache;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.archive.Archive;
+import me.waliedyassen.cache.fs.FileSystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A patch which brings a cache from one revision to another, it holds the raw data of the groups which were added or
+ * modified and the raw data of the index tables of the archives which were changed. The groups which were removed are
+ * not part of the patch, they are dropped by the new index tables. An archive which was removed is carried as an
+ * empty index table, which removes the index table of the archive when the patch is applied.
+ * <p>
+ * Every index table within the patch carries the CRC-32 checksum of the index table which it replaces, so a patch is
+ * never applied to a cache which is not at the revision that the patch was made from.
+ *
+ * @author Walied K. Yassen
+ */
+public final class CachePatch {
+
+    /**
+     * The id of the archive which the index tables are stored within.
+     */
+    public static final int INDEX_ARCHIVE = 255;
+
+    /**
+     * The magic number which every patch file starts with.
+     */
+    private static final int MAGIC = 0x4A355054;
+
+    /**
+     * The version of the patch file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the buffer we use when reading or writing the patch file.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * The entries of the patch, the index tables always come after the groups of their archive.
+     */
+    @Getter
+    private final List<Entry> entries;
+
+    /**
+     * Constructs a new {@link CachePatch} type object instance.
+     *
+     * @param entries the entries of the patch.
+     */
+    private CachePatch(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Returns the total amount of bytes of the data within the patch.
+     *
+     * @return the amount of bytes.
+     */
+    public long getSize() {
+        long size = 0;
+        for (Entry entry : entries) {
+            size += entry.data.length;
+        }
+        return size;
+    }
+
+    /**
+     * Checks whether or not the patch holds no changes.
+     *
+     * @return <code>true</code> if it does not otherwise <code>false</code>.
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Writes the patch to the file at the specified {@code path}. The patch is written to a temporary file which is
+     * synced and then moved over the path.
+     *
+     * @param path the path of the patch file.
+     */
+    public void write(Path path) {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream stream = new FileOutputStream(temporary.toFile())) {
+                CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE), new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    out.writeByte(entry.archiveId);
+                    out.writeInt(entry.groupId);
+                    out.writeInt(entry.baseCrc);
+                    out.writeInt(entry.data.length);
+                    out.write(entry.data);
+                }
+                out.writeInt((int) checked.getChecksum().getValue());
+                out.flush();
+                stream.getFD().sync();
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new CacheException("Failed to write the patch file", e);
+        }
+    }
+
+    /**
+     * Reads the patch from the file at the specified {@code path}.
+     *
+     * @param path the path of the patch file.
+     * @return the read {@link CachePatch} object.
+     */
+    public static CachePatch read(Path path) {
+        try (InputStream stream = Files.newInputStream(path)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(stream, BUFFER_SIZE), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                throw new CacheException("The specified file is not a patch file");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new CacheException("Unsupported patch file version: " + version);
+            }
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int index = 0; index < count; index++) {
+                int archiveId = in.readUnsignedByte();
+                int groupId = in.readInt();
+                int baseCrc = in.readInt();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                entries.add(new Entry(archiveId, groupId, baseCrc, data));
+            }
+            int checksum = (int) checked.getChecksum().getValue();
+            if (in.readInt() != checksum) {
+                throw new CacheException("The patch file is corrupted");
+            }
+            return new CachePatch(Collections.unmodifiableList(entries));
+        } catch (IOException e) {
+            throw new CacheException("Failed to read the patch file", e);
+        }
+    }
+
+    /**
+     * Creates a patch which brings the {@code target} cache to the revision of the {@code source} cache, the archives
+     * are collected in parallel on the executor of the source cache.
+     *
+     * @param target the cache which the patch will be applied to.
+     * @param source the cache which holds the new revision.
+     * @return the created {@link CachePatch} object.
+     */
+    public static CachePatch create(Cache target, Cache source) {
+        return create(target, source, source.getExecutor());
+    }
+
+    /**
+     * Creates a patch which brings the {@code target} cache to the revision of the {@code source} cache, the archives
+     * are collected in parallel on the specified {@link Executor executor}. The caches are compared through a {@link
+     * CacheDiff}, so only the groups which were added or modified are ever loaded from the source cache.
+     *
+     * @param target   the cache which the patch will be applied to.
+     * @param source   the cache which holds the new revision.
+     * @param executor the executor which the archives are collected on.
+     * @return the created {@link CachePatch} object.
+     */
+    public static CachePatch create(Cache target, Cache source, Executor executor) {
+        CacheDiff diff = CacheDiff.compute(target, source, executor);
+        List<CompletableFuture<List<Entry>>> futures = new ArrayList<>(diff.getArchives().size());
+        List<Entry> entries = new ArrayList<>();
+        for (ArchiveDiff archive : diff.getArchives()) {
+            if (archive.isRemoved()) {
+                entries.add(new Entry(INDEX_ARCHIVE, archive.getId(), target.get(archive.getId()).getCrc(), new byte[0]));
+                continue;
+            }
+            futures.add(CompletableFuture.supplyAsync(() -> collect(target.get(archive.getId()), source.get(archive.getId()), archive), executor));
+        }
+        for (CompletableFuture<List<Entry>> future : futures) {
+            try {
+                entries.addAll(future.join());
+            } catch (CompletionException e) {
+                throw new CacheException("Failed to collect the patch entries", e.getCause());
+            }
+        }
+        return new CachePatch(Collections.unmodifiableList(entries));
+    }
+
+    /**
+     * Collects the entries of the specified archive difference.
+     *
+     * @param target the archive within the cache which the patch will be applied to or {@code null}.
+     * @param source the archive within the cache which holds the new revision.
+     * @param diff   the difference of the archive.
+     * @return the list of the collected entries.
+     */
+    private static List<Entry> collect(Archive target, Archive source, ArchiveDiff diff) {
+        FileSystem fs = source.getFileSystem();
+        List<Entry> entries = new ArrayList<>(diff.getAddedGroups().length + diff.getModifiedGroups().size() + 1);
+        for (int groupId : diff.getAddedGroups()) {
+            entries.add(new Entry(diff.getId(), groupId, 0, load(fs, groupId)));
+        }
+        for (GroupDiff group : diff.getModifiedGroups()) {
+            entries.add(new Entry(diff.getId(), group.getId(), 0, load(fs, group.getId())));
+        }
+        byte[] index = fs.loadIndex();
+        if (index == null) {
+            throw new CacheException("Failed to load the index table of archive " + diff.getId());
+        }
+        entries.add(new Entry(INDEX_ARCHIVE, diff.getId(), target != null ? target.getCrc() : 0, index));
+        return entries;
+    }
+
+    /**
+     * Loads the raw data of the specified group from the specified {@link FileSystem file system}.
+     *
+     * @param fs      the file system of the archive.
+     * @param groupId the id of the group.
+     * @return the raw data of the group.
+     */
+    private static byte[] load(FileSystem fs, int groupId) {
+        byte[] data = fs.loadGroup(groupId);
+        if (data == null) {
+            throw new CacheException("Failed to load the data of group " + groupId);
+        }
+        return data;
+    }
+
+    /**
+     * A single group or index table within a patch.
+     *
+     * @author Walied K. Yassen
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    public static final class Entry {
+
+        /**
+         * The id of the archive, or {@link #INDEX_ARCHIVE} if the entry is an index table.
+         */
+        private final int archiveId;
+
+        /**
+         * The id of the group, or the id of the archive if the entry is an index table.
+         */
+        private final int groupId;
+
+        /**
+         * The CRC-32 checksum of the index table which is replaced, or {@code 0} if the archive is new or the entry is
+         * not an index table.
+         */
+        private final int baseCrc;
+
+        /**
+         * The raw data of the group or the index table, the data is empty if the entry removes an index table.
+         */
+        private final byte[] data;
+
+        /**
+         * Checks whether or not the entry is an index table.
+         *
+         * @return <code>true</code> if it is otherwise <code>false</code>.
+         */
+        public boolean isIndex() {
+            return archiveId == INDEX_ARCHIVE;
+        }
+
+        /**
+         * Checks whether or not the entry removes the index table of an archive.
+         *
+         * @return <code>true</code> if it does otherwise <code>false</code>.
+         */
+        public boolean isRemoval() {
+            return isIndex() && data.length == 0;
+        }
+    }
+}
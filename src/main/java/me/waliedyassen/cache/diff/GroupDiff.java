@@ -0,0 +1,44 @@
+package me.waliedyassen.cache.diff;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The difference of a single group which is present in both of the compared caches. The files which are present in
+ * both versions of the group may or may not have changed, the index table does not hold any per-file checksum.
+ *
+ * @author Walied K. Yassen
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class GroupDiff {
+
+    /**
+     * The id of the group.
+     */
+    private final int id;
+
+    /**
+     * The ids of the files which were added to the group.
+     */
+    private final int[] addedFiles;
+
+    /**
+     * The ids of the files which were removed from the group.
+     */
+    private final int[] removedFiles;
+
+    /**
+     * The ids of the files which are present in both versions of the group.
+     */
+    private final int[] retainedFiles;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "GroupDiff{id=" + id + ", added=" + addedFiles.length + ", removed=" + removedFiles.length + ", retained=" + retainedFiles.length + "}";
+    }
+}
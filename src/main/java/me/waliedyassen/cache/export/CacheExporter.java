@@ -0,0 +1,440 @@
+package me.waliedyassen.cache.export;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import me.waliedyassen.cache.Cache;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.archive.Archive;
+import me.waliedyassen.cache.archive.Group;
+import me.waliedyassen.cache.fs.FileSystemProvider;
+import me.waliedyassen.cache.fs.java.JavaFileSystemProvider;
+import me.waliedyassen.cache.io.CRC;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Exports every file of every group of a cache as a loose file under {@code <archive>/<group>/<file>} within a
+ * directory. The groups are decoded and written in parallel, and when the cache is backed by the Java file system a
+ * full export reads the data file front-to-back exactly once.
+ * <p>
+ * The export keeps a manifest of what was written, a re-export skips the groups whose version and checksum did not
+ * change without reading them, and skips the files whose CRC-32 checksum did not change without writing them. Files
+ * with identical content are hard-linked to the first copy that was written, and an output is always unlinked before
+ * it is rewritten, so a change never leaks through a hard-link into another file.
+ *
+ * @author Walied K. Yassen
+ */
+public final class CacheExporter {
+
+    /**
+     * The name of the manifest file within the export directory.
+     */
+    public static final String MANIFEST = ".manifest";
+
+    /**
+     * The maximum amount of archives within a cache.
+     */
+    private static final int MAX_ARCHIVES = 255;
+
+    /**
+     * The cache which is exported.
+     */
+    private final Cache cache;
+
+    /**
+     * The directory which the cache is exported to.
+     */
+    private final Path directory;
+
+    /**
+     * The manifest of the previous export.
+     */
+    private final ExportManifest previous;
+
+    /**
+     * The manifest of the current export.
+     */
+    private final ExportManifest current = new ExportManifest();
+
+    /**
+     * The first written copy of every distinct file content, keyed by the CRC-32 checksum and the length.
+     */
+    private final Map<Long, Path> copies = new ConcurrentHashMap<>();
+
+    /**
+     * The amount of groups that were decoded.
+     */
+    private final LongAdder groups = new LongAdder();
+
+    /**
+     * The amount of files that were written.
+     */
+    private final LongAdder written = new LongAdder();
+
+    /**
+     * The amount of files that were hard-linked.
+     */
+    private final LongAdder linked = new LongAdder();
+
+    /**
+     * The amount of files that were not changed.
+     */
+    private final LongAdder unchanged = new LongAdder();
+
+    /**
+     * The amount of bytes that were written.
+     */
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * Constructs a new {@link CacheExporter} type object instance.
+     *
+     * @param cache     the cache which is exported.
+     * @param directory the directory which the cache is exported to.
+     */
+    private CacheExporter(Cache cache, Path directory) {
+        this.cache = cache;
+        this.directory = directory;
+        previous = ExportManifest.read(directory.resolve(MANIFEST));
+        for (Map.Entry<Long, ExportManifest.Entry> entry : previous.getEntries().entrySet()) {
+            ExportManifest.Entry group = entry.getValue();
+            int archiveId = (int) (entry.getKey() >>> 32);
+            int groupId = entry.getKey().intValue();
+            for (int index = 0; index < group.getFileIds().length; index++) {
+                copies.putIfAbsent(contentKey(group.getCrcs()[index], group.getLengths()[index]), resolve(archiveId, groupId, group.getFileIds()[index]));
+            }
+        }
+    }
+
+    /**
+     * Exports all of the archives of the cache using the specified amount of threads.
+     *
+     * @param parallelism the amount of threads which the groups are decoded and written on.
+     * @return the {@link Report} of the export.
+     */
+    private Report run(int parallelism) {
+        long start = System.nanoTime();
+        Archive[] archives = new Archive[MAX_ARCHIVES];
+        for (int archiveId = 0; archiveId < MAX_ARCHIVES; archiveId++) {
+            archives[archiveId] = cache.get(archiveId);
+        }
+        FileSystemProvider provider = cache.getFileSystemProvider();
+        if (previous.getEntries().isEmpty() && provider instanceof JavaFileSystemProvider) {
+            ((JavaFileSystemProvider) provider).scan((archiveId, groupId, data) -> {
+                Archive archive = archiveId < MAX_ARCHIVES ? archives[archiveId] : null;
+                if (archive != null && archive.getGroup(groupId) != null) {
+                    export(archive, archive.getGroup(groupId), () -> data);
+                }
+            }, parallelism);
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+            Semaphore pending = new Semaphore(parallelism * 2);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            try {
+                for (Archive archive : archives) {
+                    if (archive == null) {
+                        continue;
+                    }
+                    for (int groupId : archive.getGroupIds()) {
+                        pending.acquireUninterruptibly();
+                        if (failure.get() != null) {
+                            pending.release();
+                            break;
+                        }
+                        Group entry = archive.getGroup(groupId);
+                        executor.execute(() -> {
+                            try {
+                                export(archive, entry, () -> archive.getFileSystem().loadGroup(entry.getId()));
+                            } catch (Throwable e) {
+                                failure.compareAndSet(null, e);
+                            } finally {
+                                pending.release();
+                            }
+                        });
+                    }
+                }
+            } finally {
+                executor.shutdown();
+                try {
+                    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failure.get() != null) {
+                throw new CacheException("Failed to export the groups", failure.get());
+            }
+        }
+        long removed = removeStale();
+        try {
+            current.write(directory.resolve(MANIFEST));
+        } catch (IOException e) {
+            throw new CacheException("Failed to write the export manifest", e);
+        }
+        return new Report(groups.sum(), written.sum(), linked.sum(), unchanged.sum(), removed, bytes.sum(), System.nanoTime() - start);
+    }
+
+    /**
+     * Exports all of the files of the specified group, the group is skipped without being read if the previous export
+     * holds the same version of it and all of its files are still present.
+     *
+     * @param archive the archive which the group belongs to.
+     * @param entry   the index entry of the group.
+     * @param loader  a supplier which returns the raw data of the group.
+     */
+    private void export(Archive archive, Group entry, Supplier<byte[]> loader) {
+        int archiveId = archive.getId();
+        ExportManifest.Entry old = previous.get(archiveId, entry.getId());
+        if (old != null && isUnchanged(archiveId, entry, old)) {
+            current.put(archiveId, entry.getId(), old);
+            unchanged.add(old.getFileIds().length);
+            return;
+        }
+        byte[] data = loader.get();
+        if (data == null) {
+            throw new CacheException("Failed to load group " + entry.getId() + " of archive " + archiveId);
+        }
+        Group group = archive.unpackGroup(entry.getId(), data);
+        int[] fileIds = entry.getFileIds();
+        int[] crcs = new int[fileIds.length];
+        int[] lengths = new int[fileIds.length];
+        try {
+            Files.createDirectories(directory.resolve(Integer.toString(archiveId)).resolve(Integer.toString(entry.getId())));
+            for (int index = 0; index < fileIds.length; index++) {
+                byte[] file = group.getFile(fileIds[index]);
+                crcs[index] = CRC.compute(file);
+                lengths[index] = file.length;
+                Path path = resolve(archiveId, entry.getId(), fileIds[index]);
+                int position = old != null ? old.indexOf(fileIds[index]) : -1;
+                if (position != -1 && old.getCrcs()[position] == crcs[index] && old.getLengths()[position] == file.length && Files.exists(path)) {
+                    unchanged.increment();
+                    continue;
+                }
+                write(path, file, crcs[index]);
+            }
+        } catch (IOException e) {
+            throw new CacheException("Failed to export group " + entry.getId() + " of archive " + archiveId, e);
+        }
+        current.put(archiveId, entry.getId(), new ExportManifest.Entry(entry.getVersion(), entry.getCompressedCrc(), fileIds, crcs, lengths));
+        groups.increment();
+    }
+
+    /**
+     * Checks whether or not the specified group is unchanged since the previous export.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param entry     the index entry of the group.
+     * @param old       the manifest entry of the group from the previous export.
+     * @return <code>true</code> if it is otherwise <code>false</code>.
+     */
+    private boolean isUnchanged(int archiveId, Group entry, ExportManifest.Entry old) {
+        if (entry.getCompressedCrc() == 0 || old.getVersion() != entry.getVersion() || old.getCompressedCrc() != entry.getCompressedCrc()) {
+            return false;
+        }
+        if (!Arrays.equals(old.getFileIds(), entry.getFileIds())) {
+            return false;
+        }
+        for (int fileId : old.getFileIds()) {
+            if (!Files.exists(resolve(archiveId, entry.getId(), fileId))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the specified file {@code data} to the specified {@code path}, or hard-links the path to an identical
+     * file which was already written. The path is always unlinked first. The content is verified through the link
+     * once it was created, since the file which was linked to may have been replaced after it was looked up, and no
+     * output is ever modified in place, so the verified content can no longer change.
+     *
+     * @param path the path of the file.
+     * @param data the data of the file.
+     * @param crc  the CRC-32 checksum of the data.
+     * @throws IOException if anything occurs while writing the file.
+     */
+    private void write(Path path, byte[] data, int crc) throws IOException {
+        Files.deleteIfExists(path);
+        Long key = contentKey(crc, data.length);
+        Path copy = data.length != 0 ? copies.get(key) : null;
+        if (copy != null && !copy.equals(path)) {
+            try {
+                Files.createLink(path, copy);
+                if (isCopy(path, data)) {
+                    linked.increment();
+                    return;
+                }
+                Files.delete(path);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.deleteIfExists(path);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        copies.putIfAbsent(key, path);
+        written.increment();
+        bytes.add(data.length);
+    }
+
+    /**
+     * Checks whether or not the file at the specified {@code path} holds exactly the specified {@code data}.
+     *
+     * @param path the path of the file.
+     * @param data the expected data of the file.
+     * @return <code>true</code> if it does otherwise <code>false</code>.
+     */
+    private static boolean isCopy(Path path, byte[] data) {
+        try {
+            return Files.size(path) == data.length && Arrays.equals(Files.readAllBytes(path), data);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Removes the files of the previous export which are no longer present in the cache.
+     *
+     * @return the amount of files that were removed.
+     */
+    private long removeStale() {
+        long removed = 0;
+        for (Map.Entry<Long, ExportManifest.Entry> entry : previous.getEntries().entrySet()) {
+            ExportManifest.Entry old = entry.getValue();
+            ExportManifest.Entry now = current.getEntries().get(entry.getKey());
+            int archiveId = (int) (entry.getKey() >>> 32);
+            int groupId = entry.getKey().intValue();
+            for (int fileId : old.getFileIds()) {
+                if (now != null && now.indexOf(fileId) != -1) {
+                    continue;
+                }
+                try {
+                    if (Files.deleteIfExists(resolve(archiveId, groupId, fileId))) {
+                        removed++;
+                    }
+                } catch (IOException e) {
+                    throw new CacheException("Failed to remove file " + fileId + " of group " + groupId + " of archive " + archiveId, e);
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Resolves the path of the specified file within the export directory.
+     *
+     * @param archiveId the id of the archive.
+     * @param groupId   the id of the group.
+     * @param fileId    the id of the file.
+     * @return the path of the file.
+     */
+    private Path resolve(int archiveId, int groupId, int fileId) {
+        return directory.resolve(Integer.toString(archiveId)).resolve(Integer.toString(groupId)).resolve(Integer.toString(fileId));
+    }
+
+    /**
+     * Returns the key of a file content.
+     *
+     * @param crc    the CRC-32 checksum of the content.
+     * @param length the length of the content.
+     * @return the key of the content.
+     */
+    private static long contentKey(int crc, int length) {
+        return (long) crc << 32 | length & 0xffffffffL;
+    }
+
+    /**
+     * Exports the specified {@link Cache cache} to the specified {@code directory}, which is created if it does not
+     * exist. A previous export within the directory is updated in place.
+     *
+     * @param cache       the cache that we want to export.
+     * @param directory   the directory which the cache is exported to.
+     * @param parallelism the amount of threads which the groups are decoded and written on.
+     * @return the {@link Report} of the export.
+     */
+    public static Report export(Cache cache, Path directory, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism must be positive");
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new CacheException("Failed to create the export directory", e);
+        }
+        return new CacheExporter(cache, directory).run(parallelism);
+    }
+
+    /**
+     * The report of a single export.
+     *
+     * @author Walied K. Yassen
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Report {
+
+        /**
+         * The amount of groups that were decoded.
+         */
+        private final long groups;
+
+        /**
+         * The amount of files that were written.
+         */
+        private final long written;
+
+        /**
+         * The amount of files that were hard-linked to an identical file.
+         */
+        private final long linked;
+
+        /**
+         * The amount of files that were not changed since the previous export.
+         */
+        private final long unchanged;
+
+        /**
+         * The amount of files that were removed since the previous export.
+         */
+        private final long removed;
+
+        /**
+         * The amount of bytes that were written.
+         */
+        private final long bytes;
+
+        /**
+         * The time the export took in nanoseconds.
+         */
+        private final long elapsed;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            double seconds = elapsed / 1e9;
+            return String.format("groups=%d written=%d linked=%d unchanged=%d removed=%d bytes=%d (%.1f MiB/s) elapsed=%.2fs",
+                    groups, written, linked, unchanged, removed, bytes, bytes / seconds / (1 << 20), seconds);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package me.waliedyassen.cache.export;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The manifest of an exported cache, it records the version and the compressed CRC-32 checksum of every exported group
+ * and the CRC-32 checksum and the length of every exported file, so a re-export only writes what was changed.
+ *
+ * @author Walied K. Yassen
+ */
+final class ExportManifest {
+
+    /**
+     * The magic number which every manifest file starts with.
+     */
+    private static final int MAGIC = 0x4A354558;
+
+    /**
+     * The version of the manifest file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the buffer we use when reading or writing the manifest file.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * The entries of the exported groups, keyed by the archive id and the group id.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the entry of the specified group.
+     *
+     * @param archiveId the id of the archive.
+     * @param groupId   the id of the group.
+     * @return the {@link Entry} of the group or {@code null} if the group was not exported.
+     */
+    Entry get(int archiveId, int groupId) {
+        return entries.get(key(archiveId, groupId));
+    }
+
+    /**
+     * Puts the entry of the specified group.
+     *
+     * @param archiveId the id of the archive.
+     * @param groupId   the id of the group.
+     * @param entry     the entry of the group.
+     */
+    void put(int archiveId, int groupId, Entry entry) {
+        entries.put(key(archiveId, groupId), entry);
+    }
+
+    /**
+     * Writes the manifest to the file at the specified {@code path}. The manifest is written to a temporary file which
+     * is synced and then moved over the path.
+     *
+     * @param path the path of the manifest file.
+     * @throws IOException if anything occurs while writing the manifest file.
+     */
+    void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<Long, Entry> entry : entries.entrySet()) {
+                Entry group = entry.getValue();
+                out.writeLong(entry.getKey());
+                out.writeInt(group.version);
+                out.writeInt(group.compressedCrc);
+                out.writeInt(group.fileIds.length);
+                for (int index = 0; index < group.fileIds.length; index++) {
+                    out.writeInt(group.fileIds[index]);
+                    out.writeInt(group.crcs[index]);
+                    out.writeInt(group.lengths[index]);
+                }
+            }
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the manifest from the file at the specified {@code path}. A manifest which is missing or not valid is read
+     * as an empty manifest, which makes the next export write everything.
+     *
+     * @param path the path of the manifest file.
+     * @return the read {@link ExportManifest} object.
+     */
+    static ExportManifest read(Path path) {
+        ExportManifest manifest = new ExportManifest();
+        if (!Files.exists(path)) {
+            return manifest;
+        }
+        try (InputStream stream = Files.newInputStream(path)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(stream, BUFFER_SIZE), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                return new ExportManifest();
+            }
+            int count = in.readInt();
+            for (int index = 0; index < count; index++) {
+                long key = in.readLong();
+                int version = in.readInt();
+                int compressedCrc = in.readInt();
+                int fileCount = in.readInt();
+                int[] fileIds = new int[fileCount];
+                int[] crcs = new int[fileCount];
+                int[] lengths = new int[fileCount];
+                for (int file = 0; file < fileCount; file++) {
+                    fileIds[file] = in.readInt();
+                    crcs[file] = in.readInt();
+                    lengths[file] = in.readInt();
+                }
+                manifest.entries.put(key, new Entry(version, compressedCrc, fileIds, crcs, lengths));
+            }
+            int checksum = (int) checked.getChecksum().getValue();
+            if (in.readInt() != checksum) {
+                return new ExportManifest();
+            }
+            return manifest;
+        } catch (IOException e) {
+            return new ExportManifest();
+        }
+    }
+
+    /**
+     * Returns the key of the specified group.
+     *
+     * @param archiveId the id of the archive.
+     * @param groupId   the id of the group.
+     * @return the key of the group.
+     */
+    static long key(int archiveId, int groupId) {
+        return (long) archiveId << 32 | groupId & 0xffffffffL;
+    }
+
+    /**
+     * The manifest entry of a single exported group.
+     *
+     * @author Walied K. Yassen
+     */
+    @RequiredArgsConstructor
+    static final class Entry {
+
+        /**
+         * The version of the group.
+         */
+        @Getter(AccessLevel.PACKAGE)
+        private final int version;
+
+        /**
+         * The compressed CRC-32 checksum of the group.
+         */
+        @Getter(AccessLevel.PACKAGE)
+        private final int compressedCrc;
+
+        /**
+         * The ids of the exported files in ascending order.
+         */
+        @Getter(AccessLevel.PACKAGE)
+        private final int[] fileIds;
+
+        /**
+         * The CRC-32 checksums of the exported files.
+         */
+        @Getter(AccessLevel.PACKAGE)
+        private final int[] crcs;
+
+        /**
+         * The lengths of the exported files.
+         */
+        @Getter(AccessLevel.PACKAGE)
+        private final int[] lengths;
+
+        /**
+         * Returns the position of the file with the specified {@code fileId} within the entry.
+         *
+         * @param fileId the id of the file.
+         * @return the position of the file or {@code -1} if it was not exported.
+         */
+        int indexOf(int fileId) {
+            int index = Arrays.binarySearch(fileIds, fileId);
+            return index >= 0 ? index : -1;
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package me.waliedyassen.cache.fs;
 
+import me.waliedyassen.cache.concurrent.CacheExecutors;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * A file system is responsible for managing, loading, and storing file within a single archive. This
  * interface holds all of the common functionality between different kind of file system implementations.s
@@ -21,6 +26,58 @@ public interface FileSystem {
      */
     byte[] loadGroup(int id);
 
+    /**
+     * Loads the raw data of the group with the specified {@code id} from the file system asynchronously using the
+     * {@link CacheExecutors#getDefault() default} executor.
+     *
+     * @param id the id of the group that we want to load the data for.
+     * @return a {@link CompletableFuture} which completes with the raw data of the group or {@code null}.
+     * @see #loadGroup(int)
+     */
+    default CompletableFuture<byte[]> loadGroupAsync(int id) {
+        return loadGroupAsync(id, CacheExecutors.getDefault());
+    }
+
+    /**
+     * Loads the raw data of the group with the specified {@code id} from the file system asynchronously using the
+     * specified {@link Executor executor}.
+     *
+     * @param id       the id of the group that we want to load the data for.
+     * @param executor the executor which the blocking load runs on.
+     * @return a {@link CompletableFuture} which completes with the raw data of the group or {@code null}.
+     * @see #loadGroup(int)
+     */
+    default CompletableFuture<byte[]> loadGroupAsync(int id, Executor executor) {
+        return loadGroupAsync(id, executor, LoadPriority.URGENT);
+    }
+
+    /**
+     * Loads the raw data of the group with the specified {@code id} from the file system asynchronously using the
+     * specified {@link Executor executor}. The {@link LoadPriority priority} is only a hint, file systems which do not
+     * schedule their loads ignore it.
+     *
+     * @param id       the id of the group that we want to load the data for.
+     * @param executor the executor which the blocking load runs on.
+     * @param priority the priority of the load.
+     * @return a {@link CompletableFuture} which completes with the raw data of the group or {@code null}.
+     * @see #loadGroup(int)
+     */
+    default CompletableFuture<byte[]> loadGroupAsync(int id, Executor executor, LoadPriority priority) {
+        return CompletableFuture.supplyAsync(() -> loadGroup(id), executor);
+    }
+
+    /**
+     * Returns the position of the group with the specified {@code id} within the underlying storage, which is used to
+     * order a batch of loads so they are served in storage order. The default implementation does not know the
+     * position of any group.
+     *
+     * @param id the id of the group.
+     * @return the position of the group or {@code -1} if it is not known.
+     */
+    default long getPosition(int id) {
+        return -1;
+    }
+
     /**
      * Stores the raw data of the group with the specified {@code id} in the file system.
      *
@@ -1,5 +1,7 @@
 package me.waliedyassen.cache.fs;
 
+import me.waliedyassen.cache.metrics.CacheMetrics;
+
 /**
  * The file system provider is responsible for providing {@link FileSystem} objects for a given archive {@code key}. The
  * implementation may or may not cache the {@link FileSystem} objects. This should be called once per archive per
@@ -17,4 +19,56 @@ public interface FileSystemProvider {
      * @return the {@link FileSystem} object or {@code null} if the file system is not available.
      */
     FileSystem provide(int id);
+
+    /**
+     * Sets the {@link CacheMetrics metrics} listener which the file systems of this provider report their operations
+     * to. The default implementation does not report anything.
+     *
+     * @param metrics the metrics listener.
+     */
+    default void setMetrics(CacheMetrics metrics) {
+        // NOOP
+    }
+
+    /**
+     * Registers the specified {@link IndexListener listener} which is notified whenever the index table of any of the
+     * file systems of this provider is stored. The default implementation never notifies the listener, which is only
+     * correct for providers whose file systems are read-only.
+     *
+     * @param listener the listener that we want to register.
+     */
+    default void addIndexListener(IndexListener listener) {
+        // NOOP
+    }
+
+    /**
+     * Unregisters the specified {@link IndexListener listener}.
+     *
+     * @param listener the listener that we want to unregister.
+     */
+    default void removeIndexListener(IndexListener listener) {
+        // NOOP
+    }
+
+    /**
+     * Checks the underlying files of this provider for changes which were made outside of it and drops any state that
+     * the provider keeps about the files which were changed. The default implementation never reports any change,
+     * which is only correct for providers whose files never change.
+     *
+     * @return the ids of the archives whose index table may have changed since the previous refresh.
+     */
+    default int[] refresh() {
+        return new int[0];
+    }
+
+    /**
+     * Notifies the {@link IndexListener listeners} of this provider that the index table of the specified archive was
+     * changed outside of the provider.
+     *
+     * @param id   the id of the archive which the index table belongs to.
+     * @param data the raw data of the new index table.
+     */
+    default void notifyIndexChanged(int id, byte[] data) {
+        // NOOP
+    }
 }
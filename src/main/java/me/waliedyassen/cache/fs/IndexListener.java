@@ -0,0 +1,19 @@
+package me.waliedyassen.cache.fs;
+
+/**
+ * A listener which is notified whenever the index table of an archive is stored through {@link
+ * FileSystem#storeIndex(byte[])}.
+ *
+ * @author Walied K. Yassen
+ */
+@FunctionalInterface
+public interface IndexListener {
+
+    /**
+     * Gets called when the index table of the archive with the specified {@code archiveId} was stored.
+     *
+     * @param archiveId the id of the archive which the index table belongs to.
+     * @param data      the raw data of the index table that was stored.
+     */
+    void onIndexStored(int archiveId, byte[] data);
+}
@@ -0,0 +1,48 @@
+package me.waliedyassen.cache.fs;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A list of {@link IndexListener index listeners} which is shared between a {@link FileSystemProvider} and the file
+ * systems it provides, so the file systems can notify all of the listeners of the provider.
+ *
+ * @author Walied K. Yassen
+ */
+public final class IndexListeners {
+
+    /**
+     * The listeners which are currently registered.
+     */
+    private final List<IndexListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers the specified {@link IndexListener listener}.
+     *
+     * @param listener the listener that we want to register.
+     */
+    public void add(IndexListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters the specified {@link IndexListener listener}.
+     *
+     * @param listener the listener that we want to unregister.
+     */
+    public void remove(IndexListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies all of the registered listeners that the index table of the specified archive was stored.
+     *
+     * @param archiveId the id of the archive which the index table belongs to.
+     * @param data      the raw data of the index table that was stored.
+     */
+    public void fire(int archiveId, byte[] data) {
+        for (IndexListener listener : listeners) {
+            listener.onIndexStored(archiveId, data);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package me.waliedyassen.cache.fs;
+
+/**
+ * The priority of a group load request, this follows the urgent and prefetch requests of the JS5 protocol.
+ *
+ * @author Walied K. Yassen
+ */
+public enum LoadPriority {
+
+    /**
+     * The group is needed right away, urgent requests are always served before the prefetch requests.
+     */
+    URGENT,
+
+    /**
+     * The group is only being fetched ahead of time.
+     */
+    PREFETCH
+}
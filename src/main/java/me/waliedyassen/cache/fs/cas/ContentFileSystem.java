@@ -0,0 +1,100 @@
+package me.waliedyassen.cache.fs.cas;
+
+import lombok.RequiredArgsConstructor;
+import me.waliedyassen.cache.fs.FileSystem;
+
+import java.util.Set;
+
+/**
+ * A {@link FileSystem} implementation which loads the containers of a single archive of a revision from a {@link
+ * ContentStore}. The containers which are stored are written to the store straight away, but the revision only
+ * references them on the disk once it is committed.
+ *
+ * @author Walied K. Yassen
+ */
+@RequiredArgsConstructor
+final class ContentFileSystem implements FileSystem {
+
+    /**
+     * The provider of the revision which the file system belongs to.
+     */
+    private final ContentFileSystemProvider provider;
+
+    /**
+     * The id of the archive which the file system is for.
+     */
+    private final int id;
+
+    /**
+     * The store which the objects are stored in.
+     */
+    private final ContentStore store;
+
+    /**
+     * The references of the archive within the revision.
+     */
+    private final ContentRevision.Archive archive;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commit() {
+        provider.commit();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] loadGroup(int id) {
+        return load(archive.groups.get(id));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeGroup(int id, byte[] data) {
+        archive.groups.put(id, store.store(data));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] loadIndex() {
+        return load(archive.index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeIndex(byte[] data) {
+        archive.index = store.store(data);
+        provider.getIndexListeners().fire(id, data);
+    }
+
+    /**
+     * Removes the references to all of the groups of the archive except the ones with the specified ids.
+     *
+     * @param ids the ids of the groups that we want to keep.
+     */
+    void retainGroups(Set<Integer> ids) {
+        archive.groups.keySet().retainAll(ids);
+    }
+
+    /**
+     * Loads the raw container data which the specified {@link Ref reference} points to.
+     *
+     * @param ref the reference of the container.
+     * @return the raw container data or {@code null} if the reference or the object is not present.
+     */
+    private byte[] load(Ref ref) {
+        if (ref == null) {
+            return null;
+        }
+        return store.read(ref.getDigest(), ref.getTrailer());
+    }
+}
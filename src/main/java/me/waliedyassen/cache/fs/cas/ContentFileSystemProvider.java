@@ -0,0 +1,112 @@
+package me.waliedyassen.cache.fs.cas;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import me.waliedyassen.cache.fs.FileSystem;
+import me.waliedyassen.cache.fs.FileSystemProvider;
+import me.waliedyassen.cache.fs.IndexListener;
+import me.waliedyassen.cache.fs.IndexListeners;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link FileSystemProvider} implementation that provides {@link ContentFileSystem} objects for a single revision of
+ * a {@link ContentStore}.
+ *
+ * @author Walied K. Yassen
+ */
+@RequiredArgsConstructor
+public final class ContentFileSystemProvider implements FileSystemProvider {
+
+    /**
+     * A map of all the cached file systems.
+     */
+    private final Map<Integer, ContentFileSystem> cached = new HashMap<>();
+
+    /**
+     * The listeners which are notified when the index table of any of the file systems is stored.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final IndexListeners indexListeners = new IndexListeners();
+
+    /**
+     * The store which the objects of the revision are stored in.
+     */
+    private final ContentStore store;
+
+    /**
+     * The revision which the file systems are for.
+     */
+    private final ContentRevision revision;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized FileSystem provide(int id) {
+        ContentFileSystem fs = cached.get(id);
+        if (fs != null) {
+            return fs;
+        }
+        ContentRevision.Archive archive = revision.archives.get(id);
+        if (archive == null) {
+            return null;
+        }
+        fs = new ContentFileSystem(this, id, store, archive);
+        cached.put(id, fs);
+        return fs;
+    }
+
+    /**
+     * Provides the {@link FileSystem} of the archive with the specified {@code id}, the archive is added to the
+     * revision if it does not exist.
+     *
+     * @param id the id of the archive.
+     * @return the {@link FileSystem} object of the archive.
+     */
+    public synchronized FileSystem create(int id) {
+        if (id < 0 || id > 254) {
+            throw new IllegalArgumentException("Invalid archive id: " + id);
+        }
+        revision.archives.computeIfAbsent(id, key -> new ContentRevision.Archive());
+        return provide(id);
+    }
+
+    /**
+     * Removes all of the archives of the revision except the ones with the specified ids.
+     *
+     * @param ids the ids of the archives that we want to keep.
+     */
+    synchronized void retainArchives(Set<Integer> ids) {
+        revision.archives.keySet().retainAll(ids);
+        cached.keySet().retainAll(ids);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addIndexListener(IndexListener listener) {
+        indexListeners.add(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeIndexListener(IndexListener listener) {
+        indexListeners.remove(listener);
+    }
+
+    /**
+     * Makes all of the changes of the revision durable. The object file is synced before the revision file is
+     * replaced, so the revision never references an object which is not on the disk.
+     */
+    public void commit() {
+        store.sync();
+        revision.write();
+    }
+}
@@ -0,0 +1,188 @@
+package me.waliedyassen.cache.fs.cas;
+
+import me.waliedyassen.cache.CacheException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A single revision within the {@link ContentStore}, it holds nothing but references to the objects which make the
+ * index tables and the groups of each archive.
+ *
+ * @author Walied K. Yassen
+ */
+final class ContentRevision {
+
+    /**
+     * The magic number which the revision file starts with.
+     */
+    private static final int MAGIC = 0x4A355256;
+
+    /**
+     * The size of the buffer we use when reading or writing the revision file.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * The archives of the revision keyed by their id.
+     */
+    final Map<Integer, Archive> archives = new ConcurrentHashMap<>();
+
+    /**
+     * The path of the revision file.
+     */
+    private final Path path;
+
+    /**
+     * Constructs a new {@link ContentRevision} type object instance.
+     *
+     * @param path the path of the revision file.
+     */
+    ContentRevision(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Reads the revision from its file if it exists.
+     */
+    void read() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE)) {
+            DataInputStream in = new DataInputStream(stream);
+            if (in.readInt() != MAGIC) {
+                throw new CacheException("The revision file is not valid: " + path);
+            }
+            int archiveCount = in.readUnsignedByte();
+            for (int index = 0; index < archiveCount; index++) {
+                Archive archive = new Archive();
+                int archiveId = in.readUnsignedByte();
+                archive.index = readRef(in);
+                int groupCount = in.readInt();
+                for (int group = 0; group < groupCount; group++) {
+                    archive.groups.put(in.readInt(), readRef(in));
+                }
+                archives.put(archiveId, archive);
+            }
+        } catch (IOException e) {
+            throw new CacheException("Failed to read the revision file: " + path, e);
+        }
+    }
+
+    /**
+     * Writes the revision to a temporary file, syncs it and then moves it over the revision file atomically. The
+     * directory is synced after the move, so the new revision file is not lost if the system crashes.
+     */
+    synchronized void write() {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+            Map<Integer, Archive> sorted = new TreeMap<>(archives);
+            out.writeInt(MAGIC);
+            out.writeByte(sorted.size());
+            for (Map.Entry<Integer, Archive> entry : sorted.entrySet()) {
+                Archive archive = entry.getValue();
+                out.writeByte(entry.getKey());
+                writeRef(out, archive.index);
+                Map<Integer, Ref> groups = new TreeMap<>(archive.groups);
+                out.writeInt(groups.size());
+                for (Map.Entry<Integer, Ref> group : groups.entrySet()) {
+                    out.writeInt(group.getKey());
+                    writeRef(out, group.getValue());
+                }
+            }
+            out.flush();
+            stream.getFD().sync();
+        } catch (IOException e) {
+            throw new CacheException("Failed to write the revision file: " + path, e);
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new CacheException("Failed to replace the revision file: " + path, e);
+        }
+        syncDirectory(path.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Flushes the entries of the specified {@code directory} to the disk, on the platforms which do not support
+     * syncing a directory this does nothing.
+     *
+     * @param directory the directory to sync.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // the platform does not support syncing a directory.
+        }
+    }
+
+    /**
+     * Reads a single {@link Ref reference} from the specified {@link DataInputStream stream}.
+     *
+     * @param in the stream to read the reference from.
+     * @return the read {@link Ref} object or {@code null} if there is no reference.
+     * @throws IOException if anything occurs while reading from the stream.
+     */
+    private static Ref readRef(DataInputStream in) throws IOException {
+        int trailerLength = in.readUnsignedByte();
+        if (trailerLength == 0xff) {
+            return null;
+        }
+        byte[] digest = new byte[Digest.SIZE];
+        in.readFully(digest);
+        byte[] trailer = new byte[trailerLength];
+        in.readFully(trailer);
+        return new Ref(new Digest(digest), trailer);
+    }
+
+    /**
+     * Writes a single {@link Ref reference} to the specified {@link DataOutputStream stream}.
+     *
+     * @param out the stream to write the reference to.
+     * @param ref the reference to write or {@code null} if there is no reference.
+     * @throws IOException if anything occurs while writing to the stream.
+     */
+    private static void writeRef(DataOutputStream out, Ref ref) throws IOException {
+        if (ref == null) {
+            out.writeByte(0xff);
+            return;
+        }
+        out.writeByte(ref.getTrailer().length);
+        out.write(ref.getDigest().toByteArray());
+        out.write(ref.getTrailer());
+    }
+
+    /**
+     * The references of a single archive within the revision.
+     *
+     * @author Walied K. Yassen
+     */
+    static final class Archive {
+
+        /**
+         * The references to the groups of the archive keyed by the group id.
+         */
+        final Map<Integer, Ref> groups = new ConcurrentHashMap<>();
+
+        /**
+         * The reference to the index table of the archive.
+         */
+        volatile Ref index;
+    }
+}
@@ -0,0 +1,394 @@
+package me.waliedyassen.cache.fs.cas;
+
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.archive.Group;
+import me.waliedyassen.cache.archive.Index;
+import me.waliedyassen.cache.compression.Js5Compression;
+import me.waliedyassen.cache.fs.FileSystem;
+import me.waliedyassen.cache.fs.FileSystemProvider;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * A content-addressed store of Js5 containers which is shared by many cache revisions. Every container is stored
+ * once within an append-only object file, keyed by the whirlpool {@link Digest digest} of the container without its
+ * version trailer, and each revision is nothing but a small file of references to the objects of its index tables and
+ * groups. Consecutive revisions share most of their groups, so they share most of their objects.
+ * <p>
+ * The object file is made of records which are the digest of the object, followed by its length as a 32-bit integer
+ * and then its data. A record which was not fully written when the process died is discarded when the store is
+ * opened.
+ *
+ * @author Walied K. Yassen
+ */
+public final class ContentStore implements AutoCloseable {
+
+    /**
+     * The size of the record header in the object file.
+     */
+    private static final int RECORD_HEADER_SIZE = Digest.SIZE + 4;
+
+    /**
+     * The pattern which the revision names must match.
+     */
+    private static final Pattern REVISION_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    /**
+     * The extension of the revision files.
+     */
+    private static final String REVISION_EXTENSION = ".rev";
+
+    /**
+     * The location of each object within the object file keyed by its digest, the location is the offset of the object
+     * data followed by its length.
+     */
+    private final Map<Digest, long[]> objects = new ConcurrentHashMap<>();
+
+    /**
+     * The revisions which are currently open keyed by their name.
+     */
+    private final Map<String, ContentFileSystemProvider> revisions = new ConcurrentHashMap<>();
+
+    /**
+     * The path of the directory which contains the store.
+     */
+    private final Path directory;
+
+    /**
+     * The channel of the object file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The offset of the end of the object file.
+     */
+    private long end;
+
+    /**
+     * Constructs a new {@link ContentStore} type object instance.
+     *
+     * @param directory the path of the directory which contains the store.
+     * @param channel   the channel of the object file.
+     */
+    private ContentStore(Path directory, FileChannel channel) {
+        this.directory = directory;
+        this.channel = channel;
+    }
+
+    /**
+     * Scans the object file and builds the location map of the objects, the incomplete record at the end of the file
+     * is discarded if there is any.
+     *
+     * @throws IOException if anything occurs while reading the object file.
+     */
+    private void scan() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        long offset = 0;
+        while (offset + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, offset);
+            byte[] digest = new byte[Digest.SIZE];
+            header.flip();
+            header.get(digest);
+            int length = header.getInt();
+            if (length < 0 || offset + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            objects.put(new Digest(digest), new long[]{offset + RECORD_HEADER_SIZE, length});
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        if (offset != size) {
+            channel.truncate(offset);
+        }
+        end = offset;
+    }
+
+    /**
+     * Reads the object with the specified {@link Digest digest}.
+     *
+     * @param digest the digest of the object.
+     * @return the data of the object or {@code null} if the object is not present.
+     */
+    public byte[] read(Digest digest) {
+        long[] location = objects.get(digest);
+        if (location == null) {
+            return null;
+        }
+        byte[] data = new byte[(int) location[1]];
+        try {
+            readFully(ByteBuffer.wrap(data), location[0]);
+        } catch (IOException e) {
+            throw new CacheException("Failed to read the object " + digest, e);
+        }
+        return data;
+    }
+
+    /**
+     * Reads the object with the specified {@link Digest digest} into a new array which has the specified amount of
+     * {@code extra} bytes at its end.
+     *
+     * @param digest the digest of the object.
+     * @param extra  the trailing bytes to append to the object data.
+     * @return the data of the object followed by the extra bytes, or {@code null} if the object is not present.
+     */
+    byte[] read(Digest digest, byte[] extra) {
+        long[] location = objects.get(digest);
+        if (location == null) {
+            return null;
+        }
+        byte[] data = new byte[(int) location[1] + extra.length];
+        try {
+            readFully(ByteBuffer.wrap(data, 0, (int) location[1]), location[0]);
+        } catch (IOException e) {
+            throw new CacheException("Failed to read the object " + digest, e);
+        }
+        System.arraycopy(extra, 0, data, (int) location[1], extra.length);
+        return data;
+    }
+
+    /**
+     * Writes the specified region of the {@code data} as an object, unless an object with the same digest is already
+     * present within the store.
+     *
+     * @param data   the data of the object.
+     * @param offset the offset of the object within the data.
+     * @param length the length of the object.
+     * @return the {@link Digest} of the object.
+     */
+    public Digest write(byte[] data, int offset, int length) {
+        Digest digest = Digest.compute(data, offset, length);
+        if (objects.containsKey(digest)) {
+            return digest;
+        }
+        synchronized (this) {
+            if (objects.containsKey(digest)) {
+                return digest;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+            buffer.put(digest.toByteArray());
+            buffer.putInt(length);
+            buffer.put(data, offset, length);
+            buffer.flip();
+            try {
+                long position = end;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            } catch (IOException e) {
+                throw new CacheException("Failed to write the object " + digest, e);
+            }
+            objects.put(digest, new long[]{end + RECORD_HEADER_SIZE, length});
+            end += RECORD_HEADER_SIZE + length;
+        }
+        return digest;
+    }
+
+    /**
+     * Writes the specified raw container {@code data} as an object and returns a reference to it, the version
+     * trailer of the container is kept within the reference.
+     *
+     * @param data the raw data of the container.
+     * @return the {@link Ref} to the object.
+     */
+    Ref store(byte[] data) {
+        int length = Js5Compression.getContainerLength(data);
+        Digest digest = write(data, 0, length);
+        byte[] trailer = new byte[data.length - length];
+        System.arraycopy(data, length, trailer, 0, trailer.length);
+        return new Ref(digest, trailer);
+    }
+
+    /**
+     * Checks whether or not an object with the specified {@link Digest digest} is present within the store.
+     *
+     * @param digest the digest of the object.
+     * @return <code>true</code> if it is otherwise <code>false</code>.
+     */
+    public boolean contains(Digest digest) {
+        return objects.containsKey(digest);
+    }
+
+    /**
+     * Returns the amount of objects within the store.
+     *
+     * @return the amount of objects.
+     */
+    public int getObjectCount() {
+        return objects.size();
+    }
+
+    /**
+     * Returns the size of the object file.
+     *
+     * @return the size in bytes.
+     */
+    public synchronized long getSize() {
+        return end;
+    }
+
+    /**
+     * Syncs the object file to the disk.
+     */
+    void sync() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new CacheException("Failed to sync the object file", e);
+        }
+    }
+
+    /**
+     * Returns the names of all the revisions within the store.
+     *
+     * @return the sorted list of revision names.
+     */
+    public List<String> getRevisions() {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(getRevisionsDirectory(), "*" + REVISION_EXTENSION)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                names.add(name.substring(0, name.length() - REVISION_EXTENSION.length()));
+            }
+        } catch (IOException e) {
+            throw new CacheException("Failed to list the revisions", e);
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Opens the revision with the specified {@code name}, an empty revision is created if it does not exist.
+     *
+     * @param name the name of the revision.
+     * @return the {@link ContentFileSystemProvider} of the revision.
+     */
+    public ContentFileSystemProvider openRevision(String name) {
+        if (!REVISION_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid revision name: " + name);
+        }
+        return revisions.computeIfAbsent(name, key -> {
+            ContentRevision revision = new ContentRevision(getRevisionsDirectory().resolve(key + REVISION_EXTENSION));
+            revision.read();
+            return new ContentFileSystemProvider(this, revision);
+        });
+    }
+
+    /**
+     * Imports all of the archives which the specified {@link FileSystemProvider provider} provides as a revision with
+     * the specified {@code name}. Only the containers which are not already present within the store are written.
+     * When a revision with the same name already exists, it is replaced by the imported archives, so none of the
+     * archives or the groups which the source does not have are left behind.
+     *
+     * @param name   the name of the revision.
+     * @param source the provider of the archives which we want to import.
+     * @return the {@link ContentFileSystemProvider} of the imported revision.
+     */
+    public ContentFileSystemProvider importRevision(String name, FileSystemProvider source) {
+        ContentFileSystemProvider revision = openRevision(name);
+        Set<Integer> archiveIds = new HashSet<>();
+        for (int archiveId = 0; archiveId < 255; archiveId++) {
+            FileSystem fs = source.provide(archiveId);
+            if (fs == null) {
+                continue;
+            }
+            byte[] indexData = fs.loadIndex();
+            if (indexData == null) {
+                continue;
+            }
+            ContentFileSystem target = (ContentFileSystem) revision.create(archiveId);
+            archiveIds.add(archiveId);
+            Index index = new Index();
+            index.decode(indexData);
+            Group[] groups = index.getGroups();
+            Set<Integer> groupIds = new HashSet<>();
+            for (int groupId = 0; groupId < groups.length; groupId++) {
+                if (groups[groupId] == null) {
+                    continue;
+                }
+                byte[] data = fs.loadGroup(groupId);
+                if (data != null) {
+                    target.storeGroup(groupId, data);
+                    groupIds.add(groupId);
+                }
+            }
+            target.retainGroups(groupIds);
+            target.storeIndex(indexData);
+        }
+        revision.retainArchives(archiveIds);
+        revision.commit();
+        return revision;
+    }
+
+    /**
+     * Returns the path of the directory which contains the revision files.
+     *
+     * @return the path of the revisions directory.
+     */
+    private Path getRevisionsDirectory() {
+        return directory.resolve("revisions");
+    }
+
+    /**
+     * Reads from the object file at the specified {@code position} until the specified {@code buffer} is full.
+     *
+     * @param buffer   the buffer to read into.
+     * @param position the position within the object file.
+     * @throws IOException if anything occurs while reading the object file.
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new CacheException("Failed to close the object file", e);
+        }
+    }
+
+    /**
+     * Opens the content-addressed store within the specified {@code directory}, the directory is created if it does
+     * not exist.
+     *
+     * @param directory the path of the directory which contains the store.
+     * @return the opened {@link ContentStore} object.
+     */
+    public static ContentStore open(Path directory) {
+        try {
+            Files.createDirectories(directory.resolve("revisions"));
+            FileChannel channel = FileChannel.open(directory.resolve("objects.dat"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ContentStore store = new ContentStore(directory, channel);
+            store.scan();
+            return store;
+        } catch (IOException e) {
+            throw new CacheException("Failed to open the content store", e);
+        }
+    }
+}
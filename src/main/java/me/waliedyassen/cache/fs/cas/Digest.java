@@ -0,0 +1,106 @@
+package me.waliedyassen.cache.fs.cas;
+
+import com.uwyn.rife.tools.Whirlpool;
+
+import java.util.Arrays;
+
+/**
+ * The whirlpool digest of an object within the {@link ContentStore}, it is the key which the object is addressed by.
+ *
+ * @author Walied K. Yassen
+ */
+public final class Digest {
+
+    /**
+     * The size of the digest in bytes.
+     */
+    public static final int SIZE = 64;
+
+    /**
+     * The bytes of the digest.
+     */
+    private final byte[] bytes;
+
+    /**
+     * The cached hash code of the digest.
+     */
+    private final int hash;
+
+    /**
+     * Constructs a new {@link Digest} type object instance.
+     *
+     * @param bytes the bytes of the digest.
+     */
+    Digest(byte[] bytes) {
+        if (bytes.length != SIZE) {
+            throw new IllegalArgumentException("The digest must be " + SIZE + " bytes long");
+        }
+        this.bytes = bytes;
+        hash = Arrays.hashCode(bytes);
+    }
+
+    /**
+     * Returns a copy of the bytes of the digest.
+     *
+     * @return the bytes of the digest.
+     */
+    public byte[] toByteArray() {
+        return bytes.clone();
+    }
+
+    /**
+     * Writes the bytes of the digest to the specified {@code buffer} at the specified {@code offset}.
+     *
+     * @param buffer the buffer to write the digest to.
+     * @param offset the offset to write the digest at.
+     */
+    void write(byte[] buffer, int offset) {
+        System.arraycopy(bytes, 0, buffer, offset, SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Digest)) {
+            return false;
+        }
+        return Arrays.equals(bytes, ((Digest) obj).bytes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(SIZE * 2);
+        for (byte value : bytes) {
+            builder.append(Character.forDigit((value >> 4) & 0xf, 16)).append(Character.forDigit(value & 0xf, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Computes the digest of the specified region of the {@code data}.
+     *
+     * @param data   the data to compute the digest of.
+     * @param offset the offset of the region.
+     * @param length the length of the region.
+     * @return the computed {@link Digest} object.
+     */
+    static Digest compute(byte[] data, int offset, int length) {
+        return new Digest(Whirlpool.compute(data, offset, length));
+    }
+}
@@ -0,0 +1,27 @@
+package me.waliedyassen.cache.fs.cas;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A reference from a revision to an object within the {@link ContentStore}. The version trailer of the container is
+ * kept within the reference rather than the object, so the same container with a different version is still stored
+ * once.
+ *
+ * @author Walied K. Yassen
+ */
+@RequiredArgsConstructor
+final class Ref {
+
+    /**
+     * The digest of the referenced object.
+     */
+    @Getter
+    private final Digest digest;
+
+    /**
+     * The version trailer of the container, it is empty if the container has no trailer.
+     */
+    @Getter
+    private final byte[] trailer;
+}
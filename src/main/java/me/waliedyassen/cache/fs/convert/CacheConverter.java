@@ -0,0 +1,405 @@
+package me.waliedyassen.cache.fs.convert;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.archive.Group;
+import me.waliedyassen.cache.archive.Index;
+import me.waliedyassen.cache.compression.Js5Compression;
+import me.waliedyassen.cache.fs.FileSystem;
+import me.waliedyassen.cache.fs.java.JavaFileSystemProvider;
+import me.waliedyassen.cache.fs.pack.PackReader;
+import me.waliedyassen.cache.fs.pack.PackWriter;
+import me.waliedyassen.cache.io.CRC;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Converts caches between the RuneScape Java Client file system and the {@code .js5} pack file system. Every archive
+ * is streamed through a bounded pipeline: the groups are read sequentially in the order of their ids, optionally
+ * verified in parallel, and written in the order they were read. At most {@code window} groups of an archive are in
+ * flight at any time, so the memory use does not depend on the size of the archives, and the archives themselves are
+ * converted concurrently.
+ *
+ * @author Walied K. Yassen
+ */
+public final class CacheConverter {
+
+    /**
+     * The default maximum amount of groups of a single archive which are in flight at once.
+     */
+    public static final int DEFAULT_WINDOW = 64;
+
+    /**
+     * The maximum amount of archives within a cache.
+     */
+    private static final int MAX_ARCHIVES = 255;
+
+    /**
+     * The amount of threads which the archives are converted on.
+     */
+    private final int parallelism;
+
+    /**
+     * The maximum amount of groups of a single archive which are in flight at once.
+     */
+    private final int window;
+
+    /**
+     * Whether or not the groups are verified against the index table before they are written.
+     */
+    private final boolean verify;
+
+    /**
+     * The amount of groups which were converted.
+     */
+    private final LongAdder groups = new LongAdder();
+
+    /**
+     * The amount of bytes which were converted.
+     */
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * The executor which the groups are verified on or {@code null} if the groups are not verified.
+     */
+    private ExecutorService workers;
+
+    /**
+     * Constructs a new {@link CacheConverter} type object instance.
+     *
+     * @param parallelism the amount of threads which the archives are converted and the groups are verified on.
+     * @param window      the maximum amount of groups of a single archive which are in flight at once.
+     * @param verify      whether or not the groups are verified against the index table.
+     */
+    private CacheConverter(int parallelism, int window, boolean verify) {
+        if (parallelism < 1 || window < 1) {
+            throw new IllegalArgumentException("The parallelism and the window must be positive");
+        }
+        this.parallelism = parallelism;
+        this.window = window;
+        this.verify = verify;
+    }
+
+    /**
+     * Runs the specified archive conversions concurrently and waits for all of them to complete.
+     *
+     * @param archives the conversions of the archives.
+     * @return the {@link Report} of the conversion.
+     */
+    private Report run(List<Runnable> archives) {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, archives.size())));
+        workers = verify ? Executors.newFixedThreadPool(parallelism) : null;
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(archives.size());
+            for (Runnable archive : archives) {
+                futures.add(CompletableFuture.runAsync(archive, executor));
+            }
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.join();
+                } catch (CompletionException e) {
+                    throw new CacheException("Failed to convert the cache", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+        }
+        return new Report(archives.size(), groups.sum(), bytes.sum(), System.nanoTime() - start);
+    }
+
+    /**
+     * Streams the groups of a single archive from the specified {@code reader} to the specified {@code writer}.
+     *
+     * @param archiveId the id of the archive.
+     * @param index     the index table of the archive.
+     * @param reader    a function which reads the raw data of the group with the specified id.
+     * @param writer    a consumer which writes the raw data of the group with the specified id.
+     */
+    private void pipeline(int archiveId, Index index, IntFunction<byte[]> reader, ObjIntConsumer<byte[]> writer) {
+        Group[] entries = index.getGroups();
+        ArrayDeque<Group> pendingGroups = new ArrayDeque<>(window);
+        ArrayDeque<CompletableFuture<byte[]>> pendingData = new ArrayDeque<>(window);
+        for (Group group : entries) {
+            if (group == null) {
+                continue;
+            }
+            byte[] data = reader.apply(group.getId());
+            if (data == null) {
+                throw new CacheException("Failed to read group " + group.getId() + " of archive " + archiveId);
+            }
+            pendingGroups.add(group);
+            pendingData.add(workers != null ? CompletableFuture.supplyAsync(() -> verify(archiveId, group, data), workers) : CompletableFuture.completedFuture(data));
+            if (pendingData.size() >= window) {
+                drain(pendingGroups, pendingData, writer);
+            }
+        }
+        while (!pendingData.isEmpty()) {
+            drain(pendingGroups, pendingData, writer);
+        }
+    }
+
+    /**
+     * Writes the oldest pending group once it is ready.
+     *
+     * @param pendingGroups the pending groups.
+     * @param pendingData   the pending data of the groups.
+     * @param writer        a consumer which writes the raw data of the group with the specified id.
+     */
+    private void drain(ArrayDeque<Group> pendingGroups, ArrayDeque<CompletableFuture<byte[]>> pendingData, ObjIntConsumer<byte[]> writer) {
+        Group group = pendingGroups.poll();
+        byte[] data;
+        try {
+            data = pendingData.poll().join();
+        } catch (CompletionException e) {
+            throw new CacheException("Failed to verify group " + group.getId(), e.getCause());
+        }
+        writer.accept(data, group.getId());
+        groups.increment();
+        bytes.add(data.length);
+    }
+
+    /**
+     * Verifies the raw data of the specified group against its entry within the index table.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param group     the entry of the group within the index table.
+     * @param data      the raw data of the group.
+     * @return the verified raw data of the group.
+     */
+    private static byte[] verify(int archiveId, Group group, byte[] data) {
+        int length = Js5Compression.getContainerLength(data);
+        if (group.getCompressedCrc() != 0 && CRC.compute(data, 0, length) != group.getCompressedCrc()) {
+            throw new CacheException("The checksum of group " + group.getId() + " of archive " + archiveId + " does not match the index table");
+        }
+        try {
+            Js5Compression.decompress(data);
+        } catch (IllegalArgumentException e) {
+            throw new CacheException("Failed to decompress group " + group.getId() + " of archive " + archiveId, e);
+        }
+        return data;
+    }
+
+    /**
+     * Decodes the specified raw index table data.
+     *
+     * @param archiveId the id of the archive which the index table belongs to.
+     * @param data      the raw data of the index table.
+     * @return the decoded {@link Index} object.
+     */
+    private static Index decode(int archiveId, byte[] data) {
+        Index index = new Index();
+        try {
+            index.decode(data);
+        } catch (RuntimeException e) {
+            throw new CacheException("Failed to decode the index table of archive " + archiveId, e);
+        }
+        return index;
+    }
+
+    /**
+     * Appends the version trailer of the Java file system to the specified container.
+     *
+     * @param data    the raw data of the container.
+     * @param version the version of the group.
+     * @return the container followed by the version trailer.
+     */
+    private static byte[] appendVersion(byte[] data, int version) {
+        int length = Js5Compression.getContainerLength(data);
+        byte[] output = new byte[length + 2];
+        System.arraycopy(data, 0, output, 0, length);
+        output[length] = (byte) (version >> 8);
+        output[length + 1] = (byte) version;
+        return output;
+    }
+
+    /**
+     * Converts the Java file system cache within the {@code source} directory into {@code .js5} pack files within the
+     * {@code target} directory.
+     *
+     * @param source      the directory of the Java file system cache.
+     * @param target      the directory which the pack files are written to.
+     * @param parallelism the amount of threads which the archives are converted and the groups are verified on.
+     * @param window      the maximum amount of groups of a single archive which are in flight at once.
+     * @param verify      whether or not the groups are verified against the index table.
+     * @return the {@link Report} of the conversion.
+     */
+    public static Report javaToPack(Path source, Path target, int parallelism, int window, boolean verify) {
+        CacheConverter converter = new CacheConverter(parallelism, window, verify);
+        try {
+            Files.createDirectories(target);
+        } catch (IOException e) {
+            throw new CacheException("Failed to create the target directory", e);
+        }
+        try (JavaFileSystemProvider provider = JavaFileSystemProvider.create(source)) {
+            List<Runnable> archives = new ArrayList<>();
+            for (int archiveId = 0; archiveId < MAX_ARCHIVES; archiveId++) {
+                FileSystem fs = provider.provide(archiveId);
+                byte[] indexData = fs != null ? fs.loadIndex() : null;
+                if (indexData == null) {
+                    continue;
+                }
+                int id = archiveId;
+                archives.add(() -> {
+                    Index index = decode(id, indexData);
+                    try (PackWriter writer = PackWriter.open(target.resolve(id + ".js5"), indexData)) {
+                        converter.pipeline(id, index, fs::loadGroup, (data, groupId) -> writer.write(groupId, data));
+                    }
+                });
+            }
+            return converter.run(archives);
+        }
+    }
+
+    /**
+     * Converts the {@code .js5} pack files within the {@code source} directory into a Java file system cache within
+     * the {@code target} directory, the cache files are created if they do not exist.
+     *
+     * @param source      the directory of the pack files.
+     * @param target      the directory of the Java file system cache.
+     * @param parallelism the amount of threads which the archives are converted and the groups are verified on.
+     * @param window      the maximum amount of groups of a single archive which are in flight at once.
+     * @param verify      whether or not the groups are verified against the index table.
+     * @return the {@link Report} of the conversion.
+     */
+    public static Report packToJava(Path source, Path target, int parallelism, int window, boolean verify) {
+        CacheConverter converter = new CacheConverter(parallelism, window, verify);
+        List<Integer> ids = new ArrayList<>();
+        try {
+            Files.createDirectories(target);
+            createIfMissing(target.resolve("main_file_cache.dat2"));
+            createIfMissing(target.resolve("main_file_cache.idx255"));
+            for (int archiveId = 0; archiveId < MAX_ARCHIVES; archiveId++) {
+                if (Files.exists(source.resolve(archiveId + ".js5"))) {
+                    createIfMissing(target.resolve("main_file_cache.idx" + archiveId));
+                    ids.add(archiveId);
+                }
+            }
+        } catch (IOException e) {
+            throw new CacheException("Failed to create the target cache files", e);
+        }
+        try (JavaFileSystemProvider provider = JavaFileSystemProvider.create(target)) {
+            List<Runnable> archives = new ArrayList<>(ids.size());
+            for (int id : ids) {
+                FileSystem fs = provider.provide(id);
+                archives.add(() -> {
+                    try (PackReader reader = PackReader.open(source.resolve(id + ".js5"))) {
+                        Group[] entries = reader.getIndex().getGroups();
+                        converter.pipeline(id, reader.getIndex(), groupId -> {
+                            byte[] data = reader.next();
+                            if (reader.getGroupId() != groupId) {
+                                throw new CacheException("The pack of archive " + id + " is out of order at group " + groupId);
+                            }
+                            return data;
+                        }, (data, groupId) -> fs.storeGroup(groupId, appendVersion(data, entries[groupId].getVersion())));
+                        fs.storeIndex(reader.getIndexData());
+                    }
+                });
+            }
+            return converter.run(archives);
+        }
+    }
+
+    /**
+     * Creates an empty file at the specified {@code path} if it does not exist.
+     *
+     * @param path the path of the file.
+     * @throws IOException if anything occurs while creating the file.
+     */
+    private static void createIfMissing(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            Files.createFile(path);
+        }
+    }
+
+    /**
+     * The report of a single conversion.
+     *
+     * @author Walied K. Yassen
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Report {
+
+        /**
+         * The amount of archives that were converted.
+         */
+        private final int archives;
+
+        /**
+         * The amount of groups that were converted.
+         */
+        private final long groups;
+
+        /**
+         * The amount of bytes that were converted.
+         */
+        private final long bytes;
+
+        /**
+         * The time the conversion took in nanoseconds.
+         */
+        private final long elapsed;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            double seconds = elapsed / 1e9;
+            return String.format("archives=%d groups=%d (%.0f/s) bytes=%d (%.1f MiB/s) elapsed=%.2fs",
+                    archives, groups, groups / seconds, bytes, bytes / seconds / (1 << 20), seconds);
+        }
+    }
+
+    /**
+     * Runs the converter.
+     * <p>
+     * Arguments: {@code <java-to-pack|pack-to-java> <source directory> <target directory> [parallelism] [window]
+     * [verify]}.
+     *
+     * @param args the arguments of the converter.
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: CacheConverter <java-to-pack|pack-to-java> <source directory> <target directory> [parallelism] [window] [verify]");
+            return;
+        }
+        Path source = Paths.get(args[1]);
+        Path target = Paths.get(args[2]);
+        int parallelism = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int window = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_WINDOW;
+        boolean verify = args.length > 5 && Boolean.parseBoolean(args[5]);
+        Report report;
+        switch (args[0]) {
+            case "java-to-pack":
+                report = javaToPack(source, target, parallelism, window, verify);
+                break;
+            case "pack-to-java":
+                report = packToJava(source, target, parallelism, window, verify);
+                break;
+            default:
+                System.err.println("Unknown conversion: " + args[0]);
+                return;
+        }
+        System.out.println(report);
+    }
+}
@@ -0,0 +1,212 @@
+package me.waliedyassen.cache.fs.java;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import static me.waliedyassen.cache.fs.java.JavaFileStore.DATA_BLOCK_SIZE;
+import static me.waliedyassen.cache.fs.java.JavaFileStore.LARGE_DATA_BLOCK_CONTENT_SIZE;
+import static me.waliedyassen.cache.fs.java.JavaFileStore.LARGE_DATA_BLOCK_HEADER_SIZE;
+import static me.waliedyassen.cache.fs.java.JavaFileStore.SMALL_DATA_BLOCK_CONTENT_SIZE;
+import static me.waliedyassen.cache.fs.java.JavaFileStore.SMALL_DATA_BLOCK_HEADER_SIZE;
+
+/**
+ * An in-memory map of every block header within the data file. The map is built using a single sequential scan of the
+ * data file, after which the block chain of any group can be resolved without touching the disk.
+ *
+ * @author Walied K. Yassen
+ */
+public final class JavaBlockMap {
+
+    /**
+     * The amount of blocks we read from the data file at once while scanning.
+     */
+    private static final int SCAN_BLOCK_COUNT = 256;
+
+    /**
+     * The raw header data of all the blocks, each block occupies {@link JavaFileStore#LARGE_DATA_BLOCK_HEADER_SIZE}
+     * bytes regardless of which header type it actually uses.
+     */
+    private byte[] headers;
+
+    /**
+     * The amount of blocks that are currently in the data file.
+     */
+    private int blockCount;
+
+    /**
+     * Constructs a new {@link JavaBlockMap} type object instance.
+     *
+     * @param headers    the raw header data of all the blocks.
+     * @param blockCount the amount of blocks in the data file.
+     */
+    private JavaBlockMap(byte[] headers, int blockCount) {
+        this.headers = headers;
+        this.blockCount = blockCount;
+    }
+
+    /**
+     * Resolves the block chain of the group with the specified {@code groupId}.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group that we want to resolve the chain for.
+     * @param size      the size of the group data in bytes.
+     * @param block     the first block of the group chain.
+     * @return the blocks of the chain in order or {@code null} if the chain is not valid.
+     */
+    public int[] chain(int archiveId, int groupId, int size, int block) {
+        boolean large = groupId > 65535;
+        int contentSize = large ? LARGE_DATA_BLOCK_CONTENT_SIZE : SMALL_DATA_BLOCK_CONTENT_SIZE;
+        int[] chain = new int[(size + contentSize - 1) / contentSize];
+        for (int chunk = 0; chunk < chain.length; chunk++) {
+            if (block <= 0 || block >= blockCount) {
+                return null;
+            }
+            int pos = block * LARGE_DATA_BLOCK_HEADER_SIZE;
+            int myGroup;
+            int myChunk;
+            int myNextBlock;
+            int myIndex;
+            if (large) {
+                myGroup = g4(pos);
+                myChunk = g2(pos + 4);
+                myNextBlock = g3(pos + 6);
+                myIndex = g1(pos + 9);
+            } else {
+                myGroup = g2(pos);
+                myChunk = g2(pos + 2);
+                myNextBlock = g3(pos + 4);
+                myIndex = g1(pos + 7);
+            }
+            if (myGroup != groupId || myChunk != chunk || myIndex != archiveId) {
+                return null;
+            }
+            chain[chunk] = block;
+            block = myNextBlock;
+        }
+        return chain;
+    }
+
+    /**
+     * Returns the owner which the header of the specified {@code block} names, read using the header type of either
+     * the small or the large groups.
+     *
+     * @param block the block that we want the owner of.
+     * @param large whether or not the header is read as the header of a large group.
+     * @return the id of the archive shifted into the high 32 bits and the id of the group in the low 32 bits.
+     */
+    long getOwner(int block, boolean large) {
+        int pos = block * LARGE_DATA_BLOCK_HEADER_SIZE;
+        if (large) {
+            return (long) g1(pos + 9) << 32 | g4(pos) & 0xffffffffL;
+        }
+        return (long) g1(pos + 7) << 32 | g2(pos);
+    }
+
+    /**
+     * Updates the header of the specified {@code block} within the map, this should be called for every block header
+     * that gets written to the data file.
+     *
+     * @param block  the block which the header was written to.
+     * @param header the buffer which contains the header data.
+     * @param length the length of the header data.
+     */
+    void update(int block, byte[] header, int length) {
+        if (block >= blockCount) {
+            int capacity = headers.length / LARGE_DATA_BLOCK_HEADER_SIZE;
+            if (block >= capacity) {
+                headers = Arrays.copyOf(headers, Math.max(block + 1, capacity * 2) * LARGE_DATA_BLOCK_HEADER_SIZE);
+            }
+            blockCount = block + 1;
+        }
+        System.arraycopy(header, 0, headers, block * LARGE_DATA_BLOCK_HEADER_SIZE, length);
+    }
+
+    /**
+     * Returns the amount of blocks that are currently in the data file.
+     *
+     * @return the amount of blocks in the data file.
+     */
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Builds a {@link JavaBlockMap} by sequentially scanning the data file from the specified {@link FileChannel
+     * channel}, the data file is read front-to-back only once.
+     *
+     * @param channel the channel of the data file that we want to scan.
+     * @return the created {@link JavaBlockMap} object.
+     * @throws IOException if anything occurs while reading the data file.
+     */
+    public static JavaBlockMap scan(FileChannel channel) throws IOException {
+        long length = channel.size();
+        int blockCount = (int) ((length + DATA_BLOCK_SIZE - 1) / DATA_BLOCK_SIZE);
+        byte[] headers = new byte[blockCount * LARGE_DATA_BLOCK_HEADER_SIZE];
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BLOCK_COUNT * DATA_BLOCK_SIZE);
+        long position = 0;
+        int block = 0;
+        while (position < length) {
+            buffer.clear();
+            if (length - position < buffer.capacity()) {
+                buffer.limit((int) (length - position));
+            }
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                int count = Math.min(LARGE_DATA_BLOCK_HEADER_SIZE, buffer.remaining());
+                buffer.get(headers, block * LARGE_DATA_BLOCK_HEADER_SIZE, count);
+                buffer.position(Math.min(buffer.limit(), buffer.position() - count + DATA_BLOCK_SIZE));
+                block++;
+            }
+            position += buffer.limit();
+        }
+        return new JavaBlockMap(headers, blockCount);
+    }
+
+    /**
+     * Reads and returns a 8-bit integer value from the specified {@code position} in the headers.
+     *
+     * @param pos the position to read the 8-bit integer value from.
+     * @return the value that was read from the headers.
+     */
+    private int g1(int pos) {
+        return headers[pos] & 0xff;
+    }
+
+    /**
+     * Reads and returns a 16-bit integer value from the specified {@code position} in the headers.
+     *
+     * @param pos the position to read the 16-bit integer value from.
+     * @return the value that was read from the headers.
+     */
+    private int g2(int pos) {
+        return (g1(pos++) << 8) | g1(pos);
+    }
+
+    /**
+     * Reads and returns a 24-bit integer value from the specified {@code position} in the headers.
+     *
+     * @param pos the position to read the 24-bit integer value from.
+     * @return the value that was read from the headers.
+     */
+    private int g3(int pos) {
+        return (g1(pos++) << 16) | (g1(pos++) << 8) | g1(pos);
+    }
+
+    /**
+     * Reads and returns a 32-bit integer value from the specified {@code position} in the headers.
+     *
+     * @param pos the position to read the 32-bit integer value from.
+     * @return the value that was read from the headers.
+     */
+    private int g4(int pos) {
+        return (g1(pos++) << 24) | (g1(pos++) << 16) | (g1(pos++) << 8) | g1(pos);
+    }
+}
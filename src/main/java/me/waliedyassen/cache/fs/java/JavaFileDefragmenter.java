@@ -0,0 +1,203 @@
+package me.waliedyassen.cache.fs.java;
+
+import me.waliedyassen.cache.CacheException;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An offline defragmenter for the RuneScape Java Client file system. It rewrites the data file and all of the index
+ * files so the blocks of every group are contiguous and ordered by archive id then group id, which also drops all of
+ * the blocks that are no longer used by any group.
+ *
+ * @author Walied K. Yassen
+ */
+public final class JavaFileDefragmenter {
+
+    /**
+     * The suffix of the files we write the defragmented content to before they are swapped in.
+     */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * The name of the swap marker file, it lists the files which are swapped in and it is present for as long as the
+     * swap is in progress.
+     */
+    private static final String SWAP_MARKER = "main_file_cache.swap";
+
+    /**
+     * Produces a {@link JavaFragmentationReport} for the file system within the specified {@code directory}.
+     *
+     * @param directory the path of the directory that contains the file system.
+     * @return the created {@link JavaFragmentationReport} object.
+     */
+    public static JavaFragmentationReport analyze(Path directory) {
+        try (JavaFileSystemProvider provider = JavaFileSystemProvider.create(directory)) {
+            return analyze(provider);
+        }
+    }
+
+    /**
+     * Produces a {@link JavaFragmentationReport} for the specified {@link JavaFileSystemProvider provider}. This will
+     * enable the block map of the provider if it was not enabled already.
+     *
+     * @param provider the provider of the file system that we want to analyze.
+     * @return the created {@link JavaFragmentationReport} object.
+     */
+    public static JavaFragmentationReport analyze(JavaFileSystemProvider provider) {
+        if (provider.getBlockMap() == null) {
+            provider.enableBlockMap();
+        }
+        JavaBlockMap blockMap = provider.getBlockMap();
+        BitSet used = new BitSet(blockMap.getBlockCount());
+        int groupCount = 0;
+        long discontinuities = 0;
+        for (JavaFileStore store : provider.getStores()) {
+            int[] entries = store.loadEntries();
+            for (int groupId = 0; groupId < entries.length / 2; groupId++) {
+                int[] chain = blockMap.chain(store.getArchiveId(), groupId, entries[groupId * 2], entries[groupId * 2 + 1]);
+                if (chain == null) {
+                    continue;
+                }
+                groupCount++;
+                for (int index = 0; index < chain.length; index++) {
+                    used.set(chain[index]);
+                    if (index > 0 && chain[index] != chain[index - 1] + 1) {
+                        discontinuities++;
+                    }
+                }
+            }
+        }
+        return new JavaFragmentationReport(groupCount, blockMap.getBlockCount(), used.cardinality(), discontinuities);
+    }
+
+    /**
+     * Defragments the file system within the specified {@code directory}. The content is written to a fresh data file
+     * and fresh index files, then a swap marker which lists them is written before they are moved over the original
+     * files. If the swap is interrupted, the next {@link JavaFileSystemProvider} which opens the directory rolls it
+     * forward through {@link #recover(Path)}, so the index files never point into the wrong data file. The file system
+     * must not be opened by anyone else while it is being defragmented.
+     *
+     * @param directory the path of the directory that contains the file system.
+     * @return the {@link JavaFragmentationReport} of the file system before it was defragmented.
+     */
+    public static JavaFragmentationReport defragment(Path directory) {
+        List<String> swaps = new ArrayList<>();
+        JavaFragmentationReport report;
+        try (JavaFileSystemProvider provider = JavaFileSystemProvider.create(directory)) {
+            report = analyze(provider);
+            Path dataPath = directory.resolve("main_file_cache.dat2");
+            Path temporaryDataPath = dataPath.resolveSibling(dataPath.getFileName() + TEMPORARY_SUFFIX);
+            try (RandomAccessFile dataFile = new RandomAccessFile(temporaryDataPath.toFile(), "rw")) {
+                dataFile.setLength(0);
+                for (JavaFileStore store : provider.getStores()) {
+                    Path indexPath = directory.resolve("main_file_cache.idx" + store.getArchiveId());
+                    Path temporaryIndexPath = indexPath.resolveSibling(indexPath.getFileName() + TEMPORARY_SUFFIX);
+                    try (RandomAccessFile indexFile = new RandomAccessFile(temporaryIndexPath.toFile(), "rw")) {
+                        indexFile.setLength(0);
+                        JavaFileStore target = new JavaFileStore(store.getArchiveId(), dataFile, indexFile);
+                        int groupCount = store.getGroupCount();
+                        for (int groupId = 0; groupId < groupCount; groupId++) {
+                            byte[] data = store.load(groupId);
+                            if (data != null) {
+                                target.store(groupId, data);
+                            }
+                        }
+                        indexFile.getFD().sync();
+                    }
+                    swaps.add(indexPath.getFileName().toString());
+                }
+                dataFile.getFD().sync();
+            }
+            swaps.add(dataPath.getFileName().toString());
+        } catch (IOException e) {
+            throw new CacheException("Failed to write the defragmented file system", e);
+        }
+        try {
+            Path marker = directory.resolve(SWAP_MARKER);
+            Path temporaryMarker = marker.resolveSibling(marker.getFileName() + TEMPORARY_SUFFIX);
+            try (FileChannel channel = FileChannel.open(temporaryMarker, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(StandardCharsets.UTF_8.encode(String.join("\n", swaps)));
+                channel.force(true);
+            }
+            Files.move(temporaryMarker, marker, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(directory);
+            swap(directory, swaps);
+        } catch (IOException e) {
+            throw new CacheException("Failed to swap in the defragmented file system", e);
+        }
+        return report;
+    }
+
+    /**
+     * Rolls forward the swap of a defragmentation which was interrupted within the specified {@code directory}. This
+     * does nothing if there is no swap in progress.
+     *
+     * @param directory the path of the directory that contains the file system.
+     */
+    static void recover(Path directory) {
+        Path marker = directory.resolve(SWAP_MARKER);
+        if (!Files.exists(marker)) {
+            return;
+        }
+        try {
+            List<String> swaps = new ArrayList<>();
+            for (String name : Files.readAllLines(marker, StandardCharsets.UTF_8)) {
+                if (!name.isEmpty()) {
+                    swaps.add(name);
+                }
+            }
+            swap(directory, swaps);
+        } catch (IOException e) {
+            throw new CacheException("Failed to recover the interrupted defragmentation of the file system", e);
+        }
+    }
+
+    /**
+     * Moves the temporary file of each of the specified files over the file, then removes the swap marker. The files
+     * whose temporary file is no longer present were already moved.
+     *
+     * @param directory the path of the directory that contains the file system.
+     * @param swaps     the names of the files which are swapped in.
+     * @throws IOException if anything occurs while moving the files.
+     */
+    private static void swap(Path directory, List<String> swaps) throws IOException {
+        for (String name : swaps) {
+            Path path = directory.resolve(name);
+            Path temporaryPath = path.resolveSibling(name + TEMPORARY_SUFFIX);
+            if (Files.exists(temporaryPath)) {
+                Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        syncDirectory(directory);
+        Files.delete(directory.resolve(SWAP_MARKER));
+        syncDirectory(directory);
+    }
+
+    /**
+     * Flushes the entries of the specified {@code directory} to the disk, on the platforms which do not support
+     * syncing a directory this does nothing.
+     *
+     * @param directory the directory to sync.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // the platform does not support syncing a directory.
+        }
+    }
+
+    private JavaFileDefragmenter() {
+        // NOOP
+    }
+}
@@ -0,0 +1,131 @@
+package me.waliedyassen.cache.fs.java;
+
+import lombok.Getter;
+import me.waliedyassen.cache.CacheException;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The data file and the index files which were opened together by a {@link JavaFileSystemProvider}. When the files are
+ * replaced on the disk, the provider opens a new set of handles and retires the old set, which is closed once the last
+ * operation that acquired it has released it.
+ *
+ * @author Walied K. Yassen
+ */
+final class JavaFileHandles {
+
+    /**
+     * The index files which were opened along with the data file.
+     */
+    private final List<RandomAccessFile> indexFiles = new ArrayList<>();
+
+    /**
+     * The data file of the handles.
+     */
+    @Getter
+    private final RandomAccessFile dataFile;
+
+    /**
+     * The amount of operations which are currently using the handles.
+     */
+    private int users;
+
+    /**
+     * Whether or not the handles were retired.
+     */
+    private boolean retired;
+
+    /**
+     * Whether or not the handles were closed.
+     */
+    private boolean closed;
+
+    /**
+     * Constructs a new {@link JavaFileHandles} type object instance.
+     *
+     * @param dataFile the data file of the handles.
+     */
+    JavaFileHandles(RandomAccessFile dataFile) {
+        this.dataFile = dataFile;
+    }
+
+    /**
+     * Adds the specified index file to the handles, so it is closed along with the data file.
+     *
+     * @param indexFile the index file that we want to add.
+     */
+    synchronized void add(RandomAccessFile indexFile) {
+        indexFiles.add(indexFile);
+    }
+
+    /**
+     * Acquires the handles for a single operation, which must be followed by a call to {@link #release()}.
+     *
+     * @return <code>true</code> if the handles were acquired or <code>false</code> if they were retired.
+     */
+    synchronized boolean acquire() {
+        if (retired) {
+            return false;
+        }
+        users++;
+        return true;
+    }
+
+    /**
+     * Releases the handles after an operation which acquired them, the handles are closed if they were retired and
+     * this was the last operation which was using them.
+     *
+     * @throws CacheException if anything occurs while closing the files.
+     */
+    void release() {
+        synchronized (this) {
+            if (--users > 0 || !retired) {
+                return;
+            }
+        }
+        close();
+    }
+
+    /**
+     * Retires the handles, so they can no longer be acquired, the handles are closed right away if no operation is
+     * using them otherwise they are closed once the last operation released them.
+     *
+     * @throws CacheException if anything occurs while closing the files.
+     */
+    void retire() {
+        synchronized (this) {
+            retired = true;
+            if (users > 0) {
+                return;
+            }
+        }
+        close();
+    }
+
+    /**
+     * Closes the data file and all of the index files of the handles.
+     *
+     * @throws CacheException if anything occurs while closing the files.
+     */
+    private void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        synchronized (dataFile) {
+            try {
+                for (RandomAccessFile indexFile : indexFiles) {
+                    indexFile.close();
+                }
+                dataFile.close();
+            } catch (IOException e) {
+                throw new CacheException("Failed to close the file system", e);
+            }
+        }
+    }
+}
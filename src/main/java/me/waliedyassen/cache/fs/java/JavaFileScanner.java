@@ -0,0 +1,220 @@
+package me.waliedyassen.cache.fs.java;
+
+import lombok.RequiredArgsConstructor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static me.waliedyassen.cache.fs.java.JavaFileStore.DATA_BLOCK_SIZE;
+import static me.waliedyassen.cache.fs.java.JavaFileStore.LARGE_DATA_BLOCK_HEADER_SIZE;
+import static me.waliedyassen.cache.fs.java.JavaFileStore.SMALL_DATA_BLOCK_HEADER_SIZE;
+
+/**
+ * Reads the data file front-to-back exactly once and reassembles the group data from the interleaved blocks using the
+ * block headers. Groups are handed to the consumer in the order in which their last block appears on the disk.
+ * <p>
+ * Chains which link back to a block we have already passed cannot be completed sequentially, and neither can chains
+ * which claim a block that another chain already claimed, those groups are loaded through their {@link JavaFileStore}
+ * after the scan is done. The data of a group is only allocated once its first block is reached, so the scan only
+ * holds the groups which are in progress.
+ *
+ * @author Walied K. Yassen
+ */
+@RequiredArgsConstructor
+final class JavaFileScanner {
+
+    /**
+     * The amount of blocks we read from the data file at once.
+     */
+    private static final int SCAN_BLOCK_COUNT = 2048;
+
+    /**
+     * The channel of the data file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The file stores of all the archives we want to scan the groups for.
+     */
+    private final List<JavaFileStore> stores;
+
+    /**
+     * The groups that start at a specific block.
+     */
+    private final Map<Integer, Assembly> starts = new HashMap<>();
+
+    /**
+     * The groups that are waiting for a specific block.
+     */
+    private final Map<Integer, Assembly> expected = new HashMap<>();
+
+    /**
+     * The groups that link back to a block we have already passed.
+     */
+    private final List<Assembly> deferred = new ArrayList<>();
+
+    /**
+     * Scans the data file and passes each of the completed groups to the specified {@link JavaGroupConsumer consumer}.
+     *
+     * @param consumer the consumer which will receive the groups.
+     * @throws IOException if anything occurs while reading the data file.
+     */
+    void scan(JavaGroupConsumer consumer) throws IOException {
+        long length = channel.size();
+        int blockCount = (int) ((length + DATA_BLOCK_SIZE - 1) / DATA_BLOCK_SIZE);
+        for (JavaFileStore store : stores) {
+            int[] entries = store.loadEntries();
+            for (int groupId = 0; groupId < entries.length / 2; groupId++) {
+                int size = entries[groupId * 2];
+                int block = entries[groupId * 2 + 1];
+                if (block <= 0 || block >= blockCount) {
+                    continue;
+                }
+                if (size == 0) {
+                    consumer.accept(store.getArchiveId(), groupId, new byte[0]);
+                    continue;
+                }
+                claim(starts, block, new Assembly(store, groupId, size));
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BLOCK_COUNT * DATA_BLOCK_SIZE);
+        long position = 0;
+        int block = 0;
+        while (position < length) {
+            buffer.clear();
+            if (length - position < buffer.capacity()) {
+                buffer.limit((int) (length - position));
+            }
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            for (int pos = 0; pos < buffer.limit(); pos += DATA_BLOCK_SIZE, block++) {
+                Assembly assembly = expected.remove(block);
+                if (assembly != null) {
+                    append(assembly, block, buffer, pos, consumer);
+                }
+                assembly = starts.remove(block);
+                if (assembly != null) {
+                    append(assembly, block, buffer, pos, consumer);
+                }
+            }
+            position += buffer.limit();
+        }
+        for (Assembly assembly : deferred) {
+            byte[] data = assembly.store.load(assembly.groupId);
+            if (data != null) {
+                consumer.accept(assembly.store.getArchiveId(), assembly.groupId, data);
+            }
+        }
+    }
+
+    /**
+     * Claims the specified {@code block} for the specified {@link Assembly}, if the block was already claimed by another
+     * assembly the new assembly is deferred rather than replacing the one which claimed the block first.
+     *
+     * @param claims   the claims of the blocks.
+     * @param block    the block number.
+     * @param assembly the assembly which claims the block.
+     */
+    private void claim(Map<Integer, Assembly> claims, int block, Assembly assembly) {
+        if (claims.putIfAbsent(block, assembly) != null) {
+            deferred.add(assembly);
+        }
+    }
+
+    /**
+     * Appends the content of the block at the specified {@code pos} to the specified {@link Assembly}.
+     *
+     * @param assembly the assembly of the group which the block should belong to.
+     * @param block    the block number.
+     * @param buffer   the buffer which contains the block data.
+     * @param pos      the position of the block within the buffer.
+     * @param consumer the consumer to pass the group to if it was completed.
+     */
+    private void append(Assembly assembly, int block, ByteBuffer buffer, int pos, JavaGroupConsumer consumer) {
+        boolean large = assembly.groupId > 65535;
+        int headerSize = large ? LARGE_DATA_BLOCK_HEADER_SIZE : SMALL_DATA_BLOCK_HEADER_SIZE;
+        int count = Math.min(DATA_BLOCK_SIZE - headerSize, assembly.size - assembly.offset);
+        if (pos + headerSize + count > buffer.limit()) {
+            return;
+        }
+        int myGroup;
+        int myChunk;
+        int myNextBlock;
+        int myIndex;
+        if (large) {
+            myGroup = buffer.getInt(pos);
+            myChunk = buffer.getShort(pos + 4) & 0xffff;
+            myNextBlock = (buffer.get(pos + 6) & 0xff) << 16 | buffer.getShort(pos + 7) & 0xffff;
+            myIndex = buffer.get(pos + 9) & 0xff;
+        } else {
+            myGroup = buffer.getShort(pos) & 0xffff;
+            myChunk = buffer.getShort(pos + 2) & 0xffff;
+            myNextBlock = (buffer.get(pos + 4) & 0xff) << 16 | buffer.getShort(pos + 5) & 0xffff;
+            myIndex = buffer.get(pos + 7) & 0xff;
+        }
+        if (myGroup != assembly.groupId || myChunk != assembly.chunk || myIndex != assembly.store.getArchiveId()) {
+            return;
+        }
+        if (assembly.data == null) {
+            assembly.data = new byte[assembly.size];
+        }
+        System.arraycopy(buffer.array(), pos + headerSize, assembly.data, assembly.offset, count);
+        assembly.offset += count;
+        assembly.chunk++;
+        if (assembly.offset == assembly.size) {
+            consumer.accept(assembly.store.getArchiveId(), assembly.groupId, assembly.data);
+        } else if (myNextBlock <= block) {
+            deferred.add(assembly);
+        } else {
+            claim(expected, myNextBlock, assembly);
+        }
+    }
+
+    /**
+     * The state of a group which is being reassembled from the blocks.
+     *
+     * @author Walied K. Yassen
+     */
+    @RequiredArgsConstructor
+    private static final class Assembly {
+
+        /**
+         * The file store which the group belongs to.
+         */
+        private final JavaFileStore store;
+
+        /**
+         * The id of the group.
+         */
+        private final int groupId;
+
+        /**
+         * The size of the group data.
+         */
+        private final int size;
+
+        /**
+         * The data of the group, it is allocated once the first block of the group is reached.
+         */
+        private byte[] data;
+
+        /**
+         * The amount of bytes we have reassembled so far.
+         */
+        private int offset;
+
+        /**
+         * The next chunk number we expect.
+         */
+        private int chunk;
+    }
+}
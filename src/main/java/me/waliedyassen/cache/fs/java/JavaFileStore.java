@@ -2,10 +2,16 @@ package me.waliedyassen.cache.fs.java;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.metrics.CacheMetrics;
 
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 /**
  * The RuneScape Client file store implementation. This is based on the implementation RuneScape have in the client.
@@ -18,7 +24,7 @@ public final class JavaFileStore {
     /**
      * The data file block size.
      */
-    private static final int DATA_BLOCK_SIZE = 520;
+    static final int DATA_BLOCK_SIZE = 520;
 
     /**
      * The index file block size.
@@ -53,6 +59,7 @@ public final class JavaFileStore {
     /**
      * The archive id this file store is for.
      */
+    @Getter
     private final int archiveId;
 
     /**
@@ -67,10 +74,52 @@ public final class JavaFileStore {
     @Getter
     private final RandomAccessFile indexFile;
 
+    /**
+     * The block map of the data file, when present the group block chains are resolved from memory.
+     */
+    @Getter
+    @Setter
+    private JavaBlockMap blockMap;
+
+    /**
+     * The free-space map of the data file, when present new blocks are allocated from it and the blocks which are
+     * no longer used by the group chains are released to it. This requires the block map to be present.
+     */
+    @Getter
+    @Setter
+    private JavaFreeBlocks freeBlocks;
+
+    /**
+     * The metrics listener which the group reads are reported to.
+     */
+    @Getter
+    @Setter
+    private CacheMetrics metrics = CacheMetrics.NONE;
+
     /**
      * {@inheritDoc}
      */
     public byte[] load(int groupId) {
+        CacheMetrics metrics = this.metrics;
+        if (!metrics.isEnabled()) {
+            return read(groupId);
+        }
+        metrics.onGroupReadStarted(archiveId, groupId);
+        long start = System.nanoTime();
+        byte[] data = read(groupId);
+        if (data != null) {
+            metrics.onGroupRead(archiveId, groupId, data.length, getBlockCount(groupId, data.length), System.nanoTime() - start);
+        }
+        return data;
+    }
+
+    /**
+     * Reads the data of the group with the specified {@code groupId} from the data file.
+     *
+     * @param groupId the id of the group that we want to read.
+     * @return the data of the group or {@code null} if the group is not present or the chain is not valid.
+     */
+    private byte[] read(int groupId) {
         synchronized (dataFile) {
             try {
                 if (indexFile.length() < groupId * INDEX_BLOCK_SIZE + INDEX_BLOCK_SIZE) {
@@ -86,6 +135,9 @@ public final class JavaFileStore {
                 if (block <= 0 || block > dataFile.length() / DATA_BLOCK_SIZE) {
                     return null;
                 }
+                if (blockMap != null) {
+                    return load(groupId, size, block);
+                }
                 byte[] data = new byte[size];
                 int offset = 0;
                 int chunk = 0;
@@ -143,122 +195,359 @@ public final class JavaFileStore {
     }
 
     /**
-     * {@inheritDoc}
+     * Loads the data of the group with the specified {@code groupId} using the block map. Each run of adjacent blocks
+     * in the chain is read using a single scattering read, which places the content of the blocks directly into the
+     * group data.
+     *
+     * @param groupId the id of the group that we want to load.
+     * @param size    the size of the group data.
+     * @param block   the first block of the group chain.
+     * @return the data of the group or {@code null} if the chain is not valid.
+     * @throws IOException if anything occurs while reading from the data file.
+     */
+    private byte[] load(int groupId, int size, int block) throws IOException {
+        int[] chain = blockMap.chain(archiveId, groupId, size, block);
+        if (chain == null) {
+            return null;
+        }
+        int headerSize = groupId > 65535 ? LARGE_DATA_BLOCK_HEADER_SIZE : SMALL_DATA_BLOCK_HEADER_SIZE;
+        int contentSize = DATA_BLOCK_SIZE - headerSize;
+        FileChannel channel = dataFile.getChannel();
+        byte[] data = new byte[size];
+        int offset = 0;
+        int index = 0;
+        while (index < chain.length) {
+            int end = index + 1;
+            while (end < chain.length && chain[end] == chain[end - 1] + 1) {
+                end++;
+            }
+            ByteBuffer[] buffers = new ByteBuffer[(end - index) * 2];
+            for (int buffer = 0; buffer < buffers.length; buffer += 2) {
+                int count = Math.min(contentSize, size - offset);
+                buffers[buffer] = ByteBuffer.wrap(BUFFER, 0, headerSize);
+                buffers[buffer + 1] = ByteBuffer.wrap(data, offset, count);
+                offset += count;
+            }
+            channel.position((long) chain[index] * DATA_BLOCK_SIZE);
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                if (channel.read(buffers) < 0) {
+                    throw new EOFException();
+                }
+            }
+            index = end;
+        }
+        return data;
+    }
+
+    /**
+     * Returns the amount of blocks the chain of a group with the specified {@code groupId} and {@code size} occupies.
+     *
+     * @param groupId the id of the group.
+     * @param size    the size of the group data.
+     * @return the amount of blocks in the chain.
+     */
+    static int getBlockCount(int groupId, int size) {
+        int contentSize = groupId > 65535 ? LARGE_DATA_BLOCK_CONTENT_SIZE : SMALL_DATA_BLOCK_CONTENT_SIZE;
+        return Math.max(1, (size + contentSize - 1) / contentSize);
+    }
+
+    /**
+     * Stores the data of the group with the specified {@code groupId} to the data and the index files.
+     *
+     * @param groupId the id of the group that we want to store.
+     * @param data    the data of the group.
+     * @throws CacheException if anything occurs while writing to the files.
      */
     public void store(int groupId, byte[] data) {
+        try {
+            write(groupId, data);
+        } catch (IOException e) {
+            throw new CacheException("Failed to store group " + groupId + " of archive " + archiveId, e);
+        }
+    }
+
+    /**
+     * Writes the data of the group with the specified {@code groupId} to the data and the index files.
+     *
+     * @param groupId the id of the group that we want to store.
+     * @param data    the data of the group.
+     * @throws IOException if anything occurs while writing to the files.
+     */
+    void write(int groupId, byte[] data) throws IOException {
+        if (freeBlocks != null) {
+            storeTracked(groupId, data);
+            return;
+        }
         if (!store(groupId, data, true)) {
             store(groupId, data, false);
         }
     }
 
-    private boolean store(int groupId, byte[] data, boolean exists) {
+    /**
+     * Removes the group with the specified {@code groupId} from the index file. The blocks of the group chain are
+     * released to the free-space map if it is present.
+     *
+     * @param groupId the id of the group that we want to remove.
+     * @throws IOException if anything occurs while writing to the index file.
+     */
+    void remove(int groupId) throws IOException {
+        synchronized (dataFile) {
+            if (indexFile.length() < groupId * INDEX_BLOCK_SIZE + INDEX_BLOCK_SIZE) {
+                return;
+            }
+            if (freeBlocks != null) {
+                indexFile.seek(groupId * INDEX_BLOCK_SIZE);
+                indexFile.readFully(BUFFER, 0, INDEX_BLOCK_SIZE);
+                int[] chain = blockMap.chain(archiveId, groupId, g3(0), g3(3));
+                if (chain != null) {
+                    for (int block : chain) {
+                        freeBlocks.release(block);
+                    }
+                }
+            }
+            Arrays.fill(BUFFER, 0, INDEX_BLOCK_SIZE, (byte) 0);
+            indexFile.seek(groupId * INDEX_BLOCK_SIZE);
+            indexFile.write(BUFFER, 0, INDEX_BLOCK_SIZE);
+        }
+    }
+
+    /**
+     * Writes the data of the group with the specified {@code groupId} by following its existing chain, or by appending
+     * a new chain to the end of the data file.
+     *
+     * @param groupId the id of the group that we want to store.
+     * @param data    the data of the group.
+     * @param exists  whether or not the existing chain of the group should be followed.
+     * @return <code>true</code> if the group was written otherwise <code>false</code>.
+     * @throws IOException if anything occurs while writing to the files.
+     */
+    private boolean store(int groupId, byte[] data, boolean exists) throws IOException {
         synchronized (this.dataFile) {
-            try {
-                int block;
+            int block;
+            if (exists) {
+                if (indexFile.length() < groupId * INDEX_BLOCK_SIZE + INDEX_BLOCK_SIZE) {
+                    return false;
+                }
+                indexFile.seek(groupId * INDEX_BLOCK_SIZE);
+                indexFile.read(BUFFER, 0, INDEX_BLOCK_SIZE);
+                block = g3(3);
+                if (block <= 0 || block > dataFile.length() / DATA_BLOCK_SIZE) {
+                    return false;
+                }
+            } else {
+                block = (int) ((dataFile.length() + (DATA_BLOCK_SIZE - 1)) / DATA_BLOCK_SIZE);
+                if (block == 0) {
+                    block = 1;
+                }
+            }
+            p3(0, data.length);
+            p3(3, block);
+            indexFile.seek(groupId * INDEX_BLOCK_SIZE);
+            indexFile.write(BUFFER, 0, INDEX_BLOCK_SIZE);
+            int offset = 0;
+            int chunk = 0;
+            while (offset < data.length) {
+                int myNextBlock = 0;
                 if (exists) {
-                    if (indexFile.length() < groupId * INDEX_BLOCK_SIZE + INDEX_BLOCK_SIZE) {
-                        return false;
+                    dataFile.seek(block * DATA_BLOCK_SIZE);
+                    int myGroup;
+                    int myChunk;
+                    int myIndex;
+                    if (groupId > 65535) {
+                        try {
+                            dataFile.read(BUFFER, 0, LARGE_DATA_BLOCK_HEADER_SIZE);
+                        } catch (EOFException eof) {
+                            break;
+                        }
+                        myGroup = g4(0);
+                        myChunk = g2(4);
+                        myNextBlock = g3(6);
+                        myIndex = g1(9);
+                    } else {
+                        try {
+                            dataFile.read(BUFFER, 0, SMALL_DATA_BLOCK_HEADER_SIZE);
+                        } catch (EOFException eofexception) {
+                            break;
+                        }
+                        myGroup = g2(0);
+                        myChunk = g2(2);
+                        myNextBlock = g3(4);
+                        myIndex = g1(7);
                     }
-                    indexFile.seek(groupId * INDEX_BLOCK_SIZE);
-                    indexFile.read(BUFFER, 0, INDEX_BLOCK_SIZE);
-                    block = g3(3);
-                    if (block <= 0 || block > dataFile.length() / DATA_BLOCK_SIZE) {
+                    if (myGroup != groupId || myChunk != chunk || myIndex != archiveId) {
                         return false;
                     }
-                } else {
-                    block = (int) ((dataFile.length() + (DATA_BLOCK_SIZE - 1)) / DATA_BLOCK_SIZE);
-                    if (block == 0) {
-                        block = 1;
+                    if (myNextBlock < 0 || myNextBlock > dataFile.length() / DATA_BLOCK_SIZE) {
+                        return false;
                     }
                 }
-                p3(0, data.length);
-                p3(3, block);
-                indexFile.seek(groupId * INDEX_BLOCK_SIZE);
-                indexFile.write(BUFFER, 0, INDEX_BLOCK_SIZE);
-                int offset = 0;
-                int chunk = 0;
-                while (offset < data.length) {
-                    int myNextBlock = 0;
-                    if (exists) {
-                        dataFile.seek(block * DATA_BLOCK_SIZE);
-                        int myGroup;
-                        int myChunk;
-                        int myIndex;
-                        if (groupId > 65535) {
-                            try {
-                                dataFile.read(BUFFER, 0, LARGE_DATA_BLOCK_HEADER_SIZE);
-                            } catch (EOFException eof) {
-                                break;
-                            }
-                            myGroup = g4(0);
-                            myChunk = g2(4);
-                            myNextBlock = g3(6);
-                            myIndex = g1(9);
-                        } else {
-                            try {
-                                dataFile.read(BUFFER, 0, SMALL_DATA_BLOCK_HEADER_SIZE);
-                            } catch (EOFException eofexception) {
-                                break;
-                            }
-                            myGroup = g2(0);
-                            myChunk = g2(2);
-                            myNextBlock = g3(4);
-                            myIndex = g1(7);
-                        }
-                        if (myGroup != groupId || myChunk != chunk || myIndex != archiveId) {
-                            return false;
-                        }
-                        if (myNextBlock < 0 || myNextBlock > dataFile.length() / DATA_BLOCK_SIZE) {
-                            return false;
-                        }
-                    }
+                if (myNextBlock == 0) {
+                    exists = false;
+                    myNextBlock = (int) ((dataFile.length() + DATA_BLOCK_SIZE - 1) / DATA_BLOCK_SIZE);
                     if (myNextBlock == 0) {
-                        exists = false;
-                        myNextBlock = (int) ((dataFile.length() + DATA_BLOCK_SIZE - 1) / DATA_BLOCK_SIZE);
-                        if (myNextBlock == 0) {
-                            myNextBlock++;
-                        }
-                        if (myNextBlock == block) {
-                            myNextBlock++;
-                        }
+                        myNextBlock++;
                     }
-                    if (data.length - offset <= SMALL_DATA_BLOCK_CONTENT_SIZE) {
-                        myNextBlock = 0;
+                    if (myNextBlock == block) {
+                        myNextBlock++;
                     }
-                    if (groupId > 65535) {
-                        p4(0, groupId);
-                        p2(4, chunk);
-                        p3(6, myNextBlock);
-                        p1(9, archiveId);
-                        dataFile.seek(block * DATA_BLOCK_SIZE);
-                        dataFile.write(BUFFER, 0, LARGE_DATA_BLOCK_HEADER_SIZE);
-                        int numBytes = data.length - offset;
-                        if (numBytes > LARGE_DATA_BLOCK_CONTENT_SIZE) {
-                            numBytes = LARGE_DATA_BLOCK_CONTENT_SIZE;
-                        }
-                        dataFile.write(data, offset, numBytes);
-                        offset += numBytes;
-                    } else {
-                        p2(0, groupId);
-                        p2(2, chunk);
-                        p3(4, myNextBlock);
-                        p1(7, archiveId);
-                        dataFile.seek(block * DATA_BLOCK_SIZE);
-                        dataFile.write(BUFFER, 0, SMALL_DATA_BLOCK_HEADER_SIZE);
-                        int numBytes = data.length - offset;
-                        if (numBytes > SMALL_DATA_BLOCK_CONTENT_SIZE) {
-                            numBytes = SMALL_DATA_BLOCK_CONTENT_SIZE;
-                        }
-                        dataFile.write(data, offset, numBytes);
-                        offset += numBytes;
+                }
+                if (data.length - offset <= SMALL_DATA_BLOCK_CONTENT_SIZE) {
+                    myNextBlock = 0;
+                }
+                int myHeaderLength;
+                int numBytes = data.length - offset;
+                if (groupId > 65535) {
+                    p4(0, groupId);
+                    p2(4, chunk);
+                    p3(6, myNextBlock);
+                    p1(9, archiveId);
+                    myHeaderLength = LARGE_DATA_BLOCK_HEADER_SIZE;
+                    if (numBytes > LARGE_DATA_BLOCK_CONTENT_SIZE) {
+                        numBytes = LARGE_DATA_BLOCK_CONTENT_SIZE;
                     }
-                    block = myNextBlock;
-                    chunk++;
+                } else {
+                    p2(0, groupId);
+                    p2(2, chunk);
+                    p3(4, myNextBlock);
+                    p1(7, archiveId);
+                    myHeaderLength = SMALL_DATA_BLOCK_HEADER_SIZE;
+                    if (numBytes > SMALL_DATA_BLOCK_CONTENT_SIZE) {
+                        numBytes = SMALL_DATA_BLOCK_CONTENT_SIZE;
+                    }
+                }
+                if (blockMap != null) {
+                    blockMap.update(block, BUFFER, myHeaderLength);
+                }
+                System.arraycopy(data, offset, BUFFER, myHeaderLength, numBytes);
+                dataFile.seek(block * DATA_BLOCK_SIZE);
+                dataFile.write(BUFFER, 0, myHeaderLength + numBytes);
+                offset += numBytes;
+                block = myNextBlock;
+                chunk++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stores the data of the group with the specified {@code groupId} using the free-space map. The existing chain of
+     * the group is overwritten in place, any extra blocks are allocated from the free-space map and any blocks which
+     * are no longer needed are released back to it.
+     *
+     * @param groupId the id of the group that we want to store.
+     * @param data    the data of the group.
+     * @throws IOException if anything occurs while writing to the files.
+     */
+    private void storeTracked(int groupId, byte[] data) throws IOException {
+        synchronized (dataFile) {
+            int[] oldChain = null;
+            if (indexFile.length() >= groupId * INDEX_BLOCK_SIZE + INDEX_BLOCK_SIZE) {
+                indexFile.seek(groupId * INDEX_BLOCK_SIZE);
+                indexFile.readFully(BUFFER, 0, INDEX_BLOCK_SIZE);
+                oldChain = blockMap.chain(archiveId, groupId, g3(0), g3(3));
+            }
+            if (oldChain == null) {
+                oldChain = new int[0];
+            }
+            boolean large = groupId > 65535;
+            int headerSize = large ? LARGE_DATA_BLOCK_HEADER_SIZE : SMALL_DATA_BLOCK_HEADER_SIZE;
+            int contentSize = DATA_BLOCK_SIZE - headerSize;
+            int[] chain = new int[(data.length + contentSize - 1) / contentSize];
+            for (int chunk = 0; chunk < chain.length; chunk++) {
+                if (chunk < oldChain.length) {
+                    chain[chunk] = oldChain[chunk];
+                } else {
+                    chain[chunk] = freeBlocks.allocate(chunk > 0 ? chain[chunk - 1] : 0, chain.length - chunk);
+                }
+            }
+            for (int chunk = chain.length; chunk < oldChain.length; chunk++) {
+                freeBlocks.release(oldChain[chunk]);
+            }
+            p3(0, data.length);
+            p3(3, chain.length > 0 ? chain[0] : 1);
+            indexFile.seek(groupId * INDEX_BLOCK_SIZE);
+            indexFile.write(BUFFER, 0, INDEX_BLOCK_SIZE);
+            int offset = 0;
+            for (int chunk = 0; chunk < chain.length; chunk++) {
+                int myNextBlock = chunk + 1 < chain.length ? chain[chunk + 1] : 0;
+                if (large) {
+                    p4(0, groupId);
+                    p2(4, chunk);
+                    p3(6, myNextBlock);
+                    p1(9, archiveId);
+                } else {
+                    p2(0, groupId);
+                    p2(2, chunk);
+                    p3(4, myNextBlock);
+                    p1(7, archiveId);
+                }
+                int numBytes = Math.min(contentSize, data.length - offset);
+                System.arraycopy(data, offset, BUFFER, headerSize, numBytes);
+                dataFile.seek((long) chain[chunk] * DATA_BLOCK_SIZE);
+                dataFile.write(BUFFER, 0, headerSize + numBytes);
+                blockMap.update(chain[chunk], BUFFER, headerSize);
+                offset += numBytes;
+            }
+        }
+    }
+
+    /**
+     * Returns the first block of the chain of the group with the specified {@code groupId}.
+     *
+     * @param groupId the id of the group that we want the first block for.
+     * @return the first block of the group chain or {@code 0} if the group is not present.
+     */
+    public int getFirstBlock(int groupId) {
+        int[] entry = getEntry(groupId);
+        return entry == null ? 0 : entry[1];
+    }
+
+    /**
+     * Reads the entry of the group with the specified {@code groupId} from the index file.
+     *
+     * @param groupId the id of the group that we want the entry for.
+     * @return the size of the group data followed by the first block of the group chain, or {@code null} if the group
+     * is not present.
+     */
+    int[] getEntry(int groupId) {
+        synchronized (dataFile) {
+            try {
+                if (indexFile.length() < groupId * INDEX_BLOCK_SIZE + INDEX_BLOCK_SIZE) {
+                    return null;
+                }
+                indexFile.seek(groupId * INDEX_BLOCK_SIZE);
+                indexFile.readFully(BUFFER, 0, INDEX_BLOCK_SIZE);
+                return new int[]{g3(0), g3(3)};
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Loads all of the entries of the index file using a single read. Each entry occupies two slots in the returned
+     * array, the size of the group data followed by the first block of the group chain.
+     *
+     * @return the entries of the index file.
+     */
+    public int[] loadEntries() {
+        synchronized (dataFile) {
+            try {
+                int count = getGroupCount();
+                byte[] raw = new byte[count * INDEX_BLOCK_SIZE];
+                indexFile.seek(0);
+                indexFile.readFully(raw);
+                int[] entries = new int[count * 2];
+                for (int index = 0; index < count; index++) {
+                    int pos = index * INDEX_BLOCK_SIZE;
+                    entries[index * 2] = (raw[pos] & 0xff) << 16 | (raw[pos + 1] & 0xff) << 8 | raw[pos + 2] & 0xff;
+                    entries[index * 2 + 1] = (raw[pos + 3] & 0xff) << 16 | (raw[pos + 4] & 0xff) << 8 | raw[pos + 5] & 0xff;
                 }
-                return true;
+                return entries;
             } catch (IOException e) {
                 e.printStackTrace();
-                return false;
+                return new int[0];
             }
         }
     }
@@ -1,37 +1,121 @@
 package me.waliedyassen.cache.fs.java;
 
+import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import me.waliedyassen.cache.CacheException;
 import me.waliedyassen.cache.fs.FileSystem;
+import me.waliedyassen.cache.fs.IndexListeners;
+import me.waliedyassen.cache.fs.LoadPriority;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The RuneScape Java Client file system implementation.
+ * <p>
+ * Every operation acquires the {@link JavaFileHandles handles} which its file stores were opened with, so when the
+ * provider reopens the files, the operations which already started keep using the old handles until they finish.
  *
  * @author Walied K. Yassen
  */
-@RequiredArgsConstructor
 public final class JavaFileSystem implements FileSystem {
 
+    /**
+     * The groups which were stored but not committed yet, this is only used when the journal is present.
+     */
+    private final Map<Integer, byte[]> pendingGroups = new ConcurrentHashMap<>();
+
+    /**
+     * The index table which was stored but not committed yet, this is only used when the journal is present.
+     */
+    private final AtomicReference<byte[]> pendingIndex = new AtomicReference<>();
+
     /**
      * The id of the file store.
      */
     private final int id;
 
     /**
-     * The data file store.
+     * The file stores of the file system and the handles which they were opened with.
      */
-    private final JavaFileStore dataFs;
+    private volatile Stores stores;
 
     /**
-     * The master file store.
+     * The journal of the file system, when present all the stores are buffered until {@link #commit()} is called.
      */
-    private final JavaFileStore masterFs;
+    @Setter(AccessLevel.PACKAGE)
+    private JavaJournal journal;
+
+    /**
+     * The I/O scheduler of the file system, when present all the asynchronous loads are dispatched through it.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private JavaIoScheduler scheduler;
+
+    /**
+     * The listeners which are notified when the index table is stored.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private IndexListeners indexListeners;
+
+    /**
+     * Constructs a new {@link JavaFileSystem} type object instance.
+     *
+     * @param id       the id of the file store.
+     * @param dataFs   the data file store.
+     * @param masterFs the master file store.
+     */
+    public JavaFileSystem(int id, JavaFileStore dataFs, JavaFileStore masterFs) {
+        this(id, null, dataFs, masterFs);
+    }
+
+    /**
+     * Constructs a new {@link JavaFileSystem} type object instance.
+     *
+     * @param id       the id of the file store.
+     * @param handles  the handles which the file stores were opened with or {@code null} if they are not shared.
+     * @param dataFs   the data file store.
+     * @param masterFs the master file store.
+     */
+    JavaFileSystem(int id, JavaFileHandles handles, JavaFileStore dataFs, JavaFileStore masterFs) {
+        this.id = id;
+        stores = new Stores(handles, dataFs, masterFs);
+    }
 
     /**
      * {@inheritDoc}
      */
     @Override
     public void commit() {
-        // NOOP
+        if (journal == null) {
+            return;
+        }
+        Map<Integer, byte[]> groups = new HashMap<>(pendingGroups);
+        byte[] index = pendingIndex.get();
+        List<JavaJournal.Entry> entries = new ArrayList<>(groups.size() + 1);
+        Stores stores = acquire();
+        try {
+            for (Map.Entry<Integer, byte[]> entry : groups.entrySet()) {
+                entries.add(new JavaJournal.Entry(stores.dataFs, entry.getKey(), entry.getValue()));
+            }
+            if (index != null) {
+                entries.add(new JavaJournal.Entry(stores.masterFs, id, index));
+            }
+            journal.commit(entries);
+        } finally {
+            stores.release();
+        }
+        for (Map.Entry<Integer, byte[]> entry : groups.entrySet()) {
+            pendingGroups.remove(entry.getKey(), entry.getValue());
+        }
+        pendingIndex.compareAndSet(index, null);
     }
 
     /**
@@ -39,7 +123,50 @@ public final class JavaFileSystem implements FileSystem {
      */
     @Override
     public byte[] loadGroup(int id) {
-        return dataFs.load(id);
+        byte[] data = pendingGroups.get(id);
+        if (data != null) {
+            return data;
+        }
+        Stores stores = acquire();
+        try {
+            return stores.dataFs.load(id);
+        } finally {
+            stores.release();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<byte[]> loadGroupAsync(int id, Executor executor, LoadPriority priority) {
+        byte[] data = pendingGroups.get(id);
+        if (data != null) {
+            return CompletableFuture.completedFuture(data);
+        }
+        JavaIoScheduler scheduler = this.scheduler;
+        if (scheduler != null) {
+            Stores stores = acquire();
+            CompletableFuture<byte[]> future = scheduler.submit(stores.dataFs, id, priority, executor);
+            future.whenComplete((result, cause) -> stores.release());
+            return future;
+        }
+        return FileSystem.super.loadGroupAsync(id, executor, priority);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPosition(int id) {
+        Stores stores = acquire();
+        int block;
+        try {
+            block = stores.dataFs.getFirstBlock(id);
+        } finally {
+            stores.release();
+        }
+        return block <= 0 ? -1 : (long) block * JavaFileStore.DATA_BLOCK_SIZE;
     }
 
     /**
@@ -47,7 +174,16 @@ public final class JavaFileSystem implements FileSystem {
      */
     @Override
     public void storeGroup(int id, byte[] data) {
-        dataFs.store(id, data);
+        if (journal != null) {
+            pendingGroups.put(id, data);
+            return;
+        }
+        Stores stores = acquire();
+        try {
+            stores.dataFs.store(id, data);
+        } finally {
+            stores.release();
+        }
     }
 
     /**
@@ -55,7 +191,16 @@ public final class JavaFileSystem implements FileSystem {
      */
     @Override
     public byte[] loadIndex() {
-        return masterFs.load(id);
+        byte[] data = pendingIndex.get();
+        if (data != null) {
+            return data;
+        }
+        Stores stores = acquire();
+        try {
+            return stores.masterFs.load(id);
+        } finally {
+            stores.release();
+        }
     }
 
     /**
@@ -63,6 +208,92 @@ public final class JavaFileSystem implements FileSystem {
      */
     @Override
     public void storeIndex(byte[] data) {
-        masterFs.store(id, data);
+        if (journal != null) {
+            pendingIndex.set(data);
+        } else {
+            Stores stores = acquire();
+            try {
+                stores.masterFs.store(id, data);
+            } finally {
+                stores.release();
+            }
+        }
+        if (indexListeners != null) {
+            indexListeners.fire(id, data);
+        }
+    }
+
+    /**
+     * Replaces the file stores of the file system with the specified file stores which were reopened by the provider.
+     * The operations which already acquired the old file stores keep using them until they finish.
+     *
+     * @param handles  the handles which the file stores were opened with.
+     * @param dataFs   the data file store.
+     * @param masterFs the master file store.
+     */
+    void reopen(JavaFileHandles handles, JavaFileStore dataFs, JavaFileStore masterFs) {
+        stores = new Stores(handles, dataFs, masterFs);
+    }
+
+    /**
+     * Returns the current data file store.
+     *
+     * @return the data file store.
+     */
+    JavaFileStore getDataFs() {
+        return stores.dataFs;
+    }
+
+    /**
+     * Acquires the current file stores for a single operation, which must be followed by a call to
+     * {@link Stores#release()}.
+     *
+     * @return the acquired file stores.
+     * @throws CacheException if the file system was closed.
+     */
+    private Stores acquire() {
+        while (true) {
+            Stores stores = this.stores;
+            if (stores.handles == null || stores.handles.acquire()) {
+                return stores;
+            }
+            // the handles are only retired after the reopened stores were published, unless the provider was closed.
+            if (stores == this.stores) {
+                throw new CacheException("The file system is closed");
+            }
+        }
+    }
+
+    /**
+     * The file stores of a file system along with the handles which they were opened with.
+     *
+     * @author Walied K. Yassen
+     */
+    @RequiredArgsConstructor
+    private static final class Stores {
+
+        /**
+         * The handles which the file stores were opened with or {@code null} if they are not shared.
+         */
+        private final JavaFileHandles handles;
+
+        /**
+         * The data file store.
+         */
+        private final JavaFileStore dataFs;
+
+        /**
+         * The master file store.
+         */
+        private final JavaFileStore masterFs;
+
+        /**
+         * Releases the handles which the file stores were opened with.
+         */
+        void release() {
+            if (handles != null) {
+                handles.release();
+            }
+        }
     }
 }
@@ -1,24 +1,48 @@
 package me.waliedyassen.cache.fs.java;
 
+import lombok.Getter;
 import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.diff.CachePatch;
 import me.waliedyassen.cache.fs.FileSystem;
 import me.waliedyassen.cache.fs.FileSystemProvider;
+import me.waliedyassen.cache.fs.IndexListener;
+import me.waliedyassen.cache.fs.IndexListeners;
+import me.waliedyassen.cache.io.CRC;
+import me.waliedyassen.cache.metrics.CacheMetrics;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A {@link FileSystemProvider} implementation that provides {@link JavaFileSystem} objects.
+ * <p>
+ * The provider is guarded by its own monitor and the I/O on the data file is guarded by the monitor of the data file.
+ * Whenever both are needed, the monitor of the provider is always taken first and the monitor of the data file second,
+ * so nothing which holds the monitor of the data file may call back into the provider.
+ * <p>
+ * The data file and the index files are opened together as a single set of {@link JavaFileHandles handles}. When a
+ * refresh finds that the files were modified, a new set is opened and the old set is closed once the operations that
+ * were using it have finished, so files which were replaced on the disk are picked up as well.
  *
  * @author Walied K. Yasen
  */
-public final class JavaFileSystemProvider implements FileSystemProvider {
+public final class JavaFileSystemProvider implements FileSystemProvider, AutoCloseable {
 
     /**
      * A map of all the cached file store.
@@ -30,6 +54,16 @@ public final class JavaFileSystemProvider implements FileSystemProvider {
      */
     private final Set<Integer> erroneous = new HashSet<>();
 
+    /**
+     * Holds the ids of all the file systems which were removed by a patch since the previous refresh.
+     */
+    private final Set<Integer> removed = new HashSet<>();
+
+    /**
+     * The listeners which are notified when the index table of any of the file systems is stored.
+     */
+    private final IndexListeners indexListeners = new IndexListeners();
+
     /**
      * The path of the directory that contains the file system.
      */
@@ -40,11 +74,61 @@ public final class JavaFileSystemProvider implements FileSystemProvider {
      */
     private RandomAccessFile dataFile;
 
+    /**
+     * The handles of the data file and the index files which are currently open.
+     */
+    private JavaFileHandles handles;
+
+    /**
+     * The modification time and the size of the data file as of the last refresh.
+     */
+    private long[] dataStamp;
+
+    /**
+     * The modification time and the size of the master index file as of the last refresh.
+     */
+    private long[] masterStamp;
+
     /**
      * The file store of the master index.
      */
     private JavaFileStore masterFs;
 
+    /**
+     * The block map of the data file, this is only present if it was enabled through {@link #enableBlockMap()}.
+     */
+    @Getter
+    private JavaBlockMap blockMap;
+
+    /**
+     * The free-space map of the data file, this is only present if it was enabled through {@link #enableFreeBlocks()}.
+     */
+    @Getter
+    private JavaFreeBlocks freeBlocks;
+
+    /**
+     * The write-ahead journal of the file system.
+     */
+    private JavaJournal journal;
+
+    /**
+     * Whether or not the stores of the file systems are journaled.
+     */
+    private boolean journaled;
+
+    /**
+     * The I/O scheduler of the file systems, this is only present if it was enabled through {@link
+     * #enableScheduler(long, TimeUnit, int)}.
+     */
+    @Getter
+    private JavaIoScheduler scheduler;
+
+    /**
+     * The metrics listener which the file stores report their operations to.
+     */
+    @Getter
+    private CacheMetrics metrics = CacheMetrics.NONE;
+
     /**
      * Constructs a new {@link JavaFileSystemProvider} type object intance.
      *
@@ -65,6 +149,7 @@ public final class JavaFileSystemProvider implements FileSystemProvider {
         if (!Files.isDirectory(directory)) {
             throw CacheException.fileSystemInvalidDirectory();
         }
+        JavaFileDefragmenter.recover(directory);
         Path dataFilePath = directory.resolve("main_file_cache.dat2");
         if (!Files.exists(dataFilePath)) {
             throw CacheException.fileSystemInvalidDirectory();
@@ -73,19 +158,26 @@ public final class JavaFileSystemProvider implements FileSystemProvider {
         if (!Files.exists(masterFilePath)) {
             throw CacheException.fileSystemInvalidDirectory();
         }
-        try {
-            dataFile = new RandomAccessFile(dataFilePath.toAbsolutePath().toString(), "rw");
-        } catch (FileNotFoundException e) {
-            throw new CacheException("Data file not found", e);
-        }
-        masterFs = loadStore(255);
+        handles = open();
+        dataFile = handles.getDataFile();
+        masterFs = loadStore(handles, 255);
+        dataStamp = stamp(dataFilePath);
+        masterStamp = stamp(masterFilePath);
+        journal = new JavaJournal(directory.resolve("main_file_cache.wal"));
+        journal.replay(id -> {
+            if (id == 255) {
+                return masterFs;
+            }
+            JavaFileSystem fs = (JavaFileSystem) provide(id);
+            return fs != null ? fs.getDataFs() : null;
+        });
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public FileSystem provide(int id) {
+    public synchronized FileSystem provide(int id) {
         JavaFileSystem fs = cached.get(id);
         if (fs != null) {
             return fs;
@@ -93,36 +185,469 @@ public final class JavaFileSystemProvider implements FileSystemProvider {
         if (erroneous.contains(id)) {
             return null;
         }
-        JavaFileStore dataFs = loadStore(id);
+        JavaFileStore dataFs = loadStore(handles, id);
         if (dataFs == null) {
             erroneous.add(id);
             return null;
         }
-        fs = new JavaFileSystem(id, dataFs, masterFs);
+        fs = new JavaFileSystem(id, handles, dataFs, masterFs);
+        if (journaled) {
+            fs.setJournal(journal);
+        }
+        fs.setScheduler(scheduler);
+        fs.setIndexListeners(indexListeners);
         cached.put(id, fs);
         return fs;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void setMetrics(CacheMetrics metrics) {
+        this.metrics = metrics;
+        masterFs.setMetrics(metrics);
+        for (JavaFileSystem fs : cached.values()) {
+            fs.getDataFs().setMetrics(metrics);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addIndexListener(IndexListener listener) {
+        indexListeners.add(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeIndexListener(IndexListener listener) {
+        indexListeners.remove(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Once the data file or the master index file were modified, the files are reopened, so files which were replaced
+     * on the disk are picked up as well as files which were updated in place, every archive is reported as a candidate,
+     * and the block map and the free-space map are rebuilt if they are enabled. The index files which were created
+     * since the previous refresh are picked up as well, and the archives which were open but are no longer present are
+     * reported as well.
+     */
+    @Override
+    public synchronized int[] refresh() {
+        long[] data = stamp(directory.resolve("main_file_cache.dat2"));
+        long[] master = stamp(directory.resolve("main_file_cache.idx255"));
+        boolean modified = !Arrays.equals(data, dataStamp) || !Arrays.equals(master, masterStamp);
+        Set<Integer> opened = new HashSet<>(cached.keySet());
+        opened.addAll(removed);
+        removed.clear();
+        if (modified) {
+            reopen();
+        }
+        dataStamp = data;
+        masterStamp = master;
+        List<Integer> candidates = new ArrayList<>();
+        for (int id = 0; id < 255; id++) {
+            if (erroneous.contains(id) && Files.exists(directory.resolve("main_file_cache.idx" + id))) {
+                erroneous.remove(id);
+                candidates.add(id);
+            } else if (modified && (opened.contains(id) || !erroneous.contains(id) && Files.exists(directory.resolve("main_file_cache.idx" + id)))) {
+                candidates.add(id);
+            }
+        }
+        int[] ids = new int[candidates.size()];
+        for (int index = 0; index < ids.length; index++) {
+            ids[index] = candidates.get(index);
+        }
+        return ids;
+    }
+
+    /**
+     * Reopens the data file and the index files of all the file systems, the block map and the free-space map are
+     * rebuilt from the reopened data file if they are enabled. The old handles are retired, so they are closed once
+     * the operations which are still using them have finished.
+     */
+    private void reopen() {
+        JavaFileHandles reopened = open();
+        Map<Integer, JavaFileStore> stores = new HashMap<>();
+        JavaFileStore master = loadStore(reopened, 255);
+        if (master == null) {
+            reopened.retire();
+            throw new CacheException("Failed to reopen the master index file");
+        }
+        boolean mapped = blockMap != null;
+        boolean tracked = freeBlocks != null;
+        blockMap = null;
+        freeBlocks = null;
+        master.setBlockMap(null);
+        master.setFreeBlocks(null);
+        for (JavaFileSystem fs : cached.values()) {
+            int id = fs.getDataFs().getArchiveId();
+            JavaFileStore store = loadStore(reopened, id);
+            if (store != null) {
+                stores.put(id, store);
+            }
+        }
+        JavaFileHandles retired = handles;
+        handles = reopened;
+        dataFile = reopened.getDataFile();
+        masterFs = master;
+        for (Iterator<JavaFileSystem> iterator = cached.values().iterator(); iterator.hasNext(); ) {
+            JavaFileSystem fs = iterator.next();
+            JavaFileStore store = stores.get(fs.getDataFs().getArchiveId());
+            if (store != null) {
+                fs.reopen(reopened, store, master);
+            } else {
+                iterator.remove();
+                erroneous.add(fs.getDataFs().getArchiveId());
+            }
+        }
+        retired.retire();
+        if (mapped) {
+            enableBlockMap();
+        }
+        if (tracked) {
+            enableFreeBlocks();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyIndexChanged(int id, byte[] data) {
+        indexListeners.fire(id, data);
+    }
+
+    /**
+     * Enables the block map for all of the file stores of this provider. This performs a single sequential scan of the
+     * data file to build the map, after which the block chain of any group is resolved from memory and the group
+     * data is read using vectored reads instead of a dependent chain of seeks.
+     */
+    public synchronized void enableBlockMap() {
+        synchronized (dataFile) {
+            try {
+                blockMap = JavaBlockMap.scan(dataFile.getChannel());
+            } catch (IOException e) {
+                throw new CacheException("Failed to scan the data file", e);
+            }
+            masterFs.setBlockMap(blockMap);
+            for (JavaFileSystem fs : cached.values()) {
+                fs.getDataFs().setBlockMap(blockMap);
+            }
+        }
+    }
+
+    /**
+     * Enables the free-space tracking for all of the file stores of this provider. The free-space map is rebuilt from
+     * the block chains of all the archives, so this will enable the block map if it was not enabled already. Once it
+     * is enabled, groups which grow are extended using the free blocks before the data file is grown and the blocks
+     * which are no longer used by a group are released so they can be reused.
+     */
+    public synchronized void enableFreeBlocks() {
+        if (blockMap == null) {
+            enableBlockMap();
+        }
+        List<JavaFileStore> stores = getStores();
+        synchronized (dataFile) {
+            freeBlocks = JavaFreeBlocks.build(blockMap, stores);
+            for (JavaFileStore store : stores) {
+                store.setFreeBlocks(freeBlocks);
+            }
+        }
+    }
+
+    /**
+     * Enables the write-ahead journal for all of the file systems of this provider. Once it is enabled, the groups and
+     * the index tables that are stored are buffered until {@link FileSystem#commit()} is called, which writes them to
+     * the journal, applies them in block order and syncs the files to the disk once.
+     */
+    public synchronized void enableJournal() {
+        journaled = true;
+        for (JavaFileSystem fs : cached.values()) {
+            fs.setJournal(journal);
+        }
+    }
+
+    /**
+     * Enables the elevator-style I/O scheduler for the asynchronous group loads of all the file systems of this
+     * provider. Pending loads are collected for up to the specified maximum wait, then dispatched as a single batch
+     * sorted by their position within the data file.
+     *
+     * @param maxWait      the maximum amount of time a load waits for more loads to join its batch.
+     * @param unit         the time unit of the maximum wait.
+     * @param maxBatchSize the maximum amount of loads within a single batch.
+     */
+    public synchronized void enableScheduler(long maxWait, TimeUnit unit, int maxBatchSize) {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+        scheduler = new JavaIoScheduler(maxWait, unit, maxBatchSize);
+        for (JavaFileSystem fs : cached.values()) {
+            fs.setScheduler(scheduler);
+        }
+    }
+
+    /**
+     * Applies the specified {@link CachePatch patch} in place as a single journal transaction. The index table of
+     * every archive within the patch must match the index table which the patch was made from, otherwise nothing is
+     * written. The groups and the index tables are written in the order of their first block and the files are synced
+     * once, so only the blocks of the changed groups are ever touched. The index table of an archive which was removed
+     * is removed from the master index and the index file of the archive is deleted once the transaction was applied.
+     *
+     * @param patch the patch that we want to apply.
+     */
+    public void apply(CachePatch patch) {
+        List<JavaJournal.Entry> entries = new ArrayList<>(patch.getEntries().size());
+        JavaFileHandles handles = null;
+        try {
+            synchronized (this) {
+                handles = acquire();
+                for (CachePatch.Entry entry : patch.getEntries()) {
+                    if (!entry.isIndex()) {
+                        continue;
+                    }
+                    byte[] current = masterFs.load(entry.getGroupId());
+                    int crc = current != null ? CRC.compute(current) : 0;
+                    if (crc != entry.getBaseCrc()) {
+                        throw new CacheException("The index table of archive " + entry.getGroupId() + " does not match the base of the patch");
+                    }
+                }
+                for (CachePatch.Entry entry : patch.getEntries()) {
+                    if (entry.isRemoval()) {
+                        entries.add(new JavaJournal.Entry(masterFs, entry.getGroupId(), null));
+                        continue;
+                    }
+                    JavaFileStore store = entry.isIndex() ? masterFs : provideStore(entry.getArchiveId());
+                    entries.add(new JavaJournal.Entry(store, entry.getGroupId(), entry.getData()));
+                }
+            }
+            journal.commit(entries);
+        } finally {
+            if (handles != null) {
+                handles.release();
+            }
+        }
+        for (CachePatch.Entry entry : patch.getEntries()) {
+            if (entry.isRemoval()) {
+                remove(entry.getGroupId());
+            }
+        }
+        for (CachePatch.Entry entry : patch.getEntries()) {
+            if (entry.isIndex() && !entry.isRemoval()) {
+                indexListeners.fire(entry.getGroupId(), entry.getData());
+            }
+        }
+    }
+
+    /**
+     * Removes the file system of the archive with the specified {@code id} and deletes its index file. The index file
+     * stays open until the handles which it was opened with are closed.
+     *
+     * @param id the id of the archive.
+     */
+    private synchronized void remove(int id) {
+        if (cached.remove(id) != null) {
+            removed.add(id);
+        }
+        erroneous.add(id);
+        try {
+            Files.deleteIfExists(directory.resolve("main_file_cache.idx" + id));
+        } catch (IOException e) {
+            throw new CacheException("Failed to delete the index file of archive " + id, e);
+        }
+    }
+
+    /**
+     * Returns the file store of the archive with the specified {@code id}, the index file of the archive is created
+     * if it does not exist yet.
+     *
+     * @param id the id of the archive.
+     * @return the {@link JavaFileStore} of the archive.
+     */
+    private JavaFileStore provideStore(int id) {
+        JavaFileSystem fs = (JavaFileSystem) provide(id);
+        if (fs == null) {
+            try {
+                Files.createFile(directory.resolve("main_file_cache.idx" + id));
+            } catch (IOException e) {
+                throw new CacheException("Failed to create the index file of archive " + id, e);
+            }
+            erroneous.remove(id);
+            fs = (JavaFileSystem) provide(id);
+            if (fs == null) {
+                throw new CacheException("Failed to open the index file of archive " + id);
+            }
+        }
+        return fs.getDataFs();
+    }
+
+    /**
+     * Scans the whole data file front-to-back exactly once and passes the raw data of every group of every archive
+     * (including the master index) to the specified {@link JavaGroupConsumer consumer} in on-disk order.
+     *
+     * @param consumer the consumer which will receive the groups.
+     */
+    public void scan(JavaGroupConsumer consumer) {
+        JavaFileHandles handles;
+        List<JavaFileStore> stores;
+        synchronized (this) {
+            handles = acquire();
+            stores = getStores();
+        }
+        try {
+            new JavaFileScanner(handles.getDataFile().getChannel(), stores).scan(consumer);
+        } catch (IOException e) {
+            throw new CacheException("Failed to scan the data file", e);
+        } finally {
+            handles.release();
+        }
+    }
+
+    /**
+     * Scans the whole data file front-to-back exactly once and passes the raw data of every group to the specified
+     * {@link JavaGroupConsumer consumer} using the specified amount of threads. The amount of groups that are waiting
+     * for the consumer is bounded, so the scan is held back when the consumer is slower than the disk.
+     *
+     * @param consumer    the consumer which will receive the groups.
+     * @param parallelism the amount of threads which the consumer is called from.
+     */
+    public void scan(JavaGroupConsumer consumer, int parallelism) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        Semaphore pending = new Semaphore(parallelism * 2);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            scan((archiveId, groupId, data) -> {
+                pending.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        if (failure.get() == null) {
+                            consumer.accept(archiveId, groupId, data);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        pending.release();
+                    }
+                });
+            });
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure.get() != null) {
+            throw new CacheException("Failed to consume the scanned groups", failure.get());
+        }
+    }
+
+    /**
+     * Returns the file stores of all the available archives ordered by the archive id, the master index file store is
+     * always the last one.
+     *
+     * @return the list of the file stores.
+     */
+    synchronized List<JavaFileStore> getStores() {
+        List<JavaFileStore> stores = new ArrayList<>();
+        for (int id = 0; id < 255; id++) {
+            JavaFileSystem fs = (JavaFileSystem) provide(id);
+            if (fs != null) {
+                stores.add(fs.getDataFs());
+            }
+        }
+        stores.add(masterFs);
+        return stores;
+    }
+
+    /**
+     * Closes the data file and all of the index files that are opened by this provider. The files are closed once the
+     * operations which are still using them have finished.
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+        synchronized (this) {
+            handles.retire();
+        }
+    }
+
+    /**
+     * Acquires the handles which are currently open for a single operation, which must be followed by a call to
+     * {@link JavaFileHandles#release()}.
+     *
+     * @return the acquired handles.
+     * @throws CacheException if the provider was closed.
+     */
+    private synchronized JavaFileHandles acquire() {
+        if (!handles.acquire()) {
+            throw new CacheException("The file system is closed");
+        }
+        return handles;
+    }
+
+    /**
+     * Opens a new set of handles for the data file.
+     *
+     * @return the opened {@link JavaFileHandles} object.
+     */
+    private JavaFileHandles open() {
+        Path dataFilePath = directory.resolve("main_file_cache.dat2");
+        try {
+            return new JavaFileHandles(new RandomAccessFile(dataFilePath.toAbsolutePath().toString(), "rw"));
+        } catch (FileNotFoundException e) {
+            throw new CacheException("Data file not found", e);
+        }
+    }
+
     /**
      * Loads the {@link JavaFileStore} for the archive with the specified {@code id}.
      *
-     * @param id the id of archive that we want to load the file store for.
+     * @param handles the handles which the index file of the store is opened with.
+     * @param id      the id of archive that we want to load the file store for.
      * @return the loaded {@link JavaFileStore} if it exists othewrise {@code null}.
      */
-    private JavaFileStore loadStore(int id) {
+    private JavaFileStore loadStore(JavaFileHandles handles, int id) {
         Path idxFile = directory.resolve("main_file_cache.idx" + id);
         if (!Files.exists(idxFile)) {
             return null;
         }
         try {
             RandomAccessFile indexFile = new RandomAccessFile(idxFile.toString(), "rw");
-            return new JavaFileStore(id, dataFile, indexFile);
+            handles.add(indexFile);
+            JavaFileStore store = new JavaFileStore(id, handles.getDataFile(), indexFile);
+            store.setBlockMap(blockMap);
+            store.setFreeBlocks(freeBlocks);
+            store.setMetrics(metrics);
+            return store;
         } catch (Throwable e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * Returns the modification time and the size of the file at the specified {@code path}.
+     *
+     * @param path the path of the file.
+     * @return the modification time and the size of the file, or zeros if the file is not accessible.
+     */
+    private static long[] stamp(Path path) {
+        try {
+            return new long[]{Files.getLastModifiedTime(path).to(TimeUnit.NANOSECONDS), Files.size(path)};
+        } catch (IOException e) {
+            return new long[2];
+        }
+    }
+
     /**
      * Creates a new {@link JavaFileSystemProvider} type object.
      *
@@ -0,0 +1,62 @@
+package me.waliedyassen.cache.fs.java;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A report about how fragmented the data file of a {@link JavaFileSystemProvider} is.
+ *
+ * @author Walied K. Yassen
+ */
+@Getter
+@RequiredArgsConstructor
+public final class JavaFragmentationReport {
+
+    /**
+     * The amount of groups with a valid block chain.
+     */
+    private final int groupCount;
+
+    /**
+     * The total amount of blocks in the data file.
+     */
+    private final int blockCount;
+
+    /**
+     * The amount of blocks that are used by a valid block chain.
+     */
+    private final int usedBlockCount;
+
+    /**
+     * The total amount of chain discontinuities, a discontinuity is any block which is not directly followed by the
+     * next block of its chain.
+     */
+    private final long discontinuities;
+
+    /**
+     * Returns the average amount of discontinuities per group chain.
+     *
+     * @return the average amount of discontinuities.
+     */
+    public double getAverageDiscontinuities() {
+        return groupCount == 0 ? 0 : (double) discontinuities / groupCount;
+    }
+
+    /**
+     * Returns the amount of bytes in the data file that are not used by any valid block chain.
+     *
+     * @return the amount of dead bytes.
+     */
+    public long getDeadBytes() {
+        return (long) Math.max(0, blockCount - usedBlockCount - 1) * JavaFileStore.DATA_BLOCK_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("groups=%d, blocks=%d, used=%d, avg discontinuities=%.3f, dead bytes=%d", groupCount,
+                blockCount, usedBlockCount, getAverageDiscontinuities(), getDeadBytes());
+    }
+}
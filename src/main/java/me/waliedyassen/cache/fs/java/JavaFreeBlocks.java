@@ -0,0 +1,136 @@
+package me.waliedyassen.cache.fs.java;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A free-space map of the data file blocks which are not used by any group chain. Blocks are allocated from the
+ * map before the data file is grown, preferring runs of adjacent blocks so the chains stay contiguous.
+ *
+ * @author Walied K. Yassen
+ */
+public final class JavaFreeBlocks {
+
+    /**
+     * The blocks which are currently free.
+     */
+    private final BitSet free;
+
+    /**
+     * The first block past the end of the data file.
+     */
+    private int end;
+
+    /**
+     * Constructs a new {@link JavaFreeBlocks} type object instance.
+     *
+     * @param free the blocks which are currently free.
+     * @param end  the first block past the end of the data file.
+     */
+    private JavaFreeBlocks(BitSet free, int end) {
+        this.free = free;
+        this.end = end;
+    }
+
+    /**
+     * Allocates a single block. The block which directly follows the {@code previous} block is used if it is free,
+     * otherwise the first run of free blocks that can hold the remaining blocks of the chain, otherwise the first free
+     * block, and if there is no free block then the data file is grown.
+     *
+     * @param previous the previous block of the chain or {@code 0} if this is the first block.
+     * @param count    the amount of blocks the chain still needs including this one.
+     * @return the allocated block.
+     */
+    int allocate(int previous, int count) {
+        int block = -1;
+        if (previous > 0 && free.get(previous + 1)) {
+            block = previous + 1;
+        } else {
+            for (int start = free.nextSetBit(1); start >= 0; start = free.nextSetBit(start)) {
+                int stop = free.nextClearBit(start);
+                if (stop - start >= count) {
+                    block = start;
+                    break;
+                }
+                start = stop;
+            }
+            if (block == -1) {
+                block = free.nextSetBit(1);
+            }
+        }
+        if (block == -1) {
+            return end++;
+        }
+        free.clear(block);
+        return block;
+    }
+
+    /**
+     * Releases the specified {@code block} so it can be allocated again.
+     *
+     * @param block the block that we want to release.
+     */
+    void release(int block) {
+        if (block > 0 && block < end) {
+            free.set(block);
+        }
+    }
+
+    /**
+     * Returns the amount of blocks that are currently free.
+     *
+     * @return the amount of free blocks.
+     */
+    public int getFreeCount() {
+        return free.cardinality();
+    }
+
+    /**
+     * Builds the free-space map from the specified {@link JavaBlockMap block map} and the entries of the specified
+     * file stores, every block that is not part of a valid chain is considered free. The chain of a group which could
+     * not be resolved may still hold the data of the group, so its first block and every block whose header names the
+     * group stay reserved.
+     *
+     * @param blockMap the block map of the data file.
+     * @param stores   the file stores of all the archives that use the data file.
+     * @return the created {@link JavaFreeBlocks} object.
+     */
+    static JavaFreeBlocks build(JavaBlockMap blockMap, List<JavaFileStore> stores) {
+        int blockCount = blockMap.getBlockCount();
+        BitSet free = new BitSet(blockCount);
+        if (blockCount > 1) {
+            free.set(1, blockCount);
+        }
+        Set<Long> unresolved = new HashSet<>();
+        for (JavaFileStore store : stores) {
+            int[] entries = store.loadEntries();
+            for (int groupId = 0; groupId < entries.length / 2; groupId++) {
+                int size = entries[groupId * 2];
+                int first = entries[groupId * 2 + 1];
+                int[] chain = blockMap.chain(store.getArchiveId(), groupId, size, first);
+                if (chain == null) {
+                    if (size > 0 && first > 0) {
+                        unresolved.add((long) store.getArchiveId() << 32 | groupId & 0xffffffffL);
+                        if (first < blockCount) {
+                            free.clear(first);
+                        }
+                    }
+                    continue;
+                }
+                for (int block : chain) {
+                    free.clear(block);
+                }
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            for (int block = free.nextSetBit(1); block >= 0; block = free.nextSetBit(block + 1)) {
+                if (unresolved.contains(blockMap.getOwner(block, false)) || unresolved.contains(blockMap.getOwner(block, true))) {
+                    free.clear(block);
+                }
+            }
+        }
+        return new JavaFreeBlocks(free, blockCount);
+    }
+}
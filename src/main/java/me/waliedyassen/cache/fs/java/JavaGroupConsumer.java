@@ -0,0 +1,20 @@
+package me.waliedyassen.cache.fs.java;
+
+/**
+ * A consumer which receives the raw data of the groups produced by a {@link JavaFileSystemProvider#scan(JavaGroupConsumer)
+ * scan} of the data file.
+ *
+ * @author Walied K. Yassen
+ */
+@FunctionalInterface
+public interface JavaGroupConsumer {
+
+    /**
+     * Accepts the raw data of a single group.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @param data      the raw data of the group.
+     */
+    void accept(int archiveId, int groupId, byte[] data);
+}
@@ -0,0 +1,509 @@
+package me.waliedyassen.cache.fs.java;
+
+import lombok.RequiredArgsConstructor;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.fs.LoadPriority;
+import me.waliedyassen.cache.metrics.CacheMetrics;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static me.waliedyassen.cache.fs.java.JavaFileStore.DATA_BLOCK_SIZE;
+import static me.waliedyassen.cache.fs.java.JavaFileStore.LARGE_DATA_BLOCK_HEADER_SIZE;
+import static me.waliedyassen.cache.fs.java.JavaFileStore.SMALL_DATA_BLOCK_HEADER_SIZE;
+
+/**
+ * An elevator-style I/O scheduler for the group loads of a {@link JavaFileSystemProvider}. Pending loads are queued
+ * and dispatched in batches by a single thread, each batch is sorted by the starting block of the groups so the data
+ * file is read in a single sweep. Duplicate loads of the same group are merged, and when the block map is present the
+ * chains of all the groups in a batch are merged so adjacent blocks of different groups are read together.
+ * <p>
+ * Urgent loads are always dispatched before the prefetch loads.
+ *
+ * @author Walied K. Yassen
+ */
+public final class JavaIoScheduler implements AutoCloseable {
+
+    /**
+     * The urgent loads that are waiting to be dispatched.
+     */
+    private final Deque<Request> urgent = new ArrayDeque<>();
+
+    /**
+     * The prefetch loads that are waiting to be dispatched.
+     */
+    private final Deque<Request> prefetch = new ArrayDeque<>();
+
+    /**
+     * A scratch buffer which the block headers and the unused block tails are read into.
+     */
+    private final byte[] scratch = new byte[DATA_BLOCK_SIZE];
+
+    /**
+     * The maximum amount of time in nanoseconds a load waits for more loads to join its batch.
+     */
+    private final long maxWait;
+
+    /**
+     * The maximum amount of loads within a single batch.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * The thread which dispatches the batches.
+     */
+    private final Thread thread;
+
+    /**
+     * Whether or not the scheduler is still running.
+     */
+    private boolean running = true;
+
+    /**
+     * Constructs a new {@link JavaIoScheduler} type object instance.
+     *
+     * @param maxWait      the maximum amount of time a load waits for more loads to join its batch.
+     * @param unit         the time unit of the maximum wait.
+     * @param maxBatchSize the maximum amount of loads within a single batch.
+     * @throws CacheException if the maximum batch size is less than one.
+     */
+    public JavaIoScheduler(long maxWait, TimeUnit unit, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new CacheException("The maximum batch size must be at least one: " + maxBatchSize);
+        }
+        this.maxWait = unit.toNanos(maxWait);
+        this.maxBatchSize = maxBatchSize;
+        thread = new Thread(this::run, "cache-io-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Submits a load of the group with the specified {@code groupId} from the specified {@link JavaFileStore store}.
+     *
+     * @param store    the file store which the group belongs to.
+     * @param groupId  the id of the group that we want to load.
+     * @param priority the priority of the load.
+     * @param executor the executor which the load is completed on.
+     * @return a {@link CompletableFuture} which completes with the raw data of the group or {@code null}.
+     */
+    public CompletableFuture<byte[]> submit(JavaFileStore store, int groupId, LoadPriority priority, Executor executor) {
+        Request request = new Request(store, groupId, executor, System.nanoTime());
+        synchronized (this) {
+            if (!running) {
+                request.future.completeExceptionally(new CacheException("The I/O scheduler is closed"));
+                return request.future;
+            }
+            (priority == LoadPriority.URGENT ? urgent : prefetch).add(request);
+            notifyAll();
+        }
+        return request.future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        shutdown("The I/O scheduler is closed");
+    }
+
+    /**
+     * Stops the scheduler and fails all of the loads which are still waiting to be dispatched.
+     *
+     * @param message the message of the exception which the pending loads are failed with.
+     */
+    private void shutdown(String message) {
+        List<Request> remaining = new ArrayList<>();
+        synchronized (this) {
+            running = false;
+            remaining.addAll(urgent);
+            remaining.addAll(prefetch);
+            urgent.clear();
+            prefetch.clear();
+            notifyAll();
+        }
+        for (Request request : remaining) {
+            request.future.completeExceptionally(new CacheException(message));
+        }
+    }
+
+    /**
+     * The main loop of the dispatcher thread. If the thread is interrupted, the scheduler is stopped and the loads
+     * which are still waiting to be dispatched are failed, so no caller is left waiting on a future forever.
+     */
+    private void run() {
+        while (true) {
+            List<Request> urgentBatch = new ArrayList<>();
+            List<Request> prefetchBatch = new ArrayList<>();
+            boolean interrupted = false;
+            synchronized (this) {
+                try {
+                    while (running && urgent.isEmpty() && prefetch.isEmpty()) {
+                        wait();
+                    }
+                    if (!running) {
+                        return;
+                    }
+                    long deadline = oldest() + maxWait;
+                    long remaining;
+                    while (running && urgent.size() + prefetch.size() < maxBatchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                shutdown("The I/O scheduler was interrupted");
+                return;
+            }
+            synchronized (this) {
+                if (!running) {
+                    return;
+                }
+                while (!urgent.isEmpty() && urgentBatch.size() < maxBatchSize) {
+                    urgentBatch.add(urgent.poll());
+                }
+                while (!prefetch.isEmpty() && urgentBatch.size() + prefetchBatch.size() < maxBatchSize) {
+                    prefetchBatch.add(prefetch.poll());
+                }
+            }
+            dispatchSafely(urgentBatch);
+            dispatchSafely(prefetchBatch);
+        }
+    }
+
+    /**
+     * Dispatches the specified batch of {@link Request requests}, any failure which escapes the dispatch fails the
+     * requests of the batch which were not completed yet instead of killing the dispatcher thread.
+     *
+     * @param requests the requests that we want to dispatch.
+     */
+    private void dispatchSafely(List<Request> requests) {
+        try {
+            dispatch(requests);
+        } catch (Throwable e) {
+            for (Request request : requests) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the time at which the oldest pending load was submitted.
+     *
+     * @return the submission time of the oldest pending load.
+     */
+    private long oldest() {
+        if (urgent.isEmpty()) {
+            return prefetch.peek().time;
+        }
+        if (prefetch.isEmpty()) {
+            return urgent.peek().time;
+        }
+        return Math.min(urgent.peek().time, prefetch.peek().time);
+    }
+
+    /**
+     * Dispatches the specified batch of {@link Request requests}, the requests are split by the data file of their
+     * file store, since the stores of a reopened provider no longer share the data file with the old stores.
+     *
+     * @param requests the requests that we want to dispatch.
+     */
+    private void dispatch(List<Request> requests) {
+        Map<RandomAccessFile, List<Request>> files = new IdentityHashMap<>();
+        for (Request request : requests) {
+            files.computeIfAbsent(request.store.getDataFile(), file -> new ArrayList<>()).add(request);
+        }
+        for (Map.Entry<RandomAccessFile, List<Request>> entry : files.entrySet()) {
+            dispatch(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Dispatches the specified batch of {@link Request requests} which all belong to the specified data file.
+     *
+     * @param dataFile the data file which the requests belong to.
+     * @param requests the requests that we want to dispatch.
+     */
+    private void dispatch(RandomAccessFile dataFile, List<Request> requests) {
+        Map<Long, Read> merged = new LinkedHashMap<>();
+        for (Request request : requests) {
+            long key = (long) request.store.getArchiveId() << 32 | request.groupId;
+            merged.computeIfAbsent(key, k -> new Read(request.store, request.groupId)).requests.add(request);
+        }
+        List<Read> reads = new ArrayList<>(merged.values());
+        try {
+            synchronized (dataFile) {
+                for (Read read : reads) {
+                    int[] entry = read.store.getEntry(read.groupId);
+                    if (entry != null) {
+                        read.size = entry[0];
+                        read.block = entry[1];
+                    }
+                }
+                reads.sort(Comparator.comparingInt(read -> read.block));
+                started(reads);
+                long start = System.nanoTime();
+                int mapped = read(dataFile, reads);
+                report(reads, mapped, System.nanoTime() - start);
+            }
+            for (Read read : reads) {
+                for (Request request : read.requests) {
+                    complete(request, () -> request.future.complete(read.data));
+                }
+            }
+        } catch (Throwable e) {
+            for (Read read : reads) {
+                for (Request request : read.requests) {
+                    complete(request, () -> request.future.completeExceptionally(e));
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the specified completion of the specified {@link Request request} on the executor of the request, or on the
+     * dispatcher thread if the executor rejects it, so the future of the request is always completed.
+     *
+     * @param request    the request which is completed.
+     * @param completion the completion of the request.
+     */
+    private static void complete(Request request, Runnable completion) {
+        try {
+            request.executor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            completion.run();
+        }
+    }
+
+    /**
+     * Reports the start of the reads of a batch to the metrics listener of their file store.
+     *
+     * @param reads the reads of the batch.
+     */
+    private static void started(List<Read> reads) {
+        for (Read read : reads) {
+            CacheMetrics metrics = read.store.getMetrics();
+            if (metrics.isEnabled()) {
+                metrics.onGroupReadStarted(read.store.getArchiveId(), read.groupId);
+            }
+        }
+    }
+
+    /**
+     * Reports the reads of a batch that were performed through the block map to the metrics listener of their file
+     * store. The reads are merged together, so the time of the batch is divided evenly between them. The reads which
+     * were loaded through the file store are already reported by it.
+     *
+     * @param reads  the reads of the batch.
+     * @param mapped the amount of reads that were performed through the block map.
+     * @param nanos  the time it took to perform all of the reads in nanoseconds.
+     */
+    private static void report(List<Read> reads, int mapped, long nanos) {
+        if (mapped == 0) {
+            return;
+        }
+        for (Read read : reads) {
+            CacheMetrics metrics = read.store.getMetrics();
+            if (!read.mapped || read.data == null || !metrics.isEnabled()) {
+                continue;
+            }
+            metrics.onGroupRead(read.store.getArchiveId(), read.groupId, read.size, JavaFileStore.getBlockCount(read.groupId, read.size), nanos / mapped);
+        }
+    }
+
+    /**
+     * Reads the data of all the specified {@link Read reads} which are sorted by their first block. The chains of the
+     * groups which can be resolved from the block map are merged together, and each run of adjacent blocks is read
+     * using a single scattering read. Every other group is loaded through its file store.
+     *
+     * @param dataFile the data file which all of the groups are stored in.
+     * @param reads    the reads that we want to perform.
+     * @return the amount of reads that were performed through the block map.
+     * @throws IOException if anything occurs while reading from the data file.
+     */
+    private int read(RandomAccessFile dataFile, List<Read> reads) throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        int mapped = 0;
+        for (Read read : reads) {
+            if (read.block <= 0) {
+                continue;
+            }
+            JavaBlockMap blockMap = read.store.getBlockMap();
+            if (blockMap == null) {
+                read.data = read.store.load(read.groupId);
+                continue;
+            }
+            int[] chain = blockMap.chain(read.store.getArchiveId(), read.groupId, read.size, read.block);
+            if (chain == null) {
+                continue;
+            }
+            read.data = new byte[read.size];
+            read.mapped = true;
+            mapped++;
+            int headerSize = read.groupId > 65535 ? LARGE_DATA_BLOCK_HEADER_SIZE : SMALL_DATA_BLOCK_HEADER_SIZE;
+            int contentSize = DATA_BLOCK_SIZE - headerSize;
+            for (int chunk = 0; chunk < chain.length; chunk++) {
+                int offset = chunk * contentSize;
+                segments.add(new Segment(chain[chunk], read.data, headerSize, offset, Math.min(contentSize, read.size - offset)));
+            }
+        }
+        segments.sort(Comparator.comparingInt(segment -> segment.block));
+        FileChannel channel = dataFile.getChannel();
+        int index = 0;
+        while (index < segments.size()) {
+            int end = index + 1;
+            while (end < segments.size() && segments.get(end).block == segments.get(end - 1).block + 1) {
+                end++;
+            }
+            List<ByteBuffer> buffers = new ArrayList<>();
+            for (int current = index; current < end; current++) {
+                Segment segment = segments.get(current);
+                buffers.add(ByteBuffer.wrap(scratch, 0, segment.headerSize));
+                buffers.add(ByteBuffer.wrap(segment.data, segment.offset, segment.count));
+                int padding = DATA_BLOCK_SIZE - segment.headerSize - segment.count;
+                if (current + 1 < end && padding > 0) {
+                    buffers.add(ByteBuffer.wrap(scratch, 0, padding));
+                }
+            }
+            ByteBuffer[] array = buffers.toArray(new ByteBuffer[0]);
+            channel.position((long) segments.get(index).block * DATA_BLOCK_SIZE);
+            while (array[array.length - 1].hasRemaining()) {
+                if (channel.read(array) < 0) {
+                    throw new EOFException();
+                }
+            }
+            index = end;
+        }
+        return mapped;
+    }
+
+    /**
+     * A single group load request.
+     *
+     * @author Walied K. Yassen
+     */
+    @RequiredArgsConstructor
+    private static final class Request {
+
+        /**
+         * The future which is completed with the group data.
+         */
+        private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+        /**
+         * The file store which the group belongs to.
+         */
+        private final JavaFileStore store;
+
+        /**
+         * The id of the group.
+         */
+        private final int groupId;
+
+        /**
+         * The executor which the future is completed on.
+         */
+        private final Executor executor;
+
+        /**
+         * The time at which the request was submitted.
+         */
+        private final long time;
+    }
+
+    /**
+     * A single group read which is shared by all the requests for the same group within a batch.
+     *
+     * @author Walied K. Yassen
+     */
+    @RequiredArgsConstructor
+    private static final class Read {
+
+        /**
+         * The requests which are waiting for this read.
+         */
+        private final List<Request> requests = new ArrayList<>();
+
+        /**
+         * The file store which the group belongs to.
+         */
+        private final JavaFileStore store;
+
+        /**
+         * The id of the group.
+         */
+        private final int groupId;
+
+        /**
+         * The size of the group data.
+         */
+        private int size;
+
+        /**
+         * The first block of the group chain.
+         */
+        private int block;
+
+        /**
+         * Whether or not the group was read through the block map.
+         */
+        private boolean mapped;
+
+        /**
+         * The data of the group.
+         */
+        private byte[] data;
+    }
+
+    /**
+     * A single block of a group chain.
+     *
+     * @author Walied K. Yassen
+     */
+    @RequiredArgsConstructor
+    private static final class Segment {
+
+        /**
+         * The block number.
+         */
+        private final int block;
+
+        /**
+         * The data of the group which the block content is read into.
+         */
+        private final byte[] data;
+
+        /**
+         * The size of the block header.
+         */
+        private final int headerSize;
+
+        /**
+         * The offset of the block content within the group data.
+         */
+        private final int offset;
+
+        /**
+         * The size of the block content.
+         */
+        private final int count;
+    }
+}
@@ -0,0 +1,251 @@
+package me.waliedyassen.cache.fs.java;
+
+import lombok.RequiredArgsConstructor;
+import me.waliedyassen.cache.CacheException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A write-ahead journal for the RuneScape Java Client file system. A transaction is first written to the journal file
+ * and synced to the disk, then it is applied to the data and the index files in block order, which are synced once,
+ * and only then the journal file is cleared. A transaction which is still in the journal file when the file system is
+ * opened is applied again, so a crash in the middle of applying a transaction never leaves a broken chain behind. A
+ * transaction which failed to apply is kept in the journal file and is applied again before the next one is written.
+ *
+ * @author Walied K. Yassen
+ */
+@RequiredArgsConstructor
+final class JavaJournal {
+
+    /**
+     * The magic number which every transaction in the journal file starts with.
+     */
+    private static final int MAGIC = 0x4A35574C;
+
+    /**
+     * The size of the buffer we use when reading or writing the journal file.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * The path of the journal file.
+     */
+    private final Path path;
+
+    /**
+     * The transaction which is in the journal file but failed to apply or {@code null} if there is none.
+     */
+    private List<Entry> pending;
+
+    /**
+     * Commits the specified list of {@link Entry entries} as a single transaction.
+     *
+     * @param entries the entries of the transaction.
+     * @throws CacheException if the transaction or the transaction which failed before it could not be applied.
+     */
+    synchronized void commit(List<Entry> entries) {
+        try {
+            if (pending != null) {
+                apply(pending);
+                clear();
+                pending = null;
+            }
+        } catch (IOException e) {
+            throw new CacheException("Failed to apply the previous journal transaction", e);
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            write(entries);
+        } catch (IOException e) {
+            throw new CacheException("Failed to write the journal transaction", e);
+        }
+        try {
+            apply(entries);
+            clear();
+        } catch (IOException e) {
+            pending = entries;
+            throw new CacheException("Failed to apply the journal transaction", e);
+        }
+    }
+
+    /**
+     * Replays the transaction which is left in the journal file if there is any. A transaction which was not fully
+     * written to the journal file was never applied, so it is discarded.
+     *
+     * @param stores a function which returns the file store of the archive with the specified id.
+     */
+    synchronized void replay(IntFunction<JavaFileStore> stores) {
+        try {
+            if (!Files.exists(path) || Files.size(path) == 0) {
+                return;
+            }
+            List<Entry> entries = read(stores);
+            if (entries != null) {
+                apply(entries);
+            }
+            clear();
+        } catch (IOException e) {
+            throw new CacheException("Failed to replay the journal transaction", e);
+        }
+    }
+
+    /**
+     * Writes the specified transaction {@link Entry entries} to the journal file and syncs it to the disk.
+     *
+     * @param entries the entries of the transaction.
+     * @throws IOException if anything occurs while writing the journal file.
+     */
+    private void write(List<Entry> entries) throws IOException {
+        try (FileOutputStream stream = new FileOutputStream(path.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeByte(entry.store.getArchiveId());
+                out.writeInt(entry.groupId);
+                if (entry.data == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                out.writeInt(entry.data.length);
+                out.write(entry.data);
+            }
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            stream.getFD().sync();
+        }
+    }
+
+    /**
+     * Reads the transaction {@link Entry entries} from the journal file.
+     *
+     * @param stores a function which returns the file store of the archive with the specified id.
+     * @return the entries of the transaction or {@code null} if the transaction is not complete.
+     * @throws IOException if anything occurs while reading the journal file.
+     */
+    private List<Entry> read(IntFunction<JavaFileStore> stores) throws IOException {
+        try (InputStream stream = Files.newInputStream(path)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(stream, BUFFER_SIZE), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int index = 0; index < count; index++) {
+                JavaFileStore store = stores.apply(in.readUnsignedByte());
+                int groupId = in.readInt();
+                int length = in.readInt();
+                byte[] data = null;
+                if (length != -1) {
+                    data = new byte[length];
+                    in.readFully(data);
+                }
+                if (store != null) {
+                    entries.add(new Entry(store, groupId, data));
+                }
+            }
+            int checksum = (int) checked.getChecksum().getValue();
+            if (in.readInt() != checksum) {
+                return null;
+            }
+            return entries;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies the specified transaction {@link Entry entries} in the order of their first block, then syncs the data
+     * files and all of the index files that were modified to the disk.
+     *
+     * @param entries the entries of the transaction.
+     * @throws IOException if anything occurs while writing or syncing the files.
+     */
+    private void apply(List<Entry> entries) throws IOException {
+        List<Entry> sorted = new ArrayList<>(entries);
+        Map<Entry, Long> blocks = new IdentityHashMap<>();
+        for (Entry entry : sorted) {
+            int block = entry.store.getFirstBlock(entry.groupId);
+            blocks.put(entry, block <= 0 ? Long.MAX_VALUE : block);
+        }
+        sorted.sort(Comparator.comparing(blocks::get));
+        Map<JavaFileStore, Boolean> stores = new IdentityHashMap<>();
+        for (Entry entry : sorted) {
+            if (entry.data == null) {
+                entry.store.remove(entry.groupId);
+            } else {
+                entry.store.write(entry.groupId, entry.data);
+            }
+            stores.put(entry.store, Boolean.TRUE);
+        }
+        Map<RandomAccessFile, Boolean> dataFiles = new IdentityHashMap<>();
+        for (JavaFileStore store : stores.keySet()) {
+            RandomAccessFile dataFile = store.getDataFile();
+            synchronized (dataFile) {
+                if (dataFiles.put(dataFile, Boolean.TRUE) == null) {
+                    dataFile.getFD().sync();
+                }
+                store.getIndexFile().getFD().sync();
+            }
+        }
+    }
+
+    /**
+     * Clears the content of the journal file.
+     *
+     * @throws IOException if anything occurs while truncating the journal file.
+     */
+    private void clear() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(0);
+            file.getFD().sync();
+        }
+    }
+
+    /**
+     * A single group write within a journal transaction.
+     *
+     * @author Walied K. Yassen
+     */
+    @RequiredArgsConstructor
+    static final class Entry {
+
+        /**
+         * The file store which the group should be written to.
+         */
+        private final JavaFileStore store;
+
+        /**
+         * The id of the group.
+         */
+        private final int groupId;
+
+        /**
+         * The data of the group or {@code null} if the group is removed.
+         */
+        private final byte[] data;
+    }
+}
@@ -1,16 +1,16 @@
 package me.waliedyassen.cache.fs.pack;
 
+import lombok.RequiredArgsConstructor;
 import me.waliedyassen.cache.CacheException;
 import me.waliedyassen.cache.archive.Group;
-import me.waliedyassen.cache.archive.Index;
 import me.waliedyassen.cache.fs.FileSystem;
-import me.waliedyassen.cache.io.Packet;
+import me.waliedyassen.cache.fs.IndexListeners;
 
-import java.io.*;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a packed file system. The packed file system stores everything sequentially, the header contains the
@@ -27,14 +27,24 @@ public final class PackFileSystem implements FileSystem {
     private final Path path;
 
     /**
-     * The raw data of all the groups in the pack.
+     * The id of the archive which the file system is for or {@code -1} if it is not known.
      */
-    private byte[][] groupData;
+    private final int id;
 
     /**
-     * The raw data of the index table.
+     * The listeners which are notified when the index table is stored or {@code null}.
      */
-    private byte[] indexData;
+    private final IndexListeners indexListeners;
+
+    /**
+     * The raw data of the groups and the index table of the pack, both are always published together.
+     */
+    private volatile Content content;
+
+    /**
+     * The modification time and the size of the pack file when it was last read or written.
+     */
+    private long[] stamp;
 
     /**
      * Constructs a new {@link PackFileSystem} type object instance.
@@ -42,12 +52,51 @@ public final class PackFileSystem implements FileSystem {
      * @param path the path which leads to the file system.
      */
     public PackFileSystem(Path path) {
+        this(path, -1, null);
+    }
+
+    /**
+     * Constructs a new {@link PackFileSystem} type object instance.
+     *
+     * @param path           the path which leads to the file system.
+     * @param id             the id of the archive which the file system is for.
+     * @param indexListeners the listeners which are notified when the index table is stored.
+     */
+    PackFileSystem(Path path, int id, IndexListeners indexListeners) {
         this.path = path;
-        try (InputStream stream = Files.newInputStream(path, StandardOpenOption.READ)) {
-            read(new DataInputStream(stream));
-        } catch (IOException e) {
-            throw new CacheException("Failed to read .js5 pack content from the input stream", e);
+        this.id = id;
+        this.indexListeners = indexListeners;
+        read();
+    }
+
+    /**
+     * Reads the content of the pack file, the content is swapped in only once the whole pack was read.
+     */
+    private void read() {
+        long[] stamp = stamp(path);
+        try (PackReader reader = PackReader.open(path)) {
+            byte[][] groups = new byte[reader.getIndex().getGroups().length][];
+            byte[] data;
+            while ((data = reader.next()) != null) {
+                groups[reader.getGroupId()] = data;
+            }
+            content = new Content(groups, reader.getIndexData());
         }
+        this.stamp = stamp;
+    }
+
+    /**
+     * Reads the content of the pack file again if the file was modified since it was last read. The loads which are
+     * in progress keep the content they already started with.
+     *
+     * @return <code>true</code> if the content was read again otherwise <code>false</code>.
+     */
+    synchronized boolean reload() {
+        if (Arrays.equals(stamp, stamp(path))) {
+            return false;
+        }
+        read();
+        return true;
     }
 
     /**
@@ -55,10 +104,22 @@ public final class PackFileSystem implements FileSystem {
      */
     @Override
     public void commit() {
-        try (OutputStream stream = Files.newOutputStream(path, StandardOpenOption.WRITE)) {
-            write(new DataOutputStream(stream));
-        } catch (IOException e) {
-            throw new CacheException("Failed to write .js5 pack content to the output stream", e);
+        Content content = this.content;
+        byte[][] groupData = content.groups;
+        try (PackWriter writer = PackWriter.open(path, content.index)) {
+            Group[] groups = writer.getGroups();
+            for (int groupId = 0; groupId < groups.length; groupId++) {
+                if (groups[groupId] == null) {
+                    continue;
+                }
+                if (groupId >= groupData.length || groupData[groupId] == null) {
+                    throw new CacheException("The pack is missing the data of group " + groupId);
+                }
+                writer.write(groupId, groupData[groupId]);
+            }
+        }
+        synchronized (this) {
+            stamp = stamp(path);
         }
     }
 
@@ -67,6 +128,7 @@ public final class PackFileSystem implements FileSystem {
      */
     @Override
     public byte[] loadGroup(int id) {
+        byte[][] groupData = content.groups;
         if (id < 0 || id >= groupData.length) {
             return null;
         }
@@ -77,11 +139,13 @@ public final class PackFileSystem implements FileSystem {
      * {@inheritDoc}
      */
     @Override
-    public void storeGroup(int id, byte[] data) {
-        if (id >= groupData.length) {
-            groupData = Arrays.copyOf(groupData, id + 1);
+    public synchronized void storeGroup(int id, byte[] data) {
+        Content content = this.content;
+        if (id >= content.groups.length) {
+            content = new Content(Arrays.copyOf(content.groups, id + 1), content.index);
         }
-        groupData[id] = data;
+        content.groups[id] = data;
+        this.content = content;
     }
 
     /**
@@ -89,7 +153,7 @@ public final class PackFileSystem implements FileSystem {
      */
     @Override
     public byte[] loadIndex() {
-        return indexData;
+        return content.index;
     }
 
     /**
@@ -97,78 +161,44 @@ public final class PackFileSystem implements FileSystem {
      */
     @Override
     public void storeIndex(byte[] data) {
-        indexData = data;
-    }
-
-    /**
-     * Reads the content of the file system from the specified {@link DataInputStream stream}.
-     *
-     * @param stream the stream to read the content of the file system from.
-     * @throws IOException if anything occurs while reading the content of the input stream.
-     */
-    private void read(DataInputStream stream) throws IOException {
-        // Read the raw data of the index
-        indexData = readPackedChunk(stream);
-        // Decode an index table object from the data
-        Index index = new Index();
-        index.decode(indexData);
-        // Read teh raw data of the groups
-        final Group[] groups = index.getGroups();
-        for (int groupId = 0; groupId < groups.length; groupId++) {
-            Group group = groups[groupId];
-            if (group == null) {
-                continue;
-            }
-            groupData[groupId] = readPackedChunk(stream);
+        synchronized (this) {
+            content = new Content(content.groups, data);
+        }
+        if (indexListeners != null) {
+            indexListeners.fire(id, data);
         }
     }
 
     /**
-     * Reads a single packed group raw data from the specified {@link DataInputStream stream}.
+     * Returns the modification time and the size of the file at the specified {@code path}.
      *
-     * @param stream the stream to read the packed data from.
-     * @return the read packed data as a {@code byte[]} object..
-     * @throws IOException if anything occurs while reading the packed group from the stream.
-     */
-    private byte[] readPackedChunk(DataInputStream stream) throws IOException {
-        int ctype = stream.read();
-        int clen = stream.readInt();
-        int len = clen;
-        if (ctype != 0) {
-            clen += 4;
-        }
-        Packet packet = new Packet(clen + 5);
-        packet.p1(ctype);
-        packet.p4(len);
-        for (; clen > 0x2000000; clen -= 0x2000000) {
-            stream.readFully(packet.data(), packet.pos(), 0x2000000);
-            packet.pos(packet.pos() + 0x2000000);
+     * @param path the path of the file.
+     * @return the modification time and the size of the file, or zeros if the file is not accessible.
+     */
+    static long[] stamp(Path path) {
+        try {
+            return new long[]{Files.getLastModifiedTime(path).to(TimeUnit.NANOSECONDS), Files.size(path)};
+        } catch (IOException e) {
+            return new long[2];
         }
-        stream.readFully(packet.data(), packet.pos(), clen);
-        return packet.data();
     }
 
     /**
-     * Writes the content of the file system to the specified {@link DataOutputStream stream}.
+     * The raw data of the groups and the index table of a pack.
      *
-     * @param stream the output stream to write the content of the file system to.
-     * @throws IOException if anything occurs while writing the content to the stream.
-     */
-    private void write(DataOutputStream stream) throws IOException {
-        // TODO: Find a better way to access the index, potentially share the
-        // index object between the file system and the archive.
-        Index index = new Index();
-        index.decode(indexData);
-        // Write the index raw data
-        stream.write(indexData);
-        // Write all of the groups raw data
-        final Group[] groups = index.getGroups();
-        for (int groupId = 0; groupId < groups.length; groupId++) {
-            Group group = groups[groupId];
-            if (group == null) {
-                continue;
-            }
-            stream.write(groupData[groupId]);
-        }
+     * @author Walied K. Yassen
+     */
+    @RequiredArgsConstructor
+    private static final class Content {
+
+        /**
+         * The raw data of all the groups in the pack.
+         */
+        private final byte[][] groups;
+
+        /**
+         * The raw data of the index table.
+         */
+        private final byte[] index;
     }
 }
@@ -3,11 +3,16 @@ package me.waliedyassen.cache.fs.pack;
 import lombok.RequiredArgsConstructor;
 import me.waliedyassen.cache.fs.FileSystem;
 import me.waliedyassen.cache.fs.FileSystemProvider;
+import me.waliedyassen.cache.fs.IndexListener;
+import me.waliedyassen.cache.fs.IndexListeners;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -29,6 +34,11 @@ public final class PackFileSystemProvider implements FileSystemProvider {
      */
     private final Set<Integer> erroneous = new HashSet<>();
 
+    /**
+     * The listeners which are notified when the index table of any of the file systems is stored.
+     */
+    private final IndexListeners indexListeners = new IndexListeners();
+
     /**
      * The path of the directory that contains the file system.
      */
@@ -38,7 +48,7 @@ public final class PackFileSystemProvider implements FileSystemProvider {
      * {@inheritDoc}
      */
     @Override
-    public FileSystem provide(int id) {
+    public synchronized FileSystem provide(int id) {
         PackFileSystem fs = cached.get(id);
         if (fs != null) {
             return fs;
@@ -51,11 +61,68 @@ public final class PackFileSystemProvider implements FileSystemProvider {
             erroneous.add(id);
             return null;
         }
-        fs = new PackFileSystem(file);
+        fs = new PackFileSystem(file, id, indexListeners);
         cached.put(id, fs);
         return fs;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addIndexListener(IndexListener listener) {
+        indexListeners.add(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeIndexListener(IndexListener listener) {
+        indexListeners.remove(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A pack which was modified since it was last read is read again in place, a pack which was removed is dropped,
+     * and a pack which was added is picked up by the next {@link #provide(int)} call.
+     */
+    @Override
+    public synchronized int[] refresh() {
+        List<Integer> candidates = new ArrayList<>();
+        for (Iterator<Map.Entry<Integer, PackFileSystem>> iterator = cached.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Integer, PackFileSystem> entry = iterator.next();
+            if (!Files.exists(directory.resolve(entry.getKey() + ".js5"))) {
+                iterator.remove();
+                erroneous.add(entry.getKey());
+                candidates.add(entry.getKey());
+            } else if (entry.getValue().reload()) {
+                candidates.add(entry.getKey());
+            }
+        }
+        for (Iterator<Integer> iterator = erroneous.iterator(); iterator.hasNext(); ) {
+            int id = iterator.next();
+            if (Files.exists(directory.resolve(id + ".js5"))) {
+                iterator.remove();
+                candidates.add(id);
+            }
+        }
+        int[] ids = new int[candidates.size()];
+        for (int index = 0; index < ids.length; index++) {
+            ids[index] = candidates.get(index);
+        }
+        return ids;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyIndexChanged(int id, byte[] data) {
+        indexListeners.fire(id, data);
+    }
+
     /**
      * Creates a new {@link PackFileSystemProvider} type object.
      *
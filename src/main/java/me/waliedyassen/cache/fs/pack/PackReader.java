@@ -0,0 +1,155 @@
+package me.waliedyassen.cache.fs.pack;
+
+import lombok.Getter;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.archive.Group;
+import me.waliedyassen.cache.archive.Index;
+import me.waliedyassen.cache.io.Packet;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A streaming reader of a {@code .js5} pack file. The index table is read when the reader is opened, then the groups
+ * are read one at a time in the order of their ids, so only a single group is ever held in memory.
+ *
+ * @author Walied K. Yassen
+ */
+public final class PackReader implements AutoCloseable {
+
+    /**
+     * The size of the buffer we use when reading the pack file.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * The maximum amount of bytes we read from the stream at once.
+     */
+    private static final int CHUNK_SIZE = 0x2000000;
+
+    /**
+     * The stream which the pack is read from.
+     */
+    private final DataInputStream stream;
+
+    /**
+     * The raw data of the index table.
+     */
+    @Getter
+    private final byte[] indexData;
+
+    /**
+     * The decoded index table.
+     */
+    @Getter
+    private final Index index;
+
+    /**
+     * The id of the group which will be read next.
+     */
+    private int position;
+
+    /**
+     * The id of the group which was read last or {@code -1} if none was read yet.
+     */
+    @Getter
+    private int groupId = -1;
+
+    /**
+     * Constructs a new {@link PackReader} type object instance.
+     *
+     * @param stream the stream which the pack is read from.
+     * @throws IOException if anything occurs while reading the index table.
+     */
+    private PackReader(DataInputStream stream) throws IOException {
+        this.stream = stream;
+        indexData = readChunk(stream);
+        index = new Index();
+        index.decode(indexData);
+    }
+
+    /**
+     * Reads the raw data of the next group within the pack.
+     *
+     * @return the raw data of the group or {@code null} if there are no more groups.
+     */
+    public byte[] next() {
+        Group[] groups = index.getGroups();
+        while (position < groups.length && groups[position] == null) {
+            position++;
+        }
+        if (position >= groups.length) {
+            return null;
+        }
+        try {
+            byte[] data = readChunk(stream);
+            groupId = position++;
+            return data;
+        } catch (IOException e) {
+            throw new CacheException("Failed to read group " + position + " from the pack", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            throw new CacheException("Failed to close the pack", e);
+        }
+    }
+
+    /**
+     * Reads a single packed container from the specified {@link DataInputStream stream}.
+     *
+     * @param stream the stream to read the packed container from.
+     * @return the read container.
+     * @throws IOException if anything occurs while reading the container from the stream.
+     */
+    static byte[] readChunk(DataInputStream stream) throws IOException {
+        int ctype = stream.readUnsignedByte();
+        int clen = stream.readInt();
+        int len = clen;
+        if (ctype != 0) {
+            clen += 4;
+        }
+        Packet packet = new Packet(clen + 5);
+        packet.p1(ctype);
+        packet.p4(len);
+        for (; clen > CHUNK_SIZE; clen -= CHUNK_SIZE) {
+            stream.readFully(packet.data(), packet.pos(), CHUNK_SIZE);
+            packet.pos(packet.pos() + CHUNK_SIZE);
+        }
+        stream.readFully(packet.data(), packet.pos(), clen);
+        return packet.data();
+    }
+
+    /**
+     * Opens a new {@link PackReader} for the pack file at the specified {@code path}.
+     *
+     * @param path the path of the pack file.
+     * @return the opened {@link PackReader} object.
+     */
+    public static PackReader open(Path path) {
+        DataInputStream stream = null;
+        try {
+            stream = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+            return new PackReader(stream);
+        } catch (IOException e) {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw new CacheException("Failed to open the pack " + path, e);
+        }
+    }
+}
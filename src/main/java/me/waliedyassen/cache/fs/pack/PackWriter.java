@@ -0,0 +1,158 @@
+package me.waliedyassen.cache.fs.pack;
+
+import lombok.Getter;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.archive.Group;
+import me.waliedyassen.cache.archive.Index;
+import me.waliedyassen.cache.compression.Js5Compression;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A streaming writer of a {@code .js5} pack file. The index table is written when the writer is opened, then the
+ * groups must be written one at a time in the order of their ids. The version trailer of the containers is stripped
+ * as the pack format does not keep it.
+ * <p>
+ * The pack is written to a temporary file which is synced and moved over the pack file once all of the groups of the
+ * index table were written, so a pack which was not fully written never replaces an existing one.
+ *
+ * @author Walied K. Yassen
+ */
+public final class PackWriter implements AutoCloseable {
+
+    /**
+     * The size of the buffer we use when writing the pack file.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * The path of the pack file.
+     */
+    private final Path path;
+
+    /**
+     * The path of the temporary file which the pack is written to.
+     */
+    private final Path temporary;
+
+    /**
+     * The file stream of the temporary file.
+     */
+    private final FileOutputStream file;
+
+    /**
+     * The buffered stream which the pack is written to.
+     */
+    private final OutputStream stream;
+
+    /**
+     * The groups of the index table.
+     */
+    @Getter
+    private final Group[] groups;
+
+    /**
+     * The id of the group which must be written next.
+     */
+    private int position;
+
+    /**
+     * Constructs a new {@link PackWriter} type object instance.
+     *
+     * @param path      the path of the pack file.
+     * @param indexData the raw data of the index table.
+     * @throws IOException if anything occurs while writing the index table.
+     */
+    private PackWriter(Path path, byte[] indexData) throws IOException {
+        this.path = path;
+        Index index = new Index();
+        index.decode(indexData);
+        groups = index.getGroups();
+        temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        file = new FileOutputStream(temporary.toFile());
+        stream = new BufferedOutputStream(file, BUFFER_SIZE);
+        stream.write(indexData, 0, Js5Compression.getContainerLength(indexData));
+        skip();
+    }
+
+    /**
+     * Writes the raw data of the group with the specified {@code groupId}.
+     *
+     * @param groupId the id of the group.
+     * @param data    the raw data of the group.
+     */
+    public void write(int groupId, byte[] data) {
+        if (groupId != position) {
+            throw new CacheException("Expected group " + position + " to be written to the pack but got " + groupId);
+        }
+        try {
+            stream.write(data, 0, Js5Compression.getContainerLength(data));
+        } catch (IOException e) {
+            throw new CacheException("Failed to write group " + groupId + " to the pack", e);
+        }
+        position++;
+        skip();
+    }
+
+    /**
+     * Advances the position to the next group which is present within the index table.
+     */
+    private void skip() {
+        while (position < groups.length && groups[position] == null) {
+            position++;
+        }
+    }
+
+    /**
+     * Checks whether or not all of the groups of the index table were written.
+     *
+     * @return <code>true</code> if they were otherwise <code>false</code>.
+     */
+    public boolean isComplete() {
+        return position >= groups.length;
+    }
+
+    /**
+     * Closes the pack, the pack file is only replaced if all of the groups of the index table were written, otherwise
+     * the temporary file is discarded.
+     */
+    @Override
+    public void close() {
+        try {
+            try {
+                stream.flush();
+                file.getFD().sync();
+            } finally {
+                stream.close();
+            }
+            if (!isComplete()) {
+                Files.deleteIfExists(temporary);
+                throw new CacheException("The pack was closed before group " + position + " was written");
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new CacheException("Failed to close the pack " + path, e);
+        }
+    }
+
+    /**
+     * Opens a new {@link PackWriter} for the pack file at the specified {@code path}.
+     *
+     * @param path      the path of the pack file.
+     * @param indexData the raw data of the index table of the pack.
+     * @return the opened {@link PackWriter} object.
+     */
+    public static PackWriter open(Path path, byte[] indexData) {
+        try {
+            return new PackWriter(path, indexData);
+        } catch (IOException e) {
+            throw new CacheException("Failed to open the pack " + path, e);
+        }
+    }
+}
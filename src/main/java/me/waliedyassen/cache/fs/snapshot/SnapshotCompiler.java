@@ -0,0 +1,176 @@
+package me.waliedyassen.cache.fs.snapshot;
+
+import me.waliedyassen.cache.Cache;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.archive.Archive;
+import me.waliedyassen.cache.fs.FileSystem;
+import me.waliedyassen.cache.io.CRC;
+import me.waliedyassen.cache.js5.Js5Framing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static me.waliedyassen.cache.fs.snapshot.SnapshotFormat.*;
+
+/**
+ * Compiles a {@link Cache} into an immutable snapshot file which is served by the {@link
+ * SnapshotFileSystemProvider}.
+ *
+ * @author Walied K. Yassen
+ */
+public final class SnapshotCompiler {
+
+    /**
+     * Compiles all of the archives of the specified {@link Cache cache} into a snapshot file at the specified {@code
+     * output} path. The snapshot is written to a temporary file which is synced and then moved over the output path.
+     *
+     * @param cache  the cache that we want to compile.
+     * @param output the path of the snapshot file.
+     */
+    public static void compile(Cache cache, Path output) {
+        compile(cache, output, false);
+    }
+
+    /**
+     * Compiles all of the archives of the specified {@link Cache cache} into a snapshot file at the specified {@code
+     * output} path. When {@code framed} is set, the payloads are stored as pre-framed JS5 responses, which do not
+     * keep the version trailer of the containers.
+     *
+     * @param cache  the cache that we want to compile.
+     * @param output the path of the snapshot file.
+     * @param framed whether or not to store the payloads as pre-framed JS5 responses.
+     */
+    public static void compile(Cache cache, Path output, boolean framed) {
+        List<Archive> archives = new ArrayList<>();
+        List<byte[]> indexes = new ArrayList<>();
+        long groupCount = 0;
+        for (int archiveId = 0; archiveId < 255; archiveId++) {
+            Archive archive = cache.get(archiveId);
+            if (archive == null) {
+                continue;
+            }
+            byte[] indexData = archive.getFileSystem().loadIndex();
+            if (indexData == null) {
+                continue;
+            }
+            archives.add(archive);
+            indexes.add(indexData);
+            groupCount += archive.getGroupIds().length;
+        }
+        long offset = HEADER_SIZE + (long) archives.size() * ARCHIVE_ENTRY_SIZE;
+        long[] indexOffsets = new long[archives.size()];
+        for (int index = 0; index < archives.size(); index++) {
+            indexOffsets[index] = offset;
+            offset += indexes.get(index).length;
+        }
+        long directoryOffset = align(offset, 8);
+        long payloadOffset = align(directoryOffset + groupCount * DIRECTORY_ENTRY_SIZE, PAGE_SIZE);
+        if (payloadOffset > SEGMENT_SIZE) {
+            throw new CacheException("The snapshot header does not fit within a single segment");
+        }
+        Path temporary = output.resolveSibling(output.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer directory = ByteBuffer.allocate((int) (groupCount * DIRECTORY_ENTRY_SIZE));
+            int written = 0;
+            long cursor = payloadOffset;
+            for (Archive archive : archives) {
+                FileSystem fs = archive.getFileSystem();
+                for (int groupId : archive.getGroupIds()) {
+                    byte[] data = fs.loadGroup(groupId);
+                    if (data == null) {
+                        continue;
+                    }
+                    if (framed) {
+                        data = Js5Framing.frame(archive.getId(), groupId, data);
+                    }
+                    long position = place(cursor, data.length);
+                    write(channel, ByteBuffer.wrap(data), position);
+                    directory.putLong(key(archive.getId(), groupId));
+                    directory.putLong(position);
+                    directory.putInt(data.length);
+                    directory.putInt(CRC.compute(data));
+                    written++;
+                    cursor = position + data.length;
+                }
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + archives.size() * ARCHIVE_ENTRY_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(framed ? FLAG_FRAMED : 0);
+            header.putInt(PAGE_SIZE);
+            header.putInt(archives.size());
+            header.putInt(written);
+            header.putLong(directoryOffset);
+            for (int index = 0; index < archives.size(); index++) {
+                header.putInt(archives.get(index).getId());
+                header.putLong(indexOffsets[index]);
+                header.putInt(indexes.get(index).length);
+            }
+            header.flip();
+            write(channel, header, 0);
+            for (int index = 0; index < archives.size(); index++) {
+                write(channel, ByteBuffer.wrap(indexes.get(index)), indexOffsets[index]);
+            }
+            directory.flip();
+            write(channel, directory, directoryOffset);
+            if (channel.size() < payloadOffset) {
+                write(channel, ByteBuffer.allocate(1), payloadOffset - 1);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new CacheException("Failed to write the snapshot file", e);
+        }
+        try {
+            Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new CacheException("Failed to move the snapshot file into place", e);
+        }
+    }
+
+    /**
+     * Computes the position of a payload with the specified {@code length} which is placed after the specified
+     * {@code cursor}, so that it does not straddle a page or a segment boundary unnecessarily.
+     *
+     * @param cursor the end of the previous payload.
+     * @param length the length of the payload.
+     * @return the position of the payload.
+     */
+    private static long place(long cursor, int length) {
+        if (length > SEGMENT_SIZE) {
+            throw new CacheException("The group is too large for the snapshot format: " + length);
+        }
+        long position = cursor;
+        if (length >= PAGE_SIZE || position % PAGE_SIZE + length > PAGE_SIZE) {
+            position = align(position, PAGE_SIZE);
+        }
+        if (length > 0 && position / SEGMENT_SIZE != (position + length - 1) / SEGMENT_SIZE) {
+            position = align(position, SEGMENT_SIZE);
+        }
+        return position;
+    }
+
+    /**
+     * Writes the remaining content of the specified {@code buffer} to the channel at the specified {@code position}.
+     *
+     * @param channel  the channel to write to.
+     * @param buffer   the buffer to write.
+     * @param position the position within the channel.
+     * @throws IOException if anything occurs while writing to the channel.
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private SnapshotCompiler() {
+        // NOOP
+    }
+}
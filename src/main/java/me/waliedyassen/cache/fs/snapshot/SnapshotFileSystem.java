@@ -0,0 +1,114 @@
+package me.waliedyassen.cache.fs.snapshot;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.fs.FileSystem;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only {@link FileSystem} implementation for a single archive of a memory mapped snapshot file.
+ *
+ * @author Walied K. Yassen
+ */
+@RequiredArgsConstructor
+public final class SnapshotFileSystem implements FileSystem {
+
+    /**
+     * The provider which the file system belongs to.
+     */
+    private final SnapshotFileSystemProvider provider;
+
+    /**
+     * The id of the archive.
+     */
+    @Getter
+    private final int archiveId;
+
+    /**
+     * The raw data of the index table.
+     */
+    private final ByteBuffer index;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void commit() {
+        // NOOP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] loadGroup(int id) {
+        return provider.container(archiveId, id);
+    }
+
+    /**
+     * Returns a read-only slice of the payload of the group with the specified {@code id} without copying it, the
+     * payload is the pre-framed JS5 response of the group if the snapshot is framed.
+     *
+     * @param id the id of the group.
+     * @return the read-only {@link ByteBuffer} slice or {@code null} if the group is not present.
+     */
+    public ByteBuffer loadGroupBuffer(int id) {
+        return provider.payload(archiveId, id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPosition(int id) {
+        return provider.position(archiveId, id);
+    }
+
+    /**
+     * Returns the CRC-32 checksum of the payload of the group with the specified {@code id}.
+     *
+     * @param id the id of the group.
+     * @return the CRC-32 checksum or {@code 0} if the group is not present.
+     */
+    public int getCrc(int id) {
+        return provider.crc(archiveId, id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeGroup(int id, byte[] data) {
+        throw new CacheException("The snapshot file system is read-only");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] loadIndex() {
+        ByteBuffer buffer = index.duplicate();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * Returns a read-only slice of the raw data of the index table without copying it.
+     *
+     * @return the read-only {@link ByteBuffer} slice.
+     */
+    public ByteBuffer loadIndexBuffer() {
+        return index.duplicate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeIndex(byte[] data) {
+        throw new CacheException("The snapshot file system is read-only");
+    }
+}
@@ -0,0 +1,341 @@
+package me.waliedyassen.cache.fs.snapshot;
+
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.fs.FileSystem;
+import me.waliedyassen.cache.fs.FileSystemProvider;
+import me.waliedyassen.cache.io.CRC;
+import me.waliedyassen.cache.js5.Js5Framing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static me.waliedyassen.cache.fs.snapshot.SnapshotFormat.*;
+
+/**
+ * A {@link FileSystemProvider} implementation that provides read-only {@link SnapshotFileSystem} objects from a
+ * memory mapped snapshot file which was compiled by the {@link SnapshotCompiler}. Opening the provider maps the file
+ * and nothing else, and loading a group is a binary search of the directory and a single slice of the mapping.
+ *
+ * @author Walied K. Yassen
+ */
+public final class SnapshotFileSystemProvider implements FileSystemProvider, AutoCloseable {
+
+    /**
+     * The file systems of the archives indexed by the archive id.
+     */
+    private final SnapshotFileSystem[] fileSystems = new SnapshotFileSystem[256];
+
+    /**
+     * The channel of the snapshot file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The memory mapped segments of the snapshot file.
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * The directory of the group payloads.
+     */
+    private final ByteBuffer directory;
+
+    /**
+     * The amount of entries within the directory.
+     */
+    private final int groupCount;
+
+    /**
+     * Whether or not the payloads are pre-framed JS5 responses.
+     */
+    private final boolean framed;
+
+    /**
+     * Constructs a new {@link SnapshotFileSystemProvider} type object instance.
+     *
+     * @param channel the channel of the snapshot file.
+     * @throws IOException if anything occurs while mapping the snapshot file.
+     */
+    private SnapshotFileSystemProvider(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+        for (int index = 0; index < segments.length; index++) {
+            long position = (long) index * SEGMENT_SIZE;
+            segments[index] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+        }
+        if (segments.length == 0 || size < HEADER_SIZE) {
+            throw new CacheException("The snapshot file is not valid");
+        }
+        ByteBuffer header = segments[0].duplicate();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new CacheException("The snapshot file is not valid or is of an unsupported version");
+        }
+        framed = (header.getInt() & FLAG_FRAMED) != 0;
+        header.getInt();
+        int archiveCount = header.getInt();
+        groupCount = header.getInt();
+        long directoryOffset = header.getLong();
+        if (archiveCount < 0 || archiveCount > fileSystems.length || groupCount < 0) {
+            throw new CacheException("The snapshot file header is corrupted");
+        }
+        checkBounds(0, HEADER_SIZE + (long) archiveCount * ARCHIVE_ENTRY_SIZE, size);
+        for (int index = 0; index < archiveCount; index++) {
+            int archiveId = header.getInt();
+            long indexOffset = header.getLong();
+            int indexLength = header.getInt();
+            if (archiveId < 0 || archiveId >= fileSystems.length || fileSystems[archiveId] != null) {
+                throw new CacheException("The snapshot file contains an invalid archive id: " + archiveId);
+            }
+            checkBounds(indexOffset, indexLength, size);
+            fileSystems[archiveId] = new SnapshotFileSystem(this, archiveId, slice(indexOffset, indexLength));
+        }
+        checkBounds(directoryOffset, (long) groupCount * DIRECTORY_ENTRY_SIZE, size);
+        directory = slice(directoryOffset, groupCount * DIRECTORY_ENTRY_SIZE);
+    }
+
+    /**
+     * Checks whether or not the specified region lies within the snapshot file and within a single segment of it.
+     *
+     * @param offset the offset of the region within the snapshot file.
+     * @param length the length of the region.
+     * @param size   the size of the snapshot file.
+     * @throws CacheException if the region does not lie within the snapshot file or a single segment of it.
+     */
+    private static void checkBounds(long offset, long length, long size) {
+        if (offset < 0 || length < 0 || length > SEGMENT_SIZE || offset + length > size || (length > 0 && offset / SEGMENT_SIZE != (offset + length - 1) / SEGMENT_SIZE)) {
+            throw new CacheException("The snapshot file is truncated or corrupted");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FileSystem provide(int id) {
+        if (id < 0 || id >= fileSystems.length) {
+            return null;
+        }
+        return fileSystems[id];
+    }
+
+    /**
+     * Returns the position of the directory entry of the specified group.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the position of the entry within the directory or {@code -1} if the group is not present.
+     */
+    int find(int archiveId, int groupId) {
+        long key = key(archiveId, groupId);
+        int low = 0;
+        int high = groupCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long current = directory.getLong(middle * DIRECTORY_ENTRY_SIZE);
+            if (current < key) {
+                low = middle + 1;
+            } else if (current > key) {
+                high = middle - 1;
+            } else {
+                return middle * DIRECTORY_ENTRY_SIZE;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a read-only slice of the payload of the specified group.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the read-only {@link ByteBuffer} slice or {@code null} if the group is not present.
+     */
+    ByteBuffer payload(int archiveId, int groupId) {
+        int entry = find(archiveId, groupId);
+        if (entry == -1) {
+            return null;
+        }
+        return slice(directory.getLong(entry + 8), directory.getInt(entry + 16));
+    }
+
+    /**
+     * Returns the raw container data of the specified group, the container is extracted from the payload if the
+     * snapshot is framed.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the raw container data or {@code null} if the group is not present.
+     */
+    byte[] container(int archiveId, int groupId) {
+        ByteBuffer payload = payload(archiveId, groupId);
+        if (payload == null) {
+            return null;
+        }
+        if (framed) {
+            return Js5Framing.unframe(payload);
+        }
+        byte[] data = new byte[payload.remaining()];
+        payload.get(data);
+        return data;
+    }
+
+    /**
+     * Transfers the payload of the specified group starting at the specified {@code offset} straight from the snapshot
+     * file to the specified {@code target} channel, letting the operating system perform the copy where possible.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @param offset    the offset within the payload to start the transfer at.
+     * @param target    the channel to transfer the payload to.
+     * @return the amount of bytes that were transferred or {@code -1} if the group is not present.
+     * @throws IOException if anything occurs while transferring the payload.
+     */
+    public long transferGroup(int archiveId, int groupId, long offset, WritableByteChannel target) throws IOException {
+        int entry = find(archiveId, groupId);
+        if (entry == -1) {
+            return -1;
+        }
+        long position = directory.getLong(entry + 8) + offset;
+        long remaining = directory.getInt(entry + 16) - offset;
+        long transferred = 0;
+        while (transferred < remaining) {
+            long count = channel.transferTo(position + transferred, remaining - transferred, target);
+            if (count <= 0) {
+                break;
+            }
+            transferred += count;
+        }
+        return transferred;
+    }
+
+    /**
+     * Returns the offset of the payload of the specified group within the snapshot file.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the offset of the payload or {@code -1} if the group is not present.
+     */
+    long position(int archiveId, int groupId) {
+        int entry = find(archiveId, groupId);
+        return entry == -1 ? -1 : directory.getLong(entry + 8);
+    }
+
+    /**
+     * Returns the CRC-32 checksum of the payload of the specified group.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the CRC-32 checksum of the payload or {@code 0} if the group is not present.
+     */
+    int crc(int archiveId, int groupId) {
+        int entry = find(archiveId, groupId);
+        return entry == -1 ? 0 : directory.getInt(entry + 20);
+    }
+
+    /**
+     * Returns a read-only slice of the snapshot file.
+     *
+     * @param offset the offset of the slice.
+     * @param length the length of the slice.
+     * @return the read-only {@link ByteBuffer} slice.
+     */
+    private ByteBuffer slice(long offset, int length) {
+        ByteBuffer buffer = segments[(int) (offset / SEGMENT_SIZE)].asReadOnlyBuffer();
+        int position = (int) (offset % SEGMENT_SIZE);
+        buffer.limit(position + length).position(position);
+        return buffer.slice();
+    }
+
+    /**
+     * Verifies the CRC-32 checksum of every group payload within the snapshot.
+     *
+     * @return the amount of groups which failed the verification.
+     */
+    public int verify() {
+        int failures = 0;
+        for (int index = 0; index < groupCount; index++) {
+            int entry = index * DIRECTORY_ENTRY_SIZE;
+            ByteBuffer payload = slice(directory.getLong(entry + 8), directory.getInt(entry + 16));
+            byte[] data = new byte[payload.remaining()];
+            payload.get(data);
+            if (CRC.compute(data) != directory.getInt(entry + 20)) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Checks whether or not the payloads of the snapshot are pre-framed JS5 responses.
+     *
+     * @return <code>true</code> if they are otherwise <code>false</code>.
+     */
+    public boolean isFramed() {
+        return framed;
+    }
+
+    /**
+     * Returns the amount of groups within the snapshot.
+     *
+     * @return the amount of groups.
+     */
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * Closes the snapshot file. The mappings remain valid until they are garbage collected.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new CacheException("Failed to close the snapshot file", e);
+        }
+    }
+
+    /**
+     * Opens the snapshot file at the specified {@code path} and maps it into memory.
+     *
+     * @param path the path of the snapshot file.
+     * @return the created {@link SnapshotFileSystemProvider} object.
+     */
+    public static SnapshotFileSystemProvider open(Path path) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new CacheException("Failed to open the snapshot file", e);
+        }
+        try {
+            return new SnapshotFileSystemProvider(channel);
+        } catch (IOException e) {
+            close(channel, e);
+            throw new CacheException("Failed to open the snapshot file", e);
+        } catch (RuntimeException | Error e) {
+            close(channel, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the specified {@link FileChannel channel} of a snapshot file which failed to open.
+     *
+     * @param channel the channel of the snapshot file.
+     * @param cause   the failure which the closing failure is suppressed into.
+     */
+    private static void close(FileChannel channel, Throwable cause) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+}
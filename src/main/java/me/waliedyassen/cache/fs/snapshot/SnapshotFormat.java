@@ -0,0 +1,84 @@
+package me.waliedyassen.cache.fs.snapshot;
+
+/**
+ * Holds the constants of the compiled snapshot format. A snapshot file starts with a header which contains the
+ * number of archives and groups and the offset of the directory, followed by the archive table, the raw index tables,
+ * the directory and finally the group payloads.
+ * <p>
+ * When the snapshot is {@link #FLAG_FRAMED framed}, every payload is the pre-framed JS5 response of the group rather
+ * than its raw container, so it can be transferred to a client straight from the file.
+ * <p>
+ * The directory is sorted by the archive id and the group id so a group is located using a binary search. Payloads
+ * which are smaller than a page never straddle a page boundary, payloads which are larger start at a page boundary,
+ * and no payload straddles a mapping segment boundary, so every group is a single slice of a single mapping.
+ *
+ * @author Walied K. Yassen
+ */
+final class SnapshotFormat {
+
+    /**
+     * The magic number which the snapshot file starts with.
+     */
+    static final int MAGIC = 0x4A35534E;
+
+    /**
+     * The version of the snapshot format.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * The flag which indicates that the payloads are pre-framed JS5 responses.
+     */
+    static final int FLAG_FRAMED = 0x1;
+
+    /**
+     * The size of the pages which the payloads are aligned to.
+     */
+    static final int PAGE_SIZE = 4096;
+
+    /**
+     * The size of each memory mapped segment of the snapshot file.
+     */
+    static final int SEGMENT_SIZE = 1 << 30;
+
+    /**
+     * The size of the header: magic, version, flags, page size, archive count, group count and the directory offset.
+     */
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * The size of an archive table entry: the archive id, the index offset and the index length.
+     */
+    static final int ARCHIVE_ENTRY_SIZE = 16;
+
+    /**
+     * The size of a directory entry: the key, the payload offset, the payload length and the payload CRC.
+     */
+    static final int DIRECTORY_ENTRY_SIZE = 24;
+
+    /**
+     * Returns the directory key of the specified group.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the key of the group.
+     */
+    static long key(int archiveId, int groupId) {
+        return (long) archiveId << 32 | groupId & 0xffffffffL;
+    }
+
+    /**
+     * Aligns the specified {@code value} up to the specified power-of-two {@code alignment}.
+     *
+     * @param value     the value that we want to align.
+     * @param alignment the alignment.
+     * @return the aligned value.
+     */
+    static long align(long value, long alignment) {
+        return (value + alignment - 1) & -alignment;
+    }
+
+    private SnapshotFormat() {
+        // NOOP
+    }
+}
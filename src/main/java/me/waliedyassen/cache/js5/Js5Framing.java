@@ -0,0 +1,117 @@
+package me.waliedyassen.cache.js5;
+
+import me.waliedyassen.cache.compression.Js5Compression;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Holds utilities to frame or unframe the JS5 update protocol responses. A response is made of the archive id, the
+ * group id and the Js5 container without its version trailer, which are split into {@link #BLOCK_SIZE} byte blocks,
+ * every block after the first one starts with a {@link #BLOCK_MARKER} byte.
+ *
+ * @author Walied K. Yassen
+ */
+public final class Js5Framing {
+
+    /**
+     * The size of each block of the response.
+     */
+    public static final int BLOCK_SIZE = 512;
+
+    /**
+     * The marker which every block after the first one starts with.
+     */
+    public static final int BLOCK_MARKER = 0xff;
+
+    /**
+     * The size of the response header which contains the archive id and the group id.
+     */
+    public static final int HEADER_SIZE = 3;
+
+    /**
+     * The offset of the compression type within the framed response.
+     */
+    public static final int COMPRESSION_OFFSET = 3;
+
+    /**
+     * The flag which is set on the compression type of the responses to prefetch requests.
+     */
+    public static final int PREFETCH_FLAG = 0x80;
+
+    /**
+     * Frames the specified raw container {@code data} of the specified group into a JS5 response.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @param data      the raw container data, the version trailer is stripped if it is present.
+     * @return the framed response.
+     */
+    public static byte[] frame(int archiveId, int groupId, byte[] data) {
+        if (archiveId < 0 || archiveId > 255 || groupId < 0 || groupId > 65535) {
+            throw new IllegalArgumentException("The group cannot be addressed by the JS5 protocol: " + archiveId + ", " + groupId);
+        }
+        int length = Js5Compression.getContainerLength(data);
+        int total = HEADER_SIZE + length;
+        byte[] framed = new byte[getFramedLength(total)];
+        framed[0] = (byte) archiveId;
+        framed[1] = (byte) (groupId >> 8);
+        framed[2] = (byte) groupId;
+        int in = 0;
+        int out = HEADER_SIZE;
+        while (in < length) {
+            if (out % BLOCK_SIZE == 0) {
+                framed[out++] = (byte) BLOCK_MARKER;
+            }
+            int count = Math.min(length - in, BLOCK_SIZE - out % BLOCK_SIZE);
+            System.arraycopy(data, in, framed, out, count);
+            in += count;
+            out += count;
+        }
+        return framed;
+    }
+
+    /**
+     * Extracts the container data from the specified framed JS5 {@code response}.
+     *
+     * @param response the framed response.
+     * @return the container data without the version trailer.
+     */
+    public static byte[] unframe(ByteBuffer response) {
+        ByteBuffer buffer = response.duplicate();
+        int framedLength = buffer.remaining();
+        int markers = framedLength <= BLOCK_SIZE ? 0 : (framedLength - 1) / BLOCK_SIZE;
+        byte[] data = new byte[framedLength - HEADER_SIZE - markers];
+        int start = buffer.position();
+        int out = 0;
+        for (int offset = HEADER_SIZE; offset < framedLength; ) {
+            if (offset % BLOCK_SIZE == 0) {
+                offset++;
+                continue;
+            }
+            int count = Math.min(framedLength - offset, BLOCK_SIZE - offset % BLOCK_SIZE);
+            buffer.position(start + offset);
+            buffer.get(data, out, count);
+            out += count;
+            offset += count;
+        }
+        return data;
+    }
+
+    /**
+     * Returns the length of a framed response which carries the specified amount of unframed bytes.
+     *
+     * @param length the amount of unframed bytes including the header.
+     * @return the length of the framed response.
+     */
+    public static int getFramedLength(int length) {
+        if (length <= BLOCK_SIZE) {
+            return length;
+        }
+        int extra = length - BLOCK_SIZE;
+        return length + (extra + BLOCK_SIZE - 2) / (BLOCK_SIZE - 1);
+    }
+
+    private Js5Framing() {
+        // NOOP
+    }
+}
@@ -0,0 +1,162 @@
+package me.waliedyassen.cache.js5;
+
+import lombok.Getter;
+import me.waliedyassen.cache.fs.snapshot.SnapshotFileSystemProvider;
+import me.waliedyassen.cache.memory.OffHeapBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * A pre-framed JS5 response which is handed out by a {@link Js5ResponseCache}. The response is either backed by an
+ * off-heap buffer or by a region of a framed snapshot file, which is transferred straight from the file to the target
+ * channel, or by a heap array when it did not fit the off-heap store. Every response that is handed out must be {@link
+ * #close() closed} once it was written.
+ *
+ * @author Walied K. Yassen
+ */
+public final class Js5Response implements AutoCloseable {
+
+    /**
+     * The id of the archive which the group belongs to.
+     */
+    @Getter
+    private final int archiveId;
+
+    /**
+     * The id of the group.
+     */
+    @Getter
+    private final int groupId;
+
+    /**
+     * The length of the framed response.
+     */
+    @Getter
+    private final int length;
+
+    /**
+     * The first bytes of the response up to and including the compression type.
+     */
+    private final byte[] header;
+
+    /**
+     * The off-heap buffer which holds the framed response or {@code null} if it is not backed by an off-heap buffer.
+     */
+    private final OffHeapBuffer buffer;
+
+    /**
+     * The snapshot which holds the framed response or {@code null} if it is not backed by a snapshot.
+     */
+    private final SnapshotFileSystemProvider snapshot;
+
+    /**
+     * The heap array which holds the framed response or {@code null} if it is not backed by a heap array.
+     */
+    private final byte[] data;
+
+    /**
+     * Constructs a new {@link Js5Response} type object instance.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @param header    the first bytes of the response up to and including the compression type.
+     * @param length    the length of the framed response.
+     * @param buffer    the off-heap buffer which holds the response or {@code null}.
+     * @param snapshot  the snapshot which holds the response or {@code null}.
+     */
+    Js5Response(int archiveId, int groupId, byte[] header, int length, OffHeapBuffer buffer, SnapshotFileSystemProvider snapshot) {
+        this.archiveId = archiveId;
+        this.groupId = groupId;
+        this.header = header;
+        this.length = length;
+        this.buffer = buffer;
+        this.snapshot = snapshot;
+        data = null;
+    }
+
+    /**
+     * Constructs a new {@link Js5Response} type object instance which is backed by a heap array.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @param data      the framed response.
+     */
+    Js5Response(int archiveId, int groupId, byte[] data) {
+        this.archiveId = archiveId;
+        this.groupId = groupId;
+        this.data = data;
+        header = Arrays.copyOf(data, Js5Framing.COMPRESSION_OFFSET + 1);
+        length = data.length;
+        buffer = null;
+        snapshot = null;
+    }
+
+    /**
+     * Writes the response to the specified {@code channel} starting at the specified {@code position}. This performs
+     * as few write calls as possible, so a non-blocking channel may accept less than the remaining bytes, in which case
+     * the write should be resumed at the new position once the channel is writable again.
+     *
+     * @param channel  the channel to write the response to.
+     * @param position the position within the response to start writing at.
+     * @param prefetch whether or not the {@link Js5Framing#PREFETCH_FLAG} should be set on the compression type.
+     * @return the amount of bytes that were written.
+     * @throws IOException if anything occurs while writing to the channel.
+     */
+    public long write(WritableByteChannel channel, long position, boolean prefetch) throws IOException {
+        long written = 0;
+        if (position < header.length) {
+            byte[] head = header.clone();
+            if (prefetch) {
+                head[Js5Framing.COMPRESSION_OFFSET] |= Js5Framing.PREFETCH_FLAG;
+            }
+            ByteBuffer view = ByteBuffer.wrap(head, (int) position, head.length - (int) position);
+            written += channel.write(view);
+            if (view.hasRemaining()) {
+                return written;
+            }
+            position = header.length;
+        }
+        if (position >= length) {
+            return written;
+        }
+        if (data != null) {
+            return written + channel.write(ByteBuffer.wrap(data, (int) position, length - (int) position));
+        }
+        if (snapshot != null) {
+            long transferred = snapshot.transferGroup(archiveId, groupId, position, channel);
+            return transferred > 0 ? written + transferred : written;
+        }
+        return written + channel.write(buffer.view((int) position, length - (int) position));
+    }
+
+    /**
+     * Writes the whole response to the specified blocking {@code channel}.
+     *
+     * @param channel  the channel to write the response to.
+     * @param prefetch whether or not the {@link Js5Framing#PREFETCH_FLAG} should be set on the compression type.
+     * @throws IOException if anything occurs while writing to the channel.
+     */
+    public void writeFully(WritableByteChannel channel, boolean prefetch) throws IOException {
+        long position = 0;
+        while (position < length) {
+            long written = write(channel, position, prefetch);
+            if (written <= 0) {
+                throw new IOException("The channel did not accept any bytes of the response");
+            }
+            position += written;
+        }
+    }
+
+    /**
+     * Releases the memory of the response if it is backed by an off-heap buffer.
+     */
+    @Override
+    public void close() {
+        if (buffer != null) {
+            buffer.release();
+        }
+    }
+}
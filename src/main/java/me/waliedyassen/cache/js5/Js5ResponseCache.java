@@ -0,0 +1,503 @@
+package me.waliedyassen.cache.js5;
+
+import lombok.Getter;
+import me.waliedyassen.cache.Cache;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.archive.ChecksumTable;
+import me.waliedyassen.cache.concurrent.CacheExecutors;
+import me.waliedyassen.cache.fs.FileSystem;
+import me.waliedyassen.cache.fs.FileSystemProvider;
+import me.waliedyassen.cache.fs.IndexListener;
+import me.waliedyassen.cache.fs.snapshot.SnapshotFileSystem;
+import me.waliedyassen.cache.fs.snapshot.SnapshotFileSystemProvider;
+import me.waliedyassen.cache.memory.OffHeapBuffer;
+import me.waliedyassen.cache.memory.SlabAllocator;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of pre-framed JS5 responses which is meant to sit in front of a JS5 server. The framed response of a group
+ * is built once and kept in a bounded off-heap store in least recently used order, so serving a group that was
+ * requested before never touches the file system nor the heap. When the provider is a framed {@link
+ * SnapshotFileSystemProvider}, the groups are never copied at all and are transferred straight from the snapshot file
+ * to the client channel using {@link java.nio.channels.FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}, only the index tables are still kept in the off-heap store.
+ * <p>
+ * The requests to the archive {@code 255} are served from the index tables of the archives, and the group {@code 255}
+ * of it is served from the {@link ChecksumTable master checksum table} when the responses are for a {@link Cache}. The
+ * responses of an archive and of its index table are invalidated whenever the index table is stored through the
+ * provider.
+ *
+ * @author Walied K. Yassen
+ */
+public final class Js5ResponseCache implements IndexListener {
+
+    /**
+     * The id of the archive which the requests for the index tables are addressed to.
+     */
+    public static final int MASTER_ARCHIVE = 255;
+
+    /**
+     * The id of the group of the {@link #MASTER_ARCHIVE} which the master checksum table is served as.
+     */
+    public static final int CHECKSUM_TABLE = 255;
+
+    /**
+     * The responses which are currently stored, keyed by the archive id and the group id.
+     */
+    private final Map<Long, OffHeapBuffer> responses = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The responses which are currently being built, so concurrent requests for the same group build it only once.
+     */
+    private final Map<Long, CompletableFuture<OffHeapBuffer>> building = new HashMap<>();
+
+    /**
+     * The generation of each archive, keyed by the archive id. A response which was built in an older generation of
+     * its archive is never stored, as it may have been built from the group data before the index table was stored.
+     */
+    private final Map<Integer, Integer> generations = new HashMap<>();
+
+    /**
+     * The amount of requests that were served from a stored response or from the snapshot file.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * The amount of requests that required building the response.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * The provider of the file systems which the responses are built from.
+     */
+    @Getter
+    private final FileSystemProvider provider;
+
+    /**
+     * The allocator which the memory of the responses is allocated from.
+     */
+    @Getter
+    private final SlabAllocator allocator;
+
+    /**
+     * The executor which the responses that were not stored are built on.
+     */
+    @Getter
+    private final Executor executor;
+
+    /**
+     * The master checksum table which is served or {@code null} if it is not served.
+     */
+    private final ChecksumTable checksumTable;
+
+    /**
+     * Whether or not the whirlpool form of the master checksum table is served.
+     */
+    private final boolean whirlpool;
+
+    /**
+     * The encoded master checksum table which the stored response was built from.
+     */
+    private volatile byte[] servedTable;
+
+    /**
+     * Constructs a new {@link Js5ResponseCache} type object instance.
+     *
+     * @param provider  the provider of the file systems which the responses are built from.
+     * @param allocator the allocator which the memory of the responses is allocated from.
+     */
+    public Js5ResponseCache(FileSystemProvider provider, SlabAllocator allocator) {
+        this(provider, allocator, CacheExecutors.getDefault(), null, false);
+    }
+
+    /**
+     * Constructs a new {@link Js5ResponseCache} type object instance which also serves the master checksum table of
+     * the specified {@link Cache cache}.
+     *
+     * @param cache     the cache which the responses are built from.
+     * @param allocator the allocator which the memory of the responses is allocated from.
+     * @param whirlpool whether or not the whirlpool form of the master checksum table is served.
+     */
+    public Js5ResponseCache(Cache cache, SlabAllocator allocator, boolean whirlpool) {
+        this(cache.getFileSystemProvider(), allocator, cache.getExecutor(), cache.getChecksumTable(), whirlpool);
+    }
+
+    /**
+     * Constructs a new {@link Js5ResponseCache} type object instance.
+     *
+     * @param provider      the provider of the file systems which the responses are built from.
+     * @param allocator     the allocator which the memory of the responses is allocated from.
+     * @param executor      the executor which the responses that were not stored are built on.
+     * @param checksumTable the master checksum table which is served or {@code null}.
+     * @param whirlpool     whether or not the whirlpool form of the master checksum table is served.
+     */
+    private Js5ResponseCache(FileSystemProvider provider, SlabAllocator allocator, Executor executor, ChecksumTable checksumTable, boolean whirlpool) {
+        this.provider = provider;
+        this.allocator = allocator;
+        this.executor = executor;
+        this.checksumTable = checksumTable;
+        this.whirlpool = whirlpool;
+        provider.addIndexListener(this);
+    }
+
+    /**
+     * Returns the framed response of the group with the specified {@code groupId} of the archive with the specified
+     * {@code archiveId}, building it if it was not requested before. The returned response must be {@link
+     * Js5Response#close() closed} once it was written.
+     *
+     * @param archiveId the id of the archive which the group belongs to or {@link #MASTER_ARCHIVE}.
+     * @param groupId   the id of the group.
+     * @return the {@link Js5Response} object or {@code null} if the group does not exist.
+     */
+    public Js5Response get(int archiveId, int groupId) {
+        try {
+            return get(archiveId, groupId, Runnable::run).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof CacheException ? (CacheException) e.getCause() : new CacheException("Failed to build the response", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the framed response of the group with the specified {@code groupId} of the archive with the specified
+     * {@code archiveId}. The future is already completed when the response was stored or when it is transferred from
+     * a snapshot, otherwise the response is built on the {@link #executor} so the calling thread never blocks on the
+     * file system. The response must be {@link Js5Response#close() closed} once it was written.
+     *
+     * @param archiveId the id of the archive which the group belongs to or {@link #MASTER_ARCHIVE}.
+     * @param groupId   the id of the group.
+     * @return the {@link CompletableFuture} of the {@link Js5Response} object, which is completed with {@code null} if
+     * the group does not exist.
+     */
+    public CompletableFuture<Js5Response> getAsync(int archiveId, int groupId) {
+        return get(archiveId, groupId, executor);
+    }
+
+    /**
+     * Returns the framed response of the specified group, building it on the specified {@link Executor executor} if
+     * it was not stored already.
+     *
+     * @param archiveId the id of the archive which the group belongs to or {@link #MASTER_ARCHIVE}.
+     * @param groupId   the id of the group.
+     * @param executor  the executor which the response is built on.
+     * @return the {@link CompletableFuture} of the {@link Js5Response} object.
+     */
+    private CompletableFuture<Js5Response> get(int archiveId, int groupId, Executor executor) {
+        if (archiveId != MASTER_ARCHIVE && provider instanceof SnapshotFileSystemProvider) {
+            SnapshotFileSystemProvider snapshot = (SnapshotFileSystemProvider) provider;
+            if (snapshot.isFramed()) {
+                return CompletableFuture.completedFuture(getTransferable(snapshot, archiveId, groupId));
+            }
+        }
+        if (archiveId == MASTER_ARCHIVE && groupId == CHECKSUM_TABLE && checksumTable != null) {
+            byte[] table = whirlpool ? checksumTable.getWhirlpool() : checksumTable.getPlain();
+            if (table != servedTable) {
+                invalidate(archiveId, groupId);
+            }
+        }
+        long key = key(archiveId, groupId);
+        CompletableFuture<OffHeapBuffer> future;
+        boolean owner = false;
+        synchronized (this) {
+            OffHeapBuffer buffer = responses.get(key);
+            if (buffer != null && buffer.tryRetain()) {
+                hits.increment();
+                return CompletableFuture.completedFuture(wrap(archiveId, groupId, buffer));
+            }
+            future = building.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                building.put(key, future);
+                owner = true;
+            }
+        }
+        if (owner) {
+            return build(key, archiveId, groupId, future, executor);
+        }
+        return future.thenCompose(buffer -> {
+            if (buffer != null && buffer.tryRetain()) {
+                hits.increment();
+                return CompletableFuture.completedFuture(wrap(archiveId, groupId, buffer));
+            }
+            // the response was evicted before we could retain it, or it was not stored at all.
+            return get(archiveId, groupId, executor);
+        });
+    }
+
+    /**
+     * Builds the framed response of the specified group on the specified {@link Executor executor}, the response is
+     * built on the calling thread if the executor rejects it.
+     *
+     * @param key       the key of the group.
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @param future    the future which the concurrent requests are waiting on.
+     * @param executor  the executor which the response is built on.
+     * @return the {@link CompletableFuture} of the built {@link Js5Response} object.
+     */
+    private CompletableFuture<Js5Response> build(long key, int archiveId, int groupId, CompletableFuture<OffHeapBuffer> future, Executor executor) {
+        CompletableFuture<Js5Response> result = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                result.complete(build(key, archiveId, groupId, future));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+        return result;
+    }
+
+    /**
+     * Builds and stores the framed response of the specified group, then completes the specified {@code future} with
+     * it so the requests which were waiting for it can share it. The response is built again if the index table of the
+     * archive was stored while it was being built. A response which does not fit the store even after evicting all of
+     * the other responses is served from the heap without being stored.
+     *
+     * @param key       the key of the group.
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @param future    the future which the concurrent requests are waiting on.
+     * @return the built {@link Js5Response} object or {@code null} if the group does not exist.
+     */
+    private Js5Response build(long key, int archiveId, int groupId, CompletableFuture<OffHeapBuffer> future) {
+        misses.increment();
+        int archive = archiveId == MASTER_ARCHIVE ? groupId : archiveId;
+        try {
+            while (true) {
+                int generation = generation(archive);
+                OffHeapBuffer buffer = null;
+                byte[] framed = null;
+                byte[] data = load(archiveId, groupId);
+                if (data != null) {
+                    framed = Js5Framing.frame(archiveId, groupId, data);
+                    buffer = allocate(framed.length);
+                    if (buffer != null) {
+                        buffer.write(0, framed, 0, framed.length);
+                    }
+                }
+                synchronized (this) {
+                    if (generation == generation(archive)) {
+                        if (buffer != null) {
+                            buffer.retain();
+                            OffHeapBuffer previous = responses.put(key, buffer);
+                            if (previous != null) {
+                                previous.release();
+                            }
+                        }
+                        building.remove(key);
+                        future.complete(buffer);
+                        if (buffer == null) {
+                            return framed != null ? new Js5Response(archiveId, groupId, framed) : null;
+                        }
+                        return wrap(archiveId, groupId, buffer);
+                    }
+                }
+                // the index table was stored while we were building, the response may be of the old group data.
+                if (buffer != null) {
+                    buffer.release();
+                }
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                building.remove(key);
+            }
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the generation of the specified archive, which is advanced every time the index table of the archive is
+     * stored.
+     *
+     * @param archiveId the id of the archive.
+     * @return the generation of the archive.
+     */
+    private synchronized int generation(int archiveId) {
+        return generations.getOrDefault(archiveId, 0);
+    }
+
+    /**
+     * Loads the raw container data of the specified group from the provider.
+     *
+     * @param archiveId the id of the archive which the group belongs to or {@link #MASTER_ARCHIVE}.
+     * @param groupId   the id of the group.
+     * @return the raw container data or {@code null} if the group does not exist.
+     */
+    private byte[] load(int archiveId, int groupId) {
+        if (archiveId == MASTER_ARCHIVE && groupId == CHECKSUM_TABLE && checksumTable != null) {
+            byte[] table = whirlpool ? checksumTable.getWhirlpool() : checksumTable.getPlain();
+            servedTable = table;
+            byte[] container = new byte[5 + table.length];
+            container[1] = (byte) (table.length >> 24);
+            container[2] = (byte) (table.length >> 16);
+            container[3] = (byte) (table.length >> 8);
+            container[4] = (byte) table.length;
+            System.arraycopy(table, 0, container, 5, table.length);
+            return container;
+        }
+        if (archiveId == MASTER_ARCHIVE) {
+            FileSystem fs = provider.provide(groupId);
+            return fs != null ? fs.loadIndex() : null;
+        }
+        FileSystem fs = provider.provide(archiveId);
+        return fs != null ? fs.loadGroup(groupId) : null;
+    }
+
+    /**
+     * Returns a response of the specified group which is transferred straight from the specified framed snapshot.
+     *
+     * @param snapshot  the framed snapshot.
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the {@link Js5Response} object or {@code null} if the group does not exist.
+     */
+    private Js5Response getTransferable(SnapshotFileSystemProvider snapshot, int archiveId, int groupId) {
+        SnapshotFileSystem fs = (SnapshotFileSystem) snapshot.provide(archiveId);
+        ByteBuffer payload = fs != null ? fs.loadGroupBuffer(groupId) : null;
+        if (payload == null) {
+            return null;
+        }
+        hits.increment();
+        byte[] header = new byte[Js5Framing.COMPRESSION_OFFSET + 1];
+        payload.duplicate().get(header);
+        return new Js5Response(archiveId, groupId, header, payload.remaining(), null, snapshot);
+    }
+
+    /**
+     * Wraps the specified retained {@code buffer} into a {@link Js5Response}.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @param buffer    the retained buffer which holds the framed response.
+     * @return the {@link Js5Response} object or {@code null} if the buffer is {@code null}.
+     */
+    private static Js5Response wrap(int archiveId, int groupId, OffHeapBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        byte[] header = new byte[Js5Framing.COMPRESSION_OFFSET + 1];
+        buffer.view(0, header.length).get(header);
+        return new Js5Response(archiveId, groupId, header, buffer.getLength(), buffer, null);
+    }
+
+    /**
+     * Allocates a buffer with the specified {@code size}, evicting the least recently used responses if necessary.
+     *
+     * @param size the size of the buffer.
+     * @return the allocated {@link OffHeapBuffer} object or {@code null} if it does not fit even after evicting all of
+     * the responses.
+     */
+    private OffHeapBuffer allocate(int size) {
+        while (true) {
+            OffHeapBuffer buffer = allocator.allocate(size);
+            if (buffer != null) {
+                return buffer;
+            }
+            synchronized (this) {
+                Iterator<OffHeapBuffer> iterator = responses.values().iterator();
+                if (!iterator.hasNext()) {
+                    return null;
+                }
+                OffHeapBuffer eldest = iterator.next();
+                iterator.remove();
+                eldest.release();
+            }
+        }
+    }
+
+    /**
+     * Removes the response of the specified group, this must be called whenever the group is modified.
+     *
+     * @param archiveId the id of the archive which the group belongs to or {@link #MASTER_ARCHIVE}.
+     * @param groupId   the id of the group.
+     */
+    public synchronized void invalidate(int archiveId, int groupId) {
+        OffHeapBuffer buffer = responses.remove(key(archiveId, groupId));
+        if (buffer != null) {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Removes the response of the index table which was stored and the responses of all the groups of its archive,
+     * as any of them may have been changed along with the index table.
+     *
+     * @param archiveId the id of the archive which the index table belongs to.
+     * @param data      the raw data of the index table that was stored.
+     */
+    @Override
+    public synchronized void onIndexStored(int archiveId, byte[] data) {
+        generations.merge(archiveId, 1, Integer::sum);
+        invalidate(MASTER_ARCHIVE, archiveId);
+        for (Iterator<Map.Entry<Long, OffHeapBuffer>> iterator = responses.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Long, OffHeapBuffer> entry = iterator.next();
+            if (entry.getKey() >>> 32 == archiveId) {
+                iterator.remove();
+                entry.getValue().release();
+            }
+        }
+    }
+
+    /**
+     * Removes all of the stored responses.
+     */
+    public synchronized void clear() {
+        for (OffHeapBuffer buffer : responses.values()) {
+            buffer.release();
+        }
+        responses.clear();
+    }
+
+    /**
+     * Returns the amount of responses that are currently stored.
+     *
+     * @return the amount of stored responses.
+     */
+    public synchronized int size() {
+        return responses.size();
+    }
+
+    /**
+     * Returns the amount of requests that were served without building the response.
+     *
+     * @return the amount of hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the amount of requests that required building the response.
+     *
+     * @return the amount of misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the key of the specified group.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @return the key of the group.
+     */
+    private static long key(int archiveId, int groupId) {
+        return (long) archiveId << 32 | groupId & 0xffffffffL;
+    }
+}
@@ -0,0 +1,437 @@
+package me.waliedyassen.cache.js5.server;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import me.waliedyassen.cache.js5.Js5Response;
+import me.waliedyassen.cache.js5.Js5ResponseCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A single client connection of a {@link Js5Server}. The connection keeps the urgent and the prefetch requests in two
+ * separate queues, the urgent requests are always served first, and it is only ever touched by the thread of the
+ * {@link Js5EventLoop} which it is registered to. A request whose response was not stored parks the connection until
+ * the response is built and handed back to the loop thread.
+ *
+ * @author Walied K. Yassen
+ */
+final class Js5Connection {
+
+    /**
+     * The opcode of the handshake which starts the update protocol.
+     */
+    static final int OPCODE_HANDSHAKE = 15;
+
+    /**
+     * The opcode of a request for a group which is not immediately needed.
+     */
+    static final int OPCODE_PREFETCH = 0;
+
+    /**
+     * The opcode of a request for a group which is immediately needed.
+     */
+    static final int OPCODE_URGENT = 1;
+
+    /**
+     * The opcode which tells the server that the client has logged in.
+     */
+    static final int OPCODE_LOGGED_IN = 2;
+
+    /**
+     * The opcode which tells the server that the client has logged out.
+     */
+    static final int OPCODE_LOGGED_OUT = 3;
+
+    /**
+     * The opcode which sets the key which the responses are encrypted with.
+     */
+    static final int OPCODE_ENCRYPTION = 4;
+
+    /**
+     * The opcode which is sent once the client has initialised the connection.
+     */
+    static final int OPCODE_CONNECTED = 6;
+
+    /**
+     * The opcode which asks the server to close the connection.
+     */
+    static final int OPCODE_DISCONNECT = 7;
+
+    /**
+     * The status of the handshake response which accepts the connection.
+     */
+    static final int STATUS_OK = 0;
+
+    /**
+     * The status of the handshake response which rejects a client of a different revision.
+     */
+    static final int STATUS_OUT_OF_DATE = 6;
+
+    /**
+     * The result of {@link #flush()} when the connection has nothing more to write.
+     */
+    static final int IDLE = 0;
+
+    /**
+     * The result of {@link #flush()} when the connection has more to write and should be scheduled again.
+     */
+    static final int MORE = 1;
+
+    /**
+     * The result of {@link #flush()} when the socket did not accept everything and the connection must wait until it
+     * becomes writable again.
+     */
+    static final int BLOCKED = 2;
+
+    /**
+     * The size of the handshake which is sent by the client.
+     */
+    private static final int HANDSHAKE_SIZE = 5;
+
+    /**
+     * The size of a single request which is sent by the client.
+     */
+    private static final int REQUEST_SIZE = 4;
+
+    /**
+     * The queue of the urgent requests, each request is the archive id and the group id packed into a single integer.
+     */
+    private final ArrayDeque<Integer> urgent = new ArrayDeque<>();
+
+    /**
+     * The queue of the prefetch requests, each request is the archive id and the group id packed into a single integer.
+     */
+    private final ArrayDeque<Integer> prefetch = new ArrayDeque<>();
+
+    /**
+     * The buffer which the bytes that are sent by the client are read into.
+     */
+    private final ByteBuffer input;
+
+    /**
+     * The event loop which the connection is registered to.
+     */
+    private final Js5EventLoop loop;
+
+    /**
+     * The channel of the connection.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * The selection key of the channel.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final SelectionKey key;
+
+    /**
+     * The channel which the responses are written to, this is the XOR channel if an encryption key was set.
+     */
+    private WritableByteChannel output;
+
+    /**
+     * The control bytes which must be written before any response, such as the handshake response.
+     */
+    private ByteBuffer control;
+
+    /**
+     * The response which is currently being written.
+     */
+    private Js5Response current;
+
+    /**
+     * The position within the response which is currently being written.
+     */
+    private long position;
+
+    /**
+     * Whether or not the response which is currently being written was requested as a prefetch.
+     */
+    private boolean currentPrefetch;
+
+    /**
+     * Whether or not the connection is waiting for the response of the next request to be built.
+     */
+    private boolean waiting;
+
+    /**
+     * Whether or not the handshake was completed.
+     */
+    private boolean handshaken;
+
+    /**
+     * Whether or not the reading is paused because the request queues are full.
+     */
+    private boolean paused;
+
+    /**
+     * Whether or not the connection is within the ready queue of the event loop.
+     */
+    boolean scheduled;
+
+    /**
+     * Whether or not the connection is waiting for the socket to become writable.
+     */
+    boolean blocked;
+
+    /**
+     * Whether or not the connection was closed.
+     */
+    boolean closed;
+
+    /**
+     * Constructs a new {@link Js5Connection} type object instance.
+     *
+     * @param loop    the event loop which the connection is registered to.
+     * @param channel the channel of the connection.
+     * @param key     the selection key of the channel.
+     */
+    Js5Connection(Js5EventLoop loop, SocketChannel channel, SelectionKey key) {
+        this.loop = loop;
+        this.channel = channel;
+        this.key = key;
+        input = ByteBuffer.allocate(HANDSHAKE_SIZE + loop.getServer().getMaxPendingRequests() * REQUEST_SIZE);
+        output = channel;
+    }
+
+    /**
+     * Reads the available bytes from the channel and handles all of the complete messages within them.
+     *
+     * @throws IOException if anything occurs while reading from the channel.
+     */
+    void read() throws IOException {
+        if (channel.read(input) == -1) {
+            close();
+            return;
+        }
+        process();
+    }
+
+    /**
+     * Handles all of the complete messages which are within the input buffer. The handling stops once the request
+     * queues are full, in which case the reading is paused until the queues are drained.
+     */
+    private void process() {
+        input.flip();
+        try {
+            if (!handshaken) {
+                if (input.remaining() < HANDSHAKE_SIZE) {
+                    return;
+                }
+                handshake(input.get() & 0xff, input.getInt());
+                if (!handshaken) {
+                    return;
+                }
+            }
+            int limit = loop.getServer().getMaxPendingRequests();
+            while (!closed && input.remaining() >= REQUEST_SIZE) {
+                if (urgent.size() + prefetch.size() >= limit) {
+                    pause();
+                    return;
+                }
+                int opcode = input.get() & 0xff;
+                int value = (input.get() & 0xff) << 16 | (input.getShort() & 0xffff);
+                request(opcode, value);
+            }
+            resume();
+        } finally {
+            input.compact();
+        }
+    }
+
+    /**
+     * Handles the handshake of the connection.
+     *
+     * @param opcode   the opcode of the handshake.
+     * @param revision the revision of the client.
+     */
+    private void handshake(int opcode, int revision) {
+        if (opcode != OPCODE_HANDSHAKE) {
+            close();
+            return;
+        }
+        boolean accepted = revision == loop.getServer().getRevision();
+        control = ByteBuffer.wrap(new byte[]{(byte) (accepted ? STATUS_OK : STATUS_OUT_OF_DATE)});
+        handshaken = accepted;
+        if (!accepted) {
+            pause();
+        }
+        loop.schedule(this);
+    }
+
+    /**
+     * Handles a single request of the connection.
+     *
+     * @param opcode the opcode of the request.
+     * @param value  the value of the request.
+     */
+    private void request(int opcode, int value) {
+        switch (opcode) {
+            case OPCODE_PREFETCH:
+                prefetch.add(value);
+                loop.schedule(this);
+                break;
+            case OPCODE_URGENT:
+                urgent.add(value);
+                loop.schedule(this);
+                break;
+            case OPCODE_ENCRYPTION:
+                int encryption = value >> 16;
+                output = encryption == 0 ? channel : new Js5XorChannel(channel, loop.getScratch(), (byte) encryption);
+                break;
+            case OPCODE_LOGGED_IN:
+            case OPCODE_LOGGED_OUT:
+            case OPCODE_CONNECTED:
+                break;
+            case OPCODE_DISCONNECT:
+            default:
+                close();
+                break;
+        }
+    }
+
+    /**
+     * Writes as much as the socket accepts of the pending control bytes or of a single response.
+     *
+     * @return {@link #IDLE}, {@link #MORE} or {@link #BLOCKED}.
+     * @throws IOException if anything occurs while writing to the channel.
+     */
+    int flush() throws IOException {
+        if (closed) {
+            return IDLE;
+        }
+        if (control != null) {
+            channel.write(control);
+            if (control.hasRemaining()) {
+                return BLOCKED;
+            }
+            control = null;
+            if (!handshaken) {
+                close();
+                return IDLE;
+            }
+        }
+        if (current == null && (waiting || !next())) {
+            return IDLE;
+        }
+        position += current.write(output, position, currentPrefetch);
+        if (position < current.getLength()) {
+            return BLOCKED;
+        }
+        current.close();
+        current = null;
+        return urgent.isEmpty() && prefetch.isEmpty() ? IDLE : MORE;
+    }
+
+    /**
+     * Takes the next request off the queues and acquires its response, the urgent requests are always taken first and
+     * the requests for groups that do not exist are skipped. The connection is parked if the response has to be built.
+     *
+     * @return <code>true</code> if a response was acquired otherwise <code>false</code>.
+     */
+    private boolean next() {
+        Js5ResponseCache responses = loop.getServer().getResponses();
+        while (true) {
+            Integer request = urgent.poll();
+            boolean prefetched = false;
+            if (request == null) {
+                request = prefetch.poll();
+                prefetched = true;
+            }
+            if (request == null) {
+                return false;
+            }
+            if (paused) {
+                process();
+            }
+            CompletableFuture<Js5Response> future = responses.getAsync(request >>> 16, request & 0xffff);
+            if (!future.isDone()) {
+                waiting = true;
+                boolean built = prefetched;
+                future.whenComplete((response, error) -> loop.submit(() -> onBuilt(response, error, built)));
+                return false;
+            }
+            Js5Response response = future.join();
+            if (response != null) {
+                current = response;
+                currentPrefetch = prefetched;
+                position = 0;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gets called on the loop thread when the response which the connection was waiting for was built.
+     *
+     * @param response   the built response or {@code null} if the group does not exist.
+     * @param error      the failure of the build or {@code null} if it did not fail.
+     * @param prefetched whether or not the response was requested as a prefetch.
+     */
+    private void onBuilt(Js5Response response, Throwable error, boolean prefetched) {
+        waiting = false;
+        if (closed) {
+            if (response != null) {
+                response.close();
+            }
+            return;
+        }
+        if (error != null) {
+            close();
+            return;
+        }
+        if (response != null) {
+            current = response;
+            currentPrefetch = prefetched;
+            position = 0;
+        }
+        loop.schedule(this);
+    }
+
+    /**
+     * Pauses the reading of the connection until the request queues are drained.
+     */
+    private void pause() {
+        if (!paused) {
+            paused = true;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Resumes the reading of the connection if it was paused.
+     */
+    private void resume() {
+        if (paused) {
+            paused = false;
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Closes the connection and releases the response which is currently being written.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // NOOP
+        }
+        loop.onClosed(this);
+    }
+}
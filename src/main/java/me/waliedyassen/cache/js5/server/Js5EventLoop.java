@@ -0,0 +1,323 @@
+package me.waliedyassen.cache.js5.server;
+
+import lombok.Getter;
+import me.waliedyassen.cache.CacheException;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single selector thread of a {@link Js5Server} which serves many connections at once. The connections which have
+ * something to write are kept in a ready queue and are served in round-robin order, each connection gets a single
+ * write per round which is bounded by its socket send buffer, so a connection that requested many large groups never
+ * starves the others. A connection whose socket is full is taken out of the ready queue until the selector reports it
+ * writable again. The responses which were not stored are built off the loop thread and handed back to it through
+ * the completion queue, so the loop never blocks on the file system.
+ *
+ * @author Walied K. Yassen
+ */
+final class Js5EventLoop implements Runnable {
+
+    /**
+     * The size of the scratch buffer which the encrypted responses are copied into.
+     */
+    private static final int SCRATCH_SIZE = 8192;
+
+    /**
+     * The channels which were accepted but were not registered to the selector yet.
+     */
+    private final Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The tasks which were submitted from other threads to run on the loop thread, such as handing a built response to
+     * the connection which requested it.
+     */
+    private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The connections which have something to write, in the order they are served.
+     */
+    private final ArrayDeque<Js5Connection> ready = new ArrayDeque<>();
+
+    /**
+     * The amount of connections which are currently registered to this loop.
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * The scratch buffer which the encrypted responses are copied into.
+     */
+    @Getter
+    private final ByteBuffer scratch = ByteBuffer.allocateDirect(SCRATCH_SIZE);
+
+    /**
+     * The server which the loop belongs to.
+     */
+    @Getter
+    private final Js5Server server;
+
+    /**
+     * The selector of the loop.
+     */
+    private final Selector selector;
+
+    /**
+     * The thread which runs the loop.
+     */
+    private final Thread thread;
+
+    /**
+     * Whether or not the loop is still running.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Whether or not the loop has closed all of its connections, the submitted tasks are ran on the submitting thread
+     * once it has.
+     */
+    private volatile boolean terminated;
+
+    /**
+     * The failure which stopped the loop, or {@code null} if the loop did not fail.
+     */
+    @Getter
+    private volatile CacheException failure;
+
+    /**
+     * Constructs a new {@link Js5EventLoop} type object instance.
+     *
+     * @param server the server which the loop belongs to.
+     * @param index  the index of the loop within the server.
+     */
+    Js5EventLoop(Js5Server server, int index) {
+        this.server = server;
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            throw new CacheException("Failed to open the selector", e);
+        }
+        thread = new Thread(this, "js5-loop-" + index);
+        thread.start();
+    }
+
+    /**
+     * Hands over the specified accepted {@code channel} to this loop.
+     *
+     * @param channel the channel that we want to register.
+     */
+    void register(SocketChannel channel) {
+        connections.incrementAndGet();
+        registrations.add(channel);
+        if (terminated) {
+            reject();
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Submits the specified {@code task} to run on the loop thread.
+     *
+     * @param task the task that we want to run.
+     */
+    void submit(Runnable task) {
+        completions.add(task);
+        if (terminated) {
+            complete();
+        } else {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the selector fails, the loop stops and closes all of its connections, and the failure is kept so the server
+     * can report it through {@link #getFailure()}.
+     */
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                if (ready.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.selectNow();
+                }
+            } catch (IOException e) {
+                failure = new CacheException("Failed to select the ready connections", e);
+                break;
+            }
+            accept();
+            complete();
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+                Js5Connection connection = (Js5Connection) key.attachment();
+                try {
+                    if (key.isValid() && key.isWritable()) {
+                        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                        connection.blocked = false;
+                        schedule(connection);
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        connection.read();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    connection.close();
+                }
+            }
+            service();
+        }
+        for (SelectionKey key : selector.keys()) {
+            ((Js5Connection) key.attachment()).close();
+        }
+        terminated = true;
+        complete();
+        reject();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // NOOP
+        }
+    }
+
+    /**
+     * Closes all of the channels which were handed over to this loop but were never registered to the selector.
+     */
+    private void reject() {
+        SocketChannel channel;
+        while ((channel = registrations.poll()) != null) {
+            connections.decrementAndGet();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // NOOP
+            }
+        }
+    }
+
+    /**
+     * Registers all of the channels which were handed over to this loop since the last round.
+     */
+    private void accept() {
+        SocketChannel channel;
+        while ((channel = registrations.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Js5Connection(this, channel, key));
+            } catch (IOException e) {
+                connections.decrementAndGet();
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // NOOP
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs all of the tasks which were submitted to this loop since the last round.
+     */
+    private void complete() {
+        Runnable task;
+        while ((task = completions.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Serves a single round of the ready connections, every connection which was ready at the start of the round gets
+     * a single write.
+     */
+    private void service() {
+        for (int count = ready.size(); count > 0; count--) {
+            Js5Connection connection = ready.poll();
+            connection.scheduled = false;
+            if (connection.closed || connection.blocked) {
+                continue;
+            }
+            try {
+                switch (connection.flush()) {
+                    case Js5Connection.MORE:
+                        schedule(connection);
+                        break;
+                    case Js5Connection.BLOCKED:
+                        connection.blocked = true;
+                        SelectionKey key = connection.getKey();
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        break;
+                    default:
+                        break;
+                }
+            } catch (IOException | RuntimeException e) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Adds the specified {@code connection} to the ready queue if it is not there already.
+     *
+     * @param connection the connection which has something to write.
+     */
+    void schedule(Js5Connection connection) {
+        if (!connection.scheduled && !connection.blocked && !connection.closed) {
+            connection.scheduled = true;
+            ready.add(connection);
+        }
+    }
+
+    /**
+     * Gets called when the specified {@code connection} was closed.
+     *
+     * @param connection the connection which was closed.
+     */
+    void onClosed(Js5Connection connection) {
+        connections.decrementAndGet();
+    }
+
+    /**
+     * Returns the amount of connections which are currently registered to this loop.
+     *
+     * @return the amount of connections.
+     */
+    int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Returns whether or not the loop has stopped and closed all of its connections.
+     *
+     * @return <code>true</code> if the loop has stopped otherwise <code>false</code>.
+     */
+    boolean isTerminated() {
+        return terminated;
+    }
+
+    /**
+     * Stops the loop and closes all of its connections.
+     */
+    void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
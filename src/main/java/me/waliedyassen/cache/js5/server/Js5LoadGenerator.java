@@ -0,0 +1,463 @@
+package me.waliedyassen.cache.js5.server;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import me.waliedyassen.cache.Cache;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.archive.Archive;
+import me.waliedyassen.cache.js5.Js5Framing;
+import me.waliedyassen.cache.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A load generator for a {@link Js5Server} which opens many connections from a single selector thread, performs the
+ * handshake on each of them and keeps a fixed window of pipelined requests in flight until every connection received
+ * all of its responses. The responses are parsed just enough to know where each of them ends and which group it
+ * carries, so the generator itself is rarely the bottleneck.
+ *
+ * @author Walied K. Yassen
+ */
+public final class Js5LoadGenerator {
+
+    /**
+     * The size of the header of a response which carries the compression type and the container length.
+     */
+    private static final int RESPONSE_HEADER_SIZE = 8;
+
+    /**
+     * The size of the buffer which each connection reads the responses into.
+     */
+    private static final int INPUT_SIZE = 65536;
+
+    /**
+     * The groups which are requested, each group is the archive id and the group id packed into a single integer.
+     */
+    private final int[] groups;
+
+    /**
+     * The address of the server.
+     */
+    private final SocketAddress address;
+
+    /**
+     * The revision which the connections handshake with.
+     */
+    private final int revision;
+
+    /**
+     * The amount of connections to open.
+     */
+    private final int connections;
+
+    /**
+     * The amount of requests which each connection sends.
+     */
+    private final int requests;
+
+    /**
+     * The maximum amount of requests which each connection keeps in flight.
+     */
+    private final int window;
+
+    /**
+     * Every n-th request is sent as a prefetch request, or never if this is zero.
+     */
+    private final int prefetchInterval;
+
+    /**
+     * Constructs a new {@link Js5LoadGenerator} type object instance.
+     *
+     * @param groups           the groups which are requested, packed as the archive id and the group id.
+     * @param address          the address of the server.
+     * @param revision         the revision which the connections handshake with.
+     * @param connections      the amount of connections to open.
+     * @param requests         the amount of requests which each connection sends.
+     * @param window           the maximum amount of requests which each connection keeps in flight.
+     * @param prefetchInterval every n-th request is sent as a prefetch request, or never if this is zero.
+     */
+    public Js5LoadGenerator(int[] groups, SocketAddress address, int revision, int connections, int requests, int window, int prefetchInterval) {
+        if (groups.length == 0) {
+            throw new IllegalArgumentException("There are no groups to request");
+        }
+        this.groups = groups;
+        this.address = address;
+        this.revision = revision;
+        this.connections = connections;
+        this.requests = requests;
+        this.window = window;
+        this.prefetchInterval = prefetchInterval;
+    }
+
+    /**
+     * Runs the load until every connection received all of its responses or until the specified timeout elapses.
+     *
+     * @param timeout the maximum amount of time to run the load for.
+     * @param unit    the time unit of the timeout.
+     * @return the {@link Report} of the run.
+     */
+    public Report run(long timeout, TimeUnit unit) {
+        LatencyHistogram latency = new LatencyHistogram();
+        Client[] clients = new Client[connections];
+        long start = System.nanoTime();
+        long deadline = start + unit.toNanos(timeout);
+        try (Selector selector = Selector.open()) {
+            for (int index = 0; index < connections; index++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.connect(address);
+                clients[index] = new Client(index, channel, latency);
+                channel.register(selector, SelectionKey.OP_CONNECT, clients[index]);
+            }
+            int remaining = connections;
+            while (remaining > 0 && System.nanoTime() < deadline) {
+                selector.select(100);
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    Client client = (Client) key.attachment();
+                    try {
+                        if (key.isConnectable()) {
+                            client.channel.finishConnect();
+                            client.handshake();
+                        }
+                        if (key.isReadable()) {
+                            client.read();
+                        }
+                        client.write();
+                    } catch (IOException e) {
+                        client.failed = true;
+                    }
+                    if (client.failed || client.received == requests) {
+                        key.cancel();
+                        client.channel.close();
+                        remaining--;
+                    } else {
+                        key.interestOps(SelectionKey.OP_READ | (client.output.hasRemaining() ? SelectionKey.OP_WRITE : 0));
+                    }
+                }
+            }
+            for (Client client : clients) {
+                client.channel.close();
+            }
+        } catch (IOException e) {
+            throw new CacheException("Failed to run the load", e);
+        }
+        long elapsed = System.nanoTime() - start;
+        long responses = 0;
+        long bytes = 0;
+        int failed = 0;
+        int errors = 0;
+        for (Client client : clients) {
+            responses += client.received;
+            bytes += client.bytes;
+            errors += client.errors;
+            if (client.failed || client.received != requests) {
+                failed++;
+            }
+        }
+        return new Report(connections, responses, bytes, elapsed, failed, errors, latency);
+    }
+
+    /**
+     * A single connection of the load generator.
+     *
+     * @author Walied K. Yassen
+     */
+    private final class Client {
+
+        /**
+         * The send times of the requests that are in flight keyed by the requested group.
+         */
+        private final Map<Integer, ArrayDeque<Long>> inflight = new HashMap<>();
+
+        /**
+         * The buffer which the responses are read into.
+         */
+        private final ByteBuffer input = ByteBuffer.allocate(INPUT_SIZE);
+
+        /**
+         * The buffer which holds the bytes that are waiting to be sent.
+         */
+        private ByteBuffer output = ByteBuffer.allocate(0);
+
+        /**
+         * The index of the connection.
+         */
+        private final int index;
+
+        /**
+         * The channel of the connection.
+         */
+        private final SocketChannel channel;
+
+        /**
+         * The histogram which the latencies of the requests are recorded to.
+         */
+        private final LatencyHistogram latency;
+
+        /**
+         * The amount of requests that were sent.
+         */
+        private int sent;
+
+        /**
+         * The amount of responses that were received.
+         */
+        private int received;
+
+        /**
+         * The amount of bytes that were received.
+         */
+        private long bytes;
+
+        /**
+         * The amount of responses which did not match any request.
+         */
+        private int errors;
+
+        /**
+         * Whether or not the handshake response was received.
+         */
+        private boolean accepted;
+
+        /**
+         * Whether or not the connection failed.
+         */
+        private boolean failed;
+
+        /**
+         * The group of the response which is currently being received or {@code -1} if the header was not read yet.
+         */
+        private int group = -1;
+
+        /**
+         * The amount of bytes which are left of the response that is currently being received.
+         */
+        private int left;
+
+        /**
+         * Constructs a new {@link Client} type object instance.
+         *
+         * @param index   the index of the connection.
+         * @param channel the channel of the connection.
+         * @param latency the histogram which the latencies of the requests are recorded to.
+         */
+        Client(int index, SocketChannel channel, LatencyHistogram latency) {
+            this.index = index;
+            this.channel = channel;
+            this.latency = latency;
+        }
+
+        /**
+         * Queues the handshake and the first window of requests.
+         */
+        void handshake() {
+            ByteBuffer buffer = ByteBuffer.allocate(5 + window * 4);
+            buffer.put((byte) Js5Connection.OPCODE_HANDSHAKE);
+            buffer.putInt(revision);
+            fill(buffer, window);
+            buffer.flip();
+            output = buffer;
+        }
+
+        /**
+         * Puts up to the specified amount of requests into the specified buffer.
+         *
+         * @param buffer the buffer to put the requests into.
+         * @param count  the maximum amount of requests.
+         */
+        private void fill(ByteBuffer buffer, int count) {
+            long now = System.nanoTime();
+            for (; count > 0 && sent < requests; count--, sent++) {
+                int request = groups[(int) (((long) index * 7919 + sent) % groups.length)];
+                boolean prefetch = prefetchInterval > 0 && sent % prefetchInterval == 0;
+                buffer.put((byte) (prefetch ? Js5Connection.OPCODE_PREFETCH : Js5Connection.OPCODE_URGENT));
+                buffer.put((byte) (request >>> 16));
+                buffer.putShort((short) request);
+                inflight.computeIfAbsent(request, key -> new ArrayDeque<>()).add(now);
+            }
+        }
+
+        /**
+         * Writes the pending requests to the channel.
+         *
+         * @throws IOException if anything occurs while writing to the channel.
+         */
+        void write() throws IOException {
+            if (output.hasRemaining()) {
+                channel.write(output);
+            }
+        }
+
+        /**
+         * Reads and parses the available responses, then queues a new request for each response that was completed.
+         *
+         * @throws IOException if anything occurs while reading from the channel.
+         */
+        void read() throws IOException {
+            int read = channel.read(input);
+            if (read == -1) {
+                failed = true;
+                return;
+            }
+            bytes += read;
+            input.flip();
+            int completed = 0;
+            if (!accepted && input.hasRemaining()) {
+                if (input.get() != Js5Connection.STATUS_OK) {
+                    failed = true;
+                    return;
+                }
+                accepted = true;
+            }
+            while (true) {
+                if (group == -1) {
+                    if (input.remaining() < RESPONSE_HEADER_SIZE) {
+                        break;
+                    }
+                    int position = input.position();
+                    group = (input.get(position) & 0xff) << 16 | (input.getShort(position + 1) & 0xffff);
+                    int compression = input.get(position + 3) & ~Js5Framing.PREFETCH_FLAG & 0xff;
+                    int length = input.getInt(position + 4);
+                    int container = 5 + length + (compression != 0 ? 4 : 0);
+                    left = Js5Framing.getFramedLength(Js5Framing.HEADER_SIZE + container);
+                }
+                int count = Math.min(left, input.remaining());
+                input.position(input.position() + count);
+                left -= count;
+                if (left > 0) {
+                    break;
+                }
+                ArrayDeque<Long> times = inflight.get(group);
+                Long time = times != null ? times.poll() : null;
+                if (time == null) {
+                    errors++;
+                } else {
+                    latency.record(System.nanoTime() - time);
+                }
+                group = -1;
+                received++;
+                completed++;
+            }
+            input.compact();
+            if (completed > 0 && sent < requests) {
+                ByteBuffer buffer = ByteBuffer.allocate(output.remaining() + completed * 4);
+                buffer.put(output);
+                fill(buffer, completed);
+                buffer.flip();
+                output = buffer;
+            }
+        }
+    }
+
+    /**
+     * The outcome of a single run of the load generator.
+     *
+     * @author Walied K. Yassen
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Report {
+
+        /**
+         * The amount of connections that were opened.
+         */
+        private final int connections;
+
+        /**
+         * The amount of responses that were received.
+         */
+        private final long responses;
+
+        /**
+         * The amount of bytes that were received.
+         */
+        private final long bytes;
+
+        /**
+         * The time the run took in nanoseconds.
+         */
+        private final long elapsed;
+
+        /**
+         * The amount of connections that failed or did not receive all of their responses.
+         */
+        private final int failed;
+
+        /**
+         * The amount of responses which did not match any request.
+         */
+        private final int errors;
+
+        /**
+         * The latencies of the requests.
+         */
+        private final LatencyHistogram latency;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            double seconds = elapsed / 1e9;
+            return String.format("connections=%d failed=%d errors=%d responses=%d (%.0f/s) bytes=%d (%.1f MiB/s) latency: mean=%.2fms p50=%.2fms p99=%.2fms",
+                    connections, failed, errors, responses, responses / seconds, bytes, bytes / seconds / (1 << 20),
+                    latency.getMean() / 1e6, latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6);
+        }
+    }
+
+    /**
+     * Runs the load generator against a local server, the requested groups are taken from a local copy of the cache
+     * which the server is serving.
+     * <p>
+     * Arguments: {@code <host> <port> <revision> <cache directory> <connections> <requests> [window] [prefetch interval]}.
+     *
+     * @param args the arguments of the load generator.
+     */
+    public static void main(String[] args) {
+        if (args.length < 6) {
+            System.err.println("Usage: Js5LoadGenerator <host> <port> <revision> <cache directory> <connections> <requests> [window] [prefetch interval]");
+            return;
+        }
+        Cache cache = Cache.openJava(Paths.get(args[3]));
+        int count = 0;
+        int[][] ids = new int[255][];
+        for (int archiveId = 0; archiveId < 255; archiveId++) {
+            Archive archive = cache.get(archiveId);
+            if (archive != null) {
+                ids[archiveId] = archive.getGroupIds();
+                count += ids[archiveId].length;
+            }
+        }
+        int[] groups = new int[count];
+        count = 0;
+        for (int archiveId = 0; archiveId < 255; archiveId++) {
+            if (ids[archiveId] != null) {
+                for (int groupId : ids[archiveId]) {
+                    groups[count++] = archiveId << 16 | groupId;
+                }
+            }
+        }
+        InetSocketAddress address = new InetSocketAddress(args[0], Integer.parseInt(args[1]));
+        int window = args.length > 6 ? Integer.parseInt(args[6]) : 32;
+        int prefetchInterval = args.length > 7 ? Integer.parseInt(args[7]) : 0;
+        Js5LoadGenerator generator = new Js5LoadGenerator(groups, address, Integer.parseInt(args[2]), Integer.parseInt(args[4]), Integer.parseInt(args[5]), window, prefetchInterval);
+        System.out.println(generator.run(5, TimeUnit.MINUTES));
+    }
+}
@@ -0,0 +1,252 @@
+package me.waliedyassen.cache.js5.server;
+
+import lombok.Getter;
+import me.waliedyassen.cache.Cache;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.js5.Js5ResponseCache;
+import me.waliedyassen.cache.memory.SlabAllocator;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A non-blocking JS5 update server which serves the groups of a cache. The accepted connections are spread over a
+ * fixed amount of {@link Js5EventLoop event loops}, each of them is a single thread with its own selector which serves
+ * thousands of connections, and the responses are taken from a {@link Js5ResponseCache}, so a group is only ever
+ * framed once no matter how many clients request it.
+ * <p>
+ * Every connection may pipeline up to {@link #getMaxPendingRequests()} requests, once the limit is reached the server
+ * stops reading from the connection until some of the requests were served, so a client can never make the server
+ * buffer an unbounded amount of requests.
+ *
+ * @author Walied K. Yassen
+ */
+public final class Js5Server implements AutoCloseable {
+
+    /**
+     * The default maximum amount of pending requests per connection.
+     */
+    public static final int DEFAULT_MAX_PENDING_REQUESTS = 256;
+
+    /**
+     * The maximum amount of connections which are waiting to be accepted.
+     */
+    private static final int BACKLOG = 1024;
+
+    /**
+     * The initial amount of time in milliseconds the acceptor waits before accepting again after a failure.
+     */
+    private static final long MIN_ACCEPT_BACKOFF = 10;
+
+    /**
+     * The maximum amount of time in milliseconds the acceptor waits before accepting again after a failure.
+     */
+    private static final long MAX_ACCEPT_BACKOFF = 1000;
+
+    /**
+     * The cache of the framed responses which the server serves.
+     */
+    @Getter
+    private final Js5ResponseCache responses;
+
+    /**
+     * The revision which the clients must handshake with.
+     */
+    @Getter
+    private final int revision;
+
+    /**
+     * The maximum amount of pending requests per connection.
+     */
+    @Getter
+    private final int maxPendingRequests;
+
+    /**
+     * The event loops which serve the connections.
+     */
+    private final Js5EventLoop[] loops;
+
+    /**
+     * The channel which the connections are accepted from.
+     */
+    private final ServerSocketChannel channel;
+
+    /**
+     * The thread which accepts the connections.
+     */
+    private final Thread acceptor;
+
+    /**
+     * Constructs a new {@link Js5Server} type object instance.
+     *
+     * @param responses          the cache of the framed responses which the server serves.
+     * @param revision           the revision which the clients must handshake with.
+     * @param threads            the amount of event loops.
+     * @param maxPendingRequests the maximum amount of pending requests per connection.
+     * @param address            the address which the server is bound to.
+     * @throws IOException if anything occurs while binding the server.
+     */
+    private Js5Server(Js5ResponseCache responses, int revision, int threads, int maxPendingRequests, SocketAddress address) throws IOException {
+        this.responses = responses;
+        this.revision = revision;
+        this.maxPendingRequests = maxPendingRequests;
+        channel = ServerSocketChannel.open();
+        channel.bind(address, BACKLOG);
+        loops = new Js5EventLoop[threads];
+        for (int index = 0; index < threads; index++) {
+            loops[index] = new Js5EventLoop(this, index);
+        }
+        acceptor = new Thread(this::accept, "js5-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Accepts the incoming connections and hands them over to the running event loop which has the least connections.
+     * A failure to accept, such as running out of file descriptors, makes the acceptor wait before trying again, with
+     * the wait doubled on every consecutive failure. Once none of the event loops is running, the server stops
+     * accepting connections.
+     */
+    private void accept() {
+        long backoff = MIN_ACCEPT_BACKOFF;
+        while (channel.isOpen()) {
+            SocketChannel accepted;
+            try {
+                accepted = channel.accept();
+                backoff = MIN_ACCEPT_BACKOFF;
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ignored) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_ACCEPT_BACKOFF);
+                continue;
+            }
+            Js5EventLoop target = null;
+            for (Js5EventLoop loop : loops) {
+                if (!loop.isTerminated() && (target == null || loop.getConnectionCount() < target.getConnectionCount())) {
+                    target = loop;
+                }
+            }
+            if (target == null) {
+                try {
+                    accepted.close();
+                    channel.close();
+                } catch (IOException e) {
+                    // NOOP
+                }
+                return;
+            }
+            target.register(accepted);
+        }
+    }
+
+    /**
+     * Returns the failure which stopped one of the event loops of the server.
+     *
+     * @return the failure of the first event loop which failed, or {@code null} if none of them failed.
+     */
+    public CacheException getFailure() {
+        for (Js5EventLoop loop : loops) {
+            CacheException failure = loop.getFailure();
+            if (failure != null) {
+                return failure;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the address which the server is bound to.
+     *
+     * @return the bound address.
+     */
+    public SocketAddress getAddress() {
+        try {
+            return channel.getLocalAddress();
+        } catch (IOException e) {
+            throw new CacheException("Failed to retrieve the address of the server", e);
+        }
+    }
+
+    /**
+     * Returns the amount of connections which are currently open.
+     *
+     * @return the amount of connections.
+     */
+    public int getConnectionCount() {
+        int count = 0;
+        for (Js5EventLoop loop : loops) {
+            count += loop.getConnectionCount();
+        }
+        return count;
+    }
+
+    /**
+     * Stops accepting new connections and closes all of the open connections.
+     *
+     * @throws CacheException if any of the event loops of the server has failed.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new CacheException("Failed to close the server", e);
+        }
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Js5EventLoop loop : loops) {
+            loop.close();
+        }
+        CacheException failure = getFailure();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Starts a new {@link Js5Server} which serves the specified {@link Js5ResponseCache responses}.
+     *
+     * @param responses          the cache of the framed responses which the server serves.
+     * @param address            the address which the server is bound to.
+     * @param revision           the revision which the clients must handshake with.
+     * @param threads            the amount of event loops.
+     * @param maxPendingRequests the maximum amount of pending requests per connection.
+     * @return the started {@link Js5Server} object.
+     */
+    public static Js5Server start(Js5ResponseCache responses, SocketAddress address, int revision, int threads, int maxPendingRequests) {
+        if (threads < 1 || maxPendingRequests < 1) {
+            throw new IllegalArgumentException("The amount of threads and pending requests must be positive");
+        }
+        try {
+            return new Js5Server(responses, revision, threads, maxPendingRequests, address);
+        } catch (IOException e) {
+            throw new CacheException("Failed to bind the server to " + address, e);
+        }
+    }
+
+    /**
+     * Starts a new {@link Js5Server} which serves the groups and the plain master checksum table of the specified
+     * {@link Cache cache}, the framed responses are kept within the specified {@code allocator}.
+     *
+     * @param cache     the cache which the server serves.
+     * @param allocator the allocator which the memory of the framed responses is allocated from.
+     * @param address   the address which the server is bound to.
+     * @param revision  the revision which the clients must handshake with.
+     * @param threads   the amount of event loops.
+     * @return the started {@link Js5Server} object.
+     */
+    public static Js5Server start(Cache cache, SlabAllocator allocator, SocketAddress address, int revision, int threads) {
+        Js5ResponseCache responses = new Js5ResponseCache(cache, allocator, false);
+        return start(responses, address, revision, threads, DEFAULT_MAX_PENDING_REQUESTS);
+    }
+}
@@ -0,0 +1,67 @@
+package me.waliedyassen.cache.js5.server;
+
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link WritableByteChannel} which encrypts everything that is written through it with a single byte XOR key
+ * before passing it to the underlying channel, as requested by the encryption key request of the JS5 protocol. The
+ * data is copied into a scratch buffer to be encrypted, so the responses of a connection that uses a key are never
+ * transferred without a copy.
+ *
+ * @author Walied K. Yassen
+ */
+@RequiredArgsConstructor
+final class Js5XorChannel implements WritableByteChannel {
+
+    /**
+     * The underlying channel which the encrypted data is written to.
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * The scratch buffer which the data is encrypted in.
+     */
+    private final ByteBuffer scratch;
+
+    /**
+     * The key which the data is encrypted with.
+     */
+    private final byte key;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        scratch.clear();
+        int count = Math.min(src.remaining(), scratch.remaining());
+        int position = src.position();
+        for (int index = 0; index < count; index++) {
+            scratch.put((byte) (src.get(position + index) ^ key));
+        }
+        scratch.flip();
+        int written = channel.write(scratch);
+        src.position(position + written);
+        return written;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,136 @@
+package me.waliedyassen.cache.memory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link RegionSource} which maps consecutive regions of a backing file. The ranges of the file which were released
+ * are kept in a first-fit free list which coalesces the adjacent ranges, so the file never grows past the largest
+ * amount of memory that was reserved at once.
+ *
+ * @author Walied K. Yassen
+ */
+final class MappedRegionSource implements RegionSource {
+
+    /**
+     * The ranges of the file which are not used by any region, the length of each range keyed by its offset.
+     */
+    private final TreeMap<Long, Long> free = new TreeMap<>();
+
+    /**
+     * The offset of each region which is in use within the file.
+     */
+    private final Map<ByteBuffer, Long> offsets = new IdentityHashMap<>();
+
+    /**
+     * The path of the backing file.
+     */
+    private final Path file;
+
+    /**
+     * The channel of the backing file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The offset of the end of the used part of the file.
+     */
+    private long end;
+
+    /**
+     * Constructs a new {@link MappedRegionSource} type object instance.
+     *
+     * @param file    the path of the backing file.
+     * @param channel the channel of the backing file.
+     */
+    MappedRegionSource(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ByteBuffer create(int size) throws IOException {
+        long offset = end;
+        long length = 0;
+        for (Map.Entry<Long, Long> range : free.entrySet()) {
+            if (range.getValue() >= size) {
+                offset = range.getKey();
+                length = range.getValue();
+                break;
+            }
+        }
+        ByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+        if (offset == end) {
+            end += size;
+        } else {
+            free.remove(offset);
+            if (length > size) {
+                free.put(offset + size, length - size);
+            }
+        }
+        offsets.put(region, offset);
+        return region;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void release(ByteBuffer region) {
+        long offset = offsets.remove(region);
+        long size = region.capacity();
+        Map.Entry<Long, Long> before = free.floorEntry(offset);
+        if (before != null && before.getKey() + before.getValue() == offset) {
+            long length = before.getValue();
+            offset = before.getKey();
+            size += length;
+            free.remove(offset);
+        }
+        Long after = free.remove(offset + size);
+        if (after != null) {
+            size += after;
+        }
+        if (offset + size == end) {
+            end = offset;
+        } else {
+            free.put(offset, size);
+        }
+    }
+
+    /**
+     * Returns the offset of the end of the used part of the file.
+     *
+     * @return the offset of the end.
+     */
+    long getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns the offset of the specified {@code region} within the file.
+     *
+     * @param region the region which was created by this source.
+     * @return the offset of the region.
+     */
+    long getOffset(ByteBuffer region) {
+        return offsets.get(region);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,255 @@
+package me.waliedyassen.cache.memory;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A memory budget which is shared by several caches, it enforces a single byte limit across all of the memory that
+ * is charged to the accounts which are registered with it. When a reservation does not fit within the limit, memory
+ * is reclaimed from the account which is the furthest over its fair share, which is an equal split of the limit
+ * between all of the accounts, so a single busy cache cannot starve the others.
+ *
+ * @author Walied K. Yassen
+ */
+public final class MemoryBudget {
+
+    /**
+     * The accounts which are registered with the budget.
+     */
+    private final List<Account> accounts = new ArrayList<>();
+
+    /**
+     * The maximum amount of bytes that can be charged to all the accounts.
+     */
+    @Getter
+    private final long limit;
+
+    /**
+     * The amount of bytes that are currently charged to all the accounts.
+     */
+    private long used;
+
+    /**
+     * Constructs a new {@link MemoryBudget} type object instance.
+     *
+     * @param limit the maximum amount of bytes that can be charged to all the accounts.
+     */
+    public MemoryBudget(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Registers a new account with the budget.
+     *
+     * @param name      the name of the account.
+     * @param reclaimer the reclaimer which frees the memory of the account when the budget is under pressure.
+     * @return the registered {@link Account} object.
+     */
+    public synchronized Account register(String name, Reclaimer reclaimer) {
+        Account account = new Account(name, reclaimer);
+        accounts.add(account);
+        return account;
+    }
+
+    /**
+     * Returns the amount of bytes that are currently charged to all the accounts.
+     *
+     * @return the used bytes.
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * Returns the amount of accounts which are registered with the budget.
+     *
+     * @return the amount of accounts.
+     */
+    public synchronized int getAccountCount() {
+        return accounts.size();
+    }
+
+    /**
+     * Charges the specified amount of {@code bytes} to the specified {@link Account account}, reclaiming memory from
+     * the accounts which are the furthest over their fair share until it fits.
+     *
+     * @param account the account which the bytes are charged to.
+     * @param bytes   the amount of bytes to charge.
+     * @param force   whether or not to charge the bytes even if they do not fit after reclaiming.
+     * @return <code>true</code> if the bytes were charged otherwise <code>false</code>.
+     */
+    private boolean reserve(Account account, long bytes, boolean force) {
+        List<Account> exhausted = new ArrayList<>();
+        while (true) {
+            Account victim;
+            long needed;
+            synchronized (this) {
+                if (!accounts.contains(account)) {
+                    throw new IllegalStateException("The account is no longer registered with the budget");
+                }
+                needed = used + bytes - limit;
+                victim = needed > 0 ? selectVictim(exhausted) : null;
+                if (needed <= 0 || victim == null && force) {
+                    charge(account, bytes);
+                    return true;
+                }
+                if (victim == null) {
+                    return false;
+                }
+            }
+            if (victim.reclaimer.reclaim(needed) <= 0) {
+                exhausted.add(victim);
+            }
+        }
+    }
+
+    /**
+     * Selects the account which is the furthest over its fair share and is not exhausted.
+     *
+     * @param exhausted the accounts which have nothing left to reclaim.
+     * @return the selected {@link Account} or {@code null} if there is no account left.
+     */
+    private Account selectVictim(List<Account> exhausted) {
+        long share = limit / Math.max(1, accounts.size());
+        Account victim = null;
+        for (Account account : accounts) {
+            if (account.used <= 0 || exhausted.contains(account)) {
+                continue;
+            }
+            if (victim == null || account.used - share > victim.used - share) {
+                victim = account;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Charges the specified amount of {@code bytes} to the specified account.
+     *
+     * @param account the account which the bytes are charged to.
+     * @param bytes   the amount of bytes to charge, a negative amount releases the bytes.
+     */
+    private synchronized void charge(Account account, long bytes) {
+        if (!accounts.contains(account)) {
+            return;
+        }
+        account.used += bytes;
+        used += bytes;
+    }
+
+    /**
+     * Removes the specified account from the budget and releases all the bytes that are charged to it.
+     *
+     * @param account the account that we want to remove.
+     */
+    private synchronized void unregister(Account account) {
+        if (accounts.remove(account)) {
+            used -= account.used;
+            account.used = 0;
+        }
+    }
+
+    /**
+     * Frees the memory of an account when the budget is under pressure.
+     *
+     * @author Walied K. Yassen
+     */
+    @FunctionalInterface
+    public interface Reclaimer {
+
+        /**
+         * Frees at least the specified amount of {@code bytes} if possible and releases them from the account. This
+         * is never called while the budget is locked.
+         *
+         * @param bytes the amount of bytes that we want to be freed.
+         * @return the amount of bytes that were freed.
+         */
+        long reclaim(long bytes);
+    }
+
+    /**
+     * A single account of the budget, it tracks the memory that is charged to a single cache.
+     *
+     * @author Walied K. Yassen
+     */
+    public final class Account implements AutoCloseable {
+
+        /**
+         * The name of the account.
+         */
+        @Getter
+        private final String name;
+
+        /**
+         * The reclaimer which frees the memory of the account.
+         */
+        private final Reclaimer reclaimer;
+
+        /**
+         * The amount of bytes that are currently charged to the account.
+         */
+        private long used;
+
+        /**
+         * Constructs a new {@link Account} type object instance.
+         *
+         * @param name      the name of the account.
+         * @param reclaimer the reclaimer which frees the memory of the account.
+         */
+        private Account(String name, Reclaimer reclaimer) {
+            this.name = name;
+            this.reclaimer = reclaimer;
+        }
+
+        /**
+         * Attempts to charge the specified amount of {@code bytes} to the account, reclaiming memory from the
+         * accounts which are over their fair share if necessary.
+         *
+         * @param bytes the amount of bytes to charge.
+         * @return <code>true</code> if the bytes were charged otherwise <code>false</code>.
+         */
+        public boolean reserve(long bytes) {
+            return MemoryBudget.this.reserve(this, bytes, false);
+        }
+
+        /**
+         * Charges the specified amount of {@code bytes} to the account for memory which cannot be reclaimed. Memory is
+         * still reclaimed from the other accounts to stay within the limit if possible.
+         *
+         * @param bytes the amount of bytes to charge.
+         */
+        public void forceReserve(long bytes) {
+            MemoryBudget.this.reserve(this, bytes, true);
+        }
+
+        /**
+         * Releases the specified amount of {@code bytes} from the account.
+         *
+         * @param bytes the amount of bytes to release.
+         */
+        public void release(long bytes) {
+            charge(this, -bytes);
+        }
+
+        /**
+         * Returns the amount of bytes that are currently charged to the account.
+         *
+         * @return the used bytes.
+         */
+        public long getUsed() {
+            synchronized (MemoryBudget.this) {
+                return used;
+            }
+        }
+
+        /**
+         * Removes the account from the budget and releases all the bytes that are charged to it.
+         */
+        @Override
+        public void close() {
+            unregister(this);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package me.waliedyassen.cache.memory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference counted buffer which is allocated from a {@link SlabAllocator}. The buffer is created with a single
+ * reference, every holder that shares the buffer must {@link #retain()} it and {@link #release()} it when it is done,
+ * once the last reference is released the memory is returned to the allocator and must not be accessed anymore.
+ *
+ * @author Walied K. Yassen
+ */
+public final class OffHeapBuffer {
+
+    /**
+     * The amount of references to the buffer.
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * The allocator which the buffer was allocated from.
+     */
+    private final SlabAllocator allocator;
+
+    /**
+     * The slab which the buffer was carved from or {@code null} if the buffer has its own region.
+     */
+    final SlabAllocator.Slab slab;
+
+    /**
+     * The memory of the buffer, its capacity may be larger than the length of the buffer.
+     */
+    final ByteBuffer memory;
+
+    /**
+     * The length of the buffer.
+     */
+    private final int length;
+
+    /**
+     * Constructs a new {@link OffHeapBuffer} type object instance.
+     *
+     * @param allocator the allocator which the buffer was allocated from.
+     * @param slab      the slab which the buffer was carved from or {@code null}.
+     * @param memory    the memory of the buffer.
+     * @param length    the length of the buffer.
+     */
+    OffHeapBuffer(SlabAllocator allocator, SlabAllocator.Slab slab, ByteBuffer memory, int length) {
+        this.allocator = allocator;
+        this.slab = slab;
+        this.memory = memory;
+        this.length = length;
+    }
+
+    /**
+     * Returns the length of the buffer.
+     *
+     * @return the length of the buffer in bytes.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns a read-only view of the whole buffer.
+     *
+     * @return the read-only {@link ByteBuffer} view.
+     */
+    public ByteBuffer view() {
+        return view(0, length);
+    }
+
+    /**
+     * Returns a read-only view of the specified region of the buffer.
+     *
+     * @param offset the offset of the region.
+     * @param count  the length of the region.
+     * @return the read-only {@link ByteBuffer} view.
+     */
+    public ByteBuffer view(int offset, int count) {
+        if (offset < 0 || count < 0 || offset + count > length) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureAccessible();
+        ByteBuffer view = memory.asReadOnlyBuffer();
+        view.limit(offset + count).position(offset);
+        return view.slice();
+    }
+
+    /**
+     * Writes the specified region of the {@code src} array to the buffer at the specified {@code offset}. This should
+     * only be used to populate the buffer before it is shared.
+     *
+     * @param offset the offset within the buffer to write the data at.
+     * @param src    the array which contains the data.
+     * @param off    the offset within the array to start reading at.
+     * @param count  the amount of bytes to write.
+     */
+    public void write(int offset, byte[] src, int off, int count) {
+        if (offset < 0 || count < 0 || offset + count > length) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureAccessible();
+        ByteBuffer view = memory.duplicate();
+        view.position(offset);
+        view.put(src, off, count);
+    }
+
+    /**
+     * Attempts to acquire a new reference to the buffer.
+     *
+     * @return <code>true</code> if the reference was acquired or <code>false</code> if the buffer was already freed.
+     */
+    public boolean tryRetain() {
+        while (true) {
+            int count = references.get();
+            if (count <= 0) {
+                return false;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Acquires a new reference to the buffer.
+     *
+     * @return this {@link OffHeapBuffer} object.
+     * @throws IllegalStateException if the buffer was already freed.
+     */
+    public OffHeapBuffer retain() {
+        if (!tryRetain()) {
+            throw new IllegalStateException("The buffer was already released");
+        }
+        return this;
+    }
+
+    /**
+     * Releases a reference to the buffer, the memory is returned to the allocator when the last reference is released.
+     *
+     * @return <code>true</code> if the memory was returned to the allocator otherwise <code>false</code>.
+     */
+    public boolean release() {
+        int count = references.decrementAndGet();
+        if (count < 0) {
+            throw new IllegalStateException("The buffer was already released");
+        }
+        if (count == 0) {
+            allocator.free(this);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the amount of references to the buffer.
+     *
+     * @return the amount of references.
+     */
+    public int getReferenceCount() {
+        return references.get();
+    }
+
+    /**
+     * Ensures the buffer is still accessible.
+     */
+    private void ensureAccessible() {
+        if (references.get() <= 0) {
+            throw new IllegalStateException("The buffer was already released");
+        }
+    }
+}
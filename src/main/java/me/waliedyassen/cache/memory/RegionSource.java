@@ -0,0 +1,34 @@
+package me.waliedyassen.cache.memory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A source of the memory regions which the {@link SlabAllocator} carves its allocations from.
+ *
+ * @author Walied K. Yassen
+ */
+interface RegionSource extends AutoCloseable {
+
+    /**
+     * Creates a new memory region with the specified {@code size}.
+     *
+     * @param size the size of the region in bytes.
+     * @return the created region.
+     * @throws IOException if anything occurs while mapping the region.
+     */
+    ByteBuffer create(int size) throws IOException;
+
+    /**
+     * Returns the memory of the specified {@code region} which is no longer used by the allocator to the source.
+     *
+     * @param region the region which was created by this source.
+     */
+    void release(ByteBuffer region);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void close() throws IOException;
+}
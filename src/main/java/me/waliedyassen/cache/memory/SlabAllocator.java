@@ -0,0 +1,384 @@
+package me.waliedyassen.cache.memory;
+
+import me.waliedyassen.cache.CacheException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A slab allocator over direct or mapped memory. The memory is reserved in fixed size slabs, each slab is carved into
+ * equal slots of a single power-of-two size class, and a slab which has no used slots left is returned to a shared
+ * pool so it can be carved for any size class again. Allocations which are larger than a slab get a region of their
+ * own, which is kept for reuse by allocations of the same rounded size after it is released.
+ * <p>
+ * The total amount of reserved memory never exceeds the capacity of the allocator. When a new region does not fit
+ * within the capacity, the pooled empty slabs and released large regions are returned to the source first, so the
+ * capacity is never stranded in a shape which no longer fits the allocations. An allocation which still cannot be
+ * satisfied returns {@code null} so the caller can evict something and try again.
+ *
+ * @author Walied K. Yassen
+ */
+public final class SlabAllocator implements AutoCloseable {
+
+    /**
+     * The smallest size class of the slots.
+     */
+    private static final int MIN_SLOT_SIZE = 64;
+
+    /**
+     * The slabs of each size class which still have free slots.
+     */
+    private final List<Deque<Slab>> partial;
+
+    /**
+     * The slabs which have no used slots.
+     */
+    private final Deque<ByteBuffer> empty = new ArrayDeque<>();
+
+    /**
+     * The released regions of the large allocations keyed by their size.
+     */
+    private final Map<Integer, Deque<ByteBuffer>> large = new HashMap<>();
+
+    /**
+     * The source which the memory regions are created from.
+     */
+    private final RegionSource source;
+
+    /**
+     * The size of each slab.
+     */
+    private final int slabSize;
+
+    /**
+     * The maximum amount of memory the allocator can reserve.
+     */
+    private final long capacity;
+
+    /**
+     * The amount of memory that is currently reserved.
+     */
+    private long reserved;
+
+    /**
+     * The amount of memory that is currently allocated.
+     */
+    private long used;
+
+    /**
+     * Constructs a new {@link SlabAllocator} type object instance.
+     *
+     * @param source   the source which the memory regions are created from.
+     * @param slabSize the size of each slab.
+     * @param capacity the maximum amount of memory the allocator can reserve.
+     */
+    private SlabAllocator(RegionSource source, int slabSize, long capacity) {
+        if (slabSize < MIN_SLOT_SIZE || Integer.bitCount(slabSize) != 1) {
+            throw new IllegalArgumentException("The slab size must be a power of two of at least " + MIN_SLOT_SIZE);
+        }
+        this.source = source;
+        this.slabSize = slabSize;
+        this.capacity = capacity;
+        int sizeClasses = Integer.numberOfTrailingZeros(slabSize) - Integer.numberOfTrailingZeros(MIN_SLOT_SIZE) + 1;
+        partial = new ArrayList<>(sizeClasses);
+        for (int index = 0; index < sizeClasses; index++) {
+            partial.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Allocates a buffer with the specified {@code size}.
+     *
+     * @param size the size of the buffer.
+     * @return the allocated {@link OffHeapBuffer} or {@code null} if there is no room left within the capacity.
+     */
+    public synchronized OffHeapBuffer allocate(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The size must not be negative");
+        }
+        if (size > slabSize) {
+            return allocateLarge(size);
+        }
+        int sizeClass = getSizeClass(size);
+        Deque<Slab> slabs = partial.get(sizeClass);
+        Slab slab = slabs.peek();
+        if (slab == null) {
+            ByteBuffer region = empty.poll();
+            if (region == null) {
+                region = reserve(slabSize);
+                if (region == null) {
+                    return null;
+                }
+            }
+            slab = new Slab(region, MIN_SLOT_SIZE << sizeClass);
+            slabs.push(slab);
+        }
+        ByteBuffer slot = slab.slots.pop();
+        if (slab.slots.isEmpty()) {
+            slabs.remove(slab);
+        }
+        used += slab.slotSize;
+        return new OffHeapBuffer(this, slab, slot, size);
+    }
+
+    /**
+     * Allocates a buffer which is larger than a slab.
+     *
+     * @param size the size of the buffer.
+     * @return the allocated {@link OffHeapBuffer} or {@code null} if there is no room left within the capacity.
+     */
+    private OffHeapBuffer allocateLarge(int size) {
+        int rounded = (int) Math.min(Integer.MAX_VALUE, ((long) size + slabSize - 1) / slabSize * slabSize);
+        Deque<ByteBuffer> regions = large.get(rounded);
+        ByteBuffer region = regions != null ? regions.poll() : null;
+        if (region == null) {
+            region = reserve(rounded);
+            if (region == null) {
+                return null;
+            }
+        }
+        used += rounded;
+        return new OffHeapBuffer(this, null, region, size);
+    }
+
+    /**
+     * Reserves a new region with the specified {@code size} from the source.
+     *
+     * @param size the size of the region.
+     * @return the reserved region or {@code null} if it does not fit within the capacity.
+     */
+    private ByteBuffer reserve(int size) {
+        if (reserved + size > capacity && !reclaim(size)) {
+            return null;
+        }
+        try {
+            ByteBuffer region = source.create(size);
+            reserved += size;
+            return region;
+        } catch (IOException e) {
+            throw new CacheException("Failed to reserve an off-heap region", e);
+        }
+    }
+
+    /**
+     * Returns the pooled empty slabs and then the released large regions to the source until a region with the
+     * specified {@code size} fits within the capacity.
+     *
+     * @param size the size of the region which we want to reserve.
+     * @return <code>true</code> if the region fits within the capacity otherwise <code>false</code>.
+     */
+    private boolean reclaim(int size) {
+        while (reserved + size > capacity && !empty.isEmpty()) {
+            release(empty.poll());
+        }
+        Iterator<Deque<ByteBuffer>> iterator = large.values().iterator();
+        while (reserved + size > capacity && iterator.hasNext()) {
+            Deque<ByteBuffer> regions = iterator.next();
+            while (reserved + size > capacity && !regions.isEmpty()) {
+                release(regions.poll());
+            }
+            if (regions.isEmpty()) {
+                iterator.remove();
+            }
+        }
+        return reserved + size <= capacity;
+    }
+
+    /**
+     * Returns the specified pooled {@code region} to the source.
+     *
+     * @param region the region which is no longer used by the allocator.
+     */
+    private void release(ByteBuffer region) {
+        reserved -= region.capacity();
+        source.release(region);
+    }
+
+    /**
+     * Returns the memory of the specified {@link OffHeapBuffer buffer} to the allocator.
+     *
+     * @param buffer the buffer which its memory should be returned.
+     */
+    synchronized void free(OffHeapBuffer buffer) {
+        Slab slab = buffer.slab;
+        if (slab == null) {
+            int rounded = buffer.memory.capacity();
+            large.computeIfAbsent(rounded, key -> new ArrayDeque<>()).push(buffer.memory);
+            used -= rounded;
+            return;
+        }
+        used -= slab.slotSize;
+        Deque<Slab> slabs = partial.get(getSizeClass(slab.slotSize));
+        if (slab.slots.isEmpty()) {
+            slabs.push(slab);
+        }
+        slab.slots.push(buffer.memory);
+        if (slab.slots.size() == slab.slotCount) {
+            slabs.remove(slab);
+            empty.push(slab.region);
+        }
+    }
+
+    /**
+     * Returns the size class index of the specified allocation {@code size}.
+     *
+     * @param size the size of the allocation.
+     * @return the size class index.
+     */
+    private static int getSizeClass(int size) {
+        if (size <= MIN_SLOT_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_SLOT_SIZE);
+    }
+
+    /**
+     * Returns the maximum amount of memory the allocator can reserve.
+     *
+     * @return the capacity in bytes.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the amount of memory that is currently reserved from the source.
+     *
+     * @return the reserved memory in bytes.
+     */
+    public synchronized long getReserved() {
+        return reserved;
+    }
+
+    /**
+     * Returns the amount of memory that is currently allocated, including the unused tails of the slots.
+     *
+     * @return the allocated memory in bytes.
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        try {
+            source.close();
+        } catch (IOException e) {
+            throw new CacheException("Failed to close the off-heap region source", e);
+        }
+    }
+
+    /**
+     * Creates a new {@link SlabAllocator} which reserves its memory as direct buffers.
+     *
+     * @param slabSize the size of each slab, it must be a power of two.
+     * @param capacity the maximum amount of memory the allocator can reserve.
+     * @return the created {@link SlabAllocator} object.
+     */
+    public static SlabAllocator direct(int slabSize, long capacity) {
+        return new SlabAllocator(new RegionSource() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public ByteBuffer create(int size) {
+                return ByteBuffer.allocateDirect(size);
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void release(ByteBuffer region) {
+                // the memory is freed once the region is collected.
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void close() {
+                // NOOP
+            }
+        }, slabSize, capacity);
+    }
+
+    /**
+     * Creates a new {@link SlabAllocator} which reserves its memory by mapping consecutive regions of the specified
+     * {@code file}, this lets the operating system page the memory out under pressure. The file is truncated when
+     * it is opened and deleted when the allocator is closed.
+     *
+     * @param file     the path of the backing file.
+     * @param slabSize the size of each slab, it must be a power of two.
+     * @param capacity the maximum amount of memory the allocator can reserve.
+     * @return the created {@link SlabAllocator} object.
+     */
+    public static SlabAllocator mapped(Path file, int slabSize, long capacity) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new CacheException("Failed to open the off-heap backing file", e);
+        }
+        return new SlabAllocator(new MappedRegionSource(file, channel), slabSize, capacity);
+    }
+
+    /**
+     * A single slab which is carved into equal slots.
+     *
+     * @author Walied K. Yassen
+     */
+    static final class Slab {
+
+        /**
+         * The free slots of the slab.
+         */
+        private final Deque<ByteBuffer> slots = new ArrayDeque<>();
+
+        /**
+         * The memory region of the slab.
+         */
+        private final ByteBuffer region;
+
+        /**
+         * The size of each slot.
+         */
+        private final int slotSize;
+
+        /**
+         * The total amount of slots within the slab.
+         */
+        private final int slotCount;
+
+        /**
+         * Constructs a new {@link Slab} type object instance.
+         *
+         * @param region   the memory region of the slab.
+         * @param slotSize the size of each slot.
+         */
+        Slab(ByteBuffer region, int slotSize) {
+            this.region = region;
+            this.slotSize = slotSize;
+            slotCount = region.capacity() / slotSize;
+            for (int index = slotCount - 1; index >= 0; index--) {
+                ByteBuffer slot = region.duplicate();
+                slot.limit((index + 1) * slotSize).position(index * slotSize);
+                slots.push(slot.slice());
+            }
+        }
+    }
+}
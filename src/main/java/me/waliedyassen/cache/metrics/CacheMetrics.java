@@ -0,0 +1,168 @@
+package me.waliedyassen.cache.metrics;
+
+import me.waliedyassen.cache.compression.Compression;
+
+/**
+ * A listener which every layer of the cache library reports its operations to. All of the hooks have an empty default
+ * implementation, so an implementation only needs to override the hooks it is interested in.
+ * <p>
+ * The hooks are called on hot paths, so implementations must be thread-safe and cheap. The hooks of the timed
+ * operations are preceded by a started hook on the same thread, which is not followed by the completion hook if the
+ * operation fails. When {@link #isEnabled()}
+ * returns {@code false} the operations are not timed and the hooks are never called.
+ *
+ * @author Walied K. Yassen
+ */
+public interface CacheMetrics {
+
+    /**
+     * The metrics listener which is used when no listener was specified, it is disabled.
+     */
+    CacheMetrics NONE = new CacheMetrics() {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * Checks whether or not this listener is enabled.
+     *
+     * @return <code>true</code> if it is otherwise <code>false</code>.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called before the index table of an archive is decoded, it is followed by {@link #onArchiveOpened(int, int,
+     * long)} on the same thread once the index table was decoded.
+     *
+     * @param archiveId the id of the archive.
+     */
+    default void onArchiveOpenStarted(int archiveId) {
+        // NOOP
+    }
+
+    /**
+     * Called when an archive is opened and its index table is decoded.
+     *
+     * @param archiveId the id of the archive.
+     * @param size      the size of the raw index data.
+     * @param nanos     the time it took to decode the index table in nanoseconds.
+     */
+    default void onArchiveOpened(int archiveId, int size, long nanos) {
+        // NOOP
+    }
+
+    /**
+     * Called before the raw data of a group is read from the disk, it is followed by {@link #onGroupRead(int, int, int,
+     * int, long)} on the same thread once the group was read.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     */
+    default void onGroupReadStarted(int archiveId, int groupId) {
+        // NOOP
+    }
+
+    /**
+     * Called when the raw data of a group is read from the disk.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     * @param size      the amount of bytes that were read.
+     * @param blocks    the amount of blocks that were read.
+     * @param nanos     the time it took to read the group in nanoseconds.
+     */
+    default void onGroupRead(int archiveId, int groupId, int size, int blocks, long nanos) {
+        // NOOP
+    }
+
+    /**
+     * Called before the raw data of a group or an index table is decompressed, it is followed by {@link
+     * #onDecompressed(int, int, Compression, int, int, long)} on the same thread once the data was decompressed.
+     *
+     * @param archiveId the id of the archive which the data belongs to.
+     * @param groupId   the id of the group or {@code -1} if the data is of the index table.
+     */
+    default void onDecompressStarted(int archiveId, int groupId) {
+        // NOOP
+    }
+
+    /**
+     * Called when the raw data of a group or an index table is decompressed.
+     *
+     * @param archiveId        the id of the archive which the data belongs to.
+     * @param groupId          the id of the group or {@code -1} if the data is of the index table.
+     * @param compression      the compression type of the data.
+     * @param compressedSize   the size of the compressed data.
+     * @param decompressedSize the size of the decompressed data.
+     * @param nanos            the time it took to decompress the data in nanoseconds.
+     */
+    default void onDecompressed(int archiveId, int groupId, Compression compression, int compressedSize, int decompressedSize, long nanos) {
+        // NOOP
+    }
+
+    /**
+     * Called when the checksum values of some raw data are computed.
+     *
+     * @param archiveId the id of the archive which the data belongs to.
+     * @param size      the size of the data.
+     * @param nanos     the time it took to compute the checksum values in nanoseconds.
+     */
+    default void onChecksum(int archiveId, int size, long nanos) {
+        // NOOP
+    }
+
+    /**
+     * Called when a lookup in one of the in-memory caches is satisfied from the cache.
+     *
+     * @param archiveId the id of the archive that was looked-up.
+     * @param groupId   the id of the group that was looked-up or {@code -1} if the archive itself was looked-up.
+     */
+    default void onCacheHit(int archiveId, int groupId) {
+        // NOOP
+    }
+
+    /**
+     * Called when a lookup in one of the in-memory caches is not satisfied from the cache.
+     *
+     * @param archiveId the id of the archive that was looked-up.
+     * @param groupId   the id of the group that was looked-up or {@code -1} if the archive itself was looked-up.
+     */
+    default void onCacheMiss(int archiveId, int groupId) {
+        // NOOP
+    }
+
+    /**
+     * Called when a group is requested from an archive, before the group is looked-up in any of the in-memory caches.
+     *
+     * @param archiveId the id of the archive which the group belongs to.
+     * @param groupId   the id of the group.
+     */
+    default void onGroupAccessed(int archiveId, int groupId) {
+        // NOOP
+    }
+
+    /**
+     * Composes the specified {@code listeners} into a single listener which forwards every reported operation to all
+     * of the listeners that are enabled.
+     *
+     * @param listeners the listeners that we want to compose.
+     * @return the composed {@link CacheMetrics} object.
+     */
+    static CacheMetrics compose(CacheMetrics... listeners) {
+        if (listeners.length == 0) {
+            return NONE;
+        }
+        if (listeners.length == 1) {
+            return listeners[0];
+        }
+        return new CompositeCacheMetrics(listeners.clone());
+    }
+}
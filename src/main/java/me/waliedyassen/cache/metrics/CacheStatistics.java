@@ -0,0 +1,307 @@
+package me.waliedyassen.cache.metrics;
+
+import lombok.Getter;
+import me.waliedyassen.cache.compression.Compression;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The default {@link CacheMetrics} implementation, it aggregates all of the reported operations into striped counters
+ * and lock-free {@link LatencyHistogram latency histograms} which can be read at any time.
+ *
+ * @author Walied K. Yassen
+ */
+public final class CacheStatistics implements CacheMetrics {
+
+    /**
+     * The decompression statistics of each compression type.
+     */
+    private final Map<Compression, DecompressionStatistics> decompressions = new EnumMap<>(Compression.class);
+
+    /**
+     * The amount of archives that were opened.
+     */
+    private final LongAdder archivesOpened = new LongAdder();
+
+    /**
+     * The latency of decoding the index tables.
+     */
+    @Getter
+    private final LatencyHistogram indexDecodeLatency = new LatencyHistogram();
+
+    /**
+     * The amount of groups that were read from the disk.
+     */
+    private final LongAdder groupsRead = new LongAdder();
+
+    /**
+     * The amount of bytes that were read from the disk.
+     */
+    private final LongAdder bytesRead = new LongAdder();
+
+    /**
+     * The amount of blocks that were read from the disk.
+     */
+    private final LongAdder blocksRead = new LongAdder();
+
+    /**
+     * The latency of reading the groups from the disk.
+     */
+    @Getter
+    private final LatencyHistogram groupReadLatency = new LatencyHistogram();
+
+    /**
+     * The amount of bytes which the checksum values were computed for.
+     */
+    private final LongAdder checksumBytes = new LongAdder();
+
+    /**
+     * The latency of computing the checksum values.
+     */
+    @Getter
+    private final LatencyHistogram checksumLatency = new LatencyHistogram();
+
+    /**
+     * The amount of lookups that were satisfied from the in-memory caches.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * The amount of lookups that were not satisfied from the in-memory caches.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a new {@link CacheStatistics} type object instance.
+     */
+    public CacheStatistics() {
+        for (Compression compression : Compression.values()) {
+            decompressions.put(compression, new DecompressionStatistics());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onArchiveOpened(int archiveId, int size, long nanos) {
+        archivesOpened.increment();
+        indexDecodeLatency.record(nanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onGroupRead(int archiveId, int groupId, int size, int blocks, long nanos) {
+        groupsRead.increment();
+        bytesRead.add(size);
+        blocksRead.add(blocks);
+        groupReadLatency.record(nanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDecompressed(int archiveId, int groupId, Compression compression, int compressedSize, int decompressedSize, long nanos) {
+        DecompressionStatistics statistics = decompressions.get(compression);
+        statistics.count.increment();
+        statistics.compressedBytes.add(compressedSize);
+        statistics.decompressedBytes.add(decompressedSize);
+        statistics.latency.record(nanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onChecksum(int archiveId, int size, long nanos) {
+        checksumBytes.add(size);
+        checksumLatency.record(nanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCacheHit(int archiveId, int groupId) {
+        hits.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCacheMiss(int archiveId, int groupId) {
+        misses.increment();
+    }
+
+    /**
+     * Returns the decompression statistics of the specified {@link Compression compression} type.
+     *
+     * @param compression the compression type.
+     * @return the {@link DecompressionStatistics} object of the compression type.
+     */
+    public DecompressionStatistics getDecompression(Compression compression) {
+        return decompressions.get(compression);
+    }
+
+    /**
+     * Returns the amount of archives that were opened.
+     *
+     * @return the amount of opened archives.
+     */
+    public long getArchivesOpened() {
+        return archivesOpened.sum();
+    }
+
+    /**
+     * Returns the amount of groups that were read from the disk.
+     *
+     * @return the amount of read groups.
+     */
+    public long getGroupsRead() {
+        return groupsRead.sum();
+    }
+
+    /**
+     * Returns the amount of bytes that were read from the disk.
+     *
+     * @return the amount of read bytes.
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Returns the amount of blocks that were read from the disk.
+     *
+     * @return the amount of read blocks.
+     */
+    public long getBlocksRead() {
+        return blocksRead.sum();
+    }
+
+    /**
+     * Returns the amount of bytes which the checksum values were computed for.
+     *
+     * @return the amount of checksummed bytes.
+     */
+    public long getChecksumBytes() {
+        return checksumBytes.sum();
+    }
+
+    /**
+     * Returns the amount of lookups that were satisfied from the in-memory caches.
+     *
+     * @return the amount of cache hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the amount of lookups that were not satisfied from the in-memory caches.
+     *
+     * @return the amount of cache misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the ratio of the lookups that were satisfied from the in-memory caches.
+     *
+     * @return the hit ratio between {@code 0} and {@code 1}.
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("archives: opened=").append(getArchivesOpened()).append(", decode={").append(indexDecodeLatency).append("}\n");
+        builder.append("reads: groups=").append(getGroupsRead()).append(", bytes=").append(getBytesRead()).append(", blocks=").append(getBlocksRead()).append(", latency={").append(groupReadLatency).append("}\n");
+        for (Map.Entry<Compression, DecompressionStatistics> entry : decompressions.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                builder.append("decompress ").append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+            }
+        }
+        builder.append("checksum: bytes=").append(getChecksumBytes()).append(", latency={").append(checksumLatency).append("}\n");
+        builder.append(String.format("lookups: hits=%d, misses=%d, ratio=%.3f", getHits(), getMisses(), getHitRatio()));
+        return builder.toString();
+    }
+
+    /**
+     * The decompression statistics of a single compression type.
+     *
+     * @author Walied K. Yassen
+     */
+    public static final class DecompressionStatistics {
+
+        /**
+         * The amount of decompressed containers.
+         */
+        private final LongAdder count = new LongAdder();
+
+        /**
+         * The amount of compressed bytes.
+         */
+        private final LongAdder compressedBytes = new LongAdder();
+
+        /**
+         * The amount of decompressed bytes.
+         */
+        private final LongAdder decompressedBytes = new LongAdder();
+
+        /**
+         * The latency of the decompression.
+         */
+        @Getter
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        /**
+         * Returns the amount of decompressed containers.
+         *
+         * @return the amount of decompressed containers.
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Returns the amount of compressed bytes.
+         *
+         * @return the amount of compressed bytes.
+         */
+        public long getCompressedBytes() {
+            return compressedBytes.sum();
+        }
+
+        /**
+         * Returns the amount of decompressed bytes.
+         *
+         * @return the amount of decompressed bytes.
+         */
+        public long getDecompressedBytes() {
+            return decompressedBytes.sum();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return "count=" + getCount() + ", in=" + getCompressedBytes() + ", out=" + getDecompressedBytes() + ", latency={" + latency + "}";
+        }
+    }
+}
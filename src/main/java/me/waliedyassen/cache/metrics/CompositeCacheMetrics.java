@@ -0,0 +1,152 @@
+package me.waliedyassen.cache.metrics;
+
+import lombok.RequiredArgsConstructor;
+import me.waliedyassen.cache.compression.Compression;
+
+/**
+ * A {@link CacheMetrics} implementation which forwards every reported operation to all of the enabled listeners it
+ * is composed of.
+ *
+ * @author Walied K. Yassen
+ */
+@RequiredArgsConstructor
+final class CompositeCacheMetrics implements CacheMetrics {
+
+    /**
+     * The listeners which the operations are forwarded to.
+     */
+    private final CacheMetrics[] listeners;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        for (CacheMetrics listener : listeners) {
+            if (listener.isEnabled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onArchiveOpenStarted(int archiveId) {
+        for (CacheMetrics listener : listeners) {
+            if (listener.isEnabled()) {
+                listener.onArchiveOpenStarted(archiveId);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onArchiveOpened(int archiveId, int size, long nanos) {
+        for (CacheMetrics listener : listeners) {
+            if (listener.isEnabled()) {
+                listener.onArchiveOpened(archiveId, size, nanos);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onGroupReadStarted(int archiveId, int groupId) {
+        for (CacheMetrics listener : listeners) {
+            if (listener.isEnabled()) {
+                listener.onGroupReadStarted(archiveId, groupId);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onGroupRead(int archiveId, int groupId, int size, int blocks, long nanos) {
+        for (CacheMetrics listener : listeners) {
+            if (listener.isEnabled()) {
+                listener.onGroupRead(archiveId, groupId, size, blocks, nanos);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDecompressStarted(int archiveId, int groupId) {
+        for (CacheMetrics listener : listeners) {
+            if (listener.isEnabled()) {
+                listener.onDecompressStarted(archiveId, groupId);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDecompressed(int archiveId, int groupId, Compression compression, int compressedSize, int decompressedSize, long nanos) {
+        for (CacheMetrics listener : listeners) {
+            if (listener.isEnabled()) {
+                listener.onDecompressed(archiveId, groupId, compression, compressedSize, decompressedSize, nanos);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onChecksum(int archiveId, int size, long nanos) {
+        for (CacheMetrics listener : listeners) {
+            if (listener.isEnabled()) {
+                listener.onChecksum(archiveId, size, nanos);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCacheHit(int archiveId, int groupId) {
+        for (CacheMetrics listener : listeners) {
+            if (listener.isEnabled()) {
+                listener.onCacheHit(archiveId, groupId);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCacheMiss(int archiveId, int groupId) {
+        for (CacheMetrics listener : listeners) {
+            if (listener.isEnabled()) {
+                listener.onCacheMiss(archiveId, groupId);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onGroupAccessed(int archiveId, int groupId) {
+        for (CacheMetrics listener : listeners) {
+            if (listener.isEnabled()) {
+                listener.onGroupAccessed(archiveId, groupId);
+            }
+        }
+    }
+}
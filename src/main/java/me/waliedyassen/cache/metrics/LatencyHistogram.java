@@ -0,0 +1,117 @@
+package me.waliedyassen.cache.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with power-of-two buckets. Each bucket is a striped {@link LongAdder} counter so
+ * recording from many threads at once does not contend on a single memory location.
+ *
+ * @author Walied K. Yassen
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The amount of buckets, bucket {@code n} holds the values that are less than {@code 2^n} nanoseconds.
+     */
+    private static final int BUCKET_COUNT = 64;
+
+    /**
+     * The counters of the buckets.
+     */
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+
+    /**
+     * The total amount of recorded values.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The sum of all the recorded values.
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Constructs a new {@link LatencyHistogram} type object instance.
+     */
+    public LatencyHistogram() {
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            buckets[index] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the specified latency value.
+     *
+     * @param nanos the latency value in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+        count.increment();
+        sum.add(nanos);
+    }
+
+    /**
+     * Returns the total amount of recorded values.
+     *
+     * @return the amount of recorded values.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the mean of all the recorded values.
+     *
+     * @return the mean value in nanoseconds.
+     */
+    public double getMean() {
+        long count = this.count.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Returns an upper bound of the specified {@code percentile} of the recorded values.
+     *
+     * @param percentile the percentile that we want, between {@code 0} and {@code 100}.
+     * @return the upper bound of the bucket which contains the percentile in nanoseconds.
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            snapshot[index] = buckets[index].sum();
+            total += snapshot[index];
+        }
+        long target = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            seen += snapshot[index];
+            if (seen >= target && seen > 0) {
+                return index == 0 ? 0 : (1L << index) - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Resets all of the recorded values.
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        sum.reset();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.0fns, p50<=%dns, p99<=%dns", getCount(), getMean(), getPercentile(50), getPercentile(99));
+    }
+}
@@ -0,0 +1,52 @@
+package me.waliedyassen.cache.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event which is emitted when the raw data of a group or an index table is decompressed.
+ *
+ * @author Walied K. Yassen
+ */
+@Name("me.waliedyassen.cache.Decompress")
+@Label("Decompress")
+@Category({"Cache", "Compression"})
+@Description("The raw data of a group or an index table was decompressed")
+final class DecompressEvent extends Event {
+
+    /**
+     * The id of the archive which the data belongs to.
+     */
+    @Label("Archive")
+    int archiveId;
+
+    /**
+     * The id of the group or {@code -1} if the data is of the index table.
+     */
+    @Label("Group")
+    int groupId;
+
+    /**
+     * The name of the compression type.
+     */
+    @Label("Compression")
+    String compression;
+
+    /**
+     * The size of the compressed data.
+     */
+    @Label("Compressed Size")
+    @DataAmount
+    int compressedSize;
+
+    /**
+     * The size of the decompressed data.
+     */
+    @Label("Decompressed Size")
+    @DataAmount
+    int decompressedSize;
+}
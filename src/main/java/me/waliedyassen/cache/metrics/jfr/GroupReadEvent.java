@@ -0,0 +1,46 @@
+package me.waliedyassen.cache.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event which is emitted when the raw data of a group is read from the disk.
+ *
+ * @author Walied K. Yassen
+ */
+@Name("me.waliedyassen.cache.GroupRead")
+@Label("Group Read")
+@Category({"Cache", "I/O"})
+@Description("The raw data of a group was read from the disk")
+final class GroupReadEvent extends Event {
+
+    /**
+     * The id of the archive which the group belongs to.
+     */
+    @Label("Archive")
+    int archiveId;
+
+    /**
+     * The id of the group.
+     */
+    @Label("Group")
+    int groupId;
+
+    /**
+     * The amount of bytes that were read.
+     */
+    @Label("Size")
+    @DataAmount
+    int size;
+
+    /**
+     * The amount of blocks that were read.
+     */
+    @Label("Blocks")
+    @Description("The amount of data file blocks in the group chain")
+    int blocks;
+}
@@ -0,0 +1,33 @@
+package me.waliedyassen.cache.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event which is emitted when the index table of an archive is decoded.
+ *
+ * @author Walied K. Yassen
+ */
+@Name("me.waliedyassen.cache.IndexDecode")
+@Label("Index Decode")
+@Category({"Cache"})
+@Description("The index table of an archive was decoded")
+final class IndexDecodeEvent extends Event {
+
+    /**
+     * The id of the archive.
+     */
+    @Label("Archive")
+    int archiveId;
+
+    /**
+     * The size of the raw index data.
+     */
+    @Label("Size")
+    @DataAmount
+    int size;
+}
@@ -0,0 +1,216 @@
+package me.waliedyassen.cache.metrics.jfr;
+
+import jdk.jfr.Event;
+import lombok.RequiredArgsConstructor;
+import jdk.jfr.EventType;
+import me.waliedyassen.cache.compression.Compression;
+import me.waliedyassen.cache.metrics.CacheMetrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A {@link CacheMetrics} implementation which emits Java Flight Recorder events for the group reads, the
+ * decompressions and the index table decodes. The listener is only enabled while a recording has at least one of the
+ * events enabled, so it costs nothing when the flight recorder is not recording.
+ * <p>
+ * Each event is begun by the started hook of its operation and committed by the completion hook on the same thread,
+ * so the duration of the event is the duration of the operation and the thresholds of the recording apply to it.
+ * <p>
+ * The listener should be created through {@link JfrMetrics#create()}, which falls back to {@link CacheMetrics#NONE}
+ * when the flight recorder is not available in the running JVM.
+ *
+ * @author Walied K. Yassen
+ */
+final class JfrCacheMetrics implements CacheMetrics {
+
+    /**
+     * The maximum amount of events which may be in progress on a single thread, the events of the operations which
+     * failed are never completed so the events of a thread are dropped once it reaches this amount.
+     */
+    private static final int MAX_PENDING = 1024;
+
+    /**
+     * The event type of the {@link GroupReadEvent}.
+     */
+    private final EventType groupRead = EventType.getEventType(GroupReadEvent.class);
+
+    /**
+     * The event type of the {@link DecompressEvent}.
+     */
+    private final EventType decompress = EventType.getEventType(DecompressEvent.class);
+
+    /**
+     * The event type of the {@link IndexDecodeEvent}.
+     */
+    private final EventType indexDecode = EventType.getEventType(IndexDecodeEvent.class);
+
+    /**
+     * The events which were begun and not committed yet on each thread, keyed by the event class and the operation.
+     */
+    private final ThreadLocal<Map<Pending, Event>> pending = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return groupRead.isEnabled() || decompress.isEnabled() || indexDecode.isEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onArchiveOpenStarted(int archiveId) {
+        begin(new Pending(IndexDecodeEvent.class, archiveId, -1), new IndexDecodeEvent());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onArchiveOpened(int archiveId, int size, long nanos) {
+        IndexDecodeEvent event = end(new Pending(IndexDecodeEvent.class, archiveId, -1), IndexDecodeEvent::new);
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.archiveId = archiveId;
+        event.size = size;
+        event.commit();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onGroupReadStarted(int archiveId, int groupId) {
+        begin(new Pending(GroupReadEvent.class, archiveId, groupId), new GroupReadEvent());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onGroupRead(int archiveId, int groupId, int size, int blocks, long nanos) {
+        GroupReadEvent event = end(new Pending(GroupReadEvent.class, archiveId, groupId), GroupReadEvent::new);
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.archiveId = archiveId;
+        event.groupId = groupId;
+        event.size = size;
+        event.blocks = blocks;
+        event.commit();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDecompressStarted(int archiveId, int groupId) {
+        begin(new Pending(DecompressEvent.class, archiveId, groupId), new DecompressEvent());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDecompressed(int archiveId, int groupId, Compression compression, int compressedSize, int decompressedSize, long nanos) {
+        DecompressEvent event = end(new Pending(DecompressEvent.class, archiveId, groupId), DecompressEvent::new);
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.archiveId = archiveId;
+        event.groupId = groupId;
+        event.compression = compression.name();
+        event.compressedSize = compressedSize;
+        event.decompressedSize = decompressedSize;
+        event.commit();
+    }
+
+    /**
+     * Begins the specified {@link Event event} and keeps it until the operation is completed on this thread.
+     *
+     * @param key   the key of the operation.
+     * @param event the event of the operation.
+     */
+    private void begin(Pending key, Event event) {
+        if (!event.isEnabled()) {
+            return;
+        }
+        Map<Pending, Event> events = pending.get();
+        if (events.size() >= MAX_PENDING) {
+            events.clear();
+        }
+        event.begin();
+        events.put(key, event);
+    }
+
+    /**
+     * Ends the event of the operation with the specified key. An operation which was not begun on this thread gets a
+     * fresh event which has no duration.
+     *
+     * @param key     the key of the operation.
+     * @param factory the factory of the fresh event.
+     * @param <T>     the type of the event.
+     * @return the ended event.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Event> T end(Pending key, Supplier<T> factory) {
+        T event = (T) pending.get().remove(key);
+        if (event == null) {
+            event = factory.get();
+        }
+        event.end();
+        return event;
+    }
+
+    /**
+     * The key of an operation which has an event in progress.
+     *
+     * @author Walied K. Yassen
+     */
+    @RequiredArgsConstructor
+    private static final class Pending {
+
+        /**
+         * The class of the event.
+         */
+        private final Class<? extends Event> type;
+
+        /**
+         * The id of the archive.
+         */
+        private final int archiveId;
+
+        /**
+         * The id of the group or {@code -1}.
+         */
+        private final int groupId;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Pending)) {
+                return false;
+            }
+            Pending other = (Pending) obj;
+            return type == other.type && archiveId == other.archiveId && groupId == other.groupId;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return (type.hashCode() * 31 + archiveId) * 31 + groupId;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package me.waliedyassen.cache.metrics.jfr;
+
+import me.waliedyassen.cache.metrics.CacheMetrics;
+
+/**
+ * A factory of the {@link CacheMetrics} listener which emits Java Flight Recorder events. The listener is loaded
+ * reflectively, so nothing which uses the factory depends on the {@code jdk.jfr} module being present at runtime.
+ *
+ * @author Walied K. Yassen
+ */
+public final class JfrMetrics {
+
+    /**
+     * The name of the class of the listener which emits the events.
+     */
+    private static final String LISTENER_CLASS = "me.waliedyassen.cache.metrics.jfr.JfrCacheMetrics";
+
+    /**
+     * Creates a new {@link CacheMetrics} listener which emits Java Flight Recorder events for the group reads, the
+     * decompressions and the index table decodes.
+     *
+     * @return the created listener or {@link CacheMetrics#NONE} if the flight recorder is not available.
+     */
+    public static CacheMetrics create() {
+        try {
+            Class.forName("jdk.jfr.Event", false, JfrMetrics.class.getClassLoader());
+            return (CacheMetrics) Class.forName(LISTENER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return CacheMetrics.NONE;
+        }
+    }
+
+    private JfrMetrics() {
+        // NOOP
+    }
+}
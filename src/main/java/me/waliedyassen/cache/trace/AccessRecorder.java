@@ -0,0 +1,164 @@
+package me.waliedyassen.cache.trace;
+
+import lombok.Getter;
+import me.waliedyassen.cache.CacheException;
+import me.waliedyassen.cache.metrics.CacheMetrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link CacheMetrics} listener which records the amount of times each group is accessed through the cache and
+ * periodically flushes the counts to an {@link AccessTrace access trace} file. The counts of the previous trace are
+ * halved and carried over when the recorder is started, so the trace follows the workload without forgetting it after
+ * a short run.
+ * <p>
+ * The recorder is attached to a cache by {@link CacheMetrics#compose(CacheMetrics...) composing} it with the other
+ * metrics listeners of the cache, and should be attached after the warm-up so the warm-up does not record itself.
+ *
+ * @author Walied K. Yassen
+ */
+public final class AccessRecorder implements CacheMetrics, AutoCloseable {
+
+    /**
+     * The access count of each group, keyed by the archive id and the group id.
+     */
+    private final Map<Long, LongAdder> counts = new ConcurrentHashMap<>();
+
+    /**
+     * The path of the trace file.
+     */
+    @Getter
+    private final Path path;
+
+    /**
+     * The scheduler which flushes the trace periodically.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The failure of the last flush or {@code null} if it did not fail.
+     */
+    @Getter
+    private volatile Throwable lastFailure;
+
+    /**
+     * Constructs a new {@link AccessRecorder} type object instance.
+     *
+     * @param path   the path of the trace file.
+     * @param period the amount of nanoseconds between each flush of the trace.
+     */
+    private AccessRecorder(Path path, long period) {
+        this.path = path;
+        AccessTrace previous = AccessTrace.read(path);
+        for (int index = 0; index < previous.size(); index++) {
+            int count = previous.getCount(index) >>> 1;
+            if (count == 0) {
+                continue;
+            }
+            LongAdder adder = new LongAdder();
+            adder.add(count);
+            counts.put(AccessTrace.key(previous.getArchiveId(index), previous.getGroupId(index)), adder);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-access-recorder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tryFlush, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onGroupAccessed(int archiveId, int groupId) {
+        Long key = AccessTrace.key(archiveId, groupId);
+        LongAdder adder = counts.get(key);
+        if (adder == null) {
+            adder = counts.computeIfAbsent(key, unused -> new LongAdder());
+        }
+        adder.increment();
+    }
+
+    /**
+     * Takes a snapshot of the recorded access counts.
+     *
+     * @return the {@link AccessTrace} of the recorded accesses.
+     */
+    public AccessTrace snapshot() {
+        List<long[]> entries = new ArrayList<>(counts.size());
+        for (Map.Entry<Long, LongAdder> entry : counts.entrySet()) {
+            entries.add(new long[]{entry.getKey(), entry.getValue().sum()});
+        }
+        entries.sort((left, right) -> Long.compare(right[1], left[1]));
+        long[] keys = new long[entries.size()];
+        int[] values = new int[entries.size()];
+        for (int index = 0; index < keys.length; index++) {
+            long[] entry = entries.get(index);
+            keys[index] = entry[0];
+            values[index] = (int) Math.min(entry[1], Integer.MAX_VALUE);
+        }
+        return new AccessTrace(keys, values);
+    }
+
+    /**
+     * Writes a snapshot of the recorded access counts to the trace file.
+     *
+     * @throws CacheException if anything occurs while writing the trace file.
+     */
+    public void flush() {
+        try {
+            snapshot().write(path);
+        } catch (IOException e) {
+            throw new CacheException("Failed to write the access trace " + path, e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the recorded access counts to the trace file, and records the failure instead of throwing
+     * it, so a failed flush does not cancel the next ones.
+     */
+    private void tryFlush() {
+        try {
+            flush();
+            lastFailure = null;
+        } catch (RuntimeException e) {
+            lastFailure = e;
+        }
+    }
+
+    /**
+     * Stops the periodic flushes and writes the final snapshot of the recorded access counts to the trace file.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Starts recording the group accesses into the trace file at the specified {@code path}.
+     *
+     * @param path   the path of the trace file, the counts of the trace which is already there are carried over.
+     * @param period the amount of time between each flush of the trace.
+     * @param unit   the time unit of the period.
+     * @return the started {@link AccessRecorder} object.
+     */
+    public static AccessRecorder start(Path path, long period, TimeUnit unit) {
+        return new AccessRecorder(path, unit.toNanos(period));
+    }
+}
@@ -0,0 +1,230 @@
+package me.waliedyassen.cache.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * An immutable trace of the group accesses of a cache, it holds the amount of times each group was accessed ordered
+ * from the hottest group to the coldest group.
+ * <p>
+ * The trace file starts with a header that holds the magic number, the version and the amount of records, then it is
+ * followed by a single record per group which holds the archive id as a single byte, and the group id and the access
+ * count as 2 or 4 bytes smart values, and it ends with the CRC-32 checksum of everything before it.
+ *
+ * @author Walied K. Yassen
+ */
+public final class AccessTrace {
+
+    /**
+     * The trace which holds no accesses.
+     */
+    public static final AccessTrace EMPTY = new AccessTrace(new long[0], new int[0]);
+
+    /**
+     * The magic number which every trace file starts with.
+     */
+    private static final int MAGIC = 0x4A355452;
+
+    /**
+     * The version of the trace file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the buffer we use when reading or writing the trace file.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * The keys of the accessed groups, ordered by the access count in descending order.
+     */
+    private final long[] keys;
+
+    /**
+     * The access count of each group.
+     */
+    private final int[] counts;
+
+    /**
+     * Constructs a new {@link AccessTrace} type object instance.
+     *
+     * @param keys   the keys of the accessed groups, ordered by the access count in descending order.
+     * @param counts the access count of each group.
+     */
+    AccessTrace(long[] keys, int[] counts) {
+        this.keys = keys;
+        this.counts = counts;
+    }
+
+    /**
+     * Returns the amount of groups within the trace.
+     *
+     * @return the amount of groups.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the id of the archive of the group at the specified {@code index}.
+     *
+     * @param index the index of the group within the trace.
+     * @return the id of the archive.
+     */
+    public int getArchiveId(int index) {
+        return (int) (keys[index] >>> 32);
+    }
+
+    /**
+     * Returns the id of the group at the specified {@code index}.
+     *
+     * @param index the index of the group within the trace.
+     * @return the id of the group.
+     */
+    public int getGroupId(int index) {
+        return (int) keys[index];
+    }
+
+    /**
+     * Returns the access count of the group at the specified {@code index}.
+     *
+     * @param index the index of the group within the trace.
+     * @return the access count of the group.
+     */
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Returns a trace which holds only the specified amount of the hottest groups of this trace.
+     *
+     * @param count the maximum amount of groups.
+     * @return the {@link AccessTrace} of the hottest groups.
+     */
+    public AccessTrace getHottest(int count) {
+        if (count >= keys.length) {
+            return this;
+        }
+        return new AccessTrace(Arrays.copyOf(keys, count), Arrays.copyOf(counts, count));
+    }
+
+    /**
+     * Writes the trace to the file at the specified {@code path}. The trace is written to a temporary file which is
+     * synced and then moved over the path, so a crash never leaves a partially written trace behind.
+     *
+     * @param path the path of the trace file.
+     * @throws IOException if anything occurs while writing the trace file.
+     */
+    public void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(keys.length);
+            for (int index = 0; index < keys.length; index++) {
+                out.writeByte(getArchiveId(index));
+                writeSmart(out, getGroupId(index));
+                writeSmart(out, counts[index]);
+            }
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the trace from the file at the specified {@code path}. A trace which is missing or not valid is read as
+     * the {@link #EMPTY empty} trace, so a damaged trace only costs the warm-up and never the boot.
+     *
+     * @param path the path of the trace file.
+     * @return the read {@link AccessTrace} object.
+     */
+    public static AccessTrace read(Path path) {
+        if (!Files.exists(path)) {
+            return EMPTY;
+        }
+        try (InputStream stream = Files.newInputStream(path)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(stream, BUFFER_SIZE), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                return EMPTY;
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                return EMPTY;
+            }
+            long[] keys = new long[count];
+            int[] counts = new int[count];
+            for (int index = 0; index < count; index++) {
+                int archiveId = in.readUnsignedByte();
+                int groupId = readSmart(in);
+                keys[index] = key(archiveId, groupId);
+                counts[index] = readSmart(in);
+            }
+            int checksum = (int) checked.getChecksum().getValue();
+            if (in.readInt() != checksum) {
+                return EMPTY;
+            }
+            return new AccessTrace(keys, counts);
+        } catch (IOException e) {
+            return EMPTY;
+        }
+    }
+
+    /**
+     * Writes the specified non-negative {@code value} as a 2 bytes smart value if it is less than 32768 otherwise as a
+     * 4 bytes smart value with the most significant bit set.
+     *
+     * @param out   the stream to write the value to.
+     * @param value the value to write.
+     * @throws IOException if anything occurs while writing the value.
+     */
+    private static void writeSmart(DataOutputStream out, int value) throws IOException {
+        if (value < 32768) {
+            out.writeShort(value);
+        } else {
+            out.writeInt(value | 0x80000000);
+        }
+    }
+
+    /**
+     * Reads a smart value that was written using {@link #writeSmart(DataOutputStream, int)}.
+     *
+     * @param in the stream to read the value from.
+     * @return the value that was read.
+     * @throws IOException if anything occurs while reading the value.
+     */
+    private static int readSmart(DataInputStream in) throws IOException {
+        int value = in.readUnsignedShort();
+        if ((value & 0x8000) == 0) {
+            return value;
+        }
+        return (value & 0x7fff) << 16 | in.readUnsignedShort();
+    }
+
+    /**
+     * Returns the key of the specified group.
+     *
+     * @param archiveId the id of the archive.
+     * @param groupId   the id of the group.
+     * @return the key of the group.
+     */
+    static long key(int archiveId, int groupId) {
+        return (long) archiveId << 32 | groupId & 0xffffffffL;
+    }
+}
@@ -0,0 +1,196 @@
+package me.waliedyassen.cache.trace;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import me.waliedyassen.cache.Cache;
+import me.waliedyassen.cache.archive.Archive;
+import me.waliedyassen.cache.archive.OffHeapGroup;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Warms a freshly opened cache up by loading the hottest groups of an {@link AccessTrace access trace} before the cache
+ * starts serving. The groups are loaded in parallel and in the order they are placed within the storage, so the reads
+ * of the warm-up are as sequential as the file system allows.
+ *
+ * @author Walied K. Yassen
+ */
+public final class CacheWarmer {
+
+    /**
+     * Loads the specified amount of the hottest groups of the trace file at the specified {@code path} into the
+     * specified {@link Cache cache}, and blocks until all of them were loaded.
+     *
+     * @param cache       the cache which we want to warm up.
+     * @param path        the path of the trace file.
+     * @param top         the maximum amount of groups to load.
+     * @param parallelism the amount of groups that are loaded at the same time.
+     * @return the {@link Report} of the warm-up.
+     * @see #warmUp(Cache, AccessTrace, int, int)
+     */
+    public static Report warmUp(Cache cache, Path path, int top, int parallelism) {
+        return warmUp(cache, AccessTrace.read(path), top, parallelism);
+    }
+
+    /**
+     * Loads the specified amount of the hottest groups of the specified {@link AccessTrace trace} into the specified
+     * {@link Cache cache}, and blocks until all of them were loaded. The groups are loaded into the off-heap store of
+     * the cache if it is enabled, otherwise into the tiered cache of the cache if it is enabled, otherwise they are
+     * only read which leaves them in the page cache of the operating system.
+     * <p>
+     * The groups which are no longer present in the cache are skipped, and the groups which fail to load are counted
+     * rather than thrown, so a stale or damaged trace never prevents the cache from starting.
+     *
+     * @param cache       the cache which we want to warm up.
+     * @param trace       the access trace of a previous run.
+     * @param top         the maximum amount of groups to load.
+     * @param parallelism the amount of groups that are loaded at the same time.
+     * @return the {@link Report} of the warm-up.
+     */
+    public static Report warmUp(Cache cache, AccessTrace trace, int top, int parallelism) {
+        long start = System.nanoTime();
+        AccessTrace hottest = trace.getHottest(top);
+        List<Load> loads = new ArrayList<>(hottest.size());
+        long missing = 0;
+        for (int index = 0; index < hottest.size(); index++) {
+            Archive archive = cache.get(hottest.getArchiveId(index));
+            int groupId = hottest.getGroupId(index);
+            if (archive == null || archive.getGroup(groupId) == null) {
+                missing++;
+                continue;
+            }
+            loads.add(new Load(archive, groupId, archive.getFileSystem().getPosition(groupId)));
+        }
+        loads.sort(Comparator.comparingLong((Load load) -> load.position).thenComparingInt(load -> load.archive.getId()).thenComparingInt(load -> load.groupId));
+        LongAdder loaded = new LongAdder();
+        LongAdder failed = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        Semaphore pending = new Semaphore(parallelism * 2);
+        try {
+            for (Load load : loads) {
+                pending.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        if (load(cache, load.archive, load.groupId)) {
+                            loaded.increment();
+                        } else {
+                            failed.increment();
+                        }
+                    } catch (Throwable e) {
+                        failed.increment();
+                    } finally {
+                        pending.release();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return new Report(hottest.size(), loaded.sum(), missing, failed.sum(), System.nanoTime() - start);
+    }
+
+    /**
+     * Loads the specified group into the cache.
+     *
+     * @param cache   the cache which the group is loaded into.
+     * @param archive the archive which the group belongs to.
+     * @param groupId the id of the group.
+     * @return <code>true</code> if the group was loaded otherwise <code>false</code>.
+     */
+    private static boolean load(Cache cache, Archive archive, int groupId) {
+        if (cache.getOffHeapStore() != null) {
+            OffHeapGroup group = archive.loadGroupOffHeap(groupId);
+            if (group == null) {
+                return false;
+            }
+            group.release();
+            return true;
+        }
+        return archive.loadGroup(groupId) != null;
+    }
+
+    private CacheWarmer() {
+        // NOOP
+    }
+
+    /**
+     * A single group load of the warm-up.
+     *
+     * @author Walied K. Yassen
+     */
+    @RequiredArgsConstructor
+    private static final class Load {
+
+        /**
+         * The archive which the group belongs to.
+         */
+        private final Archive archive;
+
+        /**
+         * The id of the group.
+         */
+        private final int groupId;
+
+        /**
+         * The position of the group within the storage or {@code -1} if it is not known.
+         */
+        private final long position;
+    }
+
+    /**
+     * The report of a single warm-up.
+     *
+     * @author Walied K. Yassen
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Report {
+
+        /**
+         * The amount of groups that were requested from the trace.
+         */
+        private final long requested;
+
+        /**
+         * The amount of groups that were loaded.
+         */
+        private final long loaded;
+
+        /**
+         * The amount of groups that are no longer present in the cache.
+         */
+        private final long missing;
+
+        /**
+         * The amount of groups that failed to load.
+         */
+        private final long failed;
+
+        /**
+         * The time the warm-up took in nanoseconds.
+         */
+        private final long elapsed;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return String.format("requested=%d loaded=%d missing=%d failed=%d elapsed=%.2fs", requested, loaded, missing, failed, elapsed / 1e9);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package me.waliedyassen.cache.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the executors which are used for the asynchronous operations of the cache library. This is the JDK 21 version
+ * of the class, which runs the operations on virtual threads.
+ *
+ * @author Walied K. Yassen
+ */
+public final class CacheExecutors {
+
+    /**
+     * Creates a new {@link ExecutorService} that is suitable for running blocking cache operations.
+     *
+     * @return the created {@link ExecutorService} object.
+     */
+    public static ExecutorService newExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("cache-io-", 1).factory());
+    }
+
+    /**
+     * Returns the shared {@link ExecutorService} which is used when no executor was specified.
+     *
+     * @return the shared {@link ExecutorService} object.
+     */
+    public static ExecutorService getDefault() {
+        return DefaultHolder.EXECUTOR;
+    }
+
+    /**
+     * Lazily holds the shared default executor.
+     *
+     * @author Walied K. Yassen
+     */
+    private static final class DefaultHolder {
+
+        /**
+         * The shared default executor.
+         */
+        private static final ExecutorService EXECUTOR = newExecutor();
+    }
+
+    private CacheExecutors() {
+        // NOOP
+    }
+}
@@ -0,0 +1,47 @@
+package me.waliedyassen.cache.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The tests of the {@link SingleFlight} asynchronous loads.
+ *
+ * @author Walied K. Yassen
+ */
+class SingleFlightTest {
+
+    @Test
+    void cancellingOneCallerDoesNotAffectTheOthers() {
+        SingleFlight<Integer, String> flight = new SingleFlight<>();
+        CompletableFuture<String> load = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> owner = flight.loadAsync(1, () -> {
+            loads.incrementAndGet();
+            return load;
+        });
+        CompletableFuture<String> first = flight.loadAsync(1, () -> {
+            loads.incrementAndGet();
+            return load;
+        });
+        CompletableFuture<String> second = flight.loadAsync(1, () -> {
+            loads.incrementAndGet();
+            return load;
+        });
+        assertEquals(1, loads.get());
+        assertNotSame(first, second);
+        owner.cancel(false);
+        first.complete("forged");
+        load.complete("value");
+        assertTrue(owner.isCancelled());
+        assertEquals("forged", first.join());
+        assertFalse(second.isCompletedExceptionally());
+        assertEquals("value", second.join());
+    }
+}
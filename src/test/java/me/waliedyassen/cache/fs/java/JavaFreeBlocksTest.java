@@ -0,0 +1,58 @@
+package me.waliedyassen.cache.fs.java;
+
+import me.waliedyassen.cache.CacheException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The tests of the {@link JavaFreeBlocks} free-space map and the tracked stores.
+ *
+ * @author Walied K. Yassen
+ */
+class JavaFreeBlocksTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsTheBlocksOfAnUnresolvedChainReserved() throws IOException {
+        try (RandomAccessFile dataFile = open("main_file_cache.dat2", "rw"); RandomAccessFile indexFile = open("main_file_cache.idx0", "rw")) {
+            JavaFileStore store = new JavaFileStore(0, dataFile, indexFile);
+            // group 0 takes the blocks 1 to 3 and group 1 takes the block 4.
+            store.store(0, new byte[1200]);
+            store.store(1, new byte[100]);
+            assertEquals(4, store.getFirstBlock(1));
+            // break the chain of group 0 by overwriting the part number within the header of its second block.
+            dataFile.seek(2L * JavaFileStore.DATA_BLOCK_SIZE + 2);
+            dataFile.writeShort(7);
+            JavaBlockMap blockMap = JavaBlockMap.scan(dataFile.getChannel());
+            JavaFreeBlocks freeBlocks = JavaFreeBlocks.build(blockMap, Collections.singletonList(store));
+            assertEquals(0, freeBlocks.getFreeCount());
+        }
+    }
+
+    @Test
+    void failsTheTrackedStoreWhenTheWriteFails() throws IOException {
+        open("main_file_cache.dat2", "rw").close();
+        open("main_file_cache.idx0", "rw").close();
+        try (RandomAccessFile dataFile = open("main_file_cache.dat2", "r"); RandomAccessFile indexFile = open("main_file_cache.idx0", "r")) {
+            JavaFileStore store = new JavaFileStore(0, dataFile, indexFile);
+            JavaBlockMap blockMap = JavaBlockMap.scan(dataFile.getChannel());
+            store.setBlockMap(blockMap);
+            store.setFreeBlocks(JavaFreeBlocks.build(blockMap, Collections.singletonList(store)));
+            assertThrows(CacheException.class, () -> store.store(0, new byte[100]));
+        }
+    }
+
+    private RandomAccessFile open(String name, String mode) throws IOException {
+        return new RandomAccessFile(directory.resolve(name).toFile(), mode);
+    }
+}
@@ -0,0 +1,104 @@
+package me.waliedyassen.cache.fs.java;
+
+import me.waliedyassen.cache.CacheException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The tests of the {@link JavaJournal} replay and failure handling.
+ *
+ * @author Walied K. Yassen
+ */
+class JavaJournalTest {
+
+    private static final int ARCHIVE_ID = 0;
+
+    private static final int GROUP_ID = 3;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void discardsATornTransaction() throws IOException {
+        byte[] original = payload(1200, 1);
+        try (RandomAccessFile dataFile = open("main_file_cache.dat2", "rw"); RandomAccessFile indexFile = open("main_file_cache.idx0", "rw")) {
+            JavaFileStore store = new JavaFileStore(ARCHIVE_ID, dataFile, indexFile);
+            store.write(GROUP_ID, original);
+        }
+        Path wal = directory.resolve("main_file_cache.wal");
+        try (OutputStream stream = Files.newOutputStream(wal)) {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(0x4A35574C);
+            out.writeInt(1);
+            out.writeByte(ARCHIVE_ID);
+            out.writeInt(GROUP_ID);
+            out.writeInt(4000);
+            // the transaction was cut in the middle of the entry data.
+            out.write(payload(100, 2));
+        }
+        try (RandomAccessFile dataFile = open("main_file_cache.dat2", "rw"); RandomAccessFile indexFile = open("main_file_cache.idx0", "rw")) {
+            JavaFileStore store = new JavaFileStore(ARCHIVE_ID, dataFile, indexFile);
+            new JavaJournal(wal).replay(id -> id == ARCHIVE_ID ? store : null);
+            assertArrayEquals(original, store.load(GROUP_ID));
+        }
+        assertEquals(0, Files.size(wal));
+    }
+
+    @Test
+    void keepsTheTransactionWhenAWriteFails() throws IOException {
+        byte[] data = payload(3000, 3);
+        open("main_file_cache.dat2", "rw").close();
+        open("main_file_cache.idx0", "rw").close();
+        Path wal = directory.resolve("main_file_cache.wal");
+        try (RandomAccessFile dataFile = open("main_file_cache.dat2", "r"); RandomAccessFile indexFile = open("main_file_cache.idx0", "r")) {
+            JavaFileStore store = new JavaFileStore(ARCHIVE_ID, dataFile, indexFile);
+            JavaJournal journal = new JavaJournal(wal);
+            assertThrows(CacheException.class, () -> journal.commit(Collections.singletonList(new JavaJournal.Entry(store, GROUP_ID, data))));
+        }
+        assertTrue(Files.size(wal) > 0, "the journal was cleared although the transaction was not applied");
+        try (RandomAccessFile dataFile = open("main_file_cache.dat2", "rw"); RandomAccessFile indexFile = open("main_file_cache.idx0", "rw")) {
+            JavaFileStore store = new JavaFileStore(ARCHIVE_ID, dataFile, indexFile);
+            new JavaJournal(wal).replay(id -> id == ARCHIVE_ID ? store : null);
+            assertArrayEquals(data, store.load(GROUP_ID));
+        }
+        assertEquals(0, Files.size(wal));
+    }
+
+    @Test
+    void removesTheGroupsWithoutData() throws IOException {
+        Path wal = directory.resolve("main_file_cache.wal");
+        try (RandomAccessFile dataFile = open("main_file_cache.dat2", "rw"); RandomAccessFile indexFile = open("main_file_cache.idx0", "rw")) {
+            JavaFileStore store = new JavaFileStore(ARCHIVE_ID, dataFile, indexFile);
+            JavaJournal journal = new JavaJournal(wal);
+            journal.commit(Collections.singletonList(new JavaJournal.Entry(store, GROUP_ID, payload(700, 4))));
+            journal.commit(Collections.singletonList(new JavaJournal.Entry(store, GROUP_ID, null)));
+            assertNull(store.load(GROUP_ID));
+        }
+    }
+
+    private RandomAccessFile open(String name, String mode) throws IOException {
+        return new RandomAccessFile(directory.resolve(name).toFile(), mode);
+    }
+
+    private static byte[] payload(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int index = 0; index < length; index++) {
+            data[index] = (byte) (index * 31 + seed);
+        }
+        return data;
+    }
+}
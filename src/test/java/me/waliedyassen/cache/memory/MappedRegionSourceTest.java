@@ -0,0 +1,119 @@
+package me.waliedyassen.cache.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The tests of the {@link MappedRegionSource} free list.
+ *
+ * @author Walied K. Yassen
+ */
+class MappedRegionSourceTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedRegionSource source;
+
+    @BeforeEach
+    void open() throws IOException {
+        Path file = directory.resolve("regions.bin");
+        source = new MappedRegionSource(file, FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        source.close();
+    }
+
+    @Test
+    void splitsTheFirstRangeThatFits() throws IOException {
+        List<ByteBuffer> regions = new ArrayList<>();
+        for (int index = 0; index < 8; index++) {
+            regions.add(source.create(100));
+        }
+        // free every other region so the free list holds several ranges which are not adjacent.
+        for (int index = 1; index < 8; index += 2) {
+            source.release(regions.get(index));
+        }
+        ByteBuffer first = source.create(36);
+        ByteBuffer second = source.create(64);
+        ByteBuffer third = source.create(64);
+        assertEquals(100, source.getOffset(first));
+        assertEquals(136, source.getOffset(second));
+        assertEquals(300, source.getOffset(third));
+        assertEquals(700, source.getEnd());
+    }
+
+    @Test
+    void mergesTheAdjacentRanges() throws IOException {
+        List<ByteBuffer> regions = new ArrayList<>();
+        for (int index = 0; index < 5; index++) {
+            regions.add(source.create(100));
+        }
+        source.release(regions.get(1));
+        source.release(regions.get(3));
+        source.release(regions.get(2));
+        ByteBuffer merged = source.create(300);
+        assertEquals(100, source.getOffset(merged));
+        assertEquals(500, source.getEnd());
+        source.release(merged);
+        source.release(regions.get(4));
+        source.release(regions.get(0));
+        assertEquals(0, source.getEnd());
+    }
+
+    @Test
+    void neverHandsOutOverlappingRegions() throws IOException {
+        Random random = new Random(0x5EED);
+        List<ByteBuffer> live = new ArrayList<>();
+        List<Byte> marks = new ArrayList<>();
+        long size = 0;
+        for (int round = 0; round < 5000; round++) {
+            if (!live.isEmpty() && random.nextInt(100) < 45) {
+                int index = random.nextInt(live.size());
+                ByteBuffer region = live.remove(index);
+                assertFilled(region, marks.remove(index));
+                size -= region.capacity();
+                source.release(region);
+                continue;
+            }
+            ByteBuffer region = source.create(1 + random.nextInt(512));
+            byte mark = (byte) round;
+            for (int position = 0; position < region.capacity(); position++) {
+                region.put(position, mark);
+            }
+            live.add(region);
+            marks.add(mark);
+            size += region.capacity();
+        }
+        for (int index = 0; index < live.size(); index++) {
+            assertFilled(live.get(index), marks.get(index));
+        }
+        assertTrue(source.getEnd() >= size);
+        for (ByteBuffer region : live) {
+            source.release(region);
+        }
+        assertEquals(0, source.getEnd());
+    }
+
+    private static void assertFilled(ByteBuffer region, byte mark) {
+        for (int position = 0; position < region.capacity(); position++) {
+            assertEquals(mark, region.get(position), "the region was overwritten by another region");
+        }
+    }
+}